@@ -18,6 +18,8 @@ plugins {
     id("io.gitlab.arturbosch.detekt") version "1.20.0"
     // ktlint linter - read more: https://github.com/JLLeitschuh/ktlint-gradle
     id("org.jlleitschuh.gradle.ktlint") version "10.2.1"
+    // JMH benchmarks - read more: https://github.com/melix/jmh-gradle-plugin
+    id("me.champeau.jmh") version "0.6.6"
 }
 
 group = properties("pluginGroup")
@@ -33,6 +35,14 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
 }
 
+// The benchmarks (src/jmh) run the plugin code outside of the IDE, so they need the platform classes
+// on the classpath, like the tests do.
+configurations {
+    named("jmhImplementation") {
+        extendsFrom(testImplementation.get())
+    }
+}
+
 // Configure gradle-intellij-plugin plugin.
 // Read more: https://github.com/JetBrains/gradle-intellij-plugin
 intellij {
@@ -53,6 +63,22 @@ changelog {
     groups = emptyList()
 }
 
+// Configure JMH benchmarks: ./gradlew jmh
+// A subset may be selected with a regular expression, e.g. ./gradlew jmh -PjmhIncludes=StatisticsDictionary
+// Read more: https://github.com/melix/jmh-gradle-plugin
+jmh {
+    jmhVersion.set("1.35")
+    project.findProperty("jmhIncludes")?.let { includes.set(listOf(it.toString())) }
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // The allocation rate (gc.alloc.rate.norm) is reported for every benchmark
+    profilers.set(listOf("gc"))
+    jvmArgs.set(listOf("-Xms2g", "-Xmx2g"))
+    resultFormat.set("JSON")
+    resultsFile.set(project.file("build/reports/jmh/results.json"))
+}
+
 // Configure detekt plugin.
 // Read more: https://detekt.github.io/detekt/kotlindsl.html
 detekt {
@@ -71,6 +97,8 @@ tasks {
     withType<JavaCompile> {
         sourceCompatibility = "1.8"
         targetCompatibility = "1.8"
+        // The sources (and the test data in the tests) are not ASCII-only
+        options.encoding = "UTF-8"
     }
     withType<KotlinCompile> {
         kotlinOptions.jvmTarget = "1.8"
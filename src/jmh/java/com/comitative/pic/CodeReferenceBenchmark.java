@@ -0,0 +1,42 @@
+package com.comitative.pic;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the code reference construction. A code reference is created for every record of a snapshot,
+ * so its cost is a part of the snapshot loading time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CodeReferenceBenchmark {
+
+    private String fqClassName;
+    private String methodName;
+
+    @Setup(Level.Trial)
+    public void createNames() {
+        fqClassName = "org.springframework.web.servlet.DispatcherServlet";
+        methodName = "doDispatch";
+    }
+
+    @Benchmark
+    public CodeReference build() {
+        return CodeReference.builder()
+                .setFqClassName(fqClassName)
+                .setMethodName(methodName)
+                .build();
+    }
+
+    @Benchmark
+    public String buildWithShortClassName() {
+        return build().getShortClassName();
+    }
+
+    @Benchmark
+    public int buildWithHashCode() {
+        return build().hashCode();
+    }
+}
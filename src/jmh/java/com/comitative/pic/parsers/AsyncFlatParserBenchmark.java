@@ -0,0 +1,89 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.TimeRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Async Profiler flat snapshot parser.
+ *
+ * The snapshots are synthetic (see SyntheticSnapshot) and written to a temporary file once per trial, so after
+ * the warmup the file is read from the page cache and the parser itself is measured, not the disk.
+ */
+public class AsyncFlatParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SnapshotState {
+        @Param({"10000", "1000000", "10000000"})
+        public int lineCount;
+
+        Path snapshotFile;
+
+        @Setup(Level.Trial)
+        public void createSnapshot() throws IOException {
+            snapshotFile = SyntheticSnapshot.createFile(lineCount);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteSnapshot() throws IOException {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NameState {
+        final AsyncFlatParser parser = new AsyncFlatParser();
+        final AsyncFlatScanner scanner = new AsyncFlatScanner();
+        final ByteBuffer[] nameBuffers = new ByteBuffer[SyntheticSnapshot.FRAME_NAMES.length];
+
+        @Setup(Level.Trial)
+        public void encodeNames() {
+            for (int i = 0; i < nameBuffers.length; i++) {
+                nameBuffers[i] = ByteBuffer.wrap(SyntheticSnapshot.FRAME_NAMES[i].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<TimeRecord> parseStream(SnapshotState state) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(state.snapshotFile)) {
+            return new AsyncFlatParser().parseStream(inputStream);
+        }
+    }
+
+    // All the realistic frame names (one per kind, 10 in total) are parsed in one invocation
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(10)
+    public void parseMethodName(NameState state, Blackhole blackhole) {
+        for (String name : SyntheticSnapshot.FRAME_NAMES) {
+            Optional<CodeReference> codeReference = state.parser.parseMethodName(name);
+            blackhole.consume(codeReference);
+        }
+    }
+
+    // The byte-level counterpart of parseMethodName that the scanner uses for the snapshot files
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(10)
+    public void scanMethodName(NameState state, Blackhole blackhole) {
+        for (ByteBuffer name : state.nameBuffers) {
+            blackhole.consume(state.scanner.scanMethodName(name, 0, name.capacity()));
+        }
+    }
+}
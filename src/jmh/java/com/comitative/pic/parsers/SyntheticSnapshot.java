@@ -0,0 +1,136 @@
+package com.comitative.pic.parsers;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A generator of synthetic snapshots in the Async Profiler flat format.
+ *
+ * The snapshots resemble the real ones: most of the lines belong to the stack traces, and the summary block lists
+ * a mix of Java, Kotlin, native and kernel frames. The generator is seeded, so the same line count always produces
+ * the same snapshot and the benchmark results are comparable between runs.
+ */
+final class SyntheticSnapshot {
+
+    private SyntheticSnapshot() {}
+
+    /**
+     * Write a synthetic snapshot to a temporary file.
+     *
+     * @param lineCount the approximate number of lines
+     * @return the path of the snapshot file (the caller is responsible for deleting it)
+     * @throws IOException if the file can't be written
+     */
+    static @NotNull Path createFile(int lineCount) throws IOException {
+        Path file = Files.createTempFile("synthetic-snapshot", ".txt");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(writer, lineCount);
+        }
+        return file;
+    }
+
+    private static void write(@NotNull Writer out, int lineCount) throws IOException {
+        Random random = new Random(SEED);
+        String[] frames = createFrameNames(Math.max(lineCount / 100, MIN_FRAME_COUNT), random);
+        int summaryLines = Math.max(lineCount / 5, 1);
+        int stackTraceLines = lineCount - summaryLines;
+        long totalSamples = (long) summaryLines * 10;
+
+        out.write("--- Execution profile ---\n");
+        out.write("Total samples       : " + totalSamples + "\n\n");
+
+        int written = 0;
+        while (written < stackTraceLines) {
+            int depth = MIN_STACK_DEPTH + random.nextInt(MAX_STACK_DEPTH - MIN_STACK_DEPTH);
+            long samples = 1 + random.nextInt(1000);
+            out.write(String.format(Locale.ROOT, "--- %d ns (%.2f%%), %d samples\n",
+                    samples * SAMPLE_PERIOD_NS, 100.0 * samples / totalSamples, samples));
+            for (int i = 0; i < depth; i++) {
+                out.write(String.format(Locale.ROOT, "  [%2d] %s\n", i, frames[random.nextInt(frames.length)]));
+            }
+            out.write('\n');
+            written += depth + 2;
+        }
+
+        out.write("          ns  percent  samples  top\n");
+        out.write("  ----------  -------  -------  ---\n");
+        for (int i = 0; i < summaryLines; i++) {
+            // Sample counts decrease like in a real summary
+            long samples = Math.max(totalSamples / (i + 2), 1);
+            out.write(String.format(Locale.ROOT, "%12d %7.2f%% %8d  %s\n",
+                    samples * SAMPLE_PERIOD_NS, 100.0 * samples / totalSamples, samples, frames[i % frames.length]));
+        }
+    }
+
+    private static @NotNull String[] createFrameNames(int count, @NotNull Random random) {
+        String[] frames = new String[count];
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(10);
+            String packageName = PACKAGES[random.nextInt(PACKAGES.length)];
+            String className = CLASSES[random.nextInt(CLASSES.length)] + i / CLASSES.length;
+            String methodName = METHODS[random.nextInt(METHODS.length)];
+            if (kind < 5) {
+                frames[i] = packageName + '.' + className + '.' + methodName + "_[j]";
+            } else if (kind < 7) {
+                frames[i] = packageName + '.' + className + "Kt." + methodName + "_[j]";
+            } else if (kind == 7) {
+                frames[i] = packageName + '.' + className + '$' + "Inner." + methodName + "_[j]";
+            } else if (kind == 8) {
+                frames[i] = NATIVE_FRAMES[random.nextInt(NATIVE_FRAMES.length)];
+            } else {
+                frames[i] = KERNEL_FRAMES[random.nextInt(KERNEL_FRAMES.length)];
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Realistic frame names of an Async Profiler snapshot, one of every kind that the parser distinguishes.
+     */
+    static final String[] FRAME_NAMES = {
+            "com.comitative.pt.Matrix.multiply_[j]",
+            "com.comitative.pt.MainKt.main_[j]",
+            "com.comitative.pt.Matrix.<init>_[j]",
+            "java.util.concurrent.ConcurrentHashMap$Node.find_[j]",
+            "kotlin.collections.CollectionsKt___CollectionsKt.joinToString_[j]",
+            "org.springframework.web.servlet.DispatcherServlet.doDispatch_[j]",
+            "java.lang.String.valueOf_[j]",
+            "CollectedHeap::allocate_from_tlab_slow(KlassHandle, Thread*, unsigned long)",
+            "__handle_mm_fault_[k]",
+            "/usr/lib/x86_64-linux-gnu/libc-2.31.so",
+    };
+
+    private static final long SEED = 20200801L;
+    private static final long SAMPLE_PERIOD_NS = 10_000_000L;
+    private static final int MIN_FRAME_COUNT = 100;
+    private static final int MIN_STACK_DEPTH = 8;
+    private static final int MAX_STACK_DEPTH = 24;
+
+    private static final String[] PACKAGES = {
+            "com.comitative.pt", "org.springframework.web.servlet", "java.util.concurrent", "kotlin.collections",
+            "io.netty.channel.nio", "com.fasterxml.jackson.databind.deser",
+    };
+    private static final String[] CLASSES = {
+            "Matrix", "Transform", "DispatcherServlet", "ConcurrentHashMap", "NioEventLoop", "BeanDeserializer",
+    };
+    private static final String[] METHODS = {
+            "multiply", "getElement", "transform", "doDispatch", "putVal", "processSelectedKeys", "deserialize",
+            "<init>", "invoke", "run",
+    };
+    private static final String[] NATIVE_FRAMES = {
+            "CollectedHeap::allocate_from_tlab_slow(KlassHandle, Thread*, unsigned long)",
+            "PhaseIdealLoop::clone_loop(IdealLoopTree*, Node_List&, int, Node*)",
+            "IndexSetIterator::advance_and_next()",
+            "/usr/lib/x86_64-linux-gnu/libc-2.31.so",
+    };
+    private static final String[] KERNEL_FRAMES = {
+            "__handle_mm_fault_[k]", "do_syscall_64_[k]", "try_charge_[k]", "_cond_resched_[k]",
+    };
+}
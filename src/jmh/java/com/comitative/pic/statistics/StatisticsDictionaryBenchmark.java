@@ -0,0 +1,127 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.TimeRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the dictionary lookups that run for every method of a file on every highlighting pass.
+ *
+ * The lookup names are fresh String instances (as they come from PSI), so the benchmarks include hashing
+ * of the names.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatisticsDictionaryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class DictionaryState {
+        @Param({"1000", "100000"})
+        public int recordCount;
+
+        StatisticsDictionary dictionary;
+        // The records of the short dictionary have unqualified class names (e.g., from a Kotlin script snapshot)
+        StatisticsDictionary shortDictionary;
+
+        String[] classNames;
+        String[] methodNames;
+        String[] missingMethodNames;
+        String[] missingClassNames;
+
+        @Setup(Level.Trial)
+        public void createDictionaries() {
+            StatisticsDictionary.Builder builder = new StatisticsDictionary.Builder();
+            StatisticsDictionary.Builder shortBuilder = new StatisticsDictionary.Builder();
+            classNames = new String[LOOKUP_COUNT];
+            methodNames = new String[LOOKUP_COUNT];
+            missingMethodNames = new String[LOOKUP_COUNT];
+            missingClassNames = new String[LOOKUP_COUNT];
+            for (int i = 0; i < recordCount; i++) {
+                builder.add(createRecord(getPackageName(i) + '.' + getClassName(i), getMethodName(i), recordCount));
+                shortBuilder.add(createRecord(getClassName(i), getMethodName(i), recordCount));
+            }
+            dictionary = builder.build();
+            shortDictionary = shortBuilder.build();
+
+            // Spread the lookups over the dictionary
+            for (int i = 0; i < LOOKUP_COUNT; i++) {
+                int record = (int) ((long) i * recordCount / LOOKUP_COUNT);
+                classNames[i] = new String(getPackageName(record) + '.' + getClassName(record));
+                methodNames[i] = new String(getMethodName(record));
+                missingMethodNames[i] = getMethodName(record) + "Missing";
+                missingClassNames[i] = getPackageName(record) + ".Missing" + getClassName(record);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LookupIndex {
+        int next = 0;
+
+        int next() {
+            next = (next + 1) & (LOOKUP_COUNT - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public List<TimeRecord> getTimeRecordsHit(DictionaryState state, LookupIndex index) {
+        int i = index.next();
+        return state.dictionary.getTimeRecords(state.classNames[i], state.methodNames[i]);
+    }
+
+    @Benchmark
+    public List<TimeRecord> getTimeRecordsMissingMethod(DictionaryState state, LookupIndex index) {
+        int i = index.next();
+        return state.dictionary.getTimeRecords(state.classNames[i], state.missingMethodNames[i]);
+    }
+
+    @Benchmark
+    public List<TimeRecord> getTimeRecordsMissingClass(DictionaryState state, LookupIndex index) {
+        int i = index.next();
+        return state.dictionary.getTimeRecords(state.missingClassNames[i], state.methodNames[i]);
+    }
+
+    @Benchmark
+    public List<TimeRecord> getTimeRecordsShortNameFallback(DictionaryState state, LookupIndex index) {
+        int i = index.next();
+        return state.shortDictionary.getTimeRecords(state.classNames[i], state.methodNames[i]);
+    }
+
+    // The allocation-free lookup that the line marker provider uses
+    @Benchmark
+    public int findRecordHit(DictionaryState state, LookupIndex index) {
+        int i = index.next();
+        return state.dictionary.findRecord(state.classNames[i], state.methodNames[i]);
+    }
+
+    private static TimeRecord createRecord(String className, String methodName, int recordCount) {
+        CodeReference codeReference = CodeReference.builder()
+                .setFqClassName(className)
+                .setMethodName(methodName)
+                .build();
+        TimeRecord timeRecord = new TimeRecord(codeReference, 1.0 / recordCount);
+        timeRecord.setSampleCount(1);
+        return timeRecord;
+    }
+
+    private static String getPackageName(int record) {
+        return "com.comitative.pt.module" + record / (CLASS_METHODS * PACKAGE_CLASSES);
+    }
+
+    private static String getClassName(int record) {
+        return "Class" + record / CLASS_METHODS;
+    }
+
+    private static String getMethodName(int record) {
+        return "method" + record % CLASS_METHODS;
+    }
+
+    private static final int CLASS_METHODS = 10;
+    private static final int PACKAGE_CLASSES = 20;
+    // A power of two to cycle through the lookups with a mask
+    private static final int LOOKUP_COUNT = 1024;
+}
@@ -39,10 +39,13 @@ import java.util.Objects;
 public final class CodeReference {
 
     private final boolean javaMethod;
-    private final @NotNull String shortClassName;
     private final @NotNull String fqClassName;
     private final @NotNull String methodName;
 
+    // Computed lazily: most references are only used as lookup keys and never need the short name.
+    // The race is benign because the value is immutable and always the same.
+    private String shortClassName;
+
     /**
      * A private constructor with the mandatory components of the name as arguments.
      * @param javaMethod true if the name refers to the user/library Java/Kotlin/(other JVM language) code, false if
@@ -57,13 +60,17 @@ public final class CodeReference {
         this.javaMethod = javaMethod;
         this.fqClassName = fqClassName;
         this.methodName = methodName;
+    }
 
-        String[] components = fqClassName.split("\\.");
-        if (components.length > 0) {
-            this.shortClassName = components[components.length - 1];
-        } else {
-            this.shortClassName = fqClassName;
-        }
+    /**
+     * Find the start of the short (immediate) class name in a fully qualified class name.
+     * It lets the callers look up the short name without creating a substring.
+     *
+     * @param fqClassName a fully qualified class name (e.g., "com.comitative.pic.CodeReference")
+     * @return the index of the first character of the short class name (e.g., 19 for "CodeReference")
+     */
+    public static int getShortClassNameStart(@NotNull String fqClassName) {
+        return fqClassName.lastIndexOf('.') + 1;
     }
 
     /**
@@ -157,7 +164,12 @@ public final class CodeReference {
      * @return short class name
      */
     public @NotNull String getShortClassName() {
-        return shortClassName;
+        String result = shortClassName;
+        if (result == null) {
+            result = fqClassName.substring(getShortClassNameStart(fqClassName));
+            shortClassName = result;
+        }
+        return result;
     }
 
     /**
@@ -0,0 +1,95 @@
+package com.comitative.pic;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The kind of a stack frame as the Async Profiler reports it with a suffix of the frame name ("Matrix.multiply_[j]"):
+ * how the JVM executed the method when it was sampled. The time of a method is split by the frame types, so the
+ * tooltips show whether a hot method has reached the optimizing compiler.
+ *
+ * The Async Profiler versions that do not tell C1 from C2 mark all the compiled frames with "_[j]".
+ *
+ * @see TimeRecord#getFrameType()
+ */
+public enum FrameType {
+    /**
+     * The method was executed by the interpreter ("_[0]").
+     */
+    INTERPRETED('0', "interpreted"),
+
+    /**
+     * The method was compiled by C1, the client compiler ("_[1]").
+     */
+    C1_COMPILED('1', "C1"),
+
+    /**
+     * The method was compiled by C2, the optimizing compiler ("_[j]").
+     */
+    C2_COMPILED('j', "C2"),
+
+    /**
+     * The method was inlined into a compiled caller ("_[i]").
+     */
+    INLINED('i', "inlined"),
+
+    /**
+     * A kernel function ("_[k]"); such frames are not Java methods, but the suffix is recognized to be stripped.
+     */
+    KERNEL('k', "kernel");
+
+    /**
+     * The length of a frame type suffix ("_[j]").
+     */
+    public static final int SUFFIX_LENGTH = 4;
+
+    private final char marker;
+    private final @NotNull String displayName;
+
+    FrameType(char marker, @NotNull String displayName) {
+        this.marker = marker;
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return a human-readable name of the frame type
+     */
+    public @NotNull String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @param marker the character between the brackets of a frame name suffix
+     * @return the frame type or null if the marker is unknown
+     */
+    public static @Nullable FrameType ofMarker(char marker) {
+        for (FrameType frameType : VALUES) {
+            if (frameType.marker == marker) {
+                return frameType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recognize the frame type suffix of a name.
+     *
+     * @param name a frame name
+     * @param length the length of the name prefix to check (the suffix ends there)
+     * @return the frame type or null if the prefix does not end with a frame type suffix
+     */
+    public static @Nullable FrameType ofSuffix(@NotNull CharSequence name, int length) {
+        if (length < SUFFIX_LENGTH || name.charAt(length - 4) != '_' || name.charAt(length - 3) != '['
+                || name.charAt(length - 1) != ']') {
+            return null;
+        }
+        return ofMarker(name.charAt(length - 2));
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    private static final FrameType[] VALUES = values();
+}
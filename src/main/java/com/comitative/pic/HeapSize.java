@@ -0,0 +1,78 @@
+package com.comitative.pic;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shallow heap size estimates of the arrays that the plugin data structures are built of.
+ *
+ * The estimates assume a 64-bit JVM with compressed references (the default for heaps below 32 GB) and compact
+ * strings; they are meant for diagnostics (e.g., to tell how much memory a loaded snapshot retains),
+ * not for exact accounting.
+ */
+public final class HeapSize {
+
+    private HeapSize() {}
+
+    /**
+     * @param array an array
+     * @return the estimated size of the array in bytes
+     */
+    public static long of(@NotNull int[] array) {
+        return align(ARRAY_HEADER_SIZE + (long) array.length * Integer.BYTES);
+    }
+
+    /**
+     * @param array an array
+     * @return the estimated size of the array in bytes
+     */
+    public static long of(@NotNull long[] array) {
+        return align(ARRAY_HEADER_SIZE + (long) array.length * Long.BYTES);
+    }
+
+    /**
+     * @param array an array
+     * @return the estimated size of the array in bytes
+     */
+    public static long of(@NotNull double[] array) {
+        return align(ARRAY_HEADER_SIZE + (long) array.length * Double.BYTES);
+    }
+
+    /**
+     * @param array an array of long columns
+     * @return the estimated size of the array and its columns in bytes
+     */
+    public static long of(@NotNull long[][] array) {
+        long size = align(ARRAY_HEADER_SIZE + (long) array.length * REFERENCE_SIZE);
+        for (long[] column : array) {
+            size += of(column);
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the size of an array of strings together with the strings (each string is counted once per
+     * array element, so shared strings are overestimated).
+     *
+     * @param array an array of strings, possibly with null elements
+     * @return the estimated size of the array and its strings in bytes
+     */
+    public static long of(@NotNull String[] array) {
+        long size = align(ARRAY_HEADER_SIZE + (long) array.length * REFERENCE_SIZE);
+        for (String string : array) {
+            if (string != null) {
+                size += STRING_SIZE + align(ARRAY_HEADER_SIZE + string.length());
+            }
+        }
+        return size;
+    }
+
+    private static long align(long size) {
+        return (size + OBJECT_ALIGNMENT - 1) & -OBJECT_ALIGNMENT;
+    }
+
+    private static final long ARRAY_HEADER_SIZE = 16;
+    private static final long REFERENCE_SIZE = 4;
+    // A String instance without its value array: a header, a value reference, a hash and a coder
+    private static final long STRING_SIZE = 24;
+    private static final long OBJECT_ALIGNMENT = 8;
+}
@@ -0,0 +1,71 @@
+package com.comitative.pic;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A value that a profiler measures for a code fragment. A snapshot usually has one event type (e.g., CPU samples
+ * or allocations), but the snapshots of several event types may be loaded together, so every record has a value
+ * of each metric (zero if the snapshot has no events of its type).
+ *
+ * @see TimeRecord#getValue(ProfileMetric)
+ */
+public enum ProfileMetric {
+    /**
+     * The number of samples where the code fragment was on top of the stack. The relative value of the metric is
+     * the relative time reported by the profiler.
+     */
+    SAMPLES("Samples", Unit.SAMPLES),
+
+    /**
+     * The CPU (or wall clock) time of the samples (ns).
+     */
+    TIME("Time", Unit.NANOSECONDS),
+
+    /**
+     * The memory allocated by the code fragment (bytes), e.g., of the Async Profiler alloc event or of the JFR
+     * allocation samples.
+     */
+    ALLOCATED_BYTES("Allocated memory", Unit.BYTES),
+
+    /**
+     * The time that threads waited to enter a monitor in the code fragment (ns), e.g., of the Async Profiler
+     * lock event or of the JFR monitor enter events.
+     */
+    LOCK_WAIT_TIME("Lock wait time", Unit.NANOSECONDS);
+
+    private final @NotNull String displayName;
+    private final @NotNull Unit unit;
+
+    ProfileMetric(@NotNull String displayName, @NotNull Unit unit) {
+        this.displayName = displayName;
+        this.unit = unit;
+    }
+
+    /**
+     * @return a human-readable name of the metric
+     */
+    public @NotNull String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return the unit of the metric values
+     */
+    public @NotNull Unit getUnit() {
+        return unit;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    /**
+     * The unit of the metric values (it determines how the values are formatted).
+     */
+    public enum Unit {
+        SAMPLES,
+        NANOSECONDS,
+        BYTES
+    }
+}
@@ -0,0 +1,162 @@
+package com.comitative.pic;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * An interning table that maps names (e.g., class and method names of code references) to canonical
+ * dense integer identifiers.
+ *
+ * The table is an open addressing hash table of identifiers over an array of strings. It uses the same hash
+ * function as String.hashCode, so a lookup of a whole string reuses the cached string hash, and a lookup of
+ * a string fragment (e.g., the short class name of a fully qualified name) does not need a substring.
+ * Lookups never allocate.
+ *
+ * Interning is not thread-safe. Once the table is filled and published (e.g., as a part of a statistics
+ * dictionary), it may be read from any number of threads as long as nobody interns new names.
+ */
+public final class SymbolTable {
+
+    /**
+     * An identifier that does not correspond to any name.
+     */
+    public static final int NO_SYMBOL = -1;
+
+    private String[] symbols = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    // Open addressing table of identifiers, NO_SYMBOL marks an empty slot
+    private int[] slots = newSlots(INITIAL_CAPACITY * 2);
+
+    /**
+     * Find a name or add it to the table.
+     *
+     * @param name a name to intern
+     * @return the canonical identifier of the name
+     */
+    public int intern(@NotNull String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != NO_SYMBOL) {
+            int id = slots[slot];
+            if (hashes[id] == hash && symbols[id].equals(name)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (count == symbols.length) {
+            symbols = Arrays.copyOf(symbols, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        int id = count++;
+        symbols[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id;
+        if (count * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Find a name.
+     *
+     * @param name a name to find
+     * @return the identifier of the name or NO_SYMBOL if the name is not in the table
+     */
+    public int find(@NotNull String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != NO_SYMBOL) {
+            int id = slots[slot];
+            if (hashes[id] == hash && symbols[id].equals(name)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_SYMBOL;
+    }
+
+    /**
+     * Find a fragment of a string without creating a substring.
+     *
+     * @param text a string that contains the name
+     * @param start the first character of the name (inclusive)
+     * @param end the end of the name (exclusive)
+     * @return the identifier of the name or NO_SYMBOL if the name is not in the table
+     */
+    public int find(@NotNull String text, int start, int end) {
+        int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != NO_SYMBOL) {
+            int id = slots[slot];
+            String symbol = symbols[id];
+            if (hashes[id] == hash && symbol.length() == length && symbol.regionMatches(0, text, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_SYMBOL;
+    }
+
+    /**
+     * @param id a name identifier
+     * @return the name
+     */
+    public @NotNull String getSymbol(int id) {
+        return symbols[id];
+    }
+
+    /**
+     * @return the number of names in the table
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the estimated heap size of the table and its names in bytes
+     * @see HeapSize
+     */
+    public long estimateRetainedSize() {
+        return HeapSize.of(symbols) + HeapSize.of(hashes) + HeapSize.of(slots);
+    }
+
+    private void rehash() {
+        int[] newSlots = newSlots(slots.length * 2);
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (newSlots[slot] != NO_SYMBOL) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id;
+        }
+        slots = newSlots;
+    }
+
+    private static int[] newSlots(int size) {
+        int[] result = new int[size];
+        Arrays.fill(result, NO_SYMBOL);
+        return result;
+    }
+
+    // String hashes of similar names differ only in the low bits, so spread them over the table
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+}
@@ -1,20 +1,39 @@
 package com.comitative.pic;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A time usage record for a method or another code fragment.
  * Each time record contains a reference to the code fragment and a relative time (in normalized percent, [0.0 .. 1.0]).
  * Optionally the absolute time (in nanoseconds) and the sample count (in samples) can be added
- * (they are zero by default).
+ * (they are zero by default). A record may also be attributed to a single source line of the method
+ * (if the profiler reports line numbers) and to a frame type (if the profiler reports how the method was executed,
+ * e.g., interpreted or compiled by C2).
+ *
+ * The records of allocation and lock profiles carry the allocated bytes or the lock wait time instead of
+ * (or next to) the sampled time; all the values are available by metric (see getValue). Time records are only
+ * the output of the parsers: the statistics dictionary keeps the values in primitive columns.
  *
  * @see CodeReference
+ * @see ProfileMetric
+ * @see FrameType
  */
 public class TimeRecord {
+
+    /**
+     * A line number that means that the record is not attributed to a source line.
+     */
+    public static final int NO_LINE = 0;
+
     private final @NotNull CodeReference codeReference;
     private final double relativeTime;
     private long absoluteTime;
     private long sampleCount;
+    private long allocatedBytes;
+    private long lockWaitTime;
+    private int lineNumber = NO_LINE;
+    private @Nullable FrameType frameType = null;
 
     /**
      * A constructor that initializes the required fields.
@@ -76,4 +95,84 @@ public class TimeRecord {
     public void setSampleCount(long sampleCount) {
         this.sampleCount = sampleCount;
     }
-}
+
+    /**
+     * A getter for a metric value.
+     *
+     * @param metric a profile metric
+     * @return the value of the metric (the sample count and the absolute time are metrics too)
+     */
+    public long getValue(@NotNull ProfileMetric metric) {
+        switch (metric) {
+            case SAMPLES:
+                return sampleCount;
+            case TIME:
+                return absoluteTime;
+            case ALLOCATED_BYTES:
+                return allocatedBytes;
+            case LOCK_WAIT_TIME:
+                return lockWaitTime;
+            default:
+                throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+    }
+
+    /**
+     * A setter for a metric value.
+     *
+     * @param metric a profile metric
+     * @param value the value of the metric
+     */
+    public void setValue(@NotNull ProfileMetric metric, long value) {
+        switch (metric) {
+            case SAMPLES:
+                sampleCount = value;
+                break;
+            case TIME:
+                absoluteTime = value;
+                break;
+            case ALLOCATED_BYTES:
+                allocatedBytes = value;
+                break;
+            case LOCK_WAIT_TIME:
+                lockWaitTime = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+    }
+
+    /**
+     * A getter for the source line number.
+     *
+     * @return the line number (1-based) or NO_LINE if the record is attributed to the whole method
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * A setter for the source line number.
+     * @param lineNumber the line number (1-based) or NO_LINE
+     */
+    public void setLineNumber(int lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * A getter for the frame type.
+     *
+     * @return the frame type or null if the profiler does not report it
+     */
+    public @Nullable FrameType getFrameType() {
+        return frameType;
+    }
+
+    /**
+     * A setter for the frame type.
+     * @param frameType the frame type or null
+     */
+    public void setFrameType(@Nullable FrameType frameType) {
+        this.frameType = frameType;
+    }
+}
\ No newline at end of file
@@ -1,29 +1,34 @@
 package com.comitative.pic.parsers;
 
 import com.comitative.pic.CodeReference;
+import com.comitative.pic.FrameType;
 import com.comitative.pic.TimeRecord;
+import com.intellij.openapi.progress.ProgressIndicator;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import com.intellij.openapi.diagnostic.Logger;
-
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import java.util.function.Function;
-import java.util.regex.*;
 
 /**
  * A simple parser for the flat report format as generated by the Async Profiler.
  *
- * The parser currently skips stack traces part and only collects information from the summary block.
- * This behavior may change in the future versions.
+ * Time records are collected from the summary block. The stack traces part is skipped unless a stack trace
+ * collector is passed to parseFile, in which case every stack trace is reported to the collector.
+ *
+ * The actual scanning is done at the byte level by AsyncFlatScanner: snapshot files are memory-mapped,
+ * and streams are read in fixed-size chunks, so the parser does not create a String for every line.
+ *
+ * @see AsyncFlatScanner
  */
 public final class AsyncFlatParser extends SnapshotParser {
 
-    private static final Logger LOG = Logger.getInstance(AsyncFlatParser.class);
     private static final String PARSER_NAME = "Async Profiler flat snapshot";
 
     /**
@@ -49,13 +54,46 @@ public final class AsyncFlatParser extends SnapshotParser {
      */
     @Override
     public @NotNull List<TimeRecord> parseStream(@NotNull InputStream inputStream) throws IOException {
-        final List<TimeRecord> statistics = new LinkedList<>();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        String line = reader.readLine();
-        while (line != null) {
-            parseSummaryLine(line).ifPresent(statistics::add);
-            line = reader.readLine();
+        final List<TimeRecord> statistics = new ArrayList<>();
+        final AsyncFlatScanner scanner = new AsyncFlatScanner();
+        byte[] chunk = new byte[STREAM_CHUNK_SIZE];
+        int length = 0;
+        int bytesRead = inputStream.read(chunk, length, chunk.length - length);
+        while (bytesRead >= 0) {
+            length += bytesRead;
+            int processed = scanner.scan(ByteBuffer.wrap(chunk), 0, length, false, statistics);
+            if (processed > 0) {
+                // Keep the incomplete trailing line for the next chunk
+                System.arraycopy(chunk, processed, chunk, 0, length - processed);
+                length -= processed;
+            } else if (length == chunk.length) {
+                // A single line does not fit into the chunk
+                chunk = Arrays.copyOf(chunk, chunk.length * 2);
+            }
+            bytesRead = inputStream.read(chunk, length, chunk.length - length);
         }
+        scanner.scan(ByteBuffer.wrap(chunk), 0, length, true, statistics);
+        return statistics;
+    }
+
+    /**
+     * Parse a snapshot file matching the Async Profiler flat report format.
+     * The file is memory-mapped and scanned in place, which is much faster than reading it line by line.
+     *
+     * @param file a snapshot file to parse
+     * @param collector a receiver for the stack traces, or null if the stack traces part should be skipped
+     * @param indicator a progress indicator to report the fraction of processed bytes and check for cancellation
+     * @return a list of time records from the file
+     * @throws IOException if the file can't be read
+     * @see SnapshotParser#parseFile(File, StackTraceCollector, ProgressIndicator)
+     */
+    @Override
+    public @NotNull List<TimeRecord> parseFile(
+            @NotNull File file,
+            @Nullable StackTraceCollector collector,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        final List<TimeRecord> statistics = new ArrayList<>();
+        new AsyncFlatScanner(collector, indicator).scanFile(file, statistics);
         return statistics;
     }
 
@@ -72,23 +110,8 @@ public final class AsyncFlatParser extends SnapshotParser {
      * @return Optional pair (method reference, statistics), Optional.empty() if the line does not match the format
      */
     Optional<TimeRecord> parseSummaryLine(String line) {
-        Matcher matcher = SUMMARY_LINE_PATTERN.matcher(line);
-        if (matcher.matches()) {
-            try {
-                long absoluteTime = Long.parseLong(matcher.group(1));
-                double relativeTime = normalizePercent(Double.parseDouble(matcher.group(2)));
-                long sampleCount = Long.parseLong(matcher.group(3));
-                return parseMethodName(matcher.group(4)).flatMap(methodRef -> {
-                    TimeRecord timeRecord = new TimeRecord(methodRef, relativeTime);
-                    timeRecord.setAbsoluteTime(absoluteTime);
-                    timeRecord.setSampleCount(sampleCount);
-                    return Optional.of(timeRecord);
-                });
-            } catch (NumberFormatException e) {
-                LOG.warn("invalid numeric value: " + e.getMessage());
-            }
-        }
-        return Optional.empty();
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return Optional.ofNullable(new AsyncFlatScanner().scanLine(ByteBuffer.wrap(bytes), 0, bytes.length));
     }
 
     /**
@@ -108,8 +131,29 @@ public final class AsyncFlatParser extends SnapshotParser {
     @NotNull Optional<CodeReference> parseMethodName(@NotNull String name) {
         ArrayList<String> components = new ArrayList<>();
         int len = name.length();
-        if (name.endsWith(JAVA_METHOD_MARKER)) {
-            len -= JAVA_METHOD_MARKER_LENGTH;
+        // A frame type suffix ("_[j]", see FrameType) is not a part of the code reference either
+        boolean hasFrameType = FrameType.ofSuffix(name, len) != null;
+        if (hasFrameType) {
+            len -= FrameType.SUFFIX_LENGTH;
+        }
+        // A source line suffix (":27", the Async Profiler adds it on request) is not a part of the code reference,
+        // but a double colon is a C++ scope separator
+        int lineStart = len;
+        while (lineStart > 0 && len - lineStart < MAX_LINE_DIGITS && isAsciiDigit(name.charAt(lineStart - 1))) {
+            lineStart -= 1;
+        }
+        if (lineStart < len && lineStart >= 2
+                && name.charAt(lineStart - 1) == ':' && name.charAt(lineStart - 2) != ':') {
+            len = lineStart - 1;
+            if (!hasFrameType && FrameType.ofSuffix(name, len) != null) {
+                len -= FrameType.SUFFIX_LENGTH;
+            }
+        }
+
+        // A JNI function implements a Java native method, and its name is the mangled name of the method
+        CodeReference jniMethod = NativeSymbols.decodeJniSymbol(name, len);
+        if (jniMethod != null) {
+            return Optional.of(jniMethod);
         }
 
         // A simple FSM to extract and store prefixes that correspond to the separate components of package,
@@ -174,35 +218,18 @@ public final class AsyncFlatParser extends SnapshotParser {
         return i;
     }
 
-    /**
-     * Convert the relative time in percent to the interval of [0.0 .. 1.0] so the other code can deal
-     * with the uniform representation. The method truncates negative or too large values.
-     *
-     * @param percentValue a relative time value
-     * @return truncated and normalized value
-     */
-    private static double normalizePercent(double percentValue) {
-        if (percentValue < 0.0) {
-            return 0.0;
-        } else if (percentValue > 100.0) {
-            return 1.0;
-        } else {
-            return percentValue / 100.0;
-        }
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
-    // A regex to match summary lines in the report
-    private static final Pattern SUMMARY_LINE_PATTERN =
-            Pattern.compile("^\\s*(\\d+)\\s+(\\d+\\.\\d+)%\\s+(\\d+)\\s+(.+)\\s*$");
-
     // Characters that mark that the method name correspond to a native name (an internal JVM method,
     // a system call name, or a name from a C/C++ library). We currently just ignore these names
     // as there is no Java/Kotlin code where we could place a marker anyway.
     private static final Set<Character> NATIVE_NAME_MARKERS = new TreeSet<>(Arrays.asList(':', '/'));
 
-    // The optional suffix that Async Profiler may add (with some command line options) to the method names
-    // corresponding to the user code or Java/Kotlin library methods, and its length. We strip this suffix
-    // during the processing.
-    private static final String JAVA_METHOD_MARKER = "_[j]";
-    private static final int JAVA_METHOD_MARKER_LENGTH = JAVA_METHOD_MARKER.length();
+    // Line numbers with more digits may overflow an int value
+    private static final int MAX_LINE_DIGITS = 9;
+
+    // The size of the chunks in which input streams are read
+    private static final int STREAM_CHUNK_SIZE = 64 * 1024;
 }
@@ -0,0 +1,634 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.FrameType;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.TimeRecord;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A byte-level scanner for the Async Profiler flat report format.
+ *
+ * The scanner works directly on a (possibly memory-mapped) byte buffer: it finds line boundaries, classifies
+ * the lines by their first non-blank byte, and parses the numeric columns and the frame name of summary lines
+ * in place. No regular expressions are used, and no objects are allocated for the lines that are not converted
+ * into time records.
+ *
+ * The first column of an allocation profile (the Async Profiler alloc event) is the allocated memory, not the time.
+ * The unit is taken from the table header ("bytes  percent  samples  top") and from the stack trace headers, so
+ * the values of such a profile are reported as ProfileMetric.ALLOCATED_BYTES.
+ *
+ * Stack trace headers ("--- N ns (P%), S samples") and frame lines ("[ k] frame") are skipped unless
+ * a stack trace collector is given. In that case, frame names are interned at the byte level, and each
+ * stack trace is passed to the collector as an array of frame identifiers. The mangled C++ names are demangled
+ * once per distinct frame, when the frame is reported to the collector (see NativeSymbols).
+ *
+ * When a progress indicator is given, the scanner checks it for cancellation and reports the fraction
+ * of processed bytes every PROGRESS_STEP bytes.
+ *
+ * This class is not a part of a public API. Instances are not thread-safe (they reuse a scratch buffer for
+ * frame names and keep the state of the current stack trace), so each parsing session should use its own scanner.
+ *
+ * @see AsyncFlatParser
+ */
+final class AsyncFlatScanner {
+
+    private static final Logger LOG = Logger.getInstance(AsyncFlatScanner.class);
+
+    private final @Nullable StackTraceCollector collector;
+    private final @Nullable ProgressIndicator indicator;
+    private final FrameNameTable frameNames = new FrameNameTable();
+
+    // The size of the whole input and the input offset of the region being scanned, for progress reporting
+    private long inputSize = 0;
+    private long inputOffset = 0;
+
+    private byte[] nameBuffer = new byte[INITIAL_NAME_BUFFER_SIZE];
+    private char[] charBuffer = new char[INITIAL_NAME_BUFFER_SIZE];
+
+    // The source line and the frame type of the last name passed to scanMethodName
+    private int lineNumber = TimeRecord.NO_LINE;
+    private @Nullable FrameType frameType = null;
+
+    // The metric of the first column of the summary lines (see the table header)
+    private ProfileMetric summaryMetric = ProfileMetric.TIME;
+
+    // The stack trace being collected
+    private boolean inStackTrace = false;
+    private long stackAbsoluteTime;
+    private long stackSampleCount;
+    private int[] stackFrames = new int[INITIAL_STACK_DEPTH];
+    private int stackDepth = 0;
+
+    /**
+     * Create a scanner that only collects the summary records.
+     */
+    AsyncFlatScanner() {
+        this(null, null);
+    }
+
+    /**
+     * Create a scanner.
+     *
+     * @param collector a receiver for the stack traces, or null if the stack trace part should be skipped
+     * @param indicator a progress indicator to check for cancellation and report progress, or null
+     */
+    AsyncFlatScanner(@Nullable StackTraceCollector collector, @Nullable ProgressIndicator indicator) {
+        this.collector = collector;
+        this.indicator = indicator;
+    }
+
+    /**
+     * Memory-map a snapshot file and scan it window by window.
+     * Files larger than a single mapping window are processed in several line-aligned windows.
+     *
+     * @param file a snapshot file to scan
+     * @param records a list to store the time records found in the file
+     * @throws IOException if the file can't be mapped or read
+     * @throws com.intellij.openapi.progress.ProcessCanceledException if the progress indicator is cancelled
+     */
+    void scanFile(@NotNull File file, @NotNull List<TimeRecord> records) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            long fileSize = channel.size();
+            long windowStart = 0;
+            inputSize = fileSize;
+            while (windowStart < fileSize) {
+                inputOffset = windowStart;
+                long windowSize = Math.min(MAX_WINDOW_SIZE, fileSize - windowStart);
+                boolean lastWindow = windowStart + windowSize == fileSize;
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+                int processed = scan(window, 0, (int) windowSize, lastWindow, records);
+                if (processed == 0) {
+                    // A single line does not fit into the window. It can't be a valid summary line anyway,
+                    // so skip the whole window instead of looping forever.
+                    processed = (int) windowSize;
+                }
+                windowStart += processed;
+            }
+        }
+    }
+
+    /**
+     * Scan the complete lines in the buffer region.
+     *
+     * @param buffer a buffer to scan (its position and limit are ignored, absolute access is used)
+     * @param start the first byte of the region (inclusive)
+     * @param end the end of the region (exclusive)
+     * @param endOfInput true if the region ends the input, so the trailing line without a line feed is complete
+     * @param records a list to store the time records found in the region
+     * @return the number of processed bytes from the region start (the trailing incomplete line is not processed)
+     */
+    int scan(@NotNull ByteBuffer buffer, int start, int end, boolean endOfInput, @NotNull List<TimeRecord> records) {
+        int lineStart = start;
+        int nextProgressCheck = start;
+        while (lineStart < end) {
+            if (indicator != null && lineStart >= nextProgressCheck) {
+                checkProgress(lineStart);
+                nextProgressCheck = lineStart + PROGRESS_STEP;
+            }
+
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd += 1;
+            }
+            if (lineEnd == end && !endOfInput) {
+                break;
+            }
+
+            if (collector != null) {
+                scanStackTraceLine(buffer, lineStart, lineEnd);
+            }
+            TimeRecord record = scanLine(buffer, lineStart, lineEnd);
+            if (record != null) {
+                records.add(record);
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (endOfInput) {
+            finishStackTrace();
+        }
+        return Math.min(lineStart, end) - start;
+    }
+
+    private void checkProgress(int position) {
+        if (indicator != null) {
+            indicator.checkCanceled();
+            if (inputSize > 0) {
+                indicator.setFraction((double) (inputOffset + position) / inputSize);
+            }
+        }
+    }
+
+    /**
+     * Process a line of the stack trace part. A header line starts a new stack trace, frame lines are appended
+     * to the current stack trace, and any other line completes it.
+     */
+    private void scanStackTraceLine(@NotNull ByteBuffer buffer, int start, int end) {
+        int pos = skipWhitespace(buffer, start, end);
+        if (pos < end && buffer.get(pos) == '[' && inStackTrace) {
+            scanFrameLine(buffer, pos + 1, end);
+        } else {
+            finishStackTrace();
+            if (pos + 3 < end && buffer.get(pos) == '-' && buffer.get(pos + 1) == '-' && buffer.get(pos + 2) == '-') {
+                scanStackTraceHeader(buffer, pos + 3, end);
+            }
+        }
+    }
+
+    // Expected format after the dashes: [absolute time: long] ns ([relative time]%), [sample count: long] samples
+    // (allocation profiles have bytes instead of ns)
+    private void scanStackTraceHeader(@NotNull ByteBuffer buffer, int start, int end) {
+        int pos = skipWhitespace(buffer, start, end);
+        int absoluteTimeStart = pos;
+        long absoluteTime = 0;
+        while (pos < end && isDigit(buffer.get(pos))) {
+            absoluteTime = absoluteTime * 10 + (buffer.get(pos) - '0');
+            pos += 1;
+        }
+        if (pos == absoluteTimeStart || pos == start || pos - absoluteTimeStart > MAX_LONG_DIGITS) {
+            return;
+        }
+        if (startsWithWord(buffer, skipWhitespace(buffer, pos, end), end, BYTES_UNIT)) {
+            // The call tree measures time, and an allocation stack trace has only the sample count
+            absoluteTime = 0;
+        }
+        while (pos < end && buffer.get(pos) != ',') {
+            pos += 1;
+        }
+        pos = skipWhitespace(buffer, pos + 1, end);
+        int sampleCountStart = pos;
+        long sampleCount = 0;
+        while (pos < end && isDigit(buffer.get(pos))) {
+            sampleCount = sampleCount * 10 + (buffer.get(pos) - '0');
+            pos += 1;
+        }
+        if (pos == sampleCountStart || pos - sampleCountStart > MAX_LONG_DIGITS) {
+            return;
+        }
+
+        inStackTrace = true;
+        stackAbsoluteTime = absoluteTime;
+        stackSampleCount = sampleCount;
+        stackDepth = 0;
+    }
+
+    // Expected format after the opening bracket: [frame index: int]] [frame name]
+    private void scanFrameLine(@NotNull ByteBuffer buffer, int start, int end) {
+        int pos = start;
+        while (pos < end && buffer.get(pos) != ']') {
+            pos += 1;
+        }
+        pos = skipWhitespace(buffer, pos + 1, end);
+        int nameEnd = end;
+        while (nameEnd > pos && isWhitespace(buffer.get(nameEnd - 1))) {
+            nameEnd -= 1;
+        }
+        if (nameEnd <= pos) {
+            return;
+        }
+
+        int knownFrames = frameNames.size();
+        int frameId = frameNames.intern(buffer, pos, nameEnd);
+        if (frameNames.size() > knownFrames && collector != null) {
+            collector.addFrame(frameId, NativeSymbols.demangle(frameNames.getName(frameId)));
+        }
+        if (stackDepth == stackFrames.length) {
+            stackFrames = Arrays.copyOf(stackFrames, stackDepth * 2);
+        }
+        stackFrames[stackDepth++] = frameId;
+    }
+
+    private void finishStackTrace() {
+        if (inStackTrace && stackDepth > 0 && collector != null) {
+            collector.addStackTrace(stackAbsoluteTime, stackSampleCount, stackFrames, stackDepth);
+        }
+        inStackTrace = false;
+        stackDepth = 0;
+    }
+
+    /**
+     * Parse a single line if it is a summary line.
+     *
+     * Expected format (leading and trailing whitespace is ignored):
+     * [absolute time: long, ns] [relative time: double, %%]% [sample count: long] [method name, string]
+     *
+     * The first column is the allocated memory (bytes) if the last table header said so.
+     *
+     * @param buffer a buffer that contains the line
+     * @param start the first byte of the line (inclusive)
+     * @param end the end of the line (exclusive, a line feed or the end of input)
+     * @return a time record or null if the line is not a summary line or refers to a non-Java name
+     */
+    @Nullable TimeRecord scanLine(@NotNull ByteBuffer buffer, int start, int end) {
+        int pos = skipWhitespace(buffer, start, end);
+
+        // Stack trace headers, frame lines, table headers and empty lines are rejected by their first byte.
+        if (pos == end || !isDigit(buffer.get(pos))) {
+            scanTableHeader(buffer, pos, end);
+            return null;
+        }
+
+        // Absolute time
+        int absoluteTimeStart = pos;
+        long absoluteTime = 0;
+        while (pos < end && isDigit(buffer.get(pos))) {
+            absoluteTime = absoluteTime * 10 + (buffer.get(pos) - '0');
+            pos += 1;
+        }
+        if (pos - absoluteTimeStart > MAX_LONG_DIGITS) {
+            LOG.warn("invalid numeric value: absolute time is too large");
+            return null;
+        }
+        int next = skipWhitespace(buffer, pos, end);
+        if (next == pos) {
+            return null;
+        }
+        pos = next;
+
+        // Relative time: digits, a dot, digits, a percent sign
+        int mantissaStart = pos;
+        long mantissa = 0;
+        while (pos < end && isDigit(buffer.get(pos))) {
+            mantissa = mantissa * 10 + (buffer.get(pos) - '0');
+            pos += 1;
+        }
+        if (pos == mantissaStart || pos == end || buffer.get(pos) != '.') {
+            return null;
+        }
+        pos += 1;
+        int fractionStart = pos;
+        while (pos < end && isDigit(buffer.get(pos))) {
+            mantissa = mantissa * 10 + (buffer.get(pos) - '0');
+            pos += 1;
+        }
+        int fractionDigits = pos - fractionStart;
+        if (fractionDigits == 0 || pos == end || buffer.get(pos) != '%') {
+            return null;
+        }
+        double percent;
+        if (pos - mantissaStart - 1 <= MAX_EXACT_DIGITS && fractionDigits < POWERS_OF_TEN.length) {
+            // Both operands are exact, so the division is correctly rounded just like Double.parseDouble
+            percent = mantissa / POWERS_OF_TEN[fractionDigits];
+        } else {
+            percent = Double.parseDouble(decodeAscii(buffer, mantissaStart, pos));
+        }
+        pos += 1;
+        next = skipWhitespace(buffer, pos, end);
+        if (next == pos) {
+            return null;
+        }
+        pos = next;
+
+        // Sample count
+        int sampleCountStart = pos;
+        long sampleCount = 0;
+        while (pos < end && isDigit(buffer.get(pos))) {
+            sampleCount = sampleCount * 10 + (buffer.get(pos) - '0');
+            pos += 1;
+        }
+        if (pos == sampleCountStart) {
+            return null;
+        }
+        if (pos - sampleCountStart > MAX_LONG_DIGITS) {
+            LOG.warn("invalid numeric value: sample count is too large");
+            return null;
+        }
+        next = skipWhitespace(buffer, pos, end);
+        if (next == pos) {
+            return null;
+        }
+        pos = next;
+
+        // Method name: the rest of the line without the trailing whitespace
+        int nameEnd = end;
+        while (nameEnd > pos && isWhitespace(buffer.get(nameEnd - 1))) {
+            nameEnd -= 1;
+        }
+        if (nameEnd == pos) {
+            return null;
+        }
+
+        CodeReference methodRef = scanMethodName(buffer, pos, nameEnd);
+        if (methodRef == null) {
+            return null;
+        }
+        TimeRecord timeRecord = new TimeRecord(methodRef, normalizePercent(percent));
+        timeRecord.setValue(summaryMetric, absoluteTime);
+        timeRecord.setSampleCount(sampleCount);
+        timeRecord.setLineNumber(lineNumber);
+        timeRecord.setFrameType(frameType);
+        return timeRecord;
+    }
+
+    // A table header names the unit of the first column: "ns" or "bytes" (followed by "percent")
+    private void scanTableHeader(@NotNull ByteBuffer buffer, int start, int end) {
+        ProfileMetric metric;
+        int pos;
+        if (startsWithWord(buffer, start, end, BYTES_UNIT)) {
+            metric = ProfileMetric.ALLOCATED_BYTES;
+            pos = start + BYTES_UNIT.length;
+        } else if (startsWithWord(buffer, start, end, NANOSECONDS_UNIT)) {
+            metric = ProfileMetric.TIME;
+            pos = start + NANOSECONDS_UNIT.length;
+        } else {
+            return;
+        }
+        if (startsWithWord(buffer, skipWhitespace(buffer, pos, end), end, PERCENT_COLUMN)) {
+            summaryMetric = metric;
+        }
+    }
+
+    /**
+     * Parse a frame name stored in the buffer region and produce a code reference.
+     * The method follows exactly the same rules as AsyncFlatParser.parseMethodName, but it only allocates
+     * the strings for the names that are accepted as Java/Kotlin names.
+     *
+     * The Async Profiler adds the source line to the frame names when it is asked to ("Matrix.multiply:27_[j]"),
+     * and the frame type suffix ("_[j]", "_[i]", "_[0]", "_[1]" or "_[k]", see FrameType) tells how the method was
+     * executed. Neither is a part of the code reference: they are available from getLineNumber and getFrameType
+     * until the next call. A JNI function name ("Java_java_util_zip_Inflater_inflateBytesBytes") is decoded to
+     * the Java native method that the function implements.
+     *
+     * @param buffer a buffer that contains the name
+     * @param start the first byte of the name (inclusive)
+     * @param end the end of the name (exclusive)
+     * @return a code reference or null when the name is incorrect or should be ignored
+     * @see AsyncFlatParser#parseMethodName(String)
+     */
+    @Nullable CodeReference scanMethodName(@NotNull ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (nameBuffer.length < length) {
+            nameBuffer = new byte[Math.max(length, nameBuffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            nameBuffer[i] = buffer.get(start + i);
+        }
+        return scanMethodName(nameBuffer, length);
+    }
+
+    /**
+     * @return the source line of the last name passed to scanMethodName, or TimeRecord.NO_LINE if the name
+     * has no line number
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the frame type of the last name passed to scanMethodName, or null if the name has no frame type suffix
+     */
+    @Nullable FrameType getFrameType() {
+        return frameType;
+    }
+
+    private @Nullable CodeReference scanMethodName(@NotNull byte[] name, int length) {
+        int len = length;
+        frameType = findFrameType(name, len);
+        if (frameType != null) {
+            len -= FrameType.SUFFIX_LENGTH;
+        }
+        int lineStart = findLineNumber(name, len);
+        lineNumber = TimeRecord.NO_LINE;
+        if (lineStart < len) {
+            for (int i = lineStart; i < len; i++) {
+                lineNumber = lineNumber * 10 + (name[i] - '0');
+            }
+            len = lineStart - 1;
+            if (frameType == null) {
+                frameType = findFrameType(name, len);
+                if (frameType != null) {
+                    len -= FrameType.SUFFIX_LENGTH;
+                }
+            }
+        }
+
+        // A JNI function implements a Java native method, and its name is the mangled name of the method
+        if (NativeSymbols.hasJniPrefix(name, len)) {
+            String jniName = decodeName(name, 0, len, false);
+            CodeReference jniMethod = NativeSymbols.decodeJniSymbol(jniName, jniName.length());
+            if (jniMethod != null) {
+                return jniMethod;
+            }
+        }
+
+        // The same FSM as in AsyncFlatParser.parseMethodName, but instead of collecting the components
+        // we only track the positions of the last two component separators.
+        int lastSeparator = -1;
+        int previousSeparator = -1;
+        int separatorCount = 0;
+        int methodEnd = len;
+        for (int i = 0; i < len; i++) {
+            byte c = name[i];
+            if (c == ':' || c == '/') {
+                // The component that precedes a native name marker is dropped
+                methodEnd = -1;
+                break;
+            } else if (c == '.' || c == '$') {
+                previousSeparator = lastSeparator;
+                lastSeparator = i;
+                separatorCount += 1;
+            } else if (c == '(') {
+                methodEnd = i;
+                break;
+            }
+        }
+
+        int classEnd;
+        int methodStart;
+        if (methodEnd >= 0) {
+            // The last component is terminated by the end of the name or by the method signature
+            if (separatorCount < 1) {
+                return null;
+            }
+            classEnd = lastSeparator;
+            methodStart = lastSeparator + 1;
+        } else {
+            // The last complete component is terminated by the last separator
+            if (separatorCount < 2) {
+                return null;
+            }
+            classEnd = previousSeparator;
+            methodStart = previousSeparator + 1;
+            methodEnd = lastSeparator;
+        }
+
+        return CodeReference.builder()
+                .setFqClassName(decodeName(name, 0, classEnd, true))
+                .setMethodName(decodeName(name, methodStart, methodEnd, false))
+                .build();
+    }
+
+    /**
+     * Find a line number suffix (a colon and up to MAX_LINE_DIGITS digits). A double colon is a C++ scope
+     * separator, so it does not start a line number.
+     *
+     * @return the start of the line number digits or length if the name has no line number
+     */
+    private static int findLineNumber(@NotNull byte[] name, int length) {
+        int start = length;
+        while (start > 0 && length - start < MAX_LINE_DIGITS && isDigit(name[start - 1])) {
+            start -= 1;
+        }
+        if (start == length || start < 2 || name[start - 1] != ':' || name[start - 2] == ':') {
+            return length;
+        }
+        return start;
+    }
+
+    /**
+     * Convert a name fragment to a string. ASCII names (the common case) are converted without
+     * a charset decoder, other names are decoded as UTF-8.
+     */
+    private @NotNull String decodeName(@NotNull byte[] name, int start, int end, boolean replaceDollars) {
+        int length = end - start;
+        if (charBuffer.length < length) {
+            charBuffer = new char[Math.max(length, charBuffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = name[start + i];
+            if (b < 0) {
+                String decoded = new String(name, start, length, StandardCharsets.UTF_8);
+                return replaceDollars ? decoded.replace('$', '.') : decoded;
+            }
+            charBuffer[i] = replaceDollars && b == '$' ? '.' : (char) b;
+        }
+        return new String(charBuffer, 0, length);
+    }
+
+    private static @NotNull String decodeAscii(@NotNull ByteBuffer buffer, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append((char) buffer.get(i));
+        }
+        return sb.toString();
+    }
+
+    // A frame type suffix: an underscore and a marker character in brackets ("_[j]")
+    private static @Nullable FrameType findFrameType(@NotNull byte[] name, int length) {
+        if (length < FrameType.SUFFIX_LENGTH || name[length - 4] != '_' || name[length - 3] != '['
+                || name[length - 1] != ']') {
+            return null;
+        }
+        return FrameType.ofMarker((char) name[length - 2]);
+    }
+
+    private static int skipWhitespace(@NotNull ByteBuffer buffer, int start, int end) {
+        int pos = start;
+        while (pos < end && isWhitespace(buffer.get(pos))) {
+            pos += 1;
+        }
+        return pos;
+    }
+
+    // Check whether a word (followed by a whitespace or the end of the region) starts at a position
+    private static boolean startsWithWord(@NotNull ByteBuffer buffer, int start, int end, @NotNull byte[] word) {
+        if (end - start < word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (buffer.get(start + i) != word[i]) {
+                return false;
+            }
+        }
+        return start + word.length == end || isWhitespace(buffer.get(start + word.length));
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    // The same set of characters as \s in java.util.regex
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0x0B || b == '\f';
+    }
+
+    private static double normalizePercent(double percentValue) {
+        if (percentValue < 0.0) {
+            return 0.0;
+        } else if (percentValue > 100.0) {
+            return 1.0;
+        } else {
+            return percentValue / 100.0;
+        }
+    }
+
+    // Integer values with more digits may overflow a long value
+    private static final int MAX_LONG_DIGITS = 18;
+
+    // Line numbers with more digits may overflow an int value
+    private static final int MAX_LINE_DIGITS = 9;
+
+    // Decimal mantissas with more digits may lose precision when converted to a double value
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    // Powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private static final byte[] NANOSECONDS_UNIT = "ns".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BYTES_UNIT = "bytes".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PERCENT_COLUMN = "percent".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int INITIAL_NAME_BUFFER_SIZE = 256;
+    private static final int INITIAL_STACK_DEPTH = 64;
+
+    // The number of bytes between the cancellation checks
+    private static final int PROGRESS_STEP = 1 << 20;
+
+    // The maximum size of a single memory-mapped region
+    private static final long MAX_WINDOW_SIZE = 1L << 30;
+}
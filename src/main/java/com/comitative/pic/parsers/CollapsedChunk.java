@@ -0,0 +1,207 @@
+package com.comitative.pic.parsers;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A partial aggregate of a collapsed stacks snapshot: the result of scanning one chunk of the input.
+ *
+ * A line of the collapsed format is a semicolon-separated list of frames (the root frame first) followed by
+ * a space and a sample count. The chunk interns the frame names in its own FrameNameTable and sums the self
+ * samples of the leaf frames. When the stack traces are needed, they are kept as arrays of local frame
+ * identifiers, which are much more compact than the lines themselves, and replayed to a collector when the
+ * chunks are merged.
+ *
+ * Chunks are independent, so several chunks of the same input may be scanned in parallel. A single chunk is not
+ * thread-safe.
+ *
+ * This class is not a part of a public API.
+ *
+ * @see CollapsedStacksParser
+ */
+final class CollapsedChunk {
+    private final FrameNameTable frameNames = new FrameNameTable();
+    private final boolean keepStackTraces;
+
+    private long[] selfSamples = new long[INITIAL_CAPACITY];
+    private long totalSamples = 0;
+    private int[] lineFrames = new int[INITIAL_STACK_DEPTH];
+
+    // The kept stack traces: frames of all the traces (the top frame first), their offsets and sample counts
+    private int[] stackFrames = new int[0];
+    private int stackFramesSize = 0;
+    private int[] stackOffsets = new int[1];
+    private long[] stackSamples = new long[0];
+    private int stackCount = 0;
+
+    /**
+     * @param keepStackTraces true if the stack traces should be kept to be replayed to a collector
+     */
+    CollapsedChunk(boolean keepStackTraces) {
+        this.keepStackTraces = keepStackTraces;
+    }
+
+    /**
+     * Scan the complete lines in the buffer region. Malformed lines (without a trailing sample count) are skipped.
+     *
+     * @param buffer a buffer to scan (its position and limit are ignored, absolute access is used)
+     * @param start the first byte of the region (inclusive)
+     * @param end the end of the region (exclusive)
+     * @param endOfInput true if the region ends the input, so the trailing line without a line feed is complete
+     * @param indicator a progress indicator to check for cancellation, or null
+     * @return the number of processed bytes from the region start (the trailing incomplete line is not processed)
+     * @throws com.intellij.openapi.progress.ProcessCanceledException if the progress indicator is cancelled
+     */
+    int scan(
+            @NotNull ByteBuffer buffer,
+            int start,
+            int end,
+            boolean endOfInput,
+            @Nullable ProgressIndicator indicator) {
+        int lineStart = start;
+        int nextProgressCheck = start + PROGRESS_STEP;
+        while (lineStart < end) {
+            if (indicator != null && lineStart >= nextProgressCheck) {
+                indicator.checkCanceled();
+                nextProgressCheck = lineStart + PROGRESS_STEP;
+            }
+
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd += 1;
+            }
+            if (lineEnd == end && !endOfInput) {
+                break;
+            }
+            scanLine(buffer, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+        }
+        return Math.min(lineStart, end) - start;
+    }
+
+    private void scanLine(@NotNull ByteBuffer buffer, int start, int end) {
+        int countEnd = end;
+        while (countEnd > start && isWhitespace(buffer.get(countEnd - 1))) {
+            countEnd -= 1;
+        }
+        int countStart = countEnd;
+        while (countStart > start && isDigit(buffer.get(countStart - 1))) {
+            countStart -= 1;
+        }
+        int framesEnd = countStart - 1;
+        if (countStart == countEnd || countEnd - countStart > MAX_LONG_DIGITS
+                || framesEnd <= start || buffer.get(framesEnd) != ' ') {
+            return;
+        }
+        long sampleCount = 0;
+        for (int i = countStart; i < countEnd; i++) {
+            sampleCount = sampleCount * 10 + (buffer.get(i) - '0');
+        }
+
+        int depth = 0;
+        int frameStart = start;
+        for (int i = start; i <= framesEnd; i++) {
+            if (i == framesEnd || buffer.get(i) == ';') {
+                if (depth == lineFrames.length) {
+                    lineFrames = Arrays.copyOf(lineFrames, depth * 2);
+                }
+                lineFrames[depth++] = internFrame(buffer, frameStart, i);
+                frameStart = i + 1;
+            }
+        }
+
+        selfSamples[lineFrames[depth - 1]] += sampleCount;
+        totalSamples += sampleCount;
+        if (keepStackTraces) {
+            keepStackTrace(depth, sampleCount);
+        }
+    }
+
+    private int internFrame(@NotNull ByteBuffer buffer, int start, int end) {
+        int frameId = frameNames.intern(buffer, start, end);
+        if (frameId == selfSamples.length) {
+            selfSamples = Arrays.copyOf(selfSamples, frameId * 2);
+        }
+        return frameId;
+    }
+
+    // The lines list the root frame first, and the collectors expect the top frame first
+    private void keepStackTrace(int depth, long sampleCount) {
+        if (stackFramesSize + depth > stackFrames.length) {
+            stackFrames = Arrays.copyOf(stackFrames, Math.max(stackFramesSize + depth, stackFrames.length * 2));
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            stackFrames[stackFramesSize++] = lineFrames[i];
+        }
+        if (stackCount == stackSamples.length) {
+            stackSamples = Arrays.copyOf(stackSamples, Math.max(INITIAL_CAPACITY, stackCount * 2));
+            stackOffsets = Arrays.copyOf(stackOffsets, stackSamples.length + 1);
+        }
+        stackSamples[stackCount] = sampleCount;
+        stackOffsets[++stackCount] = stackFramesSize;
+    }
+
+    /**
+     * @return the frame names of the chunk
+     */
+    @NotNull FrameNameTable getFrameNames() {
+        return frameNames;
+    }
+
+    /**
+     * @param frameId a local frame identifier
+     * @return the number of samples where the frame is the top (leaf) frame
+     */
+    long getSelfSamples(int frameId) {
+        return selfSamples[frameId];
+    }
+
+    /**
+     * @return the number of samples of all the lines of the chunk
+     */
+    long getTotalSamples() {
+        return totalSamples;
+    }
+
+    /**
+     * Pass the kept stack traces to a collector.
+     *
+     * @param frameIds the mapping from the local frame identifiers to the identifiers known to the collector
+     * @param collector a receiver for the stack traces
+     */
+    void replayStackTraces(@NotNull int[] frameIds, @NotNull StackTraceCollector collector) {
+        int[] frames = new int[INITIAL_STACK_DEPTH];
+        for (int stack = 0; stack < stackCount; stack++) {
+            int offset = stackOffsets[stack];
+            int depth = stackOffsets[stack + 1] - offset;
+            if (frames.length < depth) {
+                frames = new int[Math.max(depth, frames.length * 2)];
+            }
+            for (int i = 0; i < depth; i++) {
+                frames[i] = frameIds[stackFrames[offset + i]];
+            }
+            collector.addStackTrace(0, stackSamples[stack], frames, depth);
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == 0x0B || b == '\f';
+    }
+
+    // Integer values with more digits may overflow a long value
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_STACK_DEPTH = 64;
+
+    // The number of bytes between the cancellation checks
+    private static final int PROGRESS_STEP = 1 << 20;
+}
@@ -0,0 +1,313 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.TimeRecord;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A parser for the collapsed stacks format (one "frame;frame;frame count" line per distinct stack trace),
+ * as generated by the Async Profiler and used by the flame graph tools.
+ *
+ * Files are split into newline-aligned chunks that are memory-mapped and scanned in parallel on a fork-join pool.
+ * Every chunk produces a partial aggregate (the self samples per frame and, if needed, the compact stack traces),
+ * and the partial aggregates are merged in the input order, so the result (including the frame identifiers
+ * reported to the collector) is the same as the result of a sequential scan. Streams are scanned sequentially.
+ *
+ * Time records are produced for the leaf (self) samples of the frames that look like Java/Kotlin methods.
+ * The frames of one method with different frame type suffixes ("_[j]", "_[i]", see FrameType) are distinct
+ * frames, so the method gets one record per frame type. The leaf samples of a JNI function go to the Java native
+ * method that it implements, and the mangled C++ frame names are demangled once per distinct frame, when the frame
+ * is reported to the collector (see NativeSymbols). The format has no time information, so the absolute times
+ * are zero.
+ *
+ * @see CollapsedChunk
+ */
+public final class CollapsedStacksParser extends SnapshotParser {
+
+    private static final String PARSER_NAME = "Async Profiler collapsed stacks";
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public CollapsedStacksParser() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a parser with the given parallelism and chunk size. This constructor is not a part of a public API;
+     * it has package visibility for testing purposes.
+     *
+     * @param pool a pool to scan the chunks on
+     * @param chunkSize the approximate chunk size in bytes (a chunk is extended to the end of its last line)
+     */
+    CollapsedStacksParser(@NotNull ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Return a human-readable parser name.
+     *
+     * @return String representation of the parser name
+     * @see SnapshotParser#getName()
+     */
+    @Override
+    public @NotNull String getName() {
+        return PARSER_NAME;
+    }
+
+    /**
+     * Parse an input stream in the collapsed stacks format. The stream is scanned sequentially.
+     *
+     * @param inputStream a input stream to parse
+     * @return a list of time records from the input stream
+     * @throws IOException if the stream can't be read
+     * @see SnapshotParser#parseStream(InputStream)
+     */
+    @Override
+    public @NotNull List<TimeRecord> parseStream(@NotNull InputStream inputStream) throws IOException {
+        CollapsedChunk chunk = new CollapsedChunk(false);
+        byte[] buffer = new byte[STREAM_CHUNK_SIZE];
+        int length = 0;
+        int bytesRead = inputStream.read(buffer, length, buffer.length - length);
+        while (bytesRead >= 0) {
+            length += bytesRead;
+            int processed = chunk.scan(ByteBuffer.wrap(buffer), 0, length, false, null);
+            if (processed > 0) {
+                // Keep the incomplete trailing line for the next read
+                System.arraycopy(buffer, processed, buffer, 0, length - processed);
+                length -= processed;
+            } else if (length == buffer.length) {
+                // A single line does not fit into the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            bytesRead = inputStream.read(buffer, length, buffer.length - length);
+        }
+        chunk.scan(ByteBuffer.wrap(buffer), 0, length, true, null);
+        return merge(Collections.singletonList(chunk), null);
+    }
+
+    /**
+     * Parse a collapsed stacks file. The file is split into chunks that are scanned in parallel.
+     *
+     * @param file a snapshot file to parse
+     * @param collector a receiver for the stack traces, or null if the stack traces are not needed
+     * @param indicator a progress indicator to report the fraction of processed chunks and check for cancellation
+     * @return a list of time records from the file, ordered by the sample count
+     * @throws IOException if the file can't be read
+     * @see SnapshotParser#parseFile(File, StackTraceCollector, ProgressIndicator)
+     */
+    @Override
+    public @NotNull List<TimeRecord> parseFile(
+            @NotNull File file,
+            @Nullable StackTraceCollector collector,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            long[] boundaries = findChunkBoundaries(channel);
+            int chunkCount = boundaries.length - 1;
+            List<Future<CollapsedChunk>> futures = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                long start = boundaries[i];
+                long size = boundaries[i + 1] - start;
+                futures.add(pool.submit(() -> {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                    CollapsedChunk chunk = new CollapsedChunk(collector != null);
+                    chunk.scan(buffer, 0, (int) size, true, indicator);
+                    return chunk;
+                }));
+            }
+
+            try {
+                List<CollapsedChunk> chunks = new ArrayList<>(chunkCount);
+                for (Future<CollapsedChunk> future : futures) {
+                    chunks.add(awaitChunk(future, indicator));
+                    if (indicator != null) {
+                        indicator.setFraction((double) chunks.size() / chunkCount);
+                    }
+                }
+                return merge(chunks, collector);
+            } finally {
+                for (Future<CollapsedChunk> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve a frame name of the collapsed stacks. The JVM class names are converted to the dotted form first.
+     *
+     * @param frameName a frame name as it was reported to the collector
+     * @return a code reference of a Java/Kotlin method or null if the frame is not a Java/Kotlin method
+     * @see SnapshotParser#getFrameCodeReference(String)
+     */
+    @Override
+    public @Nullable CodeReference getFrameCodeReference(@NotNull String frameName) {
+        byte[] name = toDottedName(frameName.getBytes(StandardCharsets.UTF_8));
+        return new AsyncFlatScanner().scanMethodName(ByteBuffer.wrap(name), 0, name.length);
+    }
+
+    // Split the file into chunks of about chunkSize bytes; every chunk but the last one ends with a line feed
+    private @NotNull long[] findChunkBoundaries(@NotNull FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long chunkEnd = Math.min(chunkSize, fileSize);
+        while (chunkEnd < fileSize) {
+            long lineEnd = -1;
+            long position = chunkEnd - 1;
+            while (lineEnd < 0 && position < fileSize) {
+                probe.clear();
+                int bytesRead = channel.read(probe, position);
+                if (bytesRead <= 0) {
+                    break;
+                }
+                for (int i = 0; i < bytesRead; i++) {
+                    if (probe.get(i) == '\n') {
+                        lineEnd = position + i + 1;
+                        break;
+                    }
+                }
+                position += bytesRead;
+            }
+            if (lineEnd < 0 || lineEnd >= fileSize) {
+                break;
+            }
+            boundaries.add(lineEnd);
+            chunkEnd = Math.min(lineEnd + chunkSize, fileSize);
+        }
+        boundaries.add(fileSize);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private static @NotNull CollapsedChunk awaitChunk(
+            @NotNull Future<CollapsedChunk> future,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        try {
+            while (true) {
+                if (indicator != null) {
+                    indicator.checkCanceled();
+                }
+                try {
+                    return future.get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Check the cancellation and wait again
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Unable to parse a snapshot chunk", cause);
+        }
+    }
+
+    /**
+     * Merge the partial aggregates in the input order and produce the time records.
+     * The frames are renumbered in the order of their first occurrence in the input, like a sequential
+     * scanner would number them.
+     */
+    private static @NotNull List<TimeRecord> merge(
+            @NotNull List<CollapsedChunk> chunks,
+            @Nullable StackTraceCollector collector) {
+        FrameNameTable frameNames = new FrameNameTable();
+        long[] selfSamples = new long[INITIAL_CAPACITY];
+        long totalSamples = 0;
+        for (CollapsedChunk chunk : chunks) {
+            FrameNameTable chunkFrameNames = chunk.getFrameNames();
+            int[] frameIds = new int[chunkFrameNames.size()];
+            for (int localId = 0; localId < frameIds.length; localId++) {
+                int knownFrames = frameNames.size();
+                int frameId = frameNames.intern(chunkFrameNames, localId);
+                if (frameNames.size() > knownFrames) {
+                    if (frameId == selfSamples.length) {
+                        selfSamples = Arrays.copyOf(selfSamples, frameId * 2);
+                    }
+                    if (collector != null) {
+                        collector.addFrame(frameId, NativeSymbols.demangle(frameNames.getName(frameId)));
+                    }
+                }
+                frameIds[localId] = frameId;
+                selfSamples[frameId] += chunk.getSelfSamples(localId);
+            }
+            totalSamples += chunk.getTotalSamples();
+            if (collector != null) {
+                chunk.replayStackTraces(frameIds, collector);
+            }
+        }
+
+        AsyncFlatScanner nameScanner = new AsyncFlatScanner();
+        List<TimeRecord> timeRecords = new ArrayList<>();
+        for (int frameId = 0; frameId < frameNames.size(); frameId++) {
+            if (selfSamples[frameId] == 0) {
+                continue;
+            }
+            byte[] name = toDottedName(frameNames.getNameBytes(frameId));
+            CodeReference codeReference = nameScanner.scanMethodName(ByteBuffer.wrap(name), 0, name.length);
+            if (codeReference != null) {
+                TimeRecord timeRecord = new TimeRecord(codeReference, (double) selfSamples[frameId] / totalSamples);
+                timeRecord.setSampleCount(selfSamples[frameId]);
+                timeRecord.setLineNumber(nameScanner.getLineNumber());
+                timeRecord.setFrameType(nameScanner.getFrameType());
+                timeRecords.add(timeRecord);
+            }
+        }
+        // The sort is stable, so the records with equal sample counts keep the frame order
+        timeRecords.sort(Comparator.comparingLong(TimeRecord::getSampleCount).reversed());
+        return timeRecords;
+    }
+
+    /**
+     * Java frames of the collapsed output may use the JVM class names ("java/lang/Thread.run"). Native frames
+     * (the names that start with a path or contain C++ scope separators) are left as they are and then
+     * rejected by the name scanner. A single colon starts the source line of a Java frame ("Thread.run:833").
+     */
+    private static @NotNull byte[] toDottedName(@NotNull byte[] name) {
+        if (name.length == 0 || name[0] == '/') {
+            return name;
+        }
+        for (int i = 1; i < name.length; i++) {
+            if (name[i] == ':' && name[i - 1] == ':') {
+                return name;
+            }
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] == '/') {
+                name[i] = '.';
+            }
+        }
+        return name;
+    }
+
+    private static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+    private static final int PROBE_SIZE = 64 * 1024;
+    private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long POLL_INTERVAL_MS = 100;
+}
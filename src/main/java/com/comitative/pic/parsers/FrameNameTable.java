@@ -0,0 +1,162 @@
+package com.comitative.pic.parsers;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An interning table for frame names stored as raw bytes.
+ *
+ * The table maps byte sequences (usually slices of a memory-mapped snapshot) to dense integer identifiers.
+ * All the names are copied into a single growing byte array, so a repeated frame name costs one hash
+ * computation and one comparison, and a new one costs a copy of its bytes. Strings are created only
+ * when the caller asks for them.
+ *
+ * This class is not a part of a public API and is not thread-safe.
+ */
+final class FrameNameTable {
+    private byte[] arena = new byte[INITIAL_ARENA_SIZE];
+    private int arenaSize = 0;
+
+    private int[] offsets = new int[INITIAL_CAPACITY + 1];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    // Open addressing table of name identifiers, -1 marks an empty slot
+    private int[] slots = newSlots(INITIAL_CAPACITY * 2);
+
+    /**
+     * Find or add a name.
+     *
+     * @param buffer a buffer that contains the name
+     * @param start the first byte of the name (inclusive)
+     * @param end the end of the name (exclusive)
+     * @return the name identifier (the table grows by one if the name was added)
+     */
+    int intern(@NotNull ByteBuffer buffer, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return intern(buffer, start, end, hash);
+    }
+
+    /**
+     * Find or add a name of another table (e.g., when partial results of parallel parsers are merged).
+     *
+     * @param other another table
+     * @param otherId the name identifier in the other table
+     * @return the name identifier in this table (the table grows by one if the name was added)
+     */
+    int intern(@NotNull FrameNameTable other, int otherId) {
+        return intern(ByteBuffer.wrap(other.arena), other.offsets[otherId], other.offsets[otherId + 1],
+                other.hashes[otherId]);
+    }
+
+    private int intern(@NotNull ByteBuffer buffer, int start, int end, int hash) {
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] >= 0) {
+            int id = slots[slot];
+            if (hashes[id] == hash && matches(id, buffer, start, end)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = append(buffer, start, end, hash);
+        slots[slot] = id;
+        if (count * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * @return the number of distinct names in the table
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Decode a name as a UTF-8 string.
+     *
+     * @param id the name identifier
+     * @return the name
+     */
+    @NotNull String getName(int id) {
+        return new String(arena, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copy the raw bytes of a name.
+     *
+     * @param id the name identifier
+     * @return the name bytes
+     */
+    @NotNull byte[] getNameBytes(int id) {
+        return Arrays.copyOfRange(arena, offsets[id], offsets[id + 1]);
+    }
+
+    private boolean matches(int id, @NotNull ByteBuffer buffer, int start, int end) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (arena[offset++] != buffer.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int append(@NotNull ByteBuffer buffer, int start, int end, int hash) {
+        int length = end - start;
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arenaSize + length, arena.length * 2));
+        }
+        for (int i = start; i < end; i++) {
+            arena[arenaSize++] = buffer.get(i);
+        }
+
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2 + 1);
+        }
+        hashes[count] = hash;
+        offsets[count + 1] = arenaSize;
+        return count++;
+    }
+
+    private void rehash() {
+        int[] newSlots = newSlots(slots.length * 2);
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (newSlots[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id;
+        }
+        slots = newSlots;
+    }
+
+    private static int[] newSlots(int size) {
+        int[] result = new int[size];
+        Arrays.fill(result, -1);
+        return result;
+    }
+
+    // Spread the hash bits so that similar names do not form long probe sequences
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_ARENA_SIZE = 64 * 1024;
+}
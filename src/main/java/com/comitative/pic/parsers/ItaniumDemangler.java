@@ -0,0 +1,610 @@
+package com.comitative.pic.parsers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A demangler of the C++ names of the Itanium ABI, the names that GCC and Clang produce on Linux and macOS
+ * ("_ZN7Monitor4waitEl" is "Monitor::wait(long)"). The output follows c++filt.
+ *
+ * Only the part of the grammar that is common in the JVM and in the native libraries of Java applications is
+ * supported: nested and unscoped names, constructors, destructors and operators, ABI tags, template arguments
+ * (types and integer literals), builtin, qualified, pointer and reference types, substitutions, template parameters,
+ * clone suffixes and a few special names (vtables, typeinfo, thunks and guard variables). Function, array and
+ * pointer to member types, expressions, lambdas and local names are not supported. If only the parameter types
+ * of a function can't be demangled, the function name is returned without them.
+ *
+ * The demangler is a recursive descent parser that renders the names while parsing them, so the substitution
+ * candidates are kept as rendered strings. An instance demangles one name and is not thread-safe.
+ *
+ * @see NativeSymbols#demangle(String)
+ */
+final class ItaniumDemangler {
+    /**
+     * The prefix of the mangled names.
+     */
+    static final String PREFIX = "_Z";
+
+    private final @NotNull String name;
+    private int pos = 0;
+    private int depth = 0;
+
+    // The substitution candidates ("S_", "S0_", ...) and the template arguments of the function ("T_", "T0_", ...)
+    private final List<String> substitutions = new ArrayList<>();
+    private List<String> templateArgs = Collections.emptyList();
+
+    // Whether the last unqualified name is a constructor, a destructor or a conversion operator
+    private boolean lastNameSpecial = false;
+
+    // The properties of the function name being parsed: the qualifiers of a member function (" const"), and whether
+    // the name ends with template arguments and is not a constructor, a destructor or a conversion operator (then
+    // the function type starts with the return type)
+    private @NotNull String functionQualifiers = "";
+    private boolean endsWithTemplateArgs = false;
+    private boolean ctorDtorOrConversion = false;
+
+    /**
+     * @param name a mangled name (it starts with PREFIX)
+     */
+    ItaniumDemangler(@NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the demangled name or null if the name is not a valid mangled name or it is not supported
+     */
+    @Nullable String demangle() {
+        if (!name.startsWith(PREFIX)) {
+            return null;
+        }
+        pos = PREFIX.length();
+        try {
+            String result = parseEncoding();
+            if (pos < name.length()) {
+                // A clone suffix of an optimized copy of a function (".cold", ".isra.0", ".constprop.0")
+                if (name.charAt(pos) != '.') {
+                    return null;
+                }
+                result += " [clone " + name.substring(pos) + "]";
+            }
+            return result;
+        } catch (InvalidNameException e) {
+            return null;
+        }
+    }
+
+    // <encoding> ::= <name> <bare-function-type> | <name> | <special-name>
+    private @NotNull String parseEncoding() {
+        char c = peek(0);
+        if (c == 'T' || (c == 'G' && peek(1) == 'V')) {
+            return parseSpecialName();
+        }
+        String functionName = parseName(true);
+        if (pos == name.length() || peek(0) == '.') {
+            // A variable
+            return functionName;
+        }
+        boolean hasReturnType = endsWithTemplateArgs && !ctorDtorOrConversion;
+        String qualifiers = functionQualifiers;
+        int typeStart = pos;
+        try {
+            String returnType = hasReturnType ? parseType() + " " : "";
+            return returnType + functionName + parseParameters() + qualifiers;
+        } catch (InvalidNameException e) {
+            // Only the types are not supported: the function name alone is still better than the mangled name
+            int suffixStart = name.indexOf('.', typeStart);
+            pos = suffixStart >= 0 ? suffixStart : name.length();
+            return functionName;
+        }
+    }
+
+    private @NotNull String parseParameters() {
+        if (peek(0) == 'v' && (pos + 1 == name.length() || peek(1) == '.')) {
+            pos += 1;
+            return "()";
+        }
+        StringBuilder sb = new StringBuilder("(");
+        while (pos < name.length() && peek(0) != '.') {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(parseType());
+        }
+        if (sb.length() == 1) {
+            throw INVALID_NAME;
+        }
+        return sb.append(')').toString();
+    }
+
+    private @NotNull String parseSpecialName() {
+        enter();
+        String result;
+        if (consume("TV")) {
+            result = "vtable for " + parseType();
+        } else if (consume("TT")) {
+            result = "VTT for " + parseType();
+        } else if (consume("TI")) {
+            result = "typeinfo for " + parseType();
+        } else if (consume("TS")) {
+            result = "typeinfo name for " + parseType();
+        } else if (consume("Th")) {
+            parseCallOffset();
+            result = "non-virtual thunk to " + parseEncoding();
+        } else if (consume("Tv")) {
+            parseCallOffset();
+            parseCallOffset();
+            result = "virtual thunk to " + parseEncoding();
+        } else if (consume("GV")) {
+            result = "guard variable for " + parseName(false);
+        } else {
+            throw INVALID_NAME;
+        }
+        depth -= 1;
+        return result;
+    }
+
+    // The offsets of a thunk are not a part of the demangled name
+    private void parseCallOffset() {
+        consume("n");
+        parseDecimal();
+        expect('_');
+    }
+
+    // <name> ::= <nested-name> | <unscoped-name> | <unscoped-template-name> <template-args>
+    //          | <substitution> <template-args>
+    private @NotNull String parseName(boolean functionName) {
+        if (functionName) {
+            functionQualifiers = "";
+            endsWithTemplateArgs = false;
+            ctorDtorOrConversion = false;
+        }
+        if (peek(0) == 'N') {
+            return parseNestedName(functionName);
+        }
+        String unscopedName;
+        if (peek(0) == 'S' && peek(1) != 't') {
+            // A substitution is a name only as a template name
+            unscopedName = parseSubstitution();
+            if (peek(0) != 'I') {
+                throw INVALID_NAME;
+            }
+        } else {
+            unscopedName = consume("St") ? "std::" + parseUnqualifiedName("std") : parseUnqualifiedName("");
+            if (functionName) {
+                ctorDtorOrConversion = lastNameSpecial;
+            }
+            if (peek(0) != 'I') {
+                return unscopedName;
+            }
+            substitutions.add(unscopedName);
+        }
+        if (functionName) {
+            endsWithTemplateArgs = true;
+        }
+        return unscopedName + parseTemplateArgs(functionName);
+    }
+
+    // <nested-name> ::= N [<CV-qualifiers>] [<ref-qualifier>] <prefix> <unqualified-name> E
+    // Every prefix of the name is a substitution candidate, but the complete name is not
+    private @NotNull String parseNestedName(boolean functionName) {
+        pos += 1;
+        String qualifiers = parseCvQualifiers();
+        if (consume("R")) {
+            qualifiers += " &";
+        } else if (consume("O")) {
+            qualifiers += " &&";
+        }
+        if (functionName) {
+            functionQualifiers = qualifiers;
+        }
+        String prefix = null;
+        int candidateCount = 0;
+        while (!consume("E")) {
+            if (functionName) {
+                endsWithTemplateArgs = false;
+            }
+            char c = peek(0);
+            if (c == 'S') {
+                if (prefix != null) {
+                    throw INVALID_NAME;
+                }
+                prefix = consume("St") ? "std" : parseSubstitution();
+                continue;
+            }
+            if (c == 'I') {
+                if (prefix == null) {
+                    throw INVALID_NAME;
+                }
+                prefix += parseTemplateArgs(functionName);
+                if (functionName) {
+                    endsWithTemplateArgs = true;
+                }
+            } else if (c == 'T') {
+                if (prefix != null) {
+                    throw INVALID_NAME;
+                }
+                prefix = parseTemplateParam();
+            } else {
+                String component = parseUnqualifiedName(prefix != null ? prefix : "");
+                if (functionName) {
+                    ctorDtorOrConversion = lastNameSpecial;
+                }
+                prefix = prefix != null ? prefix + "::" + component : component;
+            }
+            substitutions.add(prefix);
+            candidateCount += 1;
+        }
+        if (candidateCount == 0) {
+            throw INVALID_NAME;
+        }
+        substitutions.remove(substitutions.size() - 1);
+        return prefix;
+    }
+
+    // <unqualified-name> ::= <source-name> | L <source-name> | <ctor-dtor-name> | <operator-name>, with ABI tags
+    private @NotNull String parseUnqualifiedName(@NotNull String scope) {
+        lastNameSpecial = false;
+        char c = peek(0);
+        String result;
+        if (isDigit(c)) {
+            result = parseSourceName();
+        } else if (c == 'L') {
+            // A name with internal linkage (e.g., a static function)
+            pos += 1;
+            result = parseSourceName();
+        } else if (c == 'C' && peek(1) >= '1' && peek(1) <= '5') {
+            pos += 2;
+            result = getBaseName(scope);
+            lastNameSpecial = true;
+        } else if (c == 'D' && (peek(1) == '0' || peek(1) == '1' || peek(1) == '2' || peek(1) == '4'
+                || peek(1) == '5')) {
+            pos += 2;
+            result = "~" + getBaseName(scope);
+            lastNameSpecial = true;
+        } else if (c >= 'a' && c <= 'z') {
+            result = parseOperatorName();
+        } else {
+            throw INVALID_NAME;
+        }
+        while (consume("B")) {
+            result += "[abi:" + parseSourceName() + "]";
+        }
+        return result;
+    }
+
+    private @NotNull String parseSourceName() {
+        int length = parseDecimal();
+        if (length == 0 || pos + length > name.length()) {
+            throw INVALID_NAME;
+        }
+        String identifier = name.substring(pos, pos + length);
+        pos += length;
+        return identifier.startsWith(ANONYMOUS_NAMESPACE_PREFIX) ? "(anonymous namespace)" : identifier;
+    }
+
+    private @NotNull String parseOperatorName() {
+        if (consume("cv")) {
+            String type = parseType();
+            lastNameSpecial = true;
+            return "operator " + type;
+        }
+        for (int i = 0; i < OPERATORS.length; i += 2) {
+            if (consume(OPERATORS[i])) {
+                return "operator" + OPERATORS[i + 1];
+            }
+        }
+        throw INVALID_NAME;
+    }
+
+    // <template-args> ::= I <template-arg>+ E; the arguments of a function name are its template parameters
+    private @NotNull String parseTemplateArgs(boolean functionArgs) {
+        pos += 1;
+        List<String> args = new ArrayList<>();
+        while (!consume("E")) {
+            args.add(parseTemplateArg());
+        }
+        if (functionArgs) {
+            templateArgs = args;
+        }
+        String joined = String.join(", ", args);
+        return "<" + joined + (joined.endsWith(">") ? " >" : ">");
+    }
+
+    private @NotNull String parseTemplateArg() {
+        if (peek(0) == 'L') {
+            return parseLiteral();
+        } else if (consume("J")) {
+            // An argument pack
+            List<String> args = new ArrayList<>();
+            while (!consume("E")) {
+                args.add(parseTemplateArg());
+            }
+            return String.join(", ", args);
+        }
+        return parseType();
+    }
+
+    // <expr-primary> ::= L <builtin-type> <value number> E (only the integer and boolean literals)
+    private @NotNull String parseLiteral() {
+        pos += 1;
+        char type = peek(0);
+        pos += 1;
+        String value = (consume("n") ? "-" : "") + parseDecimal();
+        expect('E');
+        switch (type) {
+            case 'b':
+                if (value.equals("0") || value.equals("1")) {
+                    return value.equals("1") ? "true" : "false";
+                }
+                throw INVALID_NAME;
+            case 'i':
+                return value;
+            case 'j':
+                return value + "u";
+            case 'l':
+                return value + "l";
+            case 'm':
+                return value + "ul";
+            case 'x':
+                return value + "ll";
+            case 'y':
+                return value + "ull";
+            case 'a':
+            case 'c':
+            case 'h':
+            case 's':
+            case 't':
+            case 'w':
+                return "(" + BUILTIN_TYPES[type - 'a'] + ")" + value;
+            default:
+                throw INVALID_NAME;
+        }
+    }
+
+    // Every type but the builtin types and the plain substitutions is a substitution candidate
+    private @NotNull String parseType() {
+        char c = peek(0);
+        String builtinType = c >= 'a' && c <= 'z' ? BUILTIN_TYPES[c - 'a'] : null;
+        if (builtinType != null) {
+            pos += 1;
+            return builtinType;
+        }
+        enter();
+        String type;
+        switch (c) {
+            case 'r':
+            case 'V':
+            case 'K': {
+                String qualifiers = parseCvQualifiers();
+                type = parseType() + qualifiers;
+                break;
+            }
+            case 'P':
+                pos += 1;
+                type = parseType() + "*";
+                break;
+            case 'R':
+                pos += 1;
+                type = parseType() + "&";
+                break;
+            case 'O':
+                pos += 1;
+                type = parseType() + "&&";
+                break;
+            case 'D':
+                if (peek(1) == 'p') {
+                    pos += 2;
+                    type = parseType() + "...";
+                    break;
+                }
+                type = getSpecialBuiltinType(peek(1));
+                pos += 2;
+                depth -= 1;
+                return type;
+            case 'T':
+                type = parseTemplateParam();
+                if (peek(0) == 'I') {
+                    substitutions.add(type);
+                    type += parseTemplateArgs(false);
+                }
+                break;
+            case 'S':
+                if (peek(1) != 't') {
+                    type = parseSubstitution();
+                    if (peek(0) != 'I') {
+                        depth -= 1;
+                        return type;
+                    }
+                    type += parseTemplateArgs(false);
+                } else {
+                    type = parseName(false);
+                }
+                break;
+            default:
+                if (c != 'N' && !isDigit(c)) {
+                    throw INVALID_NAME;
+                }
+                type = parseName(false);
+                break;
+        }
+        substitutions.add(type);
+        depth -= 1;
+        return type;
+    }
+
+    private static @NotNull String getSpecialBuiltinType(char code) {
+        switch (code) {
+            case 'n':
+                return "decltype(nullptr)";
+            case 'i':
+                return "char32_t";
+            case 's':
+                return "char16_t";
+            case 'u':
+                return "char8_t";
+            case 'a':
+                return "auto";
+            default:
+                throw INVALID_NAME;
+        }
+    }
+
+    // <CV-qualifiers> ::= [r] [V] [K], rendered after the qualified type
+    private @NotNull String parseCvQualifiers() {
+        boolean isRestrict = consume("r");
+        boolean isVolatile = consume("V");
+        boolean isConst = consume("K");
+        return (isConst ? " const" : "") + (isVolatile ? " volatile" : "") + (isRestrict ? " restrict" : "");
+    }
+
+    // <substitution> ::= S_ | S <seq-id> _ | St | Sa | Sb | Ss | Si | So | Sd (St is handled by the callers)
+    private @NotNull String parseSubstitution() {
+        pos += 1;
+        char c = peek(0);
+        for (int i = 0; i < ABBREVIATIONS.length; i += 2) {
+            if (ABBREVIATIONS[i].charAt(0) == c) {
+                pos += 1;
+                return ABBREVIATIONS[i + 1];
+            }
+        }
+        int index = 0;
+        if (c != '_') {
+            int start = pos;
+            int seqId = 0;
+            while (pos - start < MAX_DIGITS && (isDigit(peek(0)) || (peek(0) >= 'A' && peek(0) <= 'Z'))) {
+                seqId = seqId * 36 + Character.digit(peek(0), 36);
+                pos += 1;
+            }
+            if (pos == start) {
+                throw INVALID_NAME;
+            }
+            index = seqId + 1;
+        }
+        expect('_');
+        if (index < 0 || index >= substitutions.size()) {
+            throw INVALID_NAME;
+        }
+        return substitutions.get(index);
+    }
+
+    // <template-param> ::= T_ | T <number> _
+    private @NotNull String parseTemplateParam() {
+        pos += 1;
+        int index = peek(0) == '_' ? 0 : parseDecimal() + 1;
+        expect('_');
+        if (index >= templateArgs.size()) {
+            throw INVALID_NAME;
+        }
+        return templateArgs.get(index);
+    }
+
+    private int parseDecimal() {
+        int start = pos;
+        int value = 0;
+        while (pos - start < MAX_DIGITS && isDigit(peek(0))) {
+            value = value * 10 + (peek(0) - '0');
+            pos += 1;
+        }
+        if (pos == start) {
+            throw INVALID_NAME;
+        }
+        return value;
+    }
+
+    // The name of a constructor or a destructor is the name of its class without the scope and template arguments
+    private static @NotNull String getBaseName(@NotNull String scope) {
+        int end = scope.length();
+        if (end > 0 && scope.charAt(end - 1) == '>') {
+            int nesting = 0;
+            for (int i = end - 1; i >= 0; i--) {
+                char c = scope.charAt(i);
+                if (c == '>') {
+                    nesting += 1;
+                } else if (c == '<' && --nesting == 0) {
+                    end = i;
+                    break;
+                }
+            }
+        }
+        int separator = scope.lastIndexOf("::", end - 1);
+        String baseName = scope.substring(separator >= 0 ? separator + 2 : 0, end);
+        if (baseName.isEmpty()) {
+            throw INVALID_NAME;
+        }
+        return baseName;
+    }
+
+    // Deeply nested types are rejected before they overflow the stack
+    private void enter() {
+        depth += 1;
+        if (depth > MAX_DEPTH) {
+            throw INVALID_NAME;
+        }
+    }
+
+    private char peek(int offset) {
+        return pos + offset < name.length() ? name.charAt(pos + offset) : '\0';
+    }
+
+    private boolean consume(@NotNull String token) {
+        if (name.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (peek(0) != c) {
+            throw INVALID_NAME;
+        }
+        pos += 1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Thrown by the parsing methods when the name is invalid or not supported; it has no stack trace, so it is shared
+    private static final class InvalidNameException extends RuntimeException {
+        InvalidNameException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final InvalidNameException INVALID_NAME = new InvalidNameException();
+
+    // The builtin types by their codes ('a' .. 'z'); the other lowercase letters are not builtin types
+    private static final String[] BUILTIN_TYPES = {
+            "signed char", "bool", "char", "double", "long double", "float", "__float128", "unsigned char", "int",
+            "unsigned int", null, "long", "unsigned long", "__int128", "unsigned __int128", null, null, null,
+            "short", "unsigned short", null, "void", "wchar_t", "long long", "unsigned long long", "..."
+    };
+
+    // The operator codes and names
+    private static final String[] OPERATORS = {
+            "nw", " new", "na", " new[]", "dl", " delete", "da", " delete[]", "ps", "+", "ng", "-", "ad", "&",
+            "de", "*", "co", "~", "pl", "+", "mi", "-", "ml", "*", "dv", "/", "rm", "%", "an", "&", "or", "|",
+            "eo", "^", "aS", "=", "pL", "+=", "mI", "-=", "mL", "*=", "dV", "/=", "rM", "%=", "aN", "&=", "oR", "|=",
+            "eO", "^=", "ls", "<<", "rs", ">>", "lS", "<<=", "rS", ">>=", "eq", "==", "ne", "!=", "lt", "<",
+            "gt", ">", "le", "<=", "ge", ">=", "ss", "<=>", "nt", "!", "aa", "&&", "oo", "||", "pp", "++",
+            "mm", "--", "cm", ",", "pm", "->*", "pt", "->", "cl", "()", "ix", "[]", "qu", "?"
+    };
+
+    // The standard abbreviations (the substitutions that are not candidates)
+    private static final String[] ABBREVIATIONS = {
+            "a", "std::allocator", "b", "std::basic_string", "s", "std::string", "i", "std::istream",
+            "o", "std::ostream", "d", "std::iostream"
+    };
+
+    private static final String ANONYMOUS_NAMESPACE_PREFIX = "_GLOBAL__N";
+
+    // Numbers with more digits may overflow an int value
+    private static final int MAX_DIGITS = 6;
+
+    private static final int MAX_DEPTH = 256;
+}
@@ -0,0 +1,410 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.TimeRecord;
+import com.intellij.openapi.progress.ProgressIndicator;
+import jdk.jfr.EventType;
+import jdk.jfr.consumer.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A parser for JDK Flight Recorder recordings (.jfr files).
+ *
+ * The recording is read event by event with the jdk.jfr.consumer API. The CPU samples (jdk.ExecutionSample events) are
+ * the source of the samples and the time; the allocation events are attributed to the top frame as the allocated
+ * memory, and the monitor enter events as the lock wait time. The events are aggregated on the fly: the parser keeps
+ * self counters per distinct method, and the stack traces of the CPU samples are passed to the collector, which merges
+ * them into the call tree (the source of the inclusive time). No event is kept after it has been processed, so the
+ * memory footprint depends on the number of distinct methods and call paths, not on the size of the recording.
+ *
+ * JFR samples carry no duration, so the absolute time of a sample is the sampling period that is active when
+ * the sample is read (taken from the jdk.ActiveSetting events, which the standard configurations record;
+ * DEFAULT_PERIOD_NS is used if the recording has none). The self time is accumulated per sample like the time
+ * of the stack traces, so the self and the inclusive times agree if the period changes during the recording.
+ * The events of a chunk are not ordered by time, and the settings that are written at the recording start often
+ * follow the first samples, so the stack traces that are read before the first period setting are kept (up to
+ * PENDING_FRAME_LIMIT frames) until the period is known.
+ *
+ * The allocated memory is taken from the jdk.ObjectAllocationSample events (their weights) if the recording has
+ * them, and from the TLAB events (jdk.ObjectAllocationInNewTLAB and jdk.ObjectAllocationOutsideTLAB) otherwise,
+ * so a recording that has both kinds of events does not count the allocations twice.
+ */
+public final class JfrParser extends SnapshotParser {
+
+    private static final String PARSER_NAME = "JDK Flight Recorder recording";
+
+    /**
+     * Return a human-readable parser name.
+     *
+     * @return String representation of the parser name
+     * @see SnapshotParser#getName()
+     */
+    @Override
+    public @NotNull String getName() {
+        return PARSER_NAME;
+    }
+
+    /**
+     * Parse a JFR recording from a stream. The jdk.jfr.consumer API reads recordings from files only,
+     * so the stream is copied to a temporary file first.
+     *
+     * @param inputStream a input stream to parse
+     * @return a list of time records from the recording
+     * @throws IOException if the stream can't be read or is not a JFR recording
+     * @see SnapshotParser#parseStream(InputStream)
+     */
+    @Override
+    public @NotNull List<TimeRecord> parseStream(@NotNull InputStream inputStream) throws IOException {
+        Path recordingFile = Files.createTempFile("recording", ".jfr");
+        try {
+            Files.copy(inputStream, recordingFile, StandardCopyOption.REPLACE_EXISTING);
+            return parseFile(recordingFile.toFile());
+        } finally {
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+
+    /**
+     * Parse a JFR recording.
+     *
+     * The API does not expose the position in the file, so the progress is indeterminate; the indicator is
+     * checked for cancellation every CANCELLATION_CHECK_INTERVAL events.
+     *
+     * @param file a recording to parse
+     * @param collector a receiver for the stack traces, or null if the stack traces are not needed
+     * @param indicator a progress indicator to check for cancellation
+     * @return a list of time records (one per sampled method), ordered by the sample count (the methods that only
+     * allocate memory or wait for locks come last)
+     * @throws IOException if the file can't be read or is not a JFR recording
+     * @see SnapshotParser#parseFile(File, StackTraceCollector, ProgressIndicator)
+     */
+    @Override
+    public @NotNull List<TimeRecord> parseFile(
+            @NotNull File file,
+            @Nullable StackTraceCollector collector,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        if (indicator != null) {
+            indicator.setIndeterminate(true);
+        }
+        try (RecordingFile recording = new RecordingFile(file.toPath())) {
+            SampleAggregator aggregator = new SampleAggregator(collector, findEventTypeId(recording));
+            long eventCount = 0;
+            while (recording.hasMoreEvents()) {
+                aggregator.add(recording.readEvent());
+                eventCount += 1;
+                if (indicator != null && eventCount % CANCELLATION_CHECK_INTERVAL == 0) {
+                    indicator.checkCanceled();
+                }
+            }
+            return aggregator.getTimeRecords();
+        }
+    }
+
+    /**
+     * Resolve a frame name of the recording. The frame names are built from the JVM class and method names
+     * (see SampleAggregator), so the method name is taken as is, although it may contain '$' (e.g., the names
+     * of the lambda bodies), and the nested classes are matched by their source names, like in the time records.
+     *
+     * @param frameName a frame name as it was reported to the collector
+     * @return a code reference of a Java/Kotlin method or null if the frame is not a Java/Kotlin method
+     * @see SnapshotParser#getFrameCodeReference(String)
+     */
+    @Override
+    public @Nullable CodeReference getFrameCodeReference(@NotNull String frameName) {
+        int separator = frameName.lastIndexOf('.');
+        if (separator <= 0 || separator == frameName.length() - 1) {
+            return null;
+        }
+        return createCodeReference(frameName.substring(0, separator), frameName.substring(separator + 1));
+    }
+
+    private static @Nullable CodeReference createCodeReference(@NotNull String className, @NotNull String methodName) {
+        if (className.indexOf('/') >= 0) {
+            // Hidden classes (e.g., lambda forms) have no source code to place a marker on
+            return null;
+        }
+        return CodeReference.builder()
+                // Nested classes are matched by their source names, like in the Async Profiler snapshots
+                .setFqClassName(className.replace('$', '.'))
+                .setMethodName(methodName)
+                .build();
+    }
+
+    // The sampling period is recorded as a setting of the event type, so the type identifier is needed
+    private static long findEventTypeId(@NotNull RecordingFile recording) throws IOException {
+        for (EventType eventType : recording.readEventTypes()) {
+            if (EXECUTION_SAMPLE_EVENT.equals(eventType.getName())) {
+                return eventType.getId();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a JFR period setting (e.g., "20 ms").
+     *
+     * This method is not a part of a public API and should be considered an implementation detail.
+     * It has package visibility for testing purposes.
+     *
+     * @param value a setting value
+     * @return the period in nanoseconds or 0 if the value can't be parsed
+     */
+    static long parsePeriod(@NotNull String value) {
+        String[] parts = value.trim().split("\\s+");
+        if (parts.length != 2) {
+            return 0;
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        switch (parts[1]) {
+            case "ns":
+                return amount;
+            case "us":
+                return amount * 1_000L;
+            case "ms":
+                return amount * 1_000_000L;
+            case "s":
+                return amount * 1_000_000_000L;
+            default:
+                return 0;
+        }
+    }
+
+    // Aggregates the samples of a recording; the frames are interned to dense identifiers
+    private static final class SampleAggregator {
+        private final @Nullable StackTraceCollector collector;
+        private final long executionSampleTypeId;
+        private long periodNs = DEFAULT_PERIOD_NS;
+        private boolean periodKnown = false;
+
+        private final Map<String, Integer> frameIds = new HashMap<>();
+        private final List<RecordedMethod> frameMethods = new ArrayList<>();
+        // Methods are resolved from the constant pool of a chunk, so the same instance is returned for all
+        // the events of the chunk. The cache skips building a frame name for every frame of every event.
+        private final Map<RecordedMethod, Integer> methodCache = new IdentityHashMap<>();
+        private long[] selfSamples = new long[INITIAL_CAPACITY];
+        private long[] selfTimes = new long[INITIAL_CAPACITY];
+        private long[] sampledBytes = new long[INITIAL_CAPACITY];
+        private long[] tlabBytes = new long[INITIAL_CAPACITY];
+        private long[] lockWaitTimes = new long[INITIAL_CAPACITY];
+        private boolean allocationsSampled = false;
+        private long totalSamples = 0;
+        private int[] stackFrames = new int[INITIAL_CAPACITY];
+        // The stack traces that wait for the period: the frames of all of them, and the depth of each
+        private int[] pendingFrames = new int[INITIAL_CAPACITY];
+        private int pendingFrameCount = 0;
+        private int[] pendingDepths = new int[INITIAL_CAPACITY];
+        private int pendingSampleCount = 0;
+
+        SampleAggregator(@Nullable StackTraceCollector collector, long executionSampleTypeId) {
+            this.collector = collector;
+            this.executionSampleTypeId = executionSampleTypeId;
+        }
+
+        void add(@NotNull RecordedEvent event) {
+            String eventName = event.getEventType().getName();
+            if (EXECUTION_SAMPLE_EVENT.equals(eventName)) {
+                addSample(event.getStackTrace());
+            } else if (ALLOCATION_SAMPLE_EVENT.equals(eventName)) {
+                int frameId = findTopFrame(event.getStackTrace());
+                if (frameId != NO_FRAME) {
+                    sampledBytes[frameId] += event.getLong("weight");
+                    allocationsSampled = true;
+                }
+            } else if (NEW_TLAB_EVENT.equals(eventName) || OUTSIDE_TLAB_EVENT.equals(eventName)) {
+                int frameId = findTopFrame(event.getStackTrace());
+                if (frameId != NO_FRAME) {
+                    tlabBytes[frameId] += event.getLong(
+                            NEW_TLAB_EVENT.equals(eventName) ? "tlabSize" : "allocationSize");
+                }
+            } else if (MONITOR_ENTER_EVENT.equals(eventName)) {
+                int frameId = findTopFrame(event.getStackTrace());
+                if (frameId != NO_FRAME) {
+                    lockWaitTimes[frameId] += event.getDuration().toNanos();
+                }
+            } else if (ACTIVE_SETTING_EVENT.equals(eventName)
+                    && event.getLong("id") == executionSampleTypeId
+                    && PERIOD_SETTING.equals(event.getString("name"))) {
+                long period = parsePeriod(event.getString("value"));
+                if (period > 0) {
+                    periodNs = period;
+                    addPendingSamples();
+                }
+            }
+        }
+
+        private void addSample(@Nullable RecordedStackTrace stackTrace) {
+            if (stackTrace == null) {
+                return;
+            }
+            List<RecordedFrame> frames = stackTrace.getFrames();
+            if (frames.isEmpty()) {
+                return;
+            }
+            if (stackFrames.length < frames.size()) {
+                stackFrames = new int[Math.max(frames.size(), stackFrames.length * 2)];
+            }
+            int depth = 0;
+            for (RecordedFrame frame : frames) {
+                RecordedMethod method = frame.getMethod();
+                if (method != null) {
+                    stackFrames[depth++] = getFrameId(method);
+                }
+            }
+            if (depth == 0) {
+                return;
+            }
+            selfSamples[stackFrames[0]] += 1;
+            totalSamples += 1;
+            if (!periodKnown && pendingFrameCount + depth > PENDING_FRAME_LIMIT) {
+                // Keep the memory bounded for recordings without the period settings
+                addPendingSamples();
+            }
+            if (periodKnown) {
+                addSampleTime(depth);
+                return;
+            }
+            int pendingFrameEnd = pendingFrameCount + depth;
+            if (pendingFrames.length < pendingFrameEnd) {
+                pendingFrames = Arrays.copyOf(pendingFrames, Math.max(pendingFrameEnd, pendingFrames.length * 2));
+            }
+            if (pendingDepths.length == pendingSampleCount) {
+                pendingDepths = Arrays.copyOf(pendingDepths, pendingSampleCount * 2);
+            }
+            System.arraycopy(stackFrames, 0, pendingFrames, pendingFrameCount, depth);
+            pendingFrameCount = pendingFrameEnd;
+            pendingDepths[pendingSampleCount++] = depth;
+        }
+
+        // Attribute the current period to a stack trace (in stackFrames)
+        private void addSampleTime(int depth) {
+            selfTimes[stackFrames[0]] += periodNs;
+            if (collector != null) {
+                collector.addStackTrace(periodNs, 1, stackFrames, depth);
+            }
+        }
+
+        // The current period applies to the stack traces that were read before it
+        private void addPendingSamples() {
+            if (periodKnown) {
+                return;
+            }
+            periodKnown = true;
+            int offset = 0;
+            for (int i = 0; i < pendingSampleCount; i++) {
+                int depth = pendingDepths[i];
+                System.arraycopy(pendingFrames, offset, stackFrames, 0, depth);
+                addSampleTime(depth);
+                offset += depth;
+            }
+            pendingFrames = null;
+            pendingDepths = null;
+        }
+
+        // The frame of the innermost method of a stack trace
+        private int findTopFrame(@Nullable RecordedStackTrace stackTrace) {
+            if (stackTrace == null) {
+                return NO_FRAME;
+            }
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                RecordedMethod method = frame.getMethod();
+                if (method != null) {
+                    return getFrameId(method);
+                }
+            }
+            return NO_FRAME;
+        }
+
+        private int getFrameId(@NotNull RecordedMethod method) {
+            Integer frameId = methodCache.get(method);
+            if (frameId != null) {
+                return frameId;
+            }
+            if (methodCache.size() >= METHOD_CACHE_LIMIT) {
+                // Keep the memory bounded for recordings with many chunks
+                methodCache.clear();
+            }
+            String name = getFrameName(method);
+            frameId = frameIds.get(name);
+            if (frameId == null) {
+                frameId = frameMethods.size();
+                frameIds.put(name, frameId);
+                frameMethods.add(method);
+                if (frameId == selfSamples.length) {
+                    selfSamples = Arrays.copyOf(selfSamples, frameId * 2);
+                    selfTimes = Arrays.copyOf(selfTimes, frameId * 2);
+                    sampledBytes = Arrays.copyOf(sampledBytes, frameId * 2);
+                    tlabBytes = Arrays.copyOf(tlabBytes, frameId * 2);
+                    lockWaitTimes = Arrays.copyOf(lockWaitTimes, frameId * 2);
+                }
+                if (collector != null) {
+                    collector.addFrame(frameId, name);
+                }
+            }
+            methodCache.put(method, frameId);
+            return frameId;
+        }
+
+        @NotNull List<TimeRecord> getTimeRecords() {
+            addPendingSamples();
+            List<TimeRecord> timeRecords = new ArrayList<>();
+            long[] allocatedBytes = allocationsSampled ? sampledBytes : tlabBytes;
+            for (int frameId = 0; frameId < frameMethods.size(); frameId++) {
+                long samples = selfSamples[frameId];
+                if (samples == 0 && allocatedBytes[frameId] == 0 && lockWaitTimes[frameId] == 0) {
+                    continue;
+                }
+                RecordedMethod method = frameMethods.get(frameId);
+                CodeReference codeReference = createCodeReference(method.getType().getName(), method.getName());
+                if (codeReference == null) {
+                    continue;
+                }
+                TimeRecord timeRecord = new TimeRecord(
+                        codeReference,
+                        totalSamples > 0 ? (double) samples / totalSamples : 0.0);
+                timeRecord.setAbsoluteTime(selfTimes[frameId]);
+                timeRecord.setSampleCount(samples);
+                timeRecord.setValue(ProfileMetric.ALLOCATED_BYTES, allocatedBytes[frameId]);
+                timeRecord.setValue(ProfileMetric.LOCK_WAIT_TIME, lockWaitTimes[frameId]);
+                timeRecords.add(timeRecord);
+            }
+            timeRecords.sort(Comparator.comparingLong(TimeRecord::getSampleCount).reversed());
+            return timeRecords;
+        }
+
+        private static @NotNull String getFrameName(@NotNull RecordedMethod method) {
+            return method.getType().getName() + '.' + method.getName();
+        }
+    }
+
+    private static final String EXECUTION_SAMPLE_EVENT = "jdk.ExecutionSample";
+    private static final String ALLOCATION_SAMPLE_EVENT = "jdk.ObjectAllocationSample";
+    private static final String NEW_TLAB_EVENT = "jdk.ObjectAllocationInNewTLAB";
+    private static final String OUTSIDE_TLAB_EVENT = "jdk.ObjectAllocationOutsideTLAB";
+    private static final String MONITOR_ENTER_EVENT = "jdk.JavaMonitorEnter";
+    private static final String ACTIVE_SETTING_EVENT = "jdk.ActiveSetting";
+    private static final String PERIOD_SETTING = "period";
+
+    // The sampling period of the default JFR configuration
+    private static final long DEFAULT_PERIOD_NS = 20_000_000L;
+
+    private static final int NO_FRAME = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int METHOD_CACHE_LIMIT = 64 * 1024;
+    private static final int PENDING_FRAME_LIMIT = 1024 * 1024;
+    private static final int CANCELLATION_CHECK_INTERVAL = 4096;
+}
@@ -0,0 +1,152 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.CodeReference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Native frame names of the profilers: the JNI functions that implement the Java native methods
+ * ("Java_java_util_zip_Inflater_inflateBytesBytes") and the mangled C++ names ("_ZN7Monitor4waitEl").
+ *
+ * A JNI function name is the JNI-mangled class and method name of the native method it implements, so it is decoded
+ * back to the code reference of the method: the time spent in the function and in the native code below it is the
+ * time of the Java native method (see StatisticsDictionary.Builder). Mangled C++ names are demangled for display.
+ *
+ * The parsers convert every distinct frame name once, when the frame is interned (see FrameNameTable), so a profile
+ * with many native frames pays for the conversion per symbol, not per sample.
+ */
+public final class NativeSymbols {
+
+    private NativeSymbols() {}
+
+    /**
+     * Check whether a frame name is a JNI function name that implements a Java native method.
+     *
+     * @param name a frame name
+     * @return true if the name is a valid JNI function name
+     */
+    public static boolean isJniSymbol(@NotNull CharSequence name) {
+        return decodeJniSymbol(name, name.length()) != null;
+    }
+
+    /**
+     * Decode a JNI function name ("Java_" followed by the mangled class and method names and an optional
+     * argument signature after a double underscore). The JNI name mangling replaces the package separators
+     * with underscores and escapes the other characters: "_1" is an underscore, "_2" and "_3" are the semicolon and
+     * the bracket of the signature, and "_0xxxx" is a Unicode character (e.g., "_00024" is the dollar sign of
+     * a nested class name). The nested classes are separated with dots like in the other snapshot names.
+     *
+     * @param name a frame name
+     * @param length the length of the name prefix to decode (e.g., without a frame type suffix)
+     * @return a code reference of the Java native method or null if the name is not a valid JNI function name
+     */
+    static @Nullable CodeReference decodeJniSymbol(@NotNull CharSequence name, int length) {
+        if (length <= JNI_PREFIX.length() || !startsWith(name, JNI_PREFIX)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(length - JNI_PREFIX.length());
+        int methodStart = -1;
+        for (int i = JNI_PREFIX.length(); i < length; i++) {
+            char c = name.charAt(i);
+            if (c != '_') {
+                if (!isAsciiLetterOrDigit(c)) {
+                    return null;
+                }
+                sb.append(c);
+                continue;
+            }
+            char next = i + 1 < length ? name.charAt(i + 1) : '_';
+            if (next == '_') {
+                // The argument signature of an overloaded method (or a trailing underscore, which is invalid)
+                if (i + 1 >= length) {
+                    return null;
+                }
+                break;
+            } else if (next == '1') {
+                sb.append('_');
+                i += 1;
+            } else if (next == '0') {
+                if (i + 5 >= length) {
+                    return null;
+                }
+                int codePoint = 0;
+                for (int j = i + 2; j <= i + 5; j++) {
+                    int digit = Character.digit(name.charAt(j), 16);
+                    if (digit < 0) {
+                        return null;
+                    }
+                    codePoint = codePoint * 16 + digit;
+                }
+                sb.append((char) codePoint);
+                i += 5;
+            } else if (next >= '2' && next <= '9') {
+                // The semicolons and brackets occur only in the argument signatures
+                return null;
+            } else {
+                if (sb.length() == 0 || sb.length() == methodStart) {
+                    // An empty package or class name
+                    return null;
+                }
+                sb.append('.');
+                methodStart = sb.length();
+            }
+        }
+        if (methodStart < 0 || methodStart == sb.length()) {
+            return null;
+        }
+        return CodeReference.builder()
+                .setFqClassName(sb.substring(0, methodStart - 1).replace('$', '.'))
+                .setMethodName(sb.substring(methodStart))
+                .build();
+    }
+
+    /**
+     * A quick check of the JNI prefix of a frame name stored in bytes; the name should still be decoded.
+     *
+     * @param name a buffer that contains the name
+     * @param length the length of the name
+     * @return true if the name starts with the JNI prefix ("Java_")
+     */
+    static boolean hasJniPrefix(@NotNull byte[] name, int length) {
+        if (length <= JNI_PREFIX.length()) {
+            return false;
+        }
+        for (int i = 0; i < JNI_PREFIX.length(); i++) {
+            if (name[i] != JNI_PREFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Demangle a C++ name of the Itanium ABI (the names produced by GCC and Clang). The other names, and the names
+     * that the demangler does not support, are returned as they are.
+     *
+     * @param name a frame name
+     * @return a human-readable name ("Monitor::wait(long)" for "_ZN7Monitor4waitEl")
+     * @see ItaniumDemangler
+     */
+    static @NotNull String demangle(@NotNull String name) {
+        if (!name.startsWith(ItaniumDemangler.PREFIX)) {
+            return name;
+        }
+        String demangled = new ItaniumDemangler(name).demangle();
+        return demangled != null ? demangled : name;
+    }
+
+    private static boolean startsWith(@NotNull CharSequence name, @NotNull String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (name.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static final String JNI_PREFIX = "Java_";
+}
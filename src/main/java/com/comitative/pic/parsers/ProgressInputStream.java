@@ -0,0 +1,67 @@
+package com.comitative.pic.parsers;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that checks a progress indicator for cancellation on every read
+ * and reports the fraction of the bytes read so far.
+ *
+ * This class is not a part of a public API.
+ */
+final class ProgressInputStream extends FilterInputStream {
+    private final long size;
+    private final @Nullable ProgressIndicator indicator;
+    private long position = 0;
+
+    /**
+     * @param in the stream to read
+     * @param size the expected stream size (zero or negative if it is not known)
+     * @param indicator a progress indicator, or null if there is nothing to report
+     */
+    ProgressInputStream(@NotNull InputStream in, long size, @Nullable ProgressIndicator indicator) {
+        super(in);
+        this.size = size;
+        this.indicator = indicator;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+        if (result >= 0) {
+            advance(1);
+        }
+        return result;
+    }
+
+    @Override
+    public int read(@NotNull byte[] b, int off, int len) throws IOException {
+        int result = super.read(b, off, len);
+        if (result > 0) {
+            advance(result);
+        }
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = super.skip(n);
+        advance(result);
+        return result;
+    }
+
+    private void advance(long bytes) {
+        position += bytes;
+        if (indicator != null) {
+            indicator.checkCanceled();
+            if (size > 0) {
+                indicator.setFraction(Math.min(1.0, (double) position / size));
+            }
+        }
+    }
+}
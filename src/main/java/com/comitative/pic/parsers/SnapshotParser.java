@@ -1,10 +1,17 @@
 package com.comitative.pic.parsers;
 
+import com.comitative.pic.CodeReference;
 import com.comitative.pic.TimeRecord;
+import com.intellij.openapi.progress.ProgressIndicator;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -33,6 +40,76 @@ public abstract class SnapshotParser {
      */
     public abstract @NotNull List<TimeRecord> parseStream(@NotNull InputStream inputStream) throws IOException;
 
+    /**
+     * Parse a snapshot file without progress reporting and return the data as a list of time records.
+     *
+     * @param file a snapshot file to parse
+     * @return a list of time records from the file
+     * @throws IOException if the file can't be read
+     * @see #parseFile(File, StackTraceCollector, ProgressIndicator)
+     */
+    public @NotNull List<TimeRecord> parseFile(@NotNull File file) throws IOException {
+        return parseFile(file, null, null);
+    }
+
+    /**
+     * Parse a snapshot file without progress reporting and pass the stack traces found in the file to the collector.
+     *
+     * @param file a snapshot file to parse
+     * @param collector a receiver for the stack traces, or null if the stack traces are not needed
+     * @return a list of time records from the file
+     * @throws IOException if the file can't be read
+     * @see #parseFile(File, StackTraceCollector, ProgressIndicator)
+     */
+    public @NotNull List<TimeRecord> parseFile(
+            @NotNull File file,
+            @Nullable StackTraceCollector collector) throws IOException {
+        return parseFile(file, collector, null);
+    }
+
+    /**
+     * Parse a snapshot file, return the data as a list of time records and pass the stack traces
+     * found in the file to the collector.
+     *
+     * Snapshots are usually parsed in a background task. Implementations should periodically check
+     * the progress indicator for cancellation (ProgressIndicator.checkCanceled) and report the fraction
+     * of the processed input.
+     *
+     * The default implementation ignores the collector, opens the file as a stream and calls parseStream.
+     * The stream checks the indicator and reports the fraction of bytes read. Parsers that understand stack traces
+     * or can process files more efficiently should override this method.
+     *
+     * @param file a snapshot file to parse
+     * @param collector a receiver for the stack traces, or null if the stack traces are not needed
+     * @param indicator a progress indicator of the parsing task, or null if the parsing can't be cancelled
+     * @return a list of time records from the file
+     * @throws IOException if the file can't be read
+     * @throws com.intellij.openapi.progress.ProcessCanceledException if the indicator is cancelled
+     */
+    public @NotNull List<TimeRecord> parseFile(
+            @NotNull File file,
+            @Nullable StackTraceCollector collector,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        try (InputStream inputStream = new ProgressInputStream(new FileInputStream(file), file.length(), indicator)) {
+            return parseStream(inputStream);
+        }
+    }
+
+    /**
+     * Resolve a frame name of the stack traces that the parser passes to a StackTraceCollector.
+     * The code references are used to attribute the inclusive time of the call tree to the methods.
+     *
+     * The default implementation follows the rules of the Async Profiler flat snapshots: the last name component
+     * is the method name, the preceding components form the class name, and native names are rejected.
+     *
+     * @param frameName a frame name as it was reported to the collector
+     * @return a code reference of a Java/Kotlin method or null if the frame is not a Java/Kotlin method
+     */
+    public @Nullable CodeReference getFrameCodeReference(@NotNull String frameName) {
+        byte[] bytes = frameName.getBytes(StandardCharsets.UTF_8);
+        return new AsyncFlatScanner().scanMethodName(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
     /**
      * Produce a human-readable representation of the parser to use in combo boxes etc.
      * It is an override for Object.toString().
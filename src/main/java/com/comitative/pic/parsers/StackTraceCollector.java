@@ -0,0 +1,37 @@
+package com.comitative.pic.parsers;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A receiver for the stack traces found in a profiler snapshot.
+ *
+ * Parsers that understand the stack trace part of a snapshot intern the frame names to dense integer
+ * identifiers (starting from zero) and report each distinct name exactly once, before the first stack trace
+ * that refers to it. Stack traces are reported as arrays of frame identifiers, so the collector does not
+ * need to compare or hash the frame names itself.
+ *
+ * Implementations are not required to be thread-safe: a parser calls the collector from a single thread.
+ */
+public interface StackTraceCollector {
+
+    /**
+     * Register a new frame name.
+     *
+     * @param frameId a dense frame identifier
+     * @param name the frame name as it is represented in the snapshot
+     */
+    void addFrame(int frameId, @NotNull String name);
+
+    /**
+     * Add a stack trace with its statistics.
+     *
+     * The frame array may be reused by the parser after the call returns, so implementations must copy
+     * the data they want to keep.
+     *
+     * @param absoluteTime the absolute time (ns) attributed to the stack trace
+     * @param sampleCount the number of samples attributed to the stack trace
+     * @param frameIds frame identifiers, the top (innermost) frame first
+     * @param depth the number of valid elements in frameIds
+     */
+    void addStackTrace(long absoluteTime, long sampleCount, @NotNull int[] frameIds, int depth);
+}
@@ -1,23 +1,31 @@
 package com.comitative.pic.providers;
 
 import com.comitative.pic.CodeReference;
-import com.comitative.pic.TimeRecord;
+import com.comitative.pic.FrameType;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.statistics.ClassNameTree;
+import com.comitative.pic.statistics.PluginMetrics;
+import com.comitative.pic.statistics.StatisticsDelta;
+import com.comitative.pic.statistics.StatisticsDictionary;
 import com.comitative.pic.statistics.StatisticsService;
 import com.intellij.codeInsight.daemon.GutterMark;
 import com.intellij.codeInsight.daemon.LineMarkerInfo;
 import com.intellij.codeInsight.daemon.LineMarkerProvider;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
-import com.intellij.ui.JBColor;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiWhiteSpace;
+import com.intellij.util.Function;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
 
 /**
  * Abstract base class for line marker providers.
@@ -26,35 +34,45 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 abstract class BaseProfilingIconsProvider implements LineMarkerProvider {
 
-    // Gutter icon cache
-    private final Map<String, ImpactIcon> iconCache = Collections.synchronizedMap(new WeakHashMap<>());
+    /**
+     * Get a gutter icon for a relative time value. The icons are shared (see ImpactIconAtlas).
+     * @param relativeTime a relative time ([0.0 .. 1.0]) to represent with a gutter icon
+     * @return an icon coloured with the heat scale
+     */
+    protected @NotNull Icon getImpactIcon(double relativeTime) {
+        return ImpactIconAtlas.getImpactIcon(relativeTime);
+    }
 
     /**
-     * Generate a gutter icon for a time record, or restore it from the cache.
-     * @param timeRecord a time record to represent with a gutter icon
+     * Get a gutter icon for the change of a record relative to the baseline. The icons are shared
+     * (see ImpactIconAtlas). The icon shows the signed change in percentage points (capped at 9); significant
+     * regressions are red and significant improvements are green.
+     *
+     * @param delta the current statistics joined with the baseline
+     * @param record a record of the current statistics
      * @return an icon
      */
-    protected @NotNull Icon getImpactIcon(@NotNull TimeRecord timeRecord) {
-        long impactClass = Math.round(timeRecord.getRelativeTime() * 100.0);
-        if (impactClass < 1) {
-            impactClass = 1;
-        } else if (impactClass > 99) {
-            impactClass = 99;
+    protected @NotNull Icon getImpactIcon(@NotNull StatisticsDelta delta, int record) {
+        ImpactIconAtlas.Significance significance;
+        if (!delta.isSignificant(record)) {
+            significance = ImpactIconAtlas.Significance.NOT_SIGNIFICANT;
+        } else if (delta.getZScore(record) > 0.0) {
+            significance = ImpactIconAtlas.Significance.REGRESSION;
+        } else {
+            significance = ImpactIconAtlas.Significance.IMPROVEMENT;
         }
-
-        String iconText = String.format("%02d", impactClass);
-        return iconCache.computeIfAbsent(iconText, text -> new ImpactIcon(text, JBColor.DARK_GRAY));
+        return ImpactIconAtlas.getDeltaIcon(delta.getRelativeTimeDelta(record), significance);
     }
 
     /**
-     * Generate a tooltip text for a time record.
+     * Generate a tooltip text for a statistics record.
      *
-     * @param timeRecord a time record to extract the tooltip information
+     * @param relativeTime a relative time ([0.0 .. 1.0]) of the record
+     * @param sampleCount a sample count of the record
      * @return a tooltip representation
      */
-    protected @NotNull String getTooltipText(@NotNull TimeRecord timeRecord) {
-        double scaledRelativeTime = timeRecord.getRelativeTime() * 100.0;
-        long sampleCount = timeRecord.getSampleCount();
+    protected @NotNull String getTooltipText(double relativeTime, long sampleCount) {
+        double scaledRelativeTime = relativeTime * 100.0;
         return String.format(
                 "%.02f%% (%d %s)",
                 scaledRelativeTime,
@@ -63,56 +81,768 @@ abstract class BaseProfilingIconsProvider implements LineMarkerProvider {
     }
 
     /**
-     * Produce a line marker for a method with a given identifying PSI element.
+     * Format a duration in human units (ns, \u00b5s, ms or s) with three significant digits at most.
+     *
+     * @param nanoseconds a duration in nanoseconds
+     * @return a formatted duration
+     */
+    protected static @NotNull String formatDuration(long nanoseconds) {
+        if (nanoseconds < 1_000L) {
+            return nanoseconds + " ns";
+        } else if (nanoseconds < 1_000_000L) {
+            return formatScaled(nanoseconds / 1e3, "\u00b5s");
+        } else if (nanoseconds < 1_000_000_000L) {
+            return formatScaled(nanoseconds / 1e6, "ms");
+        }
+        return formatScaled(nanoseconds / 1e9, "s");
+    }
+
+    /**
+     * Format an amount of memory in human units (bytes, KB, MB or GB) with three significant digits at most.
+     *
+     * @param bytes an amount of memory in bytes
+     * @return a formatted amount of memory
+     */
+    protected static @NotNull String formatBytes(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + " bytes";
+        } else if (bytes < 1024L * 1024L) {
+            return formatScaled(bytes / 1024.0, "KB");
+        } else if (bytes < 1024L * 1024L * 1024L) {
+            return formatScaled(bytes / (1024.0 * 1024.0), "MB");
+        }
+        return formatScaled(bytes / (1024.0 * 1024.0 * 1024.0), "GB");
+    }
+
+    private static @NotNull String formatScaled(double value, @NotNull String unit) {
+        if (value < 10.0) {
+            return String.format("%.2f %s", value, unit);
+        } else if (value < 100.0) {
+            return String.format("%.1f %s", value, unit);
+        }
+        return String.format("%.0f %s", value, unit);
+    }
+
+    /**
+     * Generate a tooltip text for a statistics record: the self time, the inclusive (total) time if the snapshot
+     * has stack traces for the record, the allocated memory and the lock wait time if the snapshot has them,
+     * and the heaviest callers and callees of the method.
+     *
+     * @param statistics the statistics dictionary
+     * @param record a record of the dictionary
+     * @return an HTML tooltip representation
+     */
+    protected @NotNull String getTooltipText(@NotNull StatisticsDictionary statistics, int record) {
+        StringBuilder sb = new StringBuilder("<html>");
+        appendTimes(sb, statistics, record);
+        appendCallEdges(sb, statistics, record);
+        return sb.append("</html>").toString();
+    }
+
+    /**
+     * Generate a tooltip text for a record and its change relative to the baseline.
+     *
+     * @param delta the current statistics joined with the baseline
+     * @param record a record of the current statistics
+     * @return an HTML tooltip representation
+     */
+    protected @NotNull String getTooltipText(@NotNull StatisticsDelta delta, int record) {
+        StatisticsDictionary statistics = delta.getCurrent();
+        StringBuilder sb = new StringBuilder("<html>");
+        appendTimes(sb, statistics, record);
+        int baselineRecord = delta.getBaselineRecord(record);
+        if (baselineRecord == StatisticsDictionary.NO_RECORD) {
+            sb.append("New, not in the baseline<br>");
+        } else {
+            sb.append(String.format(
+                    "%+.02f pp vs. baseline %.02f%% (%s, z = %.02f)<br>",
+                    delta.getRelativeTimeDelta(record) * 100.0,
+                    delta.getBaseline().getRelativeTime(baselineRecord) * 100.0,
+                    delta.isSignificant(record) ? "significant" : "not significant",
+                    delta.getZScore(record)));
+        }
+        appendCallEdges(sb, statistics, record);
+        return sb.append("</html>").toString();
+    }
+
+    /**
+     * Generate a tooltip text for a method call: the weight of the caller to callee edge and its share
+     * of the caller's inclusive time.
+     *
+     * @param statistics the statistics dictionary
+     * @param callerRecord the first record of the calling method
+     * @param calleeRecord the first record of the called method
+     * @param call the call index
+     * @return an HTML tooltip representation
+     */
+    protected @NotNull String getCallTooltipText(
+            @NotNull StatisticsDictionary statistics,
+            int callerRecord,
+            int calleeRecord,
+            int call) {
+        long sampleCount = statistics.getCallSampleCount(call);
+        CodeReference callee = statistics.getCodeReference(calleeRecord);
+        StringBuilder sb = new StringBuilder("<html>Call of ")
+                .append(StringUtil.escapeXmlEntities(callee.getFqClassName() + "." + callee.getMethodName()))
+                .append("<br>")
+                .append(getTooltipText(statistics.getCallRelativeTime(call), sampleCount));
+        appendDuration(sb, statistics.getCallTime(call));
+        sb.append("<br>");
+        long callerSampleCount = statistics.getInclusiveSampleCount(callerRecord);
+        if (callerSampleCount > 0) {
+            sb.append(String.format("%.02f%% of the caller's total time<br>",
+                    Math.min((double) sampleCount / callerSampleCount, 1.0) * 100.0));
+        }
+        return sb.append("</html>").toString();
+    }
+
+    /**
+     * Generate a tooltip text for a hot source line.
+     *
+     * @param statistics the statistics dictionary
+     * @param lineEntry a line entry of the dictionary
+     * @return an HTML tooltip representation
+     */
+    protected @NotNull String getLineTooltipText(@NotNull StatisticsDictionary statistics, int lineEntry) {
+        StringBuilder sb = new StringBuilder("<html>Line ")
+                .append(statistics.getLineNumber(lineEntry))
+                .append(": ")
+                .append(getTooltipText(
+                        statistics.getLineRelativeTime(lineEntry),
+                        statistics.getLineSampleCount(lineEntry)));
+        appendDuration(sb, statistics.getLineTime(lineEntry));
+        return sb.append("</html>").toString();
+    }
+
+    /**
+     * Generate a tooltip text for a class: the values of its methods and of its nested classes rolled up.
+     *
+     * @param tree the class name tree of the statistics dictionary
+     * @param node the node of the class
+     * @return an HTML tooltip representation
+     */
+    protected @NotNull String getClassTooltipText(@NotNull ClassNameTree tree, int node) {
+        int methodCount = tree.getRecordCount(node);
+        StringBuilder sb = new StringBuilder("<html>Class total (")
+                .append(methodCount)
+                .append(methodCount == 1 ? " method" : " methods")
+                .append(", including nested classes)<br>")
+                .append(getTooltipText(tree.getRelativeTime(node), tree.getValue(ProfileMetric.SAMPLES, node)));
+        appendDuration(sb, tree.getValue(ProfileMetric.TIME, node));
+        sb.append("<br>");
+        for (ProfileMetric metric : TOOLTIP_METRICS) {
+            appendMetricValue(sb, metric, tree.getValue(metric, node), tree.getRelativeValue(metric, node));
+        }
+        return sb.append("</html>").toString();
+    }
+
+    private void appendTimes(@NotNull StringBuilder sb, @NotNull StatisticsDictionary statistics, int record) {
+        if (!statistics.isInclusiveOnly(record)) {
+            sb.append("Self: ")
+                    .append(getTooltipText(statistics.getRelativeTime(record), statistics.getSampleCount(record)));
+            appendDuration(sb, statistics.getAbsoluteTime(record));
+            sb.append("<br>");
+        }
+        if (statistics.getInclusiveSampleCount(record) > 0) {
+            sb.append("Total: ").append(getTooltipText(
+                    statistics.getInclusiveRelativeTime(record),
+                    statistics.getInclusiveSampleCount(record)));
+            appendDuration(sb, statistics.getInclusiveTime(record));
+            sb.append("<br>");
+        }
+        for (ProfileMetric metric : TOOLTIP_METRICS) {
+            appendMetricValue(
+                    sb, metric, statistics.getValue(metric, record), statistics.getRelativeValue(metric, record));
+        }
+        appendFrameTypes(sb, statistics, record);
+    }
+
+    // The shares of the self samples by the way the method was executed, e.g., "C2 80.00%, interpreted 20.00%"
+    private static void appendFrameTypes(
+            @NotNull StringBuilder sb,
+            @NotNull StatisticsDictionary statistics,
+            int record) {
+        long[] sampleCounts = new long[FRAME_TYPES.length];
+        long totalSampleCount = 0;
+        for (FrameType frameType : FRAME_TYPES) {
+            sampleCounts[frameType.ordinal()] = statistics.getFrameTypeSampleCount(record, frameType);
+            totalSampleCount += sampleCounts[frameType.ordinal()];
+        }
+        if (totalSampleCount == 0) {
+            return;
+        }
+        String separator = "Frame types: ";
+        for (FrameType frameType : FRAME_TYPES) {
+            if (sampleCounts[frameType.ordinal()] > 0) {
+                sb.append(separator)
+                        .append(frameType.getDisplayName())
+                        .append(String.format(" %.02f%%",
+                                (double) sampleCounts[frameType.ordinal()] / totalSampleCount * 100.0));
+                separator = ", ";
+            }
+        }
+        sb.append("<br>");
+    }
+
+    private static void appendMetricValue(
+            @NotNull StringBuilder sb,
+            @NotNull ProfileMetric metric,
+            long value,
+            double relativeValue) {
+        if (value > 0) {
+            sb.append(metric.getDisplayName())
+                    .append(": ")
+                    .append(metric.getUnit() == ProfileMetric.Unit.BYTES ? formatBytes(value) : formatDuration(value))
+                    .append(String.format(" (%.02f%%)<br>", relativeValue * 100.0));
+        }
+    }
+
+    private static void appendDuration(@NotNull StringBuilder sb, long nanoseconds) {
+        // Some snapshot formats have no absolute time
+        if (nanoseconds > 0) {
+            sb.append(", ").append(formatDuration(nanoseconds));
+        }
+    }
+
+    private void appendCallEdges(@NotNull StringBuilder sb, @NotNull StatisticsDictionary statistics, int record) {
+        appendCallEdges(sb, "Callers", statistics, record, true);
+        appendCallEdges(sb, "Callees", statistics, record, false);
+    }
+
+    private void appendCallEdges(
+            @NotNull StringBuilder sb,
+            @NotNull String title,
+            @NotNull StatisticsDictionary statistics,
+            int record,
+            boolean callers) {
+        int count = callers ? statistics.getCallerCount(record) : statistics.getCalleeCount(record);
+        if (count == 0) {
+            return;
+        }
+        sb.append("<br><b>").append(title).append("</b><br>");
+        for (int i = 0; i < Math.min(count, TOOLTIP_EDGE_COUNT); i++) {
+            int call = callers ? statistics.getCallerCall(record, i) : statistics.getCalleeCall(record, i);
+            int method = callers ? statistics.getCallCaller(call) : statistics.getCallCallee(call);
+            sb.append("&nbsp;&nbsp;")
+                    .append(getTooltipText(statistics.getCallRelativeTime(call), statistics.getCallSampleCount(call)))
+                    .append(' ')
+                    .append(StringUtil.escapeXmlEntities(statistics.getDisplayName(method)))
+                    .append("<br>");
+        }
+    }
+
+    /**
+     * Line markers are not produced in the fast pass: all the work is done for a file at once in
+     * collectSlowLineMarkers.
+     */
+    @Override
+    public LineMarkerInfo<?> getLineMarkerInfo(@NotNull PsiElement element) {
+        return null;
+    }
+
+    /**
+     * Produce line markers for a batch of PSI elements (usually, all the elements of a file).
      *
      * The method implements a common name resolution algorithm for both Java and Kotlin programs.
+     * The statistics (joined with the baseline, if any), the active metric and the choice between the self and
+     * the inclusive time are obtained once per batch, and the class name of each class (or file) that owns
+     * methods is resolved and looked up once. Classes that have no statistics are rejected with a single lookup,
+     * and methods of the profiled classes are searched within the class records only.
+     *
      * The algorithm just takes the first time record that matches the qualified class name and method name.
      * It currently does not try to select the best matching record (in particular, we don't try to resolve
      * overloaded methods that differ in signature), nor does it resolve nested functions or lambda abstractions.
      *
-     * The implementation is expected to change in the future.
+     * Method calls are marked with the weight of the caller to callee edge in the stack traces. A call is resolved
+     * only if the enclosing method has calls in the snapshot, and the resolved callee is matched with the same
+     * class lookups as the declarations.
+     *
+     * Class declarations are marked with the values of their methods and nested classes rolled up (see
+     * ClassNameTree); the lookup costs one probe per name component.
+     *
+     * If the snapshot has source lines, the hot lines of every method body are marked as well. The line entries
+     * of the body are found with a binary search in the line index of the owner class.
+     *
+     * The method icons show the active profile metric. The inclusive time and the baseline comparison are derived
+     * from the samples, so they apply to the samples metric only; the call and line markers always show samples.
+     *
+     * The lookup of every method declaration is counted and timed in the project PluginMetrics (the class and
+     * the call markers are not, so the hit rate and the latency describe the method markers only).
      *
-     * @param identifier a PSI element corresponding to the method identifier
-     * @param className a fully qualified class name that will be matched with the statistics
-     * @param methodName a short method name
-     * @param <T> a technical type parameter for LineMarkerInfo
-     * @return a LineMarkerInfo for the line marker or null if there is no statistical information for the method
+     * @param elements PSI elements to process
+     * @param result a collection to add line markers to
      */
-    protected @Nullable <T extends PsiElement> LineMarkerInfo<T> createMarker(
-            @NotNull T identifier,
-            @NotNull String className,
+    @Override
+    public void collectSlowLineMarkers(
+            @NotNull List<? extends PsiElement> elements,
+            @NotNull Collection<? super LineMarkerInfo<?>> result) {
+
+        if (elements.isEmpty()) {
+            return;
+        }
+        StatisticsService service = elements.get(0).getProject().getService(StatisticsService.class);
+        StatisticsDelta delta = service.getStatisticsDelta();
+        StatisticsDictionary statistics = delta.getCurrent();
+        if (statistics.getRecordCount() == 0) {
+            return;
+        }
+        boolean inclusiveTimeShown = service.isInclusiveTimeShown();
+        ProfileMetric activeMetric = service.getActiveMetric();
+        PluginMetrics metrics = service.getMetrics();
+
+        Map<PsiElement, ClassLookup> classes = new HashMap<>();
+        Map<PsiElement, Integer> callers = new HashMap<>();
+        for (PsiElement element : elements) {
+            ProgressManager.checkCanceled();
+            ClassDeclaration declaredClass = getClassDeclaration(element);
+            if (declaredClass != null) {
+                LineMarkerInfo<?> marker = findClassMarker(statistics.getClassNameTree(), declaredClass, activeMetric);
+                if (marker != null) {
+                    result.add(marker);
+                }
+                continue;
+            }
+
+            MethodDeclaration method = getMethodDeclaration(element);
+            if (method == null) {
+                CallSite callSite = getCallSite(element);
+                LineMarkerInfo<?> marker = callSite != null
+                        ? findCallMarker(statistics, classes, callers, callSite)
+                        : null;
+                if (marker != null) {
+                    result.add(marker);
+                }
+                continue;
+            }
+
+            long startTime = System.nanoTime();
+            LineMarkerInfo<?> marker = findMarker(statistics, delta, classes, method, activeMetric, inclusiveTimeShown);
+            metrics.recordMarkerLookup(marker != null, System.nanoTime() - startTime);
+            if (marker != null) {
+                result.add(marker);
+            }
+            if (method.body != null) {
+                collectLineMarkers(statistics, getClassLookup(statistics, classes, method.owner), method.body, result);
+            }
+        }
+    }
+
+    private @Nullable LineMarkerInfo<?> findMarker(
+            @NotNull StatisticsDictionary statistics,
+            @NotNull StatisticsDelta delta,
+            @NotNull Map<PsiElement, ClassLookup> classes,
+            @NotNull MethodDeclaration method,
+            @NotNull ProfileMetric activeMetric,
+            boolean inclusiveTimeShown) {
+        // A bit of corner-cutting: let's pretend that the first record is the correct one.
+        // It will really be the case in almost all cases except code blocks
+        // lesser than a method (lambda etc).
+        int record = findRecord(statistics, classes, method.owner, method.methodName);
+        if (record == StatisticsDictionary.NO_RECORD) {
+            return null;
+        }
+        if (activeMetric != ProfileMetric.SAMPLES) {
+            return statistics.getValue(activeMetric, record) > 0
+                    ? createMetricMarker(method.identifier, statistics, record, activeMetric)
+                    : null;
+        }
+        // Methods that are found only in the stack traces have no self time to show
+        if (!inclusiveTimeShown && statistics.isInclusiveOnly(record)) {
+            return null;
+        }
+        return createMarker(method.identifier, delta, record, inclusiveTimeShown);
+    }
+
+    // Classes are looked up in the class name tree, which rolls up the values of the methods and nested classes
+    private @Nullable LineMarkerInfo<?> findClassMarker(
+            @NotNull ClassNameTree tree,
+            @NotNull ClassDeclaration declaredClass,
+            @NotNull ProfileMetric activeMetric) {
+        String className = getQualifiedClassName(declaredClass.owner);
+        if (className == null) {
+            return null;
+        }
+        int node = tree.findClass(className);
+        if (node == ClassNameTree.NO_NODE) {
+            return null;
+        }
+        double relativeValue = tree.getRelativeValue(activeMetric, node);
+        if (relativeValue < MIN_ROLLUP_RELATIVE_VALUE) {
+            return null;
+        }
+        return new LineMarkerInfo<>(
+                declaredClass.identifier,
+                declaredClass.identifier.getTextRange(),
+                getImpactIcon(relativeValue),
+                elt -> getClassTooltipText(tree, node),
+                null,
+                GutterIconRenderer.Alignment.CENTER);
+    }
+
+    // The records of the enclosing methods are cached per batch, so the calls of one method share the lookup
+    private @Nullable LineMarkerInfo<?> findCallMarker(
+            @NotNull StatisticsDictionary statistics,
+            @NotNull Map<PsiElement, ClassLookup> classes,
+            @NotNull Map<PsiElement, Integer> callers,
+            @NotNull CallSite callSite) {
+        Integer callerRecord = callers.get(callSite.caller);
+        if (callerRecord == null) {
+            MethodDeclaration caller = getMethodDeclaration(callSite.caller);
+            callerRecord = caller == null
+                    ? StatisticsDictionary.NO_RECORD
+                    : findRecord(statistics, classes, caller.owner, caller.methodName);
+            callers.put(callSite.caller, callerRecord);
+        }
+        if (callerRecord == StatisticsDictionary.NO_RECORD || !statistics.hasCalls(callerRecord)) {
+            return null;
+        }
+
+        // The resolution is the most expensive part, so it is done after the caller is known to have calls
+        CallTarget callee = resolveCallTarget(callSite);
+        if (callee == null) {
+            return null;
+        }
+        int calleeRecord = findRecord(statistics, classes, callee.owner, callee.methodName);
+        if (calleeRecord == StatisticsDictionary.NO_RECORD) {
+            return null;
+        }
+        int call = statistics.findCall(callerRecord, calleeRecord);
+        if (call == StatisticsDictionary.NO_CALL) {
+            return null;
+        }
+        return createCallMarker(callSite.identifier, statistics, callerRecord, calleeRecord, call);
+    }
+
+    private int findRecord(
+            @NotNull StatisticsDictionary statistics,
+            @NotNull Map<PsiElement, ClassLookup> classes,
+            @NotNull PsiElement owner,
             @NotNull String methodName) {
+        ClassLookup lookup = getClassLookup(statistics, classes, owner);
+        if (lookup == ClassLookup.NOT_PROFILED) {
+            return StatisticsDictionary.NO_RECORD;
+        }
+        int record = statistics.findRecord(lookup.classIndex, methodName);
+        if (record == StatisticsDictionary.NO_RECORD) {
+            record = statistics.findRecord(lookup.shortClassIndex, methodName);
+        }
+        return record;
+    }
 
-        CodeReference codeReference = CodeReference.builder()
-                .setFqClassName(className)
-                .setMethodName(methodName)
-                .build();
-
-        List<TimeRecord> records = identifier
-                .getProject()
-                .getService(StatisticsService.class)
-                .getTimeRecords(codeReference);
-
-        if (!records.isEmpty()) {
-            // A bit of corner-cutting: let's pretend that the first record is the correct one.
-            // It will really be the case in almost all cases except code blocks
-            // lesser than a method (lambda etc).
-            final TimeRecord timeRecord = records.get(0);
-            final Icon gutterIcon = getImpactIcon(timeRecord);
-            final String tooltipText = getTooltipText(timeRecord);
-            return new LineMarkerInfo<>(
-                    identifier,
-                    identifier.getTextRange(),
-                    gutterIcon,
-                    elt -> tooltipText,
-                    null,
-                    GutterIconRenderer.Alignment.CENTER);
+    // The class lookups are cached per batch, so the first method of a class pays for the class lookup
+    private @NotNull ClassLookup getClassLookup(
+            @NotNull StatisticsDictionary statistics,
+            @NotNull Map<PsiElement, ClassLookup> classes,
+            @NotNull PsiElement owner) {
+        ClassLookup lookup = classes.get(owner);
+        if (lookup == null) {
+            lookup = lookupClass(statistics, getQualifiedClassName(owner));
+            classes.put(owner, lookup);
         }
+        return lookup;
+    }
 
-        return null;
+    // Mark the hot lines of a method body; the lines outside the body (e.g., the declaration line) are skipped
+    private void collectLineMarkers(
+            @NotNull StatisticsDictionary statistics,
+            @NotNull ClassLookup lookup,
+            @NotNull PsiElement body,
+            @NotNull Collection<? super LineMarkerInfo<?>> result) {
+        int classIndex = lookup.classIndex;
+        if (statistics.findLineEntry(classIndex, 0) == statistics.getLineEntryEnd(classIndex)) {
+            classIndex = lookup.shortClassIndex;
+        }
+        int end = statistics.getLineEntryEnd(classIndex);
+        if (statistics.findLineEntry(classIndex, 0) == end) {
+            return;
+        }
+        PsiFile file = body.getContainingFile();
+        Document document = file == null ? null : PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+        if (document == null) {
+            return;
+        }
+
+        // Document lines are 0-based, and the profiler lines are 1-based
+        TextRange bodyRange = body.getTextRange();
+        int firstLine = document.getLineNumber(bodyRange.getStartOffset()) + 1;
+        int lastLine = Math.min(document.getLineNumber(bodyRange.getEndOffset()) + 1, document.getLineCount());
+        for (int entry = statistics.findLineEntry(classIndex, firstLine);
+             entry < end && statistics.getLineNumber(entry) <= lastLine;
+             entry++) {
+            if (statistics.getLineRelativeTime(entry) < MIN_LINE_RELATIVE_TIME) {
+                continue;
+            }
+            PsiElement anchor = findLineAnchor(file, document, statistics.getLineNumber(entry) - 1);
+            if (anchor != null && bodyRange.contains(anchor.getTextRange())) {
+                result.add(createLineMarker(anchor, statistics, entry));
+            }
+        }
+    }
+
+    // The first leaf of a line that is not a whitespace, or null if the line is blank
+    private static @Nullable PsiElement findLineAnchor(@NotNull PsiFile file, @NotNull Document document, int line) {
+        int lineEnd = document.getLineEndOffset(line);
+        PsiElement element = file.findElementAt(document.getLineStartOffset(line));
+        while (element instanceof PsiWhiteSpace && element.getTextRange().getEndOffset() < lineEnd) {
+            element = file.findElementAt(element.getTextRange().getEndOffset());
+        }
+        if (element == null || element instanceof PsiWhiteSpace || element.getTextRange().getStartOffset() >= lineEnd) {
+            return null;
+        }
+        return element;
+    }
+
+    /**
+     * Recognize a class declaration. The method should be cheap: the class name is resolved only if the profile
+     * is not empty.
+     *
+     * @param element a PSI element
+     * @return a class declaration or null if the element does not declare a class
+     */
+    protected abstract @Nullable ClassDeclaration getClassDeclaration(@NotNull PsiElement element);
+
+    /**
+     * Recognize a method declaration. The method should be cheap: the class name is resolved separately and only
+     * once per owner.
+     *
+     * @param element a PSI element
+     * @return a method declaration or null if the element does not declare a method
+     */
+    protected abstract @Nullable MethodDeclaration getMethodDeclaration(@NotNull PsiElement element);
+
+    /**
+     * Recognize a method call. The method should be cheap: it must not resolve the call (see resolveCallTarget).
+     *
+     * @param element a PSI element
+     * @return a call site or null if the element is not a method call inside a method declaration
+     */
+    protected abstract @Nullable CallSite getCallSite(@NotNull PsiElement element);
+
+    /**
+     * Resolve the method called at a call site.
+     *
+     * @param callSite a call site returned by getCallSite
+     * @return the called method or null if the call cannot be resolved
+     */
+    protected abstract @Nullable CallTarget resolveCallTarget(@NotNull CallSite callSite);
+
+    /**
+     * Resolve the fully qualified JVM class name of a method owner.
+     *
+     * @param owner a method owner returned in a MethodDeclaration or a CallTarget
+     * @return a fully qualified class name that will be matched with the statistics or null if it is unknown
+     */
+    protected abstract @Nullable String getQualifiedClassName(@NotNull PsiElement owner);
+
+    private static @NotNull ClassLookup lookupClass(
+            @NotNull StatisticsDictionary statistics,
+            @Nullable String className) {
+        if (className == null) {
+            return ClassLookup.NOT_PROFILED;
+        }
+        int classIndex = statistics.findClass(className);
+        int shortClassIndex = statistics.findShortClass(className);
+        if (classIndex == StatisticsDictionary.NO_CLASS && shortClassIndex == StatisticsDictionary.NO_CLASS) {
+            return ClassLookup.NOT_PROFILED;
+        }
+        return new ClassLookup(classIndex, shortClassIndex);
+    }
+
+    private @NotNull <T extends PsiElement> LineMarkerInfo<T> createMarker(
+            @NotNull T identifier,
+            @NotNull StatisticsDelta delta,
+            int record,
+            boolean inclusiveTimeShown) {
+
+        // Tooltips are built on hover only: almost none of the markers are ever hovered
+        final Icon gutterIcon;
+        final Function<? super T, String> tooltipProvider;
+        if (delta.hasBaseline()) {
+            gutterIcon = getImpactIcon(delta, record);
+            tooltipProvider = elt -> getTooltipText(delta, record);
+        } else {
+            StatisticsDictionary statistics = delta.getCurrent();
+            gutterIcon = getImpactIcon(inclusiveTimeShown
+                    ? statistics.getInclusiveRelativeTime(record)
+                    : statistics.getRelativeTime(record));
+            tooltipProvider = elt -> getTooltipText(statistics, record);
+        }
+        return new LineMarkerInfo<>(
+                identifier,
+                identifier.getTextRange(),
+                gutterIcon,
+                tooltipProvider,
+                null,
+                GutterIconRenderer.Alignment.CENTER);
+    }
+
+    private @NotNull <T extends PsiElement> LineMarkerInfo<T> createMetricMarker(
+            @NotNull T identifier,
+            @NotNull StatisticsDictionary statistics,
+            int record,
+            @NotNull ProfileMetric metric) {
+        return new LineMarkerInfo<>(
+                identifier,
+                identifier.getTextRange(),
+                getImpactIcon(statistics.getRelativeValue(metric, record)),
+                elt -> getTooltipText(statistics, record),
+                null,
+                GutterIconRenderer.Alignment.CENTER);
+    }
+
+    private @NotNull <T extends PsiElement> LineMarkerInfo<T> createCallMarker(
+            @NotNull T identifier,
+            @NotNull StatisticsDictionary statistics,
+            int callerRecord,
+            int calleeRecord,
+            int call) {
+        return new LineMarkerInfo<>(
+                identifier,
+                identifier.getTextRange(),
+                getImpactIcon(statistics.getCallRelativeTime(call)),
+                elt -> getCallTooltipText(statistics, callerRecord, calleeRecord, call),
+                null,
+                GutterIconRenderer.Alignment.CENTER);
+    }
+
+    private @NotNull <T extends PsiElement> LineMarkerInfo<T> createLineMarker(
+            @NotNull T anchor,
+            @NotNull StatisticsDictionary statistics,
+            int lineEntry) {
+        return new LineMarkerInfo<>(
+                anchor,
+                anchor.getTextRange(),
+                getImpactIcon(statistics.getLineRelativeTime(lineEntry)),
+                elt -> getLineTooltipText(statistics, lineEntry),
+                null,
+                GutterIconRenderer.Alignment.CENTER);
+    }
+
+    /**
+     * A class declaration found in the PSI tree.
+     */
+    protected static final class ClassDeclaration {
+        final @NotNull PsiElement identifier;
+        final @NotNull PsiElement owner;
+
+        /**
+         * @param identifier a PSI element corresponding to the class keyword or identifier (the line marker anchor)
+         * @param owner a PSI element that determines the JVM class (as accepted by getQualifiedClassName)
+         */
+        protected ClassDeclaration(@NotNull PsiElement identifier, @NotNull PsiElement owner) {
+            this.identifier = identifier;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * A method declaration found in the PSI tree.
+     */
+    protected static final class MethodDeclaration {
+        final @NotNull PsiElement identifier;
+        final @NotNull PsiElement owner;
+        final @NotNull String methodName;
+        final @Nullable PsiElement body;
+
+        /**
+         * @param identifier a PSI element corresponding to the method identifier (the line marker anchor)
+         * @param owner a PSI element that determines the JVM class of the method (a class or a file)
+         * @param methodName a short method name
+         */
+        protected MethodDeclaration(
+                @NotNull PsiElement identifier,
+                @NotNull PsiElement owner,
+                @NotNull String methodName) {
+            this(identifier, owner, methodName, null);
+        }
+
+        /**
+         * @param identifier a PSI element corresponding to the method identifier (the line marker anchor)
+         * @param owner a PSI element that determines the JVM class of the method (a class or a file)
+         * @param methodName a short method name
+         * @param body a PSI element of the method body (its lines get the line markers) or null
+         */
+        protected MethodDeclaration(
+                @NotNull PsiElement identifier,
+                @NotNull PsiElement owner,
+                @NotNull String methodName,
+                @Nullable PsiElement body) {
+            this.identifier = identifier;
+            this.owner = owner;
+            this.methodName = methodName;
+            this.body = body;
+        }
+    }
+
+    /**
+     * A method call found in the PSI tree.
+     */
+    protected static final class CallSite {
+        final @NotNull PsiElement identifier;
+        final @NotNull PsiElement caller;
+        final @NotNull PsiElement call;
+
+        /**
+         * @param identifier a PSI element corresponding to the called method name (the line marker anchor)
+         * @param caller a PSI element of the enclosing method declaration (as recognized by getMethodDeclaration)
+         * @param call a PSI element of the call expression
+         */
+        protected CallSite(@NotNull PsiElement identifier, @NotNull PsiElement caller, @NotNull PsiElement call) {
+            this.identifier = identifier;
+            this.caller = caller;
+            this.call = call;
+        }
+    }
+
+    /**
+     * A method that a call site resolves to.
+     */
+    protected static final class CallTarget {
+        final @NotNull PsiElement owner;
+        final @NotNull String methodName;
+
+        /**
+         * @param owner a PSI element that determines the JVM class of the method (a class or a file)
+         * @param methodName a short method name
+         */
+        protected CallTarget(@NotNull PsiElement owner, @NotNull String methodName) {
+            this.owner = owner;
+            this.methodName = methodName;
+        }
+    }
+
+    // Class indexes of a method owner: the fully qualified name and the short name fallback
+    private static final class ClassLookup {
+        static final ClassLookup NOT_PROFILED =
+                new ClassLookup(StatisticsDictionary.NO_CLASS, StatisticsDictionary.NO_CLASS);
+
+        final int classIndex;
+        final int shortClassIndex;
+
+        ClassLookup(int classIndex, int shortClassIndex) {
+            this.classIndex = classIndex;
+            this.shortClassIndex = shortClassIndex;
+        }
     }
 
     // A common way to represent constructors in JVM names.
     // We use this constant for both Java and Kotlin code, so it is defined in their common base class.
     protected static final String CONSTRUCTOR_METHOD_NAME = "<init>";
+
+    // The number of callers and callees shown in a tooltip
+    private static final int TOOLTIP_EDGE_COUNT = 5;
+
+    // The metrics that are not shown in the self and total lines of a tooltip
+    private static final ProfileMetric[] TOOLTIP_METRICS = {
+            ProfileMetric.ALLOCATED_BYTES,
+            ProfileMetric.LOCK_WAIT_TIME
+    };
+
+    private static final FrameType[] FRAME_TYPES = FrameType.values();
+
+    // Lines with a smaller share of the samples would get a 0% icon, so they are not marked
+    private static final double MIN_LINE_RELATIVE_TIME = 0.005;
+
+    // The same for the classes: a class of many cold methods is not marked
+    private static final double MIN_ROLLUP_RELATIVE_VALUE = 0.005;
 }
@@ -2,18 +2,29 @@ package com.comitative.pic.providers;
 
 import com.intellij.ui.JBColor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 /**
- * An icon with a custom text on it. We use this class to dynamically generate icons
- * with approximate relative time values.
+ * An icon with a custom text on it. We use this class to represent approximate relative time values.
+ *
+ * The text is rasterized into an image at the device resolution (so it stays sharp on HiDPI screens) on the first
+ * paint, and the following paints just draw the image. The image is kept for the last graphics configuration and
+ * theme, so in the common case of one screen and one theme the paint path does not allocate anything and
+ * does not lay out any text.
+ *
+ * @see ImpactIconAtlas
  */
-class ImpactIcon implements Icon {
+final class ImpactIcon implements Icon {
     private final String text;
     private final JBColor fontColor;
 
+    // A benign race: concurrent painters may rasterize the same text twice, and the last raster wins
+    private volatile @Nullable Raster raster = null;
+
     /**
      *
      * @param text text to display on an icon
@@ -24,11 +35,36 @@ class ImpactIcon implements Icon {
         this.fontColor = fontColor;
     }
 
+    /**
+     * @return the text of the icon
+     */
+    @NotNull String getText() {
+        return text;
+    }
+
+    /**
+     * @return the font color of the icon
+     */
+    @NotNull JBColor getFontColor() {
+        return fontColor;
+    }
+
     @Override
     public void paintIcon(Component component, Graphics graphics, int x, int y) {
-        graphics.setColor(fontColor);
-        graphics.setFont(ICON_TEXT_FONT);
-        graphics.drawString(text, x + 1, y + 1 + ICON_FONT_SIZE);
+        if (!(graphics instanceof Graphics2D)) {
+            graphics.setColor(fontColor);
+            graphics.setFont(ICON_TEXT_FONT);
+            graphics.drawString(text, x + 1, y + 1 + ICON_FONT_SIZE);
+            return;
+        }
+        GraphicsConfiguration configuration = ((Graphics2D) graphics).getDeviceConfiguration();
+        boolean bright = JBColor.isBright();
+        Raster current = raster;
+        if (current == null || current.configuration != configuration || current.bright != bright) {
+            current = new Raster(configuration, bright, rasterize(configuration));
+            raster = current;
+        }
+        graphics.drawImage(current.image, x, y, ICON_SIZE, ICON_SIZE, null);
     }
 
     @Override
@@ -41,6 +77,37 @@ class ImpactIcon implements Icon {
         return ICON_SIZE;
     }
 
+    private @NotNull Image rasterize(@Nullable GraphicsConfiguration configuration) {
+        double scale = configuration != null ? configuration.getDefaultTransform().getScaleX() : 1.0;
+        int size = (int) Math.ceil(ICON_SIZE * scale);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D imageGraphics = image.createGraphics();
+        try {
+            imageGraphics.setRenderingHint(
+                    RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            imageGraphics.scale(scale, scale);
+            imageGraphics.setColor(fontColor);
+            imageGraphics.setFont(ICON_TEXT_FONT);
+            imageGraphics.drawString(text, 1, 1 + ICON_FONT_SIZE);
+        } finally {
+            imageGraphics.dispose();
+        }
+        return image;
+    }
+
+    // The rasterized text and the conditions it was rasterized for
+    private static final class Raster {
+        final @Nullable GraphicsConfiguration configuration;
+        final boolean bright;
+        final @NotNull Image image;
+
+        Raster(@Nullable GraphicsConfiguration configuration, boolean bright, @NotNull Image image) {
+            this.configuration = configuration;
+            this.bright = bright;
+            this.image = image;
+        }
+    }
+
     private static final int ICON_SIZE = 12; // The documented size for gutter icons
     private static final int ICON_FONT_SIZE = 9;
     private static final Font ICON_TEXT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, ICON_FONT_SIZE);
@@ -0,0 +1,112 @@
+package com.comitative.pic.providers;
+
+import com.intellij.ui.JBColor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A fixed set of all the gutter icons the plugin shows.
+ *
+ * There are only 99 impact values (1% .. 99%) and 19 baseline changes (-9 .. +9 percentage points) in three
+ * significance colours, so all the icons are created once, when the class is initialized, and looked up by index.
+ * The tables are never modified, so the lookups need neither locks nor allocations, and the icons are never
+ * collected, so each of them rasterizes its text at most once per screen configuration and theme
+ * (see ImpactIcon).
+ *
+ * Impact icons are coloured with a heat scale: the hotter the method, the warmer its colour.
+ */
+final class ImpactIconAtlas {
+
+    private ImpactIconAtlas() {}
+
+    /**
+     * Get an icon for a relative time value.
+     *
+     * @param relativeTime a relative time ([0.0 .. 1.0]), the values outside the range are clamped
+     * @return an icon with the percentage (1 .. 99)
+     */
+    static @NotNull ImpactIcon getImpactIcon(double relativeTime) {
+        long impact = Math.round(relativeTime * 100.0);
+        return IMPACT_ICONS[(int) Math.max(MIN_IMPACT, Math.min(impact, MAX_IMPACT))];
+    }
+
+    /**
+     * Get an icon for the change of a method relative to the baseline.
+     *
+     * @param relativeTimeDelta the change of the relative time ([-1.0 .. 1.0]), the values are clamped to
+     *                          [-9 .. 9] percentage points
+     * @param significance the significance of the change
+     * @return an icon with the signed change in percentage points
+     */
+    static @NotNull ImpactIcon getDeltaIcon(double relativeTimeDelta, @NotNull Significance significance) {
+        long change = Math.round(relativeTimeDelta * 100.0);
+        int index = (int) Math.max(-MAX_DELTA, Math.min(change, MAX_DELTA)) + MAX_DELTA;
+        return DELTA_ICONS[significance.ordinal()][index];
+    }
+
+    /**
+     * Get the heat colour of an impact value.
+     *
+     * @param impact an impact value in percent (1 .. 99)
+     * @return the colour of the impact icon
+     */
+    static @NotNull JBColor getHeatColor(int impact) {
+        if (impact >= HOT_IMPACT) {
+            return HOT_COLOR;
+        } else if (impact >= WARM_IMPACT) {
+            return WARM_COLOR;
+        } else if (impact >= NOTABLE_IMPACT) {
+            return NOTABLE_COLOR;
+        }
+        return JBColor.DARK_GRAY;
+    }
+
+    /**
+     * The significance of a change relative to the baseline; it determines the colour of a delta icon.
+     */
+    enum Significance {
+        NOT_SIGNIFICANT(JBColor.DARK_GRAY),
+        REGRESSION(JBColor.RED),
+        IMPROVEMENT(JBColor.GREEN);
+
+        private final @NotNull JBColor color;
+
+        Significance(@NotNull JBColor color) {
+            this.color = color;
+        }
+    }
+
+    private static @NotNull ImpactIcon[] createImpactIcons() {
+        ImpactIcon[] icons = new ImpactIcon[MAX_IMPACT + 1];
+        for (int impact = MIN_IMPACT; impact <= MAX_IMPACT; impact++) {
+            icons[impact] = new ImpactIcon(String.format("%02d", impact), getHeatColor(impact));
+        }
+        return icons;
+    }
+
+    private static @NotNull ImpactIcon[][] createDeltaIcons() {
+        Significance[] significances = Significance.values();
+        ImpactIcon[][] icons = new ImpactIcon[significances.length][2 * MAX_DELTA + 1];
+        for (Significance significance : significances) {
+            for (int change = -MAX_DELTA; change <= MAX_DELTA; change++) {
+                String text = change > 0 ? "+" + change : change < 0 ? String.valueOf(change) : "\u00b10";
+                icons[significance.ordinal()][change + MAX_DELTA] = new ImpactIcon(text, significance.color);
+            }
+        }
+        return icons;
+    }
+
+    private static final int MIN_IMPACT = 1;
+    private static final int MAX_IMPACT = 99;
+    private static final int MAX_DELTA = 9;
+
+    // The heat scale bands (in percent of the total time) and their colours for the light and the dark themes
+    private static final int NOTABLE_IMPACT = 5;
+    private static final int WARM_IMPACT = 10;
+    private static final int HOT_IMPACT = 25;
+    private static final JBColor NOTABLE_COLOR = new JBColor(0xA66F00, 0xD9A343);
+    private static final JBColor WARM_COLOR = new JBColor(0xD35400, 0xE8843B);
+    private static final JBColor HOT_COLOR = new JBColor(0xC62828, 0xEF5350);
+
+    private static final ImpactIcon[] IMPACT_ICONS = createImpactIcons();
+    private static final ImpactIcon[][] DELTA_ICONS = createDeltaIcons();
+}
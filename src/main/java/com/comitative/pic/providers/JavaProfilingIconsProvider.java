@@ -1,32 +1,83 @@
 package com.comitative.pic.providers;
 
-import com.intellij.codeInsight.daemon.LineMarkerInfo;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiLambdaExpression;
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiTypeParameter;
+import com.intellij.psi.util.PsiTreeUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class JavaProfilingIconsProvider extends BaseProfilingIconsProvider {
 
     @Override
-    public LineMarkerInfo<?> getLineMarkerInfo(@NotNull PsiElement element) {
+    protected @Nullable ClassDeclaration getClassDeclaration(@NotNull PsiElement element) {
+        // Type parameters are PSI classes too, but they have no code of their own
+        if (element instanceof PsiClass && !(element instanceof PsiTypeParameter)) {
+            PsiElement identifier = ((PsiClass) element).getNameIdentifier();
+            if (identifier != null) {
+                return new ClassDeclaration(identifier, element);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected @Nullable MethodDeclaration getMethodDeclaration(@NotNull PsiElement element) {
         if (element instanceof PsiMethod) {
             PsiMethod method = (PsiMethod) element;
             PsiElement identifier = method.getIdentifyingElement();
             PsiClass containingClass = method.getContainingClass();
             if (identifier != null && containingClass != null) {
-                String className = containingClass.getQualifiedName();
-                if (className == null) {
-                    className = containingClass.getName();
-                }
-
-                if (className != null) {
-                    return createMarker(identifier, className,
-                            method.isConstructor() ? CONSTRUCTOR_METHOD_NAME : method.getName());
-                }
+                return new MethodDeclaration(identifier, containingClass,
+                        method.isConstructor() ? CONSTRUCTOR_METHOD_NAME : method.getName(),
+                        method.getBody());
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected @Nullable CallSite getCallSite(@NotNull PsiElement element) {
+        if (element instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) element;
+            PsiElement identifier = call.getMethodExpression().getReferenceNameElement();
+            // Lambda bodies and nested classes are compiled to other methods, so their calls have other callers
+            PsiMethod caller = PsiTreeUtil.getParentOfType(
+                    call, PsiMethod.class, true, PsiLambdaExpression.class, PsiClass.class);
+            if (identifier != null && caller != null) {
+                return new CallSite(identifier, caller, call);
             }
         }
 
         return null;
     }
+
+    @Override
+    protected @Nullable CallTarget resolveCallTarget(@NotNull CallSite callSite) {
+        PsiMethod method = ((PsiMethodCallExpression) callSite.call).resolveMethod();
+        if (method != null) {
+            PsiClass containingClass = method.getContainingClass();
+            if (containingClass != null) {
+                return new CallTarget(containingClass,
+                        method.isConstructor() ? CONSTRUCTOR_METHOD_NAME : method.getName());
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected @Nullable String getQualifiedClassName(@NotNull PsiElement owner) {
+        PsiClass containingClass = (PsiClass) owner;
+        String className = containingClass.getQualifiedName();
+        if (className == null) {
+            className = containingClass.getName();
+        }
+        return className;
+    }
 }
@@ -1,67 +1,178 @@
 package com.comitative.pic.providers;
 
-
-import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiReference;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.idea.caches.resolve.ResolutionUtils;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.psi.*;
+import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.inline.InlineUtil;
+import org.jetbrains.kotlin.resolve.lazy.BodyResolveMode;
 
 public class KotlinProfilingIconsProvider extends BaseProfilingIconsProvider {
 
     @Override
-    public LineMarkerInfo<?> getLineMarkerInfo(@NotNull PsiElement element) {
+    protected @Nullable ClassDeclaration getClassDeclaration(@NotNull PsiElement element) {
+        // The name identifier is the anchor of the primary constructor marker, so the class marker is put
+        // on the class (or object) keyword
+        PsiElement keyword = null;
+        if (element instanceof KtClass) {
+            keyword = ((KtClass) element).getClassOrInterfaceKeyword();
+        } else if (element instanceof KtObjectDeclaration) {
+            keyword = ((KtObjectDeclaration) element).getObjectKeyword();
+        }
+
+        if (keyword != null) {
+            return new ClassDeclaration(keyword, element);
+        }
+
+        return null;
+    }
+
+    @Override
+    protected @Nullable MethodDeclaration getMethodDeclaration(@NotNull PsiElement element) {
         PsiElement identifier = null;
+        PsiElement owner = null;
         String functionName = null;
-        String qualifiedClassName = null;
+        PsiElement body = null;
 
         if (element instanceof KtNamedFunction) {
             KtNamedFunction function = (KtNamedFunction) element;
             identifier = function.getNameIdentifier();
             functionName = function.getName();
             KtClassOrObject ktClass = getKtClassOrObject(function);
-            if (ktClass == null) {
-                // It is a file scope function, we can obtain the qualified name from the containing Kotlin file
-                KtFile containingFile = function.getContainingKtFile();
-                String packageName = containingFile.getPackageFqName().asString();
-                String fileName = containingFile.getName();
-                if (fileName.endsWith(".kt")) {
-                    qualifiedClassName = packageName + "." + fileName.substring(0, fileName.length() - 3) + "Kt";
-                }
-            } else {
-                // Otherwise we should get a fully qualified name of a parent class/object
-                FqName classFqName = ktClass.getFqName();
-                if (classFqName != null) {
-                    qualifiedClassName = classFqName.asString();
-                }
-            }
+            // A file scope function belongs to the facade class of the containing Kotlin file
+            owner = ktClass == null ? function.getContainingKtFile() : ktClass;
+            body = function.getBodyExpression();
         } else if (element instanceof KtPrimaryConstructor){
             KtClassOrObject ktClass = ((KtPrimaryConstructor) element).getContainingClassOrObject();
             identifier = ktClass.getNameIdentifier();
+            owner = ktClass;
             functionName = CONSTRUCTOR_METHOD_NAME;
-            FqName classFqName = ktClass.getFqName();
-            if (classFqName != null) {
-                qualifiedClassName = classFqName.asString();
-            }
         } else if (element instanceof KtSecondaryConstructor) {
             KtSecondaryConstructor constructor = (KtSecondaryConstructor) element;
             KtClassOrObject ktClass = constructor.getContainingClassOrObject();
             identifier = ktClass.getNameIdentifier();
+            owner = ktClass;
             functionName = CONSTRUCTOR_METHOD_NAME;
-            FqName classFqName = ktClass.getFqName();
+            body = constructor.getBodyExpression();
+        }
+
+        if (identifier != null && owner != null && functionName != null) {
+            return new MethodDeclaration(identifier, owner, functionName, body);
+        }
+
+        return null;
+    }
+
+    @Override
+    protected @Nullable CallSite getCallSite(@NotNull PsiElement element) {
+        if (element instanceof KtCallExpression) {
+            KtCallExpression call = (KtCallExpression) element;
+            KtExpression callee = call.getCalleeExpression();
+            KtNamedFunction caller = getCallerFunction(call);
+            if (callee instanceof KtNameReferenceExpression && caller != null) {
+                PsiElement identifier = ((KtNameReferenceExpression) callee).getReferencedNameElement();
+                return new CallSite(identifier, caller, call);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected @Nullable CallTarget resolveCallTarget(@NotNull CallSite callSite) {
+        KtExpression callee = ((KtCallExpression) callSite.call).getCalleeExpression();
+        if (callee == null) {
+            return null;
+        }
+        for (PsiReference reference : callee.getReferences()) {
+            PsiElement target = reference.resolve();
+            if (target instanceof KtNamedFunction) {
+                MethodDeclaration function = getMethodDeclaration(target);
+                if (function != null) {
+                    return new CallTarget(function.owner, function.methodName);
+                }
+            } else if (target instanceof KtConstructor) {
+                return new CallTarget(((KtConstructor<?>) target).getContainingClassOrObject(),
+                        CONSTRUCTOR_METHOD_NAME);
+            } else if (target instanceof KtClassOrObject) {
+                // A class without explicit constructors resolves to the class itself
+                return new CallTarget(target, CONSTRUCTOR_METHOD_NAME);
+            } else if (target instanceof PsiMethod) {
+                // Java and compiled library methods
+                PsiMethod method = (PsiMethod) target;
+                PsiClass containingClass = method.getContainingClass();
+                if (containingClass != null) {
+                    return new CallTarget(containingClass,
+                            method.isConstructor() ? CONSTRUCTOR_METHOD_NAME : method.getName());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected @Nullable String getQualifiedClassName(@NotNull PsiElement owner) {
+        if (owner instanceof PsiClass) {
+            // The owner of a called Java or compiled method
+            PsiClass psiClass = (PsiClass) owner;
+            return psiClass.getQualifiedName() != null ? psiClass.getQualifiedName() : psiClass.getName();
+        } else if (owner instanceof KtFile) {
+            // It is a file scope function, we can obtain the qualified name from the containing Kotlin file
+            KtFile containingFile = (KtFile) owner;
+            String packageName = containingFile.getPackageFqName().asString();
+            String fileName = containingFile.getName();
+            if (fileName.endsWith(".kt")) {
+                return packageName + "." + fileName.substring(0, fileName.length() - 3) + "Kt";
+            }
+        } else if (owner instanceof KtClassOrObject) {
+            // Otherwise we should get a fully qualified name of a parent class/object
+            FqName classFqName = ((KtClassOrObject) owner).getFqName();
             if (classFqName != null) {
-                qualifiedClassName = classFqName.asString();
+                return classFqName.asString();
             }
         }
 
-        if (identifier != null && qualifiedClassName != null && functionName != null) {
-            return createMarker(identifier, qualifiedClassName, functionName);
+        return null;
+    }
+
+    // Lambda bodies, local functions and nested classes are compiled to other methods, so their calls have other
+    // callers. Only the lambdas passed to inline functions are compiled into the enclosing function.
+    private static @Nullable KtNamedFunction getCallerFunction(@NotNull KtCallExpression call) {
+        for (PsiElement parent = call.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent instanceof KtFile || parent instanceof KtClassOrObject) {
+                return null;
+            } else if (parent instanceof KtLambdaExpression) {
+                if (!isInlinedArgument(((KtLambdaExpression) parent).getFunctionLiteral())) {
+                    return null;
+                }
+            } else if (parent instanceof KtNamedFunction) {
+                KtNamedFunction function = (KtNamedFunction) parent;
+                if (function.getName() == null) {
+                    // An anonymous function is a lambda as well
+                    if (!isInlinedArgument(function)) {
+                        return null;
+                    }
+                } else {
+                    return function.isLocal() ? null : function;
+                }
+            }
         }
 
         return null;
     }
 
+    private static boolean isInlinedArgument(@NotNull KtFunction function) {
+        BindingContext bindingContext = ResolutionUtils.analyze(function, BodyResolveMode.PARTIAL);
+        return InlineUtil.isInlinedArgument(function, bindingContext, false);
+    }
+
     private @Nullable
     KtClassOrObject getKtClassOrObject(@NotNull KtNamedFunction function) {
         PsiElement parent = function.getParent();
@@ -0,0 +1,94 @@
+package com.comitative.pic.providers;
+
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.statistics.ClassNameTree;
+import com.comitative.pic.statistics.StatisticsService;
+import com.intellij.ide.projectView.PresentationData;
+import com.intellij.ide.projectView.ProjectViewNode;
+import com.intellij.ide.projectView.ProjectViewNodeDecorator;
+import com.intellij.openapi.project.Project;
+import com.intellij.packageDependencies.ui.PackageDependenciesNode;
+import com.intellij.psi.JavaDirectoryService;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiPackage;
+import com.intellij.ui.ColoredTreeCellRenderer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.psi.KtClassOrObject;
+
+/**
+ * Shows the share of the active profile metric next to the packages, the classes and the files in the Project
+ * View. The values are the self values of the methods rolled up to the packages and the classes (see
+ * ClassNameTree), so a package that spreads its time over many cold methods stands out too.
+ *
+ * A node is decorated with one lookup in the class name tree (a file with several classes takes one lookup per
+ * class); the project view is refreshed together with the highlighting when the statistics change.
+ */
+public class ProfilingProjectViewDecorator implements ProjectViewNodeDecorator {
+
+    @Override
+    public void decorate(ProjectViewNode<?> node, PresentationData data) {
+        Project project = node.getProject();
+        if (project == null || project.isDisposed()) {
+            return;
+        }
+        StatisticsService service = project.getService(StatisticsService.class);
+        ClassNameTree tree = service.getStatistics().getClassNameTree();
+        if (tree.getRecordCount(ClassNameTree.ROOT) == 0) {
+            return;
+        }
+        double relativeValue = getRelativeValue(tree, service.getActiveMetric(), node.getValue());
+        if (relativeValue < MIN_RELATIVE_VALUE) {
+            return;
+        }
+        String percent = String.format("%.1f%%", Math.min(relativeValue, 1.0) * 100.0);
+        String location = data.getLocationString();
+        data.setLocationString(location == null || location.isEmpty() ? percent : location + ", " + percent);
+    }
+
+    @Override
+    public void decorate(PackageDependenciesNode node, ColoredTreeCellRenderer cellRenderer) {
+        // The dependency views are not decorated
+    }
+
+    private static double getRelativeValue(
+            @NotNull ClassNameTree tree,
+            @NotNull ProfileMetric metric,
+            @Nullable Object value) {
+        if (value instanceof PsiDirectory) {
+            PsiPackage psiPackage = JavaDirectoryService.getInstance().getPackage((PsiDirectory) value);
+            return psiPackage == null ? 0.0 : getNodeValue(tree, metric, tree.findNode(psiPackage.getQualifiedName()));
+        } else if (value instanceof PsiClass) {
+            return getClassValue(tree, metric, (PsiClass) value);
+        } else if (value instanceof KtClassOrObject) {
+            FqName fqName = ((KtClassOrObject) value).getFqName();
+            return fqName == null ? 0.0 : getNodeValue(tree, metric, tree.findClass(fqName.asString()));
+        } else if (value instanceof PsiClassOwner) {
+            // A file node: the sum of its top level classes (including the file facade of Kotlin functions)
+            double sum = 0.0;
+            for (PsiClass psiClass : ((PsiClassOwner) value).getClasses()) {
+                sum += getClassValue(tree, metric, psiClass);
+            }
+            return sum;
+        }
+        return 0.0;
+    }
+
+    private static double getClassValue(
+            @NotNull ClassNameTree tree,
+            @NotNull ProfileMetric metric,
+            @NotNull PsiClass psiClass) {
+        String className = psiClass.getQualifiedName();
+        return className == null ? 0.0 : getNodeValue(tree, metric, tree.findClass(className));
+    }
+
+    private static double getNodeValue(@NotNull ClassNameTree tree, @NotNull ProfileMetric metric, int node) {
+        return node == ClassNameTree.NO_NODE ? 0.0 : tree.getRelativeValue(metric, node);
+    }
+
+    // The values are shown with one decimal, so smaller values would be 0.0%
+    private static final double MIN_RELATIVE_VALUE = 0.0005;
+}
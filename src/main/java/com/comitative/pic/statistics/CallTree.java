@@ -0,0 +1,666 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.HeapSize;
+import com.comitative.pic.SymbolTable;
+import com.comitative.pic.parsers.StackTraceCollector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An immutable call tree built from the stack trace part of a profiler snapshot.
+ *
+ * The tree is stored in primitive arrays instead of node objects. Frame names are interned to dense integer
+ * identifiers, and each tree node is an index into parallel arrays of parent links, frame identifiers and
+ * sample/time counters. Node 0 is a synthetic root that corresponds to no frame; every other node corresponds
+ * to a unique call path from the root, and the parent of a node always has a smaller index.
+ *
+ * Besides the counters attributed to the node itself (self samples and time, i.e., the samples where
+ * the node was on top of the stack), the tree keeps the totals for each node's subtree, an index of nodes
+ * for every frame, and an index of child nodes. The callers and callees of every frame are aggregated over all
+ * the call paths when the tree is created and stored in two compact adjacency indexes (frame edges sorted by
+ * the sample count), so finding the top callers or callees of a frame is a slice copy.
+ *
+ * Instances are safe to share between threads.
+ */
+public final class CallTree {
+
+    /**
+     * An empty call tree (it is used when the snapshot has no stack traces).
+     */
+    public static final CallTree EMPTY = new Builder().build();
+
+    /**
+     * A frame identifier that does not correspond to any frame (e.g., the frame of the root node).
+     */
+    public static final int NO_FRAME = -1;
+
+    /**
+     * The index of the synthetic root node.
+     */
+    public static final int ROOT = 0;
+
+    /**
+     * A frame group that means that the frame is not grouped (see aggregateTotals).
+     */
+    static final int NO_GROUP = -1;
+
+    private final String[] frameNames;
+    private final int[] frameNameSlots;
+
+    private final int nodeCount;
+    private final int[] parents;
+    private final int[] frames;
+    private final long[] selfSamples;
+    private final long[] selfTime;
+    private final long[] totalSamples;
+    private final long[] totalTime;
+
+    // Children of node n are childNodes[childStart[n] .. childStart[n + 1])
+    private final int[] childStart;
+    private final int[] childNodes;
+
+    // Nodes of frame f are frameNodes[frameNodeStart[f] .. frameNodeStart[f + 1])
+    private final int[] frameNodeStart;
+    private final int[] frameNodes;
+
+    // Aggregated callees and callers of every frame
+    private final EdgeIndex calleeIndex;
+    private final EdgeIndex callerIndex;
+
+    // The arrays are owned by the tree: they are produced either by the Builder or by the SnapshotCache reader
+    CallTree(
+            @NotNull String[] frameNames,
+            int nodeCount,
+            @NotNull int[] parents,
+            @NotNull int[] frames,
+            @NotNull long[] selfSamples,
+            @NotNull long[] selfTime) {
+        this.frameNames = frameNames;
+        this.nodeCount = nodeCount;
+        this.parents = parents;
+        this.frames = frames;
+        this.selfSamples = selfSamples;
+        this.selfTime = selfTime;
+
+        // Parents precede their children, so a single backward pass accumulates the subtree totals
+        this.totalSamples = Arrays.copyOf(selfSamples, nodeCount);
+        this.totalTime = Arrays.copyOf(selfTime, nodeCount);
+        for (int node = nodeCount - 1; node > ROOT; node--) {
+            totalSamples[parents[node]] += totalSamples[node];
+            totalTime[parents[node]] += totalTime[node];
+        }
+
+        this.childStart = new int[nodeCount + 1];
+        this.childNodes = new int[Math.max(nodeCount - 1, 0)];
+        for (int node = ROOT + 1; node < nodeCount; node++) {
+            childStart[parents[node] + 1] += 1;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            childStart[node + 1] += childStart[node];
+        }
+        int[] childFill = Arrays.copyOf(childStart, nodeCount);
+        for (int node = ROOT + 1; node < nodeCount; node++) {
+            childNodes[childFill[parents[node]]++] = node;
+        }
+
+        int frameCount = frameNames.length;
+        this.frameNodeStart = new int[frameCount + 1];
+        this.frameNodes = new int[Math.max(nodeCount - 1, 0)];
+        for (int node = ROOT + 1; node < nodeCount; node++) {
+            frameNodeStart[frames[node] + 1] += 1;
+        }
+        for (int frame = 0; frame < frameCount; frame++) {
+            frameNodeStart[frame + 1] += frameNodeStart[frame];
+        }
+        int[] frameFill = Arrays.copyOf(frameNodeStart, frameCount);
+        for (int node = ROOT + 1; node < nodeCount; node++) {
+            frameNodes[frameFill[frames[node]]++] = node;
+        }
+
+        this.calleeIndex = indexEdges(false);
+        this.callerIndex = indexEdges(true);
+
+        this.frameNameSlots = new int[Integer.highestOneBit(Math.max(frameCount, 1)) * 4];
+        Arrays.fill(frameNameSlots, NO_FRAME);
+        int mask = frameNameSlots.length - 1;
+        for (int frame = 0; frame < frameCount; frame++) {
+            int slot = frameNames[frame].hashCode() & mask;
+            while (frameNameSlots[slot] != NO_FRAME) {
+                slot = (slot + 1) & mask;
+            }
+            frameNameSlots[slot] = frame;
+        }
+    }
+
+    /**
+     * @return the number of distinct frames
+     */
+    public int getFrameCount() {
+        return frameNames.length;
+    }
+
+    /**
+     * @param frameId a frame identifier
+     * @return the frame name as it is represented in the snapshot
+     */
+    public @NotNull String getFrameName(int frameId) {
+        return frameNames[frameId];
+    }
+
+    /**
+     * Find a frame by its name.
+     *
+     * @param name a frame name as it is represented in the snapshot
+     * @return the frame identifier or NO_FRAME if there is no such frame
+     */
+    public int findFrame(@NotNull String name) {
+        int mask = frameNameSlots.length - 1;
+        int slot = name.hashCode() & mask;
+        while (frameNameSlots[slot] != NO_FRAME) {
+            int frame = frameNameSlots[slot];
+            if (frameNames[frame].equals(name)) {
+                return frame;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_FRAME;
+    }
+
+    /**
+     * @return the number of nodes including the root
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the estimated heap size of the tree in bytes
+     * @see HeapSize
+     */
+    public long estimateRetainedSize() {
+        return HeapSize.of(frameNames) + HeapSize.of(frameNameSlots)
+                + HeapSize.of(parents) + HeapSize.of(frames)
+                + HeapSize.of(selfSamples) + HeapSize.of(selfTime) + HeapSize.of(totalSamples) + HeapSize.of(totalTime)
+                + HeapSize.of(childStart) + HeapSize.of(childNodes)
+                + HeapSize.of(frameNodeStart) + HeapSize.of(frameNodes)
+                + calleeIndex.estimateRetainedSize() + callerIndex.estimateRetainedSize();
+    }
+
+    /**
+     * @param node a node index
+     * @return the parent node index (the root is its own parent)
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * @param node a node index
+     * @return the frame identifier of the node (NO_FRAME for the root)
+     */
+    public int getFrame(int node) {
+        return frames[node];
+    }
+
+    /**
+     * @param node a node index
+     * @return the number of samples where the node was on top of the stack
+     */
+    public long getSelfSamples(int node) {
+        return selfSamples[node];
+    }
+
+    /**
+     * @param node a node index
+     * @return the time (ns) attributed to the samples where the node was on top of the stack
+     */
+    public long getSelfTime(int node) {
+        return selfTime[node];
+    }
+
+    /**
+     * @param node a node index
+     * @return the number of samples in the node's subtree
+     */
+    public long getTotalSamples(int node) {
+        return totalSamples[node];
+    }
+
+    /**
+     * @param node a node index
+     * @return the time (ns) attributed to the node's subtree
+     */
+    public long getTotalTime(int node) {
+        return totalTime[node];
+    }
+
+    /**
+     * @return the total number of samples in all stack traces
+     */
+    public long getTotalSamples() {
+        return totalSamples[ROOT];
+    }
+
+    /**
+     * @return the total time (ns) of all stack traces
+     */
+    public long getTotalTime() {
+        return totalTime[ROOT];
+    }
+
+    /**
+     * Aggregate the subtree totals by groups of frames (e.g., all the frames that refer to one method).
+     *
+     * A group gets the totals of the subtrees rooted at its outermost nodes only: the nodes that have an ancestor
+     * of the same group are already included in the ancestor's subtree, so recursive calls are counted once per
+     * stack trace. The tree is traversed once, depth first, with a counter of the active nodes of every group.
+     *
+     * @param frameGroups the group of every frame ([0 .. samples.length)) or NO_GROUP if the frame is not grouped
+     * @param samples an array to add the total samples of every group to
+     * @param times an array to add the total time of every group to
+     */
+    void aggregateTotals(@NotNull int[] frameGroups, @NotNull long[] samples, @NotNull long[] times) {
+        int[] activeNodes = new int[samples.length];
+        // Entered nodes are pushed as ~node to be exited after their subtrees
+        int[] stack = new int[Math.max(nodeCount * 2, 1)];
+        int top = 0;
+        for (int j = childStart[ROOT]; j < childStart[ROOT + 1]; j++) {
+            stack[top++] = childNodes[j];
+        }
+        while (top > 0) {
+            int entry = stack[--top];
+            if (entry < 0) {
+                activeNodes[frameGroups[frames[~entry]]] -= 1;
+                continue;
+            }
+            int group = frameGroups[frames[entry]];
+            if (group != NO_GROUP) {
+                if (activeNodes[group] == 0) {
+                    samples[group] += totalSamples[entry];
+                    times[group] += totalTime[entry];
+                }
+                activeNodes[group] += 1;
+                stack[top++] = ~entry;
+            }
+            for (int j = childStart[entry]; j < childStart[entry + 1]; j++) {
+                stack[top++] = childNodes[j];
+            }
+        }
+    }
+
+    /**
+     * Find the callees of a frame. Callee statistics are aggregated over all the call paths,
+     * and each callee is weighted with the totals of its subtrees.
+     *
+     * @param frameId a frame identifier
+     * @return a list of callees ordered by the sample count, descending
+     */
+    public @NotNull List<CallEdge> getCallees(int frameId) {
+        return getEdges(calleeIndex, frameId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the heaviest callees of a frame (see getCallees). The edges are precomputed, so the method only copies
+     * the first edges of the frame.
+     *
+     * @param frameId a frame identifier
+     * @param limit the maximum number of callees to return
+     * @return a list of at most limit callees ordered by the sample count, descending
+     */
+    public @NotNull List<CallEdge> getCallees(int frameId, int limit) {
+        return getEdges(calleeIndex, frameId, limit);
+    }
+
+    /**
+     * Find the callers of a frame. Caller statistics are aggregated over all the call paths,
+     * and each caller is weighted with the totals of the frame's subtrees under that caller.
+     * Stack bottoms (the frames called from the root) have no callers.
+     *
+     * @param frameId a frame identifier
+     * @return a list of callers ordered by the sample count, descending
+     */
+    public @NotNull List<CallEdge> getCallers(int frameId) {
+        return getEdges(callerIndex, frameId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the heaviest callers of a frame (see getCallers). The edges are precomputed, so the method only copies
+     * the first edges of the frame.
+     *
+     * @param frameId a frame identifier
+     * @param limit the maximum number of callers to return
+     * @return a list of at most limit callers ordered by the sample count, descending
+     */
+    public @NotNull List<CallEdge> getCallers(int frameId, int limit) {
+        return getEdges(callerIndex, frameId, limit);
+    }
+
+    private @NotNull List<CallEdge> getEdges(@NotNull EdgeIndex index, int frameId, int limit) {
+        int start = index.edgeStart[frameId];
+        int end = start + Math.max(Math.min(index.edgeStart[frameId + 1] - start, limit), 0);
+        if (start == end) {
+            return Collections.emptyList();
+        }
+        List<CallEdge> result = new ArrayList<>(end - start);
+        for (int edge = start; edge < end; edge++) {
+            int edgeFrame = index.edgeFrames[edge];
+            result.add(new CallEdge(edgeFrame, frameNames[edgeFrame], index.edgeSamples[edge], index.edgeTimes[edge]));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // Aggregate the edges of every frame with a sparse accumulator: the edges of the current frame are collected
+    // in the pending arrays (pendingSlots maps a target frame to its pending edge), sorted and appended to the index
+    private @NotNull EdgeIndex indexEdges(boolean callers) {
+        int frameCount = frameNames.length;
+        int maxEdgeCount = Math.max(nodeCount - 1, 0);
+        int[] edgeStart = new int[frameCount + 1];
+        int[] edgeFrames = new int[maxEdgeCount];
+        long[] edgeSamples = new long[maxEdgeCount];
+        long[] edgeTimes = new long[maxEdgeCount];
+
+        int[] pendingSlots = new int[frameCount];
+        Arrays.fill(pendingSlots, NO_FRAME);
+        int[] pendingFrames = new int[frameCount];
+        long[] pendingSamples = new long[frameCount];
+        long[] pendingTimes = new long[frameCount];
+        int[] order = new int[frameCount];
+        int[] buffer = new int[frameCount];
+
+        int edgeCount = 0;
+        for (int frame = 0; frame < frameCount; frame++) {
+            int pendingCount = 0;
+            for (int i = frameNodeStart[frame]; i < frameNodeStart[frame + 1]; i++) {
+                int node = frameNodes[i];
+                int firstNode = callers ? node : childStart[node];
+                int lastNode = callers ? node + 1 : childStart[node + 1];
+                for (int j = firstNode; j < lastNode; j++) {
+                    // A caller edge is weighted with the node itself, a callee edge with the child node
+                    int weightNode = callers ? node : childNodes[j];
+                    int target = callers ? parents[node] : childNodes[j];
+                    if (target == ROOT) {
+                        continue;
+                    }
+                    int targetFrame = frames[target];
+                    int slot = pendingSlots[targetFrame];
+                    if (slot == NO_FRAME) {
+                        slot = pendingCount++;
+                        pendingSlots[targetFrame] = slot;
+                        pendingFrames[slot] = targetFrame;
+                        pendingSamples[slot] = 0;
+                        pendingTimes[slot] = 0;
+                    }
+                    pendingSamples[slot] += totalSamples[weightNode];
+                    pendingTimes[slot] += totalTime[weightNode];
+                }
+            }
+
+            for (int slot = 0; slot < pendingCount; slot++) {
+                order[slot] = slot;
+            }
+            sortBySamples(order, buffer, pendingSamples, 0, pendingCount);
+            for (int i = 0; i < pendingCount; i++) {
+                int slot = order[i];
+                edgeFrames[edgeCount] = pendingFrames[slot];
+                edgeSamples[edgeCount] = pendingSamples[slot];
+                edgeTimes[edgeCount] = pendingTimes[slot];
+                edgeCount += 1;
+                pendingSlots[pendingFrames[slot]] = NO_FRAME;
+            }
+            edgeStart[frame + 1] = edgeCount;
+        }
+        return new EdgeIndex(
+                edgeStart,
+                Arrays.copyOf(edgeFrames, edgeCount),
+                Arrays.copyOf(edgeSamples, edgeCount),
+                Arrays.copyOf(edgeTimes, edgeCount));
+    }
+
+    // A merge sort of pending edges by their sample counts, descending (stable, without boxing)
+    private static void sortBySamples(
+            @NotNull int[] order, @NotNull int[] buffer, @NotNull long[] samples, int start, int end) {
+        if (end - start < 2) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        sortBySamples(order, buffer, samples, start, middle);
+        sortBySamples(order, buffer, samples, middle, end);
+        if (samples[order[middle - 1]] >= samples[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, start, buffer, start, end - start);
+        int left = start;
+        int right = middle;
+        for (int i = start; i < end; i++) {
+            if (right >= end || (left < middle && samples[buffer[left]] >= samples[buffer[right]])) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    // Edges of frame f are [edgeStart[f] .. edgeStart[f + 1]), ordered by the sample count, descending
+    private static final class EdgeIndex {
+        final int[] edgeStart;
+        final int[] edgeFrames;
+        final long[] edgeSamples;
+        final long[] edgeTimes;
+
+        EdgeIndex(@NotNull int[] edgeStart, @NotNull int[] edgeFrames, @NotNull long[] edgeSamples,
+                  @NotNull long[] edgeTimes) {
+            this.edgeStart = edgeStart;
+            this.edgeFrames = edgeFrames;
+            this.edgeSamples = edgeSamples;
+            this.edgeTimes = edgeTimes;
+        }
+
+        long estimateRetainedSize() {
+            return HeapSize.of(edgeStart) + HeapSize.of(edgeFrames) + HeapSize.of(edgeSamples)
+                    + HeapSize.of(edgeTimes);
+        }
+    }
+
+    /**
+     * An aggregated caller or callee of a frame.
+     */
+    public static final class CallEdge {
+        private final int frameId;
+        private final @NotNull String frameName;
+        private final long sampleCount;
+        private final long absoluteTime;
+
+        CallEdge(int frameId, @NotNull String frameName, long sampleCount, long absoluteTime) {
+            this.frameId = frameId;
+            this.frameName = frameName;
+            this.sampleCount = sampleCount;
+            this.absoluteTime = absoluteTime;
+        }
+
+        /**
+         * @return the identifier of the caller/callee frame
+         */
+        public int getFrameId() {
+            return frameId;
+        }
+
+        /**
+         * @return the name of the caller/callee frame
+         */
+        public @NotNull String getFrameName() {
+            return frameName;
+        }
+
+        /**
+         * @return the number of samples that pass through the edge
+         */
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * @return the time (ns) that passes through the edge
+         */
+        public long getAbsoluteTime() {
+            return absoluteTime;
+        }
+    }
+
+    /**
+     * A call tree builder. It is filled by a snapshot parser through the StackTraceCollector interface,
+     * or by merging complete call trees (addTree). The two ways should not be mixed in one builder, since parsers
+     * assign their own frame identifiers. The builder is not thread-safe.
+     */
+    public static final class Builder implements StackTraceCollector {
+        private String[] frameNames = new String[INITIAL_CAPACITY];
+        private int frameCount = 0;
+
+        // Frame names of the merged trees, created on the first addTree call
+        private @Nullable SymbolTable mergedFrames = null;
+
+        private int nodeCount = 1;
+        private int[] parents = new int[INITIAL_CAPACITY];
+        private int[] frames = new int[INITIAL_CAPACITY];
+        private long[] selfSamples = new long[INITIAL_CAPACITY];
+        private long[] selfTime = new long[INITIAL_CAPACITY];
+
+        // Open addressing table (parent node, frame) -> child node, 0 marks an empty slot
+        private long[] childKeys = new long[INITIAL_CAPACITY * 2];
+        private int[] childValues = new int[INITIAL_CAPACITY * 2];
+
+        public Builder() {
+            parents[ROOT] = ROOT;
+            frames[ROOT] = NO_FRAME;
+        }
+
+        @Override
+        public void addFrame(int frameId, @NotNull String name) {
+            if (frameId >= frameNames.length) {
+                frameNames = Arrays.copyOf(frameNames, Math.max(frameId + 1, frameNames.length * 2));
+            }
+            frameNames[frameId] = name;
+            frameCount = Math.max(frameCount, frameId + 1);
+        }
+
+        @Override
+        public void addStackTrace(long absoluteTime, long sampleCount, @NotNull int[] frameIds, int depth) {
+            if (depth <= 0) {
+                return;
+            }
+            int node = ROOT;
+            for (int i = depth - 1; i >= 0; i--) {
+                node = getOrAddChild(node, frameIds[i]);
+            }
+            selfSamples[node] += sampleCount;
+            selfTime[node] += absoluteTime;
+        }
+
+        /**
+         * Merge a call tree into the builder: the counters of the nodes with the same call path are summed.
+         *
+         * @param tree a call tree to merge
+         */
+        public void addTree(@NotNull CallTree tree) {
+            if (mergedFrames == null) {
+                mergedFrames = new SymbolTable();
+            }
+            int[] frameIds = new int[tree.getFrameCount()];
+            for (int frame = 0; frame < frameIds.length; frame++) {
+                String name = tree.getFrameName(frame);
+                frameIds[frame] = mergedFrames.intern(name);
+                if (frameIds[frame] == frameCount) {
+                    addFrame(frameIds[frame], name);
+                }
+            }
+
+            // Parents precede their children, so the parent of a node is always mapped before the node itself
+            int[] nodes = new int[tree.getNodeCount()];
+            nodes[ROOT] = ROOT;
+            for (int node = ROOT + 1; node < tree.getNodeCount(); node++) {
+                int mergedNode = getOrAddChild(nodes[tree.getParent(node)], frameIds[tree.getFrame(node)]);
+                nodes[node] = mergedNode;
+                selfSamples[mergedNode] += tree.getSelfSamples(node);
+                selfTime[mergedNode] += tree.getSelfTime(node);
+            }
+        }
+
+        /**
+         * Freeze the collected data.
+         *
+         * @return an immutable call tree
+         */
+        public @NotNull CallTree build() {
+            String[] names = Arrays.copyOf(frameNames, frameCount);
+            for (int i = 0; i < frameCount; i++) {
+                if (names[i] == null) {
+                    names[i] = "";
+                }
+            }
+            return new CallTree(
+                    names,
+                    nodeCount,
+                    Arrays.copyOf(parents, nodeCount),
+                    Arrays.copyOf(frames, nodeCount),
+                    Arrays.copyOf(selfSamples, nodeCount),
+                    Arrays.copyOf(selfTime, nodeCount));
+        }
+
+        private int getOrAddChild(int parent, int frameId) {
+            // The key is never zero: the frame identifier is stored with an offset of one
+            long key = ((long) parent << 32) | (frameId + 1L);
+            int mask = childKeys.length - 1;
+            int slot = mix(key) & mask;
+            while (childKeys[slot] != 0) {
+                if (childKeys[slot] == key) {
+                    return childValues[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int node = nodeCount++;
+            if (node == parents.length) {
+                int capacity = node * 2;
+                parents = Arrays.copyOf(parents, capacity);
+                frames = Arrays.copyOf(frames, capacity);
+                selfSamples = Arrays.copyOf(selfSamples, capacity);
+                selfTime = Arrays.copyOf(selfTime, capacity);
+            }
+            parents[node] = parent;
+            frames[node] = frameId;
+            frameCount = Math.max(frameCount, frameId + 1);
+            childKeys[slot] = key;
+            childValues[slot] = node;
+            if (nodeCount * 2 > childKeys.length) {
+                rehash();
+            }
+            return node;
+        }
+
+        private void rehash() {
+            long[] oldKeys = childKeys;
+            int[] oldValues = childValues;
+            childKeys = new long[oldKeys.length * 2];
+            childValues = new int[oldValues.length * 2];
+            int mask = childKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (childKeys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    childKeys[slot] = oldKeys[i];
+                    childValues[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private static final int INITIAL_CAPACITY = 1024;
+    }
+}
@@ -0,0 +1,258 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.HeapSize;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.SymbolTable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A prefix tree of the class names of a statistics dictionary that rolls the self values of the records up
+ * to the classes and the packages.
+ *
+ * Every node is a component of a qualified class name ("com", "comitative", "pt", "Matrix"), and the values
+ * of a node are the sums of the self values of all the records below it: a package node holds the totals of
+ * its classes and subpackages, and a class node holds the totals of its methods and of its nested classes
+ * (the snapshot names of nested classes are written with dots, see CodeReference, so "Matrix$Row" is the child
+ * "Row" of "Matrix"). The root holds the totals of the whole profile.
+ *
+ * The tree is built once, when the dictionary is created, and it is immutable. The nodes are stored in columns,
+ * and the children are found with an open addressing table of packed (parent node, name component) keys, so
+ * the lookup of a qualified name costs one symbol lookup and one probe per name component, and it does not
+ * allocate memory.
+ */
+public final class ClassNameTree {
+    /**
+     * The root node: the empty prefix that holds the totals of the profile.
+     */
+    public static final int ROOT = 0;
+
+    /**
+     * A node index that does not correspond to any package or class of the profile.
+     */
+    public static final int NO_NODE = -1;
+
+    private final SymbolTable components = new SymbolTable();
+
+    // Open addressing table of the child nodes by the packed (parent, component) keys, NO_KEY marks an empty slot
+    private final long[] slotKeys;
+    private final int[] slotNodes;
+
+    // Node columns: the number of the records below a node and the sums of their self values
+    private final int[] recordCounts;
+    private final double[] relativeTimes;
+    private final long[][] values;
+    private final long[] totalValues;
+
+    /**
+     * @param classNames the class names of a dictionary (by class indexes)
+     * @param classRecordCounts the number of the records of every class
+     * @param classRelativeTimes the sums of the relative times of the records of every class
+     * @param classValues the sums of the metric values of the records of every class (by the metric ordinals)
+     * @param totalValues the totals of the metrics (see StatisticsDictionary.getTotalValue)
+     */
+    ClassNameTree(
+            @NotNull String[] classNames,
+            @NotNull int[] classRecordCounts,
+            @NotNull double[] classRelativeTimes,
+            @NotNull long[][] classValues,
+            @NotNull long[] totalValues) {
+        // Every name component may add a node, so the arrays are allocated for the worst case and trimmed later
+        int maxNodeCount = 1;
+        for (String className : classNames) {
+            maxNodeCount += countComponents(className);
+        }
+        this.slotKeys = new long[Integer.highestOneBit(maxNodeCount) * 4];
+        this.slotNodes = new int[slotKeys.length];
+        Arrays.fill(slotKeys, NO_KEY);
+        int[] nodeRecordCounts = new int[maxNodeCount];
+        double[] nodeRelativeTimes = new double[maxNodeCount];
+        long[][] nodeValues = new long[METRICS.length][maxNodeCount];
+        int nodeCount = 1;
+
+        for (int classIndex = 0; classIndex < classNames.length; classIndex++) {
+            String className = classNames[classIndex];
+            int node = ROOT;
+            int start = 0;
+            while (true) {
+                nodeRecordCounts[node] += classRecordCounts[classIndex];
+                nodeRelativeTimes[node] += classRelativeTimes[classIndex];
+                for (int column = 0; column < METRICS.length; column++) {
+                    nodeValues[column][node] += classValues[column][classIndex];
+                }
+                if (start > className.length()) {
+                    break;
+                }
+                int end = className.indexOf('.', start);
+                if (end < 0) {
+                    end = className.length();
+                }
+                long key = packKey(node, components.intern(className.substring(start, end)));
+                int slot = findSlot(key);
+                if (slotKeys[slot] == NO_KEY) {
+                    slotKeys[slot] = key;
+                    slotNodes[slot] = nodeCount++;
+                }
+                node = slotNodes[slot];
+                start = end + 1;
+            }
+        }
+
+        this.recordCounts = Arrays.copyOf(nodeRecordCounts, nodeCount);
+        this.relativeTimes = Arrays.copyOf(nodeRelativeTimes, nodeCount);
+        this.values = new long[METRICS.length][];
+        for (int column = 0; column < METRICS.length; column++) {
+            values[column] = Arrays.copyOf(nodeValues[column], nodeCount);
+        }
+        this.totalValues = totalValues;
+    }
+
+    /**
+     * Find the node of a package or a class. The lookup costs one probe per name component, and it does not
+     * allocate memory.
+     *
+     * @param qualifiedName a qualified package or class name (nested classes are separated with dots)
+     * @return the node index or NO_NODE if the profile has no records below the name
+     */
+    public int findNode(@NotNull String qualifiedName) {
+        return findNode(qualifiedName, 0);
+    }
+
+    /**
+     * Find the node of a class. If there is no node for the fully qualified class name, the short class name
+     * is tried (the fallback for the snapshots that do not contain package names, see
+     * StatisticsDictionary.findShortClass). The lookup does not allocate memory.
+     *
+     * @param fqClassName a fully qualified class name
+     * @return the node index or NO_NODE if the profile has no records of the class
+     */
+    public int findClass(@NotNull String fqClassName) {
+        int node = findNode(fqClassName, 0);
+        if (node == NO_NODE) {
+            int shortNameStart = CodeReference.getShortClassNameStart(fqClassName);
+            if (shortNameStart > 0) {
+                node = findNode(fqClassName, shortNameStart);
+            }
+        }
+        return node;
+    }
+
+    // Find the node of a name that is a suffix of a text, starting at a given character
+    private int findNode(@NotNull String text, int start) {
+        if (start >= text.length()) {
+            return NO_NODE;
+        }
+        int node = ROOT;
+        while (start <= text.length()) {
+            int end = text.indexOf('.', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            int component = components.find(text, start, end);
+            if (component == SymbolTable.NO_SYMBOL) {
+                return NO_NODE;
+            }
+            int slot = findSlot(packKey(node, component));
+            if (slotKeys[slot] == NO_KEY) {
+                return NO_NODE;
+            }
+            node = slotNodes[slot];
+            start = end + 1;
+        }
+        return node;
+    }
+
+    /**
+     * @return the number of nodes in the tree (including the root)
+     */
+    public int getNodeCount() {
+        return recordCounts.length;
+    }
+
+    /**
+     * @param node a node index
+     * @return the number of the records (methods) below the node
+     */
+    public int getRecordCount(int node) {
+        return recordCounts[node];
+    }
+
+    /**
+     * @param node a node index
+     * @return the sum of the relative times of the records below the node
+     */
+    public double getRelativeTime(int node) {
+        return relativeTimes[node];
+    }
+
+    /**
+     * @param metric a profile metric
+     * @param node a node index
+     * @return the sum of the metric values of the records below the node
+     */
+    public long getValue(@NotNull ProfileMetric metric, int node) {
+        return values[metric.ordinal()][node];
+    }
+
+    /**
+     * The share of a node in the total value of a metric; it is computed the same way as the relative values
+     * of the records (see StatisticsDictionary.getRelativeValue).
+     *
+     * @param metric a profile metric
+     * @param node a node index
+     * @return the relative value of the metric for the node ([0.0 .. 1.0])
+     */
+    public double getRelativeValue(@NotNull ProfileMetric metric, int node) {
+        if (metric == ProfileMetric.SAMPLES) {
+            return Math.min(relativeTimes[node], 1.0);
+        }
+        long total = totalValues[metric.ordinal()];
+        return total > 0 ? Math.min((double) values[metric.ordinal()][node] / total, 1.0) : 0.0;
+    }
+
+    /**
+     * @return the estimated heap size of the tree in bytes
+     * @see HeapSize
+     */
+    long estimateRetainedSize() {
+        return components.estimateRetainedSize()
+                + HeapSize.of(slotKeys) + HeapSize.of(slotNodes)
+                + HeapSize.of(recordCounts) + HeapSize.of(relativeTimes) + HeapSize.of(values);
+    }
+
+    // The slot of a key or the empty slot where it would be inserted
+    private int findSlot(long key) {
+        int mask = slotKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (slotKeys[slot] != NO_KEY && slotKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int countComponents(@NotNull String className) {
+        int count = 1;
+        for (int i = 0; i < className.length(); i++) {
+            if (className.charAt(i) == '.') {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    private static long packKey(int parent, int component) {
+        return ((long) parent << 32) | component;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final ProfileMetric[] METRICS = ProfileMetric.values();
+
+    // Node and symbol indexes are never negative, so no packed key is negative
+    private static final long NO_KEY = -1;
+}
@@ -0,0 +1,27 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Removes the baseline snapshot, so the gutter icons show the current statistics only.
+ */
+public class ClearBaselineAction extends AnAction {
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        Project currentProject = e.getProject();
+        e.getPresentation().setEnabled(currentProject != null
+                && currentProject.getService(StatisticsService.class).getStatisticsDelta().hasBaseline());
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project currentProject = e.getProject();
+        if (currentProject != null) {
+            currentProject.getService(StatisticsService.class).clearBaseline();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Saves the self-instrumentation metrics of the plugin (see PluginMetrics.dump) to a text file,
+ * so they can be attached to a performance issue.
+ */
+public class ExportDiagnosticsAction extends AnAction {
+    private static final Logger LOG = Logger.getInstance(ExportDiagnosticsAction.class);
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project currentProject = e.getProject();
+        if (currentProject != null) {
+            exportDiagnostics(currentProject);
+        }
+    }
+
+    /**
+     * Ask the user for a file and save the diagnostics report of the project to it.
+     * The method should be called on the event dispatch thread.
+     *
+     * @param project the current project
+     */
+    static void exportDiagnostics(@NotNull Project project) {
+        FileSaverDescriptor descriptor = new FileSaverDescriptor(
+                "Export Profiling Icons Diagnostics",
+                "Save the snapshot loading and line marker metrics",
+                "txt");
+        VirtualFileWrapper target = FileChooserFactory.getInstance()
+                .createSaveFileDialog(descriptor, project)
+                .save(null, DEFAULT_FILE_NAME);
+        if (target == null) {
+            return;
+        }
+
+        String report = project.getService(StatisticsService.class).getMetrics().dump();
+        try {
+            Files.write(target.getFile().toPath(), report.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("Unable to export the diagnostics: " + e.getMessage());
+            Messages.showErrorDialog(project, "Unable to save " + target.getFile().getName(), "Export Failed");
+        }
+    }
+
+    private static final String DEFAULT_FILE_NAME = "profiling-icons-diagnostics.txt";
+}
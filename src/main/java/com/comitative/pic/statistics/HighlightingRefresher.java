@@ -0,0 +1,87 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.ide.projectView.ProjectView;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Restarts the highlighting of the open files that are affected by a statistics update.
+ *
+ * Only the files that declare (at any nesting level) a class from the changed set are restarted, so loading
+ * a snapshot does not re-highlight every open editor of a large project. Class names are matched the same way
+ * the line marker providers match them: by the fully qualified name or by the short class name.
+ *
+ * The project view is refreshed as well, since its nodes show the package and class totals of the profile
+ * (see ProfilingProjectViewDecorator).
+ */
+class HighlightingRefresher {
+    private static final Logger LOG = Logger.getInstance(HighlightingRefresher.class);
+
+    private final Project project;
+
+    HighlightingRefresher(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Restart the daemon for the affected open files and refresh the project view. The method should be called
+     * on the event dispatch thread.
+     * @param changedClasses names of the changed classes as they are written in the snapshots
+     * @see StatisticsDictionary#getChangedClasses(StatisticsDictionary)
+     */
+    void refresh(@NotNull Set<String> changedClasses) {
+        if (changedClasses.isEmpty() || project.isDisposed()) {
+            return;
+        }
+
+        PsiManager psiManager = PsiManager.getInstance(project);
+        DaemonCodeAnalyzer daemonCodeAnalyzer = DaemonCodeAnalyzer.getInstance(project);
+        int restartedFiles = 0;
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            if (!file.isValid()) {
+                continue;
+            }
+            PsiFile psiFile = psiManager.findFile(file);
+            if (psiFile instanceof PsiClassOwner
+                    && declaresChangedClass(((PsiClassOwner) psiFile).getClasses(), changedClasses)) {
+                daemonCodeAnalyzer.restart(psiFile);
+                restartedFiles += 1;
+            }
+        }
+
+        ProjectView.getInstance(project).refresh();
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Restarted highlighting of " + restartedFiles + " files, "
+                    + changedClasses.size() + " classes have changed");
+        }
+    }
+
+    private static boolean declaresChangedClass(@NotNull PsiClass[] classes, @NotNull Set<String> changedClasses) {
+        for (PsiClass psiClass : classes) {
+            String className = psiClass.getQualifiedName();
+            if (className == null) {
+                className = psiClass.getName();
+            }
+            if (className != null && (changedClasses.contains(className)
+                    || changedClasses.contains(className.substring(CodeReference.getShortClassNameStart(className))))) {
+                return true;
+            }
+            if (declaresChangedClass(psiClass.getInnerClasses(), changedClasses)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.pom.Navigatable;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Navigates from the rows of the hotspots tool window to the profiled methods.
+ *
+ * The snapshot names are resolved to PSI elements lazily, when a row is opened for the first time. The lookups
+ * use the indexes, so they run in non-blocking read actions in smart mode on a background thread: they wait for
+ * the indexing to finish, restart if a write action interrupts them, and never block the event dispatch thread,
+ * which only performs the navigation itself. A newer request cancels an older one that is still running.
+ *
+ * The resolved elements are cached as smart pointers, so they survive the reparsing of the files. The cache is
+ * keyed by code references rather than by records, so it stays valid when another snapshot is loaded; a pointer
+ * whose element has been deleted is resolved again.
+ */
+final class HotspotNavigator implements Disposable {
+    private final Project project;
+    private final Map<CodeReference, SmartPsiElementPointer<PsiElement>> targets = new ConcurrentHashMap<>();
+
+    HotspotNavigator(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Open the method of a code reference in the editor (or its class if the method is not found). If the code
+     * reference has not been resolved yet, it is resolved in the background first. The method should be called
+     * on the event dispatch thread.
+     *
+     * @param codeReference a code reference of a Java/Kotlin method
+     */
+    void navigate(@NotNull CodeReference codeReference) {
+        SmartPsiElementPointer<PsiElement> cachedTarget = targets.get(codeReference);
+        if (cachedTarget != null && navigate(cachedTarget.getElement())) {
+            return;
+        }
+        ReadAction.nonBlocking(() -> resolve(codeReference))
+                .inSmartMode(project)
+                .expireWith(this)
+                .coalesceBy(this)
+                .finishOnUiThread(ModalityState.defaultModalityState(), target -> {
+                    if (!navigate(target)) {
+                        StatusBar.Info.set(codeReference.getFqClassName() + "." + codeReference.getMethodName()
+                                + " is not found in the project", project);
+                    }
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    @Override
+    public void dispose() {
+        targets.clear();
+    }
+
+    private static boolean navigate(@Nullable PsiElement target) {
+        if (target instanceof Navigatable && ((Navigatable) target).canNavigate()) {
+            ((Navigatable) target).navigate(true);
+            return true;
+        }
+        return false;
+    }
+
+    // Runs in a read action
+    private @Nullable PsiElement resolve(@NotNull CodeReference codeReference) {
+        PsiElement target = findTarget(codeReference);
+        if (target != null) {
+            targets.put(codeReference, SmartPointerManager.getInstance(project).createSmartPsiElementPointer(target));
+        }
+        return target;
+    }
+
+    private @Nullable PsiElement findTarget(@NotNull CodeReference codeReference) {
+        PsiClass psiClass = findClass(codeReference.getFqClassName());
+        if (psiClass == null) {
+            return null;
+        }
+        String methodName = codeReference.getMethodName();
+        PsiMethod[] methods = CONSTRUCTOR_METHOD_NAME.equals(methodName)
+                ? psiClass.getConstructors()
+                : psiClass.findMethodsByName(methodName, false);
+        return methods.length > 0 ? methods[0] : psiClass;
+    }
+
+    // The snapshots may have short class names (see StatisticsDictionary.findShortClass), so the qualified lookup
+    // falls back to the classes whose qualified names end with the snapshot name
+    private @Nullable PsiClass findClass(@NotNull String className) {
+        GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+        PsiClass psiClass = JavaPsiFacade.getInstance(project).findClass(className, scope);
+        if (psiClass != null) {
+            return psiClass;
+        }
+        String shortClassName = className.substring(CodeReference.getShortClassNameStart(className));
+        for (PsiClass candidate : PsiShortNamesCache.getInstance(project).getClassesByName(shortClassName, scope)) {
+            String qualifiedName = candidate.getQualifiedName();
+            if (qualifiedName != null && qualifiedName.endsWith(className)
+                    && (qualifiedName.length() == className.length()
+                    || qualifiedName.charAt(qualifiedName.length() - className.length() - 1) == '.')) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static final String CONSTRUCTOR_METHOD_NAME = "<init>";
+}
@@ -0,0 +1,204 @@
+package com.comitative.pic.statistics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A table model of the hotspots tool window: one row per record of a statistics dictionary.
+ *
+ * The model does not copy the records: a row is an index into the dictionary columns, and the cell values
+ * are read from the columns when a row is painted. The table paints the visible rows only, so the cost of
+ * the model does not depend on the number of rows, and a profile of hundreds of thousands of records takes
+ * one int per row. The rows are selected and sorted by selectRows, which does not access the UI, so it runs
+ * on a background thread, and the ready rows replace the old ones on the event dispatch thread.
+ */
+final class HotspotTableModel extends AbstractTableModel {
+    static final int METHOD_COLUMN = 0;
+    static final int SELF_COLUMN = 1;
+    static final int INCLUSIVE_COLUMN = 2;
+    static final int SAMPLES_COLUMN = 3;
+
+    // Accessed on the event dispatch thread only
+    private @NotNull StatisticsDictionary dictionary = StatisticsDictionary.EMPTY;
+    private @NotNull int[] rows = new int[0];
+
+    /**
+     * The order of the rows.
+     */
+    enum SortColumn {
+        SELF(SELF_COLUMN),
+        INCLUSIVE(INCLUSIVE_COLUMN),
+        SAMPLES(SAMPLES_COLUMN);
+
+        private final int column;
+
+        SortColumn(int column) {
+            this.column = column;
+        }
+
+        /**
+         * @return the model index of the column
+         */
+        int getColumn() {
+            return column;
+        }
+
+        /**
+         * @param column a model column index
+         * @return the sort column or null if the rows can't be sorted by the column
+         */
+        static @Nullable SortColumn ofColumn(int column) {
+            for (SortColumn sortColumn : values()) {
+                if (sortColumn.column == column) {
+                    return sortColumn;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Replace the rows of the table. The method should be called on the event dispatch thread.
+     *
+     * @param dictionary the dictionary that the rows refer to
+     * @param rows the record indexes of the rows (see selectRows), the array is owned by the model
+     */
+    void setRows(@NotNull StatisticsDictionary dictionary, @NotNull int[] rows) {
+        this.dictionary = dictionary;
+        this.rows = rows;
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return the dictionary that the rows refer to
+     */
+    @NotNull StatisticsDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @param row a model row index
+     * @return the record index of the row
+     */
+    int getRecord(int row) {
+        return rows[row];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public @NotNull String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public @NotNull Class<?> getColumnClass(int column) {
+        return column == METHOD_COLUMN ? String.class : column == SAMPLES_COLUMN ? Long.class : Double.class;
+    }
+
+    @Override
+    public @NotNull Object getValueAt(int row, int column) {
+        int record = rows[row];
+        switch (column) {
+            case METHOD_COLUMN:
+                return dictionary.getDisplayName(record);
+            case SELF_COLUMN:
+                return dictionary.getRelativeTime(record);
+            case INCLUSIVE_COLUMN:
+                return dictionary.getInclusiveRelativeTime(record);
+            case SAMPLES_COLUMN:
+                return dictionary.getSampleCount(record);
+            default:
+                throw new IndexOutOfBoundsException("No column " + column);
+        }
+    }
+
+    /**
+     * Select the records of the classes whose names start with a prefix (e.g., a package name) and sort them
+     * by a column, descending. The filter is applied to the classes, not to the records, so it does not depend
+     * on the number of methods; the sort is stable, so the rows with equal values stay in the dictionary order.
+     * The method does not access the UI, so it may be called on any thread.
+     *
+     * @param dictionary a statistics dictionary
+     * @param classNamePrefix a class name prefix (an empty prefix selects all the records)
+     * @param sortColumn the column to sort the rows by
+     * @return the record indexes of the rows
+     */
+    static @NotNull int[] selectRows(
+            @NotNull StatisticsDictionary dictionary,
+            @NotNull String classNamePrefix,
+            @NotNull SortColumn sortColumn) {
+        int[] records = new int[dictionary.getRecordCount()];
+        int rowCount = 0;
+        for (int classIndex = 0; classIndex < dictionary.getClassCount(); classIndex++) {
+            if (!dictionary.getClassName(classIndex).startsWith(classNamePrefix)) {
+                continue;
+            }
+            int end = dictionary.getClassRecordStart(classIndex + 1);
+            for (int record = dictionary.getClassRecordStart(classIndex); record < end; record++) {
+                records[rowCount++] = record;
+            }
+        }
+
+        double[] keys = new double[rowCount];
+        int[] order = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            keys[row] = getSortKey(dictionary, records[row], sortColumn);
+            order[row] = row;
+        }
+        sortDescending(keys, order, new int[rowCount], 0, rowCount);
+
+        int[] rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = records[order[row]];
+        }
+        return rows;
+    }
+
+    private static double getSortKey(@NotNull StatisticsDictionary dictionary, int record, @NotNull SortColumn column) {
+        switch (column) {
+            case SELF:
+                return dictionary.getRelativeTime(record);
+            case INCLUSIVE:
+                return dictionary.getInclusiveRelativeTime(record);
+            default:
+                return dictionary.getSampleCount(record);
+        }
+    }
+
+    // A merge sort of the rows by their keys, descending (stable, without boxing)
+    private static void sortDescending(
+            @NotNull double[] keys, @NotNull int[] order, @NotNull int[] buffer, int start, int end) {
+        if (end - start < 2) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        sortDescending(keys, order, buffer, start, middle);
+        sortDescending(keys, order, buffer, middle, end);
+        if (keys[order[middle - 1]] >= keys[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, start, buffer, start, end - start);
+        int left = start;
+        int right = middle;
+        for (int i = start; i < end; i++) {
+            if (right >= end || (left < middle && keys[buffer[left]] >= keys[buffer[right]])) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static final String[] COLUMN_NAMES = {"Method", "Self", "Inclusive", "Samples"};
+}
@@ -0,0 +1,157 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.DoubleClickListener;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.SearchTextField;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * The content of the hotspots tool window: all the records of the current statistics in a table, sorted by
+ * the self time, the inclusive time or the sample count (a click on a column header changes the order), with
+ * a class name filter (e.g., a package name).
+ *
+ * The table is virtual: the model holds record indexes only (see HotspotTableModel), the rows have one height,
+ * and the rows are selected and sorted on a pooled thread, so neither a new snapshot nor typing in the filter
+ * blocks the event dispatch thread. The filter updates are debounced. A double click or Enter on a row opens
+ * the method in the editor (see HotspotNavigator).
+ */
+final class HotspotsPanel extends SimpleToolWindowPanel implements Disposable {
+    private final Project project;
+    private final HotspotTableModel model = new HotspotTableModel();
+    private final JBTable table = new JBTable(model);
+    private final SearchTextField filterField = new SearchTextField(false);
+    private final HotspotNavigator navigator;
+    private final Alarm updateAlarm;
+
+    // Accessed on the event dispatch thread only
+    private @NotNull HotspotTableModel.SortColumn sortColumn = HotspotTableModel.SortColumn.SELF;
+    private int updateGeneration = 0;
+
+    HotspotsPanel(@NotNull Project project) {
+        super(true, true);
+        this.project = project;
+        this.navigator = new HotspotNavigator(project);
+        Disposer.register(this, navigator);
+        this.updateAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getEmptyText().setText("No profiler snapshot records");
+        table.getColumnModel().getColumn(HotspotTableModel.METHOD_COLUMN).setPreferredWidth(METHOD_COLUMN_WIDTH);
+        table.getColumnModel().getColumn(HotspotTableModel.SELF_COLUMN).setCellRenderer(new PercentRenderer());
+        table.getColumnModel().getColumn(HotspotTableModel.INCLUSIVE_COLUMN).setCellRenderer(new PercentRenderer());
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent event) {
+                int column = table.convertColumnIndexToModel(table.columnAtPoint(event.getPoint()));
+                HotspotTableModel.SortColumn clickedColumn = HotspotTableModel.SortColumn.ofColumn(column);
+                if (clickedColumn != null && clickedColumn != sortColumn) {
+                    sortColumn = clickedColumn;
+                    updateHeaders();
+                    scheduleUpdate(0);
+                }
+            }
+        });
+        new DoubleClickListener() {
+            @Override
+            protected boolean onDoubleClick(@NotNull MouseEvent event) {
+                navigateToSelectedRecord();
+                return true;
+            }
+        }.installOn(table);
+        table.registerKeyboardAction(
+                event -> navigateToSelectedRecord(),
+                KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0),
+                JComponent.WHEN_FOCUSED);
+        updateHeaders();
+
+        filterField.getTextEditor().getEmptyText().setText("Filter by class name prefix (e.g., a package name)");
+        filterField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent event) {
+                scheduleUpdate(FILTER_DELAY_MS);
+            }
+        });
+
+        setToolbar(filterField);
+        setContent(ScrollPaneFactory.createScrollPane(table));
+        project.getMessageBus().connect(this).subscribe(StatisticsListener.TOPIC, statistics -> scheduleUpdate(0));
+        scheduleUpdate(0);
+    }
+
+    @Override
+    public void dispose() {
+        // The navigator and the alarm are child disposables of the panel, they are disposed by the platform
+    }
+
+    // Select and sort the rows of the current statistics on a pooled thread; a newer update discards an older one
+    private void scheduleUpdate(int delayMs) {
+        if (updateAlarm.isDisposed()) {
+            return;
+        }
+        int generation = ++updateGeneration;
+        StatisticsDictionary dictionary = project.getService(StatisticsService.class).getStatistics();
+        String classNamePrefix = filterField.getText().trim();
+        HotspotTableModel.SortColumn column = sortColumn;
+        updateAlarm.cancelAllRequests();
+        updateAlarm.addRequest(() -> {
+            int[] rows = HotspotTableModel.selectRows(dictionary, classNamePrefix, column);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (generation == updateGeneration) {
+                    model.setRows(dictionary, rows);
+                }
+            }, project.getDisposed());
+        }, delayMs);
+    }
+
+    private void updateHeaders() {
+        for (int column = 0; column < model.getColumnCount(); column++) {
+            TableColumn tableColumn = table.getColumnModel().getColumn(table.convertColumnIndexToView(column));
+            String name = model.getColumnName(column);
+            tableColumn.setHeaderValue(column == sortColumn.getColumn() ? name + " \u25bc" : name);
+        }
+        table.getTableHeader().repaint();
+    }
+
+    private void navigateToSelectedRecord() {
+        int row = table.getSelectedRow();
+        if (row < 0) {
+            return;
+        }
+        StatisticsDictionary dictionary = model.getDictionary();
+        int record = model.getRecord(table.convertRowIndexToModel(row));
+        if (dictionary.isJavaMethod(record)) {
+            navigator.navigate(dictionary.getCodeReference(record));
+        }
+    }
+
+    // Relative values are shown in percent
+    private static final class PercentRenderer extends DefaultTableCellRenderer {
+        PercentRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            setText(value instanceof Double ? String.format("%.2f%%", (Double) value * 100.0) : "");
+        }
+    }
+
+    private static final int FILTER_DELAY_MS = 200;
+    private static final int METHOD_COLUMN_WIDTH = 600;
+}
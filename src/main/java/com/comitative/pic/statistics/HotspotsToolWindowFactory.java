@@ -0,0 +1,24 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates the profiling hotspots tool window (see HotspotsPanel). The table does not need the indexes, so the tool
+ * window is available during indexing; the navigation to the methods waits for it to finish.
+ */
+public class HotspotsToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        HotspotsPanel panel = new HotspotsPanel(project);
+        Content content = ContentFactory.SERVICE.getInstance().createContent(panel, "", false);
+        content.setDisposer(panel);
+        toolWindow.getContentManager().addContent(content);
+    }
+}
@@ -0,0 +1,113 @@
+package com.comitative.pic.statistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent log-linear histogram of latencies (or any other non-negative values).
+ *
+ * Every power of two range is split into SUB_BUCKET_COUNT linear buckets, so a percentile is reported with
+ * a relative error below 1 / SUB_BUCKET_COUNT (12.5%) whatever the magnitude of the values. Recording a value
+ * is a couple of shifts and an atomic increment; there are no locks and no allocations, so the histogram may be
+ * updated from the highlighting threads. Reads are not atomic snapshots: a percentile computed while values are
+ * being recorded may miss the latest ones.
+ */
+public final class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param value a value to record (negative values are recorded as zero)
+     */
+    public void record(long value) {
+        long nonNegative = Math.max(value, 0);
+        buckets.incrementAndGet(getBucket(nonNegative));
+        sum.add(nonNegative);
+        max.accumulate(nonNegative);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            count += buckets.get(bucket);
+        }
+        return count;
+    }
+
+    /**
+     * @return the mean of the recorded values or 0 if there are none
+     */
+    public double getMean() {
+        long count = getCount();
+        return count > 0 ? (double) sum.sum() / count : 0.0;
+    }
+
+    /**
+     * @return the maximum recorded value or 0 if there are none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estimate a percentile of the recorded values.
+     *
+     * @param percentile a percentile in [0.0 .. 100.0]
+     * @return the upper bound of the bucket that holds the percentile (but not more than the maximum recorded
+     * value), or 0 if no values are recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(percentile / 100.0 * count), 1);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(getUpperBound(bucket), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forget all the recorded values.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            buckets.set(bucket, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    // Values below SUB_BUCKET_COUNT have their own buckets; larger values are bucketed by their top bits
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+}
@@ -0,0 +1,50 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Loads a baseline snapshot: the gutter icons then show the changes of the current statistics relative to it.
+ */
+public class LoadBaselineAction extends AnAction {
+
+    private static final Logger LOG = Logger.getInstance(LoadBaselineAction.class);
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project currentProject = e.getProject();
+        if (currentProject != null) {
+            StatisticsService service = currentProject.getService(StatisticsService.class);
+            if (service != null) {
+                List<SnapshotParser> parserList = service.getParserList();
+                if (!parserList.isEmpty()) {
+                    ReportLoaderDialog dialog = new ReportLoaderDialog(
+                            currentProject,
+                            parserList.toArray(new SnapshotParser[0]),
+                            "Select a baseline profile report",
+                            false);
+                    if (dialog.showAndGet()) {
+                        List<File> selectedFiles = dialog.getFiles();
+                        LOG.info("Loading " + selectedFiles.size() + " baseline profiler snapshot(s)");
+                        service.loadBaselineInBackground(selectedFiles, dialog.getParser());
+                    } else {
+                        LOG.info("User decided not to load a baseline snapshot");
+                    }
+                } else {
+                    LOG.error("No profiler snapshot parsers registered");
+                }
+            } else {
+                LOG.error("Statistics service not found");
+            }
+        } else {
+            LOG.warn("Unable to load profiler snapshots when no project is active");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.comitative.pic.statistics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable metrics of one snapshot load: what was loaded, how long it took and how much memory the result retains.
+ *
+ * @see PluginMetrics
+ */
+public final class LoadMetrics {
+    private final @NotNull SnapshotKind kind;
+    private final @NotNull String snapshotName;
+    private final @NotNull String parserName;
+    private final boolean restoredFromCache;
+    private final long byteCount;
+    private final long loadTimeNs;
+    private final int recordCount;
+    private final int callTreeNodeCount;
+    private final long retainedSize;
+
+    /**
+     * @param kind the role of the snapshot
+     * @param snapshotName a human-readable name of the loaded files
+     * @param parserName the name of the parser
+     * @param restoredFromCache true if the dictionary was restored from the snapshot cache instead of parsing
+     * @param byteCount the total size of the snapshot files in bytes
+     * @param loadTimeNs the time spent parsing the files (or reading the cache) in nanoseconds
+     * @param dictionary the loaded dictionary
+     */
+    LoadMetrics(
+            @NotNull SnapshotKind kind,
+            @NotNull String snapshotName,
+            @NotNull String parserName,
+            boolean restoredFromCache,
+            long byteCount,
+            long loadTimeNs,
+            @NotNull StatisticsDictionary dictionary) {
+        this.kind = kind;
+        this.snapshotName = snapshotName;
+        this.parserName = parserName;
+        this.restoredFromCache = restoredFromCache;
+        this.byteCount = byteCount;
+        this.loadTimeNs = loadTimeNs;
+        this.recordCount = dictionary.getRecordCount();
+        this.callTreeNodeCount = dictionary.getCallTree().getNodeCount();
+        this.retainedSize = dictionary.estimateRetainedSize();
+    }
+
+    @NotNull SnapshotKind getKind() {
+        return kind;
+    }
+
+    public @NotNull String getSnapshotName() {
+        return snapshotName;
+    }
+
+    public @NotNull String getParserName() {
+        return parserName;
+    }
+
+    public boolean isRestoredFromCache() {
+        return restoredFromCache;
+    }
+
+    /**
+     * @return the total size of the snapshot files in bytes
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the time spent parsing the files (or reading the cache) in nanoseconds
+     */
+    public long getLoadTimeNs() {
+        return loadTimeNs;
+    }
+
+    /**
+     * @return the parsing throughput in bytes per second (0 if the time is unknown)
+     */
+    public double getBytesPerSecond() {
+        return loadTimeNs > 0 ? byteCount * 1e9 / loadTimeNs : 0.0;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public int getCallTreeNodeCount() {
+        return callTreeNodeCount;
+    }
+
+    /**
+     * @return the estimated heap size of the loaded dictionary in bytes
+     * @see StatisticsDictionary#estimateRetainedSize()
+     */
+    public long getRetainedSize() {
+        return retainedSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s %s (%s%s): %d bytes in %.1f ms (%.1f MB/s), %d records, %d call tree nodes, ~%d KB retained",
+                kind.getDisplayName(),
+                snapshotName,
+                parserName,
+                restoredFromCache ? ", restored from the cache" : "",
+                byteCount,
+                loadTimeNs / 1e6,
+                getBytesPerSecond() / (1024 * 1024),
+                recordCount,
+                callTreeNodeCount,
+                retainedSize / 1024);
+    }
+}
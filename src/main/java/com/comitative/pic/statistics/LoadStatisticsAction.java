@@ -5,7 +5,6 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.ui.Messages;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
@@ -27,17 +26,14 @@ public class LoadStatisticsAction extends AnAction {
                             currentProject,
                             parserList.toArray(new SnapshotParser[0]));
                     if (dialog.showAndGet()) {
-                        File selectedFile = dialog.getFile();
+                        List<File> selectedFiles = dialog.getFiles();
                         SnapshotParser parser = dialog.getParser();
-                        if (service.loadFile(selectedFile, parser)) {
-                            LOG.info("Loaded the profiler snapshot " + selectedFile.getName());
+                        if (selectedFiles.size() == 1) {
+                            LOG.info("Loading the profiler snapshot " + selectedFiles.get(0).getName());
+                            service.loadFileInBackground(selectedFiles.get(0), parser, dialog.isWatchEnabled());
                         } else {
-                            LOG.warn("Unable to load the profiler snapshot " + selectedFile.getName());
-                            Messages.showMessageDialog(
-                                    currentProject,
-                                    "Unable to load the profiler snapshot",
-                                    "Load failed",
-                                    Messages.getErrorIcon());
+                            LOG.info("Loading and merging " + selectedFiles.size() + " profiler snapshots");
+                            service.loadFilesInBackground(selectedFiles, parser);
                         }
                     } else {
                         LOG.info("User decided not to load a snapshot");
@@ -0,0 +1,113 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.event.MouseEvent;
+
+/**
+ * A status bar widget that shows the size of the loaded profile and the latency of the line marker computation.
+ *
+ * The marker metrics change with every highlighting pass, so the widget is refreshed on a timer rather than
+ * on events; a click exports the full diagnostics report.
+ *
+ * @see PluginMetrics
+ */
+class MetricsWidget implements StatusBarWidget, StatusBarWidget.TextPresentation {
+    static final String ID = "com.comitative.pic.MetricsWidget";
+
+    private final Project project;
+    private final Timer timer;
+    private @Nullable StatusBar statusBar = null;
+
+    MetricsWidget(@NotNull Project project) {
+        this.project = project;
+        this.timer = new Timer(REFRESH_INTERVAL_MS, event -> {
+            if (statusBar != null) {
+                statusBar.updateWidget(ID);
+            }
+        });
+    }
+
+    @Override
+    public @NotNull String ID() {
+        return ID;
+    }
+
+    @Override
+    public @NotNull WidgetPresentation getPresentation() {
+        return this;
+    }
+
+    @Override
+    public void install(@NotNull StatusBar statusBar) {
+        this.statusBar = statusBar;
+        timer.start();
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+        statusBar = null;
+    }
+
+    @Override
+    public @NotNull String getText() {
+        if (project.isDisposed()) {
+            return "";
+        }
+        StatisticsService service = project.getService(StatisticsService.class);
+        int recordCount = service.getStatistics().getRecordCount();
+        if (recordCount == 0) {
+            return "Profile: none";
+        }
+        LatencyHistogram latency = service.getMetrics().getMarkerLatency();
+        if (latency.getCount() == 0) {
+            return String.format("Profile: %d records", recordCount);
+        }
+        return String.format("Profile: %d records, markers p99 %.0f \u00b5s",
+                recordCount, latency.getPercentile(99.0) / 1e3);
+    }
+
+    @Override
+    public float getAlignment() {
+        return 0.0f;
+    }
+
+    @Override
+    public @Nullable String getTooltipText() {
+        if (project.isDisposed()) {
+            return null;
+        }
+        PluginMetrics metrics = project.getService(StatisticsService.class).getMetrics();
+        LoadMetrics load = metrics.getLastLoad();
+        LatencyHistogram latency = metrics.getMarkerLatency();
+        StringBuilder sb = new StringBuilder("<html>");
+        if (load != null) {
+            sb.append(String.format("Loaded %s in %.0f ms (%.1f MB/s), ~%d KB retained<br>",
+                    load.getSnapshotName(),
+                    load.getLoadTimeNs() / 1e6,
+                    load.getBytesPerSecond() / (1024 * 1024),
+                    load.getRetainedSize() / 1024));
+        }
+        sb.append(String.format("Markers: %d lookups, %.1f%% hits, p50 %.1f \u00b5s, p99 %.1f \u00b5s<br>",
+                metrics.getMarkerLookups(),
+                metrics.getMarkerHitRate() * 100.0,
+                latency.getPercentile(50.0) / 1e3,
+                latency.getPercentile(99.0) / 1e3));
+        sb.append("Click to export the diagnostics</html>");
+        return sb.toString();
+    }
+
+    @Override
+    public @Nullable Consumer<MouseEvent> getClickConsumer() {
+        return event -> ExportDiagnosticsAction.exportDiagnostics(project);
+    }
+
+    private static final int REFRESH_INTERVAL_MS = 2000;
+}
@@ -0,0 +1,44 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.openapi.wm.StatusBarWidgetFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates the profiling icons metrics widget (see MetricsWidget). Users may hide it in the status bar settings.
+ */
+public class MetricsWidgetFactory implements StatusBarWidgetFactory {
+
+    @Override
+    public @NotNull String getId() {
+        return MetricsWidget.ID;
+    }
+
+    @Override
+    public @NotNull String getDisplayName() {
+        return "Profiling Icons Metrics";
+    }
+
+    @Override
+    public boolean isAvailable(@NotNull Project project) {
+        return true;
+    }
+
+    @Override
+    public @NotNull StatusBarWidget createWidget(@NotNull Project project) {
+        return new MetricsWidget(project);
+    }
+
+    @Override
+    public void disposeWidget(@NotNull StatusBarWidget widget) {
+        Disposer.dispose(widget);
+    }
+
+    @Override
+    public boolean canBeEnabledOn(@NotNull StatusBar statusBar) {
+        return true;
+    }
+}
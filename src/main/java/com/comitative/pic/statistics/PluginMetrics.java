@@ -0,0 +1,143 @@
+package com.comitative.pic.statistics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Self-instrumentation of the plugin: the cost of the snapshot loads and of the line marker computation.
+ *
+ * The marker counters are updated from the highlighting threads for every profiled method declaration, so they
+ * are lock-free (LongAdder counters and a LatencyHistogram). The load metrics are replaced once per load.
+ * An instance belongs to a StatisticsService, so the metrics are collected per project.
+ *
+ * @see StatisticsService#getMetrics()
+ */
+public final class PluginMetrics {
+    private final LongAdder markerLookups = new LongAdder();
+    private final LongAdder markerHits = new LongAdder();
+    private final LatencyHistogram markerLatency = new LatencyHistogram();
+
+    private final Map<SnapshotKind, LoadMetrics> lastLoads = new EnumMap<>(SnapshotKind.class);
+    private final LongAdder loadCount = new LongAdder();
+
+    /**
+     * Record the lookup of a method declaration in the statistics.
+     *
+     * @param hit true if the method is profiled and a marker was created
+     * @param elapsedNs the time spent on the lookup and the marker creation in nanoseconds
+     */
+    public void recordMarkerLookup(boolean hit, long elapsedNs) {
+        markerLookups.increment();
+        if (hit) {
+            markerHits.increment();
+        }
+        markerLatency.record(elapsedNs);
+    }
+
+    /**
+     * @return the number of method declarations looked up since the last reset
+     */
+    public long getMarkerLookups() {
+        return markerLookups.sum();
+    }
+
+    /**
+     * @return the number of method declarations that got a marker since the last reset
+     */
+    public long getMarkerHits() {
+        return markerHits.sum();
+    }
+
+    /**
+     * @return the fraction of the lookups that produced a marker ([0.0 .. 1.0])
+     */
+    public double getMarkerHitRate() {
+        long lookups = getMarkerLookups();
+        return lookups > 0 ? (double) getMarkerHits() / lookups : 0.0;
+    }
+
+    /**
+     * @return the latency distribution of the marker computation (ns per method declaration)
+     */
+    public @NotNull LatencyHistogram getMarkerLatency() {
+        return markerLatency;
+    }
+
+    /**
+     * Forget the marker counters (e.g., before measuring a specific scenario). The load metrics are kept.
+     */
+    public void resetMarkerMetrics() {
+        markerLookups.reset();
+        markerHits.reset();
+        markerLatency.reset();
+    }
+
+    void recordLoad(@NotNull LoadMetrics metrics) {
+        synchronized (lastLoads) {
+            lastLoads.put(metrics.getKind(), metrics);
+        }
+        loadCount.increment();
+    }
+
+    /**
+     * @return the metrics of the last load of the current snapshot or null if nothing has been loaded
+     */
+    public @Nullable LoadMetrics getLastLoad() {
+        return getLastLoad(SnapshotKind.CURRENT);
+    }
+
+    @Nullable LoadMetrics getLastLoad(@NotNull SnapshotKind kind) {
+        synchronized (lastLoads) {
+            return lastLoads.get(kind);
+        }
+    }
+
+    /**
+     * @return the number of loads (including the cache restores) since the project was opened
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * Produce a human-readable diagnostics report to attach to a performance issue.
+     *
+     * @return a multi-line report of all the metrics
+     */
+    public @NotNull String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Profiling icons diagnostics, ")
+                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z").format(new Date()))
+                .append('\n');
+
+        sb.append("\nSnapshot loads: ").append(getLoadCount()).append('\n');
+        for (SnapshotKind kind : SnapshotKind.values()) {
+            LoadMetrics load = getLastLoad(kind);
+            sb.append("  Last ").append(kind.getDisplayName()).append(": ")
+                    .append(load != null ? load.toString() : "none").append('\n');
+        }
+
+        long lookups = getMarkerLookups();
+        sb.append("\nLine markers:\n");
+        sb.append(String.format("  Lookups: %d, hits: %d (%.1f%%)%n",
+                lookups, getMarkerHits(), getMarkerHitRate() * 100.0));
+        sb.append(String.format("  Latency: mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us%n",
+                markerLatency.getMean() / 1e3,
+                markerLatency.getPercentile(50.0) / 1e3,
+                markerLatency.getPercentile(90.0) / 1e3,
+                markerLatency.getPercentile(99.0) / 1e3,
+                markerLatency.getMax() / 1e3));
+
+        Runtime runtime = Runtime.getRuntime();
+        sb.append(String.format("%nHeap: %d MB used of %d MB max%n",
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024),
+                runtime.maxMemory() / (1024 * 1024)));
+        return sb.toString();
+    }
+}
@@ -1,38 +1,71 @@
 package com.comitative.pic.statistics;
 
 import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
 import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.*;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.components.JBCheckBox;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class ReportLoaderDialog extends DialogWrapper {
     private final Project project;
     private final SnapshotParser[] parsers;
+    private final boolean watchAllowed;
 
     private LabeledComponent<TextFieldWithBrowseButton> snapshotSelector;
     private LabeledComponent<ComboBox<SnapshotParser>> parserSelector;
+    private JBCheckBox watchCheckBox;
 
     public ReportLoaderDialog(
             @NotNull Project project,
             @NotNull SnapshotParser[] parsers) {
+        this(project, parsers, "Select a profile report", true);
+    }
+
+    /**
+     * @param project the current project
+     * @param parsers the available snapshot parsers
+     * @param title the dialog title
+     * @param watchAllowed whether the user may choose to watch the snapshot file
+     */
+    public ReportLoaderDialog(
+            @NotNull Project project,
+            @NotNull SnapshotParser[] parsers,
+            @NotNull String title,
+            boolean watchAllowed) {
         super(project);
         this.project = project;
         this.parsers = parsers;
+        this.watchAllowed = watchAllowed;
         init();
-        setTitle("Select a profile report");
+        setTitle(title);
     }
 
+    /**
+     * @return the selected snapshot files (several snapshots are merged into one profile)
+     */
     public @NotNull
-    File getFile() {
-        return new File(snapshotSelector.getComponent().getText());
+    List<File> getFiles() {
+        List<File> files = new ArrayList<>();
+        for (String path : snapshotSelector.getComponent().getText().split(File.pathSeparator)) {
+            if (!path.trim().isEmpty()) {
+                files.add(new File(path.trim()));
+            }
+        }
+        return files;
     }
 
     public @NotNull
@@ -40,35 +73,58 @@ public class ReportLoaderDialog extends DialogWrapper {
         return parserSelector.getComponent().getItem();
     }
 
+    /**
+     * @return true if the snapshot should be reloaded every time the file changes
+     */
+    public boolean isWatchEnabled() {
+        return watchAllowed && watchCheckBox.isSelected();
+    }
+
     @Override
     protected @Nullable JComponent createCenterPanel() {
         TextFieldWithBrowseButton snapshotTextField = new TextFieldWithBrowseButton();
-        snapshotTextField.addBrowseFolderListener(
-                "Profiler Snapshot",
-                "Select a profiler snapshot file",
-                project,
-                FileChooserDescriptorFactory.createSingleFileDescriptor());
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createMultipleFilesNoJarsDescriptor()
+                .withTitle("Profiler Snapshot")
+                .withDescription("Select one or several profiler snapshot files");
+        snapshotTextField.addActionListener(event -> FileChooser.chooseFiles(descriptor, project, null, files ->
+                snapshotTextField.setText(files.stream()
+                        .map(file -> FileUtil.toSystemDependentName(file.getPath()))
+                        .collect(Collectors.joining(File.pathSeparator)))));
         snapshotSelector = new LabeledComponent<>();
-        snapshotSelector.setText("Snapshot file");
+        snapshotSelector.setText("Snapshot files");
         snapshotSelector.setComponent(snapshotTextField);
 
         parserSelector = new LabeledComponent<>();
         parserSelector.setText("Snapshot format");
         parserSelector.setComponent(new ComboBox<>(parsers));
 
-        JPanel dialogPanel = new JPanel(new GridLayout(2, 1));
+        watchCheckBox = new JBCheckBox("Reload the snapshot when the file changes");
+
+        JPanel dialogPanel = new JPanel(new GridLayout(watchAllowed ? 3 : 2, 1));
         dialogPanel.add(snapshotSelector);
         dialogPanel.add(parserSelector);
+        if (watchAllowed) {
+            dialogPanel.add(watchCheckBox);
+        }
         return dialogPanel;
     }
 
     @Override
     protected @Nullable ValidationInfo doValidate() {
         TextFieldWithBrowseButton snapshotTextField = snapshotSelector.getComponent();
-        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(snapshotTextField.getText());
-        if (file == null || !file.exists()) {
+        List<File> files = getFiles();
+        if (files.isEmpty()) {
             return new ValidationInfo("File is missing or not selected", snapshotTextField);
         }
+        for (File file : files) {
+            VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByIoFile(file);
+            if (virtualFile == null || !virtualFile.exists()) {
+                return new ValidationInfo("File " + file.getName() + " is missing", snapshotTextField);
+            }
+        }
+        if (files.size() > 1 && isWatchEnabled()) {
+            return new ValidationInfo("Only a single snapshot file can be watched", watchCheckBox);
+        }
 
         ComboBox<SnapshotParser> parserComboBox = parserSelector.getComponent();
         if (parserComboBox.getItem() == null) {
@@ -0,0 +1,32 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Switches the gutter icons between the self time and the inclusive (total) time of the methods.
+ */
+public class ShowInclusiveTimeAction extends ToggleAction {
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        super.update(e);
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+        Project currentProject = e.getProject();
+        return currentProject != null && currentProject.getService(StatisticsService.class).isInclusiveTimeShown();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean state) {
+        Project currentProject = e.getProject();
+        if (currentProject != null) {
+            currentProject.getService(StatisticsService.class).setInclusiveTimeShown(state);
+        }
+    }
+}
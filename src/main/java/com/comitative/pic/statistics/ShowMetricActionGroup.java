@@ -0,0 +1,61 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.ProfileMetric;
+import com.intellij.openapi.actionSystem.ActionGroup;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Switches the metric that the gutter icons show (samples, time, allocated memory or lock wait time).
+ * The loaded snapshots keep all the metrics, so the switch does not reload anything.
+ */
+public class ShowMetricActionGroup extends ActionGroup {
+    private final AnAction[] children;
+
+    public ShowMetricActionGroup() {
+        ProfileMetric[] metrics = ProfileMetric.values();
+        children = new AnAction[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+            children[i] = new ShowMetricAction(metrics[i]);
+        }
+    }
+
+    @Override
+    public @NotNull AnAction[] getChildren(@Nullable AnActionEvent e) {
+        return children;
+    }
+
+    private static final class ShowMetricAction extends ToggleAction {
+        private final @NotNull ProfileMetric metric;
+
+        ShowMetricAction(@NotNull ProfileMetric metric) {
+            super(metric.getDisplayName());
+            this.metric = metric;
+        }
+
+        @Override
+        public void update(@NotNull AnActionEvent e) {
+            super.update(e);
+            e.getPresentation().setEnabled(e.getProject() != null);
+        }
+
+        @Override
+        public boolean isSelected(@NotNull AnActionEvent e) {
+            Project currentProject = e.getProject();
+            return currentProject != null
+                    && currentProject.getService(StatisticsService.class).getActiveMetric() == metric;
+        }
+
+        @Override
+        public void setSelected(@NotNull AnActionEvent e, boolean state) {
+            Project currentProject = e.getProject();
+            if (currentProject != null && state) {
+                currentProject.getService(StatisticsService.class).setActiveMetric(metric);
+            }
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.FrameType;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.SymbolTable;
+import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent binary cache of a parsed snapshot.
+ *
+ * The cache file starts with a header that describes the source snapshot (path, parser, size, modification time
+ * and a hash), so the header alone tells whether the cache is still valid for a file. The header is followed by
+ * the string table of the dictionary, the record columns (one per profile metric, plus the derived inclusive time),
+ * the call tree, the records of the call tree frames, the line entries and the frame type entries. Integers are stored
+ * as unsigned varints; record, line and frame type keys are sorted, so they are stored as deltas. Relative times are
+ * stored as raw doubles. Frame types are stored by their ordinals, so a new frame type needs a new format version.
+ *
+ * The cache is read into a heap buffer with a single channel read, and the dictionary is rebuilt from the decoded
+ * columns directly, without sorting or parsing any text. The file is not memory-mapped: a mapping would keep
+ * the file locked on Windows until it is garbage collected, so the cache could not be replaced or removed.
+ * The cache is written to a temporary file first and then moved over the old cache, so a reader never sees
+ * a partially written file.
+ */
+final class SnapshotCache {
+    private static final int MAGIC = 0x50494353; // "PICS"
+    private static final int VERSION = 7;
+
+    private final Path cacheFile;
+
+    SnapshotCache(@NotNull Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @param project a project
+     * @param kind the role of the cached snapshot
+     * @return the snapshot cache of the project (in the IDE system directory)
+     */
+    static @NotNull SnapshotCache forProject(@NotNull Project project, @NotNull SnapshotKind kind) {
+        return new SnapshotCache(Paths.get(
+                PathManager.getSystemPath(), "profiling-icons", project.getLocationHash(), kind.getCacheFileName()));
+    }
+
+    /**
+     * Read the description of the cached snapshot.
+     * @return the source of the cached snapshot or null if there is no cache (or it has an older format)
+     * @throws IOException if the cache can't be read or it is malformed
+     */
+    @Nullable Source readSource() throws IOException {
+        ByteBuffer buffer = readFile();
+        return buffer == null ? null : decode(buffer, SnapshotCache::readSource);
+    }
+
+    /**
+     * Read the cached dictionary.
+     * @return the cached dictionary or null if there is no cache (or it has an older format)
+     * @throws IOException if the cache can't be read or it is malformed
+     */
+    @Nullable StatisticsDictionary read() throws IOException {
+        return read(null);
+    }
+
+    /**
+     * Read the cached dictionary if it was loaded from the given source. The file is read only once, so it is
+     * cheaper than checking readSource() first.
+     * @param source the expected source of the cached snapshot or null to accept any source
+     * @return the cached dictionary or null if there is no cache, it has an older format or another source
+     * @throws IOException if the cache can't be read or it is malformed
+     */
+    @Nullable StatisticsDictionary read(@Nullable Source source) throws IOException {
+        ByteBuffer buffer = readFile();
+        return buffer == null ? null : decode(buffer, input -> {
+            Source cachedSource = readSource(input);
+            return source == null || source.equals(cachedSource) ? readDictionary(input) : null;
+        });
+    }
+
+    /**
+     * Replace the cache with a new dictionary.
+     * @param dictionary a dictionary to store
+     * @param source the source of the dictionary
+     * @throws IOException if the cache can't be written
+     */
+    void write(@NotNull StatisticsDictionary dictionary, @NotNull Source source) throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Path temporaryFile = Files.createTempFile(cacheFile.getParent(), "snapshot", ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryFile), BUFFER_SIZE))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeSource(output, source);
+                writeDictionary(output, dictionary);
+            }
+            Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Remove the cache file (if any).
+     * @throws IOException if the file can't be removed
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(cacheFile);
+    }
+
+    private @Nullable ByteBuffer readFile() throws IOException {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot cache is too large: " + cacheFile);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            readFully(channel, buffer, 0);
+        }
+        buffer.flip();
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot cache: " + cacheFile);
+        }
+        return buffer.getInt() == VERSION ? buffer : null;
+    }
+
+    // Fill the buffer with the bytes of a file from the position (the file is expected to be long enough)
+    private static void readFully(
+            @NotNull FileChannel channel,
+            @NotNull ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+            position += count;
+        }
+    }
+
+    private @Nullable <T> T decode(@NotNull ByteBuffer buffer, @NotNull Decoder<T> decoder) throws IOException {
+        try {
+            return decoder.decode(new Input(buffer));
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed snapshot cache: " + cacheFile, e);
+        }
+    }
+
+    private static void writeSource(@NotNull DataOutputStream output, @NotNull Source source) throws IOException {
+        writeString(output, source.path);
+        writeString(output, source.parserName);
+        output.writeLong(source.size);
+        output.writeLong(source.lastModified);
+        output.writeLong(source.hash);
+    }
+
+    private static @NotNull Source readSource(@NotNull Input input) {
+        return new Source(input.readString(), input.readString(), input.buffer.getLong(), input.buffer.getLong(),
+                input.buffer.getLong());
+    }
+
+    private static void writeDictionary(
+            @NotNull DataOutputStream output,
+            @NotNull StatisticsDictionary dictionary) throws IOException {
+        SymbolTable symbols = dictionary.getSymbols();
+        writeVarLong(output, symbols.size());
+        for (int id = 0; id < symbols.size(); id++) {
+            writeString(output, symbols.getSymbol(id));
+        }
+
+        int recordCount = dictionary.getRecordCount();
+        writeVarLong(output, recordCount);
+        long previousKey = 0;
+        for (int record = 0; record < recordCount; record++) {
+            long key = dictionary.getRecordKey(record);
+            writeVarLong(output, key - previousKey);
+            previousKey = key;
+        }
+        for (int record = 0; record < recordCount; record++) {
+            output.writeLong(Double.doubleToRawLongBits(dictionary.getRelativeTime(record)));
+        }
+        for (ProfileMetric metric : ProfileMetric.values()) {
+            for (int record = 0; record < recordCount; record++) {
+                writeVarLong(output, dictionary.getValue(metric, record));
+            }
+        }
+        for (int record = 0; record < recordCount; record++) {
+            writeVarLong(output, dictionary.getInclusiveSampleCount(record));
+        }
+        for (int record = 0; record < recordCount; record++) {
+            writeVarLong(output, dictionary.getInclusiveTime(record));
+        }
+
+        CallTree callTree = dictionary.getCallTree();
+        writeVarLong(output, callTree.getFrameCount());
+        for (int frame = 0; frame < callTree.getFrameCount(); frame++) {
+            writeString(output, callTree.getFrameName(frame));
+        }
+        writeVarLong(output, callTree.getNodeCount());
+        for (int node = CallTree.ROOT + 1; node < callTree.getNodeCount(); node++) {
+            // Parents always precede their children, so the distance to the parent is positive
+            writeVarLong(output, node - callTree.getParent(node));
+            writeVarLong(output, callTree.getFrame(node));
+            writeVarLong(output, callTree.getSelfSamples(node));
+            writeVarLong(output, callTree.getSelfTime(node));
+        }
+        // NO_RECORD is -1, so the records are stored with an offset of one
+        for (int frameRecord : dictionary.getFrameRecords()) {
+            writeVarLong(output, frameRecord + 1L);
+        }
+
+        int lineCount = dictionary.getLineEntryCount();
+        writeVarLong(output, lineCount);
+        long previousLineKey = 0;
+        for (int line = 0; line < lineCount; line++) {
+            long lineKey = dictionary.getLineKey(line);
+            writeVarLong(output, lineKey - previousLineKey);
+            previousLineKey = lineKey;
+        }
+        for (int line = 0; line < lineCount; line++) {
+            writeVarLong(output, dictionary.getLineSampleCount(line));
+        }
+        for (int line = 0; line < lineCount; line++) {
+            writeVarLong(output, dictionary.getLineTime(line));
+        }
+
+        int frameTypeCount = dictionary.getFrameTypeEntryCount();
+        writeVarLong(output, frameTypeCount);
+        long previousFrameTypeKey = 0;
+        for (int entry = 0; entry < frameTypeCount; entry++) {
+            long frameTypeKey = dictionary.getFrameTypeKey(entry);
+            writeVarLong(output, frameTypeKey - previousFrameTypeKey);
+            previousFrameTypeKey = frameTypeKey;
+        }
+        for (int entry = 0; entry < frameTypeCount; entry++) {
+            writeVarLong(output, dictionary.getFrameTypeEntrySampleCount(entry));
+        }
+    }
+
+    private static @NotNull StatisticsDictionary readDictionary(@NotNull Input input) {
+        SymbolTable symbols = new SymbolTable();
+        int symbolCount = input.readCount();
+        for (int id = 0; id < symbolCount; id++) {
+            // Identifiers are dense and assigned in the insertion order, so they match the stored keys
+            symbols.intern(input.readString());
+        }
+
+        int recordCount = input.readCount();
+        long[] recordKeys = new long[recordCount];
+        double[] relativeTimes = new double[recordCount];
+        long[][] values = new long[ProfileMetric.values().length][recordCount];
+        long[] inclusiveSampleCounts = new long[recordCount];
+        long[] inclusiveTimes = new long[recordCount];
+        long key = 0;
+        for (int record = 0; record < recordCount; record++) {
+            key += input.readVarLong();
+            recordKeys[record] = key;
+        }
+        for (int record = 0; record < recordCount; record++) {
+            relativeTimes[record] = Double.longBitsToDouble(input.buffer.getLong());
+        }
+        for (long[] column : values) {
+            for (int record = 0; record < recordCount; record++) {
+                column[record] = input.readVarLong();
+            }
+        }
+        for (int record = 0; record < recordCount; record++) {
+            inclusiveSampleCounts[record] = input.readVarLong();
+        }
+        for (int record = 0; record < recordCount; record++) {
+            inclusiveTimes[record] = input.readVarLong();
+        }
+
+        String[] frameNames = new String[input.readCount()];
+        for (int frame = 0; frame < frameNames.length; frame++) {
+            frameNames[frame] = input.readString();
+        }
+        int nodeCount = Math.max(input.readCount(), 1);
+        int[] parents = new int[nodeCount];
+        int[] frames = new int[nodeCount];
+        long[] selfSamples = new long[nodeCount];
+        long[] selfTime = new long[nodeCount];
+        parents[CallTree.ROOT] = CallTree.ROOT;
+        frames[CallTree.ROOT] = CallTree.NO_FRAME;
+        for (int node = CallTree.ROOT + 1; node < nodeCount; node++) {
+            parents[node] = node - input.readCount();
+            frames[node] = input.readCount();
+            selfSamples[node] = input.readVarLong();
+            selfTime[node] = input.readVarLong();
+            if (parents[node] < CallTree.ROOT || parents[node] >= node || frames[node] >= frameNames.length) {
+                throw new IllegalArgumentException("Invalid call tree node " + node);
+            }
+        }
+        int[] frameRecords = new int[frameNames.length];
+        for (int frame = 0; frame < frameRecords.length; frame++) {
+            frameRecords[frame] = input.readCount() - 1;
+            if (frameRecords[frame] >= recordCount) {
+                throw new IllegalArgumentException("Invalid frame record " + frameRecords[frame]);
+            }
+        }
+
+        int lineCount = input.readCount();
+        long[] lineKeys = new long[lineCount];
+        long[] lineSampleCounts = new long[lineCount];
+        long[] lineTimes = new long[lineCount];
+        long lineKey = 0;
+        for (int line = 0; line < lineCount; line++) {
+            lineKey += input.readVarLong();
+            lineKeys[line] = lineKey;
+        }
+        for (int line = 0; line < lineCount; line++) {
+            lineSampleCounts[line] = input.readVarLong();
+        }
+        for (int line = 0; line < lineCount; line++) {
+            lineTimes[line] = input.readVarLong();
+        }
+
+        int frameTypeCount = input.readCount();
+        long[] frameTypeKeys = new long[frameTypeCount];
+        long[] frameTypeSampleCounts = new long[frameTypeCount];
+        long frameTypeKey = 0;
+        for (int entry = 0; entry < frameTypeCount; entry++) {
+            frameTypeKey += input.readVarLong();
+            frameTypeKeys[entry] = frameTypeKey;
+            if ((frameTypeKey >>> 32) >= recordCount || (int) frameTypeKey >= FrameType.values().length) {
+                throw new IllegalArgumentException("Invalid frame type entry " + entry);
+            }
+        }
+        for (int entry = 0; entry < frameTypeCount; entry++) {
+            frameTypeSampleCounts[entry] = input.readVarLong();
+        }
+
+        return new StatisticsDictionary(
+                symbols,
+                new CallTree(frameNames, nodeCount, parents, frames, selfSamples, selfTime),
+                recordKeys,
+                relativeTimes,
+                values,
+                inclusiveSampleCounts,
+                inclusiveTimes,
+                frameRecords,
+                lineKeys,
+                lineSampleCounts,
+                lineTimes,
+                frameTypeKeys,
+                frameTypeSampleCounts);
+    }
+
+    private static void writeString(@NotNull DataOutputStream output, @NotNull String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeVarLong(@NotNull DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    // A decoding cursor over the cache file contents
+    private static final class Input {
+        final ByteBuffer buffer;
+        private byte[] stringBuffer = new byte[256];
+
+        Input(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        int readCount() {
+            long value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid count " + value);
+            }
+            return (int) value;
+        }
+
+        @NotNull String readString() {
+            int length = readCount();
+            if (length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            if (length > stringBuffer.length) {
+                stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+            }
+            buffer.get(stringBuffer, 0, length);
+            return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private interface Decoder<T> {
+        @Nullable T decode(@NotNull Input input);
+    }
+
+    /**
+     * A description of a snapshot file (or of a set of merged snapshot files). The hash covers the size and
+     * the first and the last blocks of each file, so it is cheap to compute even for very large snapshots.
+     */
+    static final class Source {
+        private final @NotNull String path;
+        private final @NotNull String parserName;
+        private final long size;
+        private final long lastModified;
+        private final long hash;
+
+        Source(@NotNull String path, @NotNull String parserName, long size, long lastModified, long hash) {
+            this.path = path;
+            this.parserName = parserName;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        /**
+         * Describe snapshot files in their current state.
+         * @param files snapshot files (a single file or several merged snapshots)
+         * @param parser the parser of the snapshots
+         * @return a snapshot description
+         * @throws IOException if a file can't be read
+         */
+        static @NotNull Source of(@NotNull List<File> files, @NotNull SnapshotParser parser) throws IOException {
+            StringBuilder path = new StringBuilder();
+            long totalSize = 0;
+            long lastModified = 0;
+            long hash = 0;
+            for (File file : files) {
+                if (path.length() > 0) {
+                    path.append(File.pathSeparatorChar);
+                }
+                path.append(file.getAbsolutePath());
+                long size = file.length();
+                totalSize += size;
+                lastModified = Math.max(lastModified, file.lastModified());
+                // The blocks are read, not mapped: a mapping would keep a watched snapshot locked on Windows,
+                // so the profiler could not rewrite it
+                CRC32 crc = new CRC32();
+                ByteBuffer block = ByteBuffer.allocate((int) Math.min(HASH_BLOCK_SIZE, size));
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    readFully(channel, block, 0);
+                    block.flip();
+                    crc.update(block);
+                    block.clear();
+                    readFully(channel, block, size - block.capacity());
+                    block.flip();
+                    crc.update(block);
+                }
+                hash = hash * 31 + (crc.getValue() ^ (size * 31));
+            }
+            return new Source(path.toString(), parser.getClass().getName(), totalSize, lastModified, hash);
+        }
+
+        /**
+         * @return the absolute path of the snapshot file (the paths of merged snapshots are separated
+         * with the path separator)
+         */
+        @NotNull String getPath() {
+            return path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Source source = (Source) o;
+            return size == source.size
+                    && lastModified == source.lastModified
+                    && hash == source.hash
+                    && path.equals(source.path)
+                    && parserName.equals(source.parserName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, parserName, size, lastModified, hash);
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + size + " bytes, " + parserName + ")";
+        }
+
+        private static final long HASH_BLOCK_SIZE = 1024 * 1024;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+}
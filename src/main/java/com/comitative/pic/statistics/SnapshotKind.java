@@ -0,0 +1,34 @@
+package com.comitative.pic.statistics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The role of a loaded snapshot. Each role has its own statistics slot and its own snapshot cache.
+ */
+enum SnapshotKind {
+    /**
+     * The current snapshot that is shown in the gutter.
+     */
+    CURRENT("snapshot.bin", "profiler snapshot"),
+
+    /**
+     * The baseline snapshot that the current one is compared with.
+     */
+    BASELINE("baseline.bin", "baseline profiler snapshot");
+
+    private final @NotNull String cacheFileName;
+    private final @NotNull String displayName;
+
+    SnapshotKind(@NotNull String cacheFileName, @NotNull String displayName) {
+        this.cacheFileName = cacheFileName;
+        this.displayName = displayName;
+    }
+
+    @NotNull String getCacheFileName() {
+        return cacheFileName;
+    }
+
+    @NotNull String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,114 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A background task that loads a profiler snapshot.
+ *
+ * The snapshot (or several snapshots merged into one profile) is parsed into a new dictionary in a background
+ * thread. The parser reports the progress and checks the task indicator for cancellation. The dictionary is
+ * published on the event dispatch thread when the task successfully finishes, so a cancelled or failed task leaves
+ * the current statistics untouched.
+ * Failures are reported to the user only for explicit loads; reloads of a watched snapshot just log them, and an empty
+ * reloaded snapshot (a report that is still being written) is a failure too.
+ * A parsed dictionary replaces the snapshot cache only after it is published, so the next project startup never
+ * restores a snapshot that the user has not seen.
+ */
+class SnapshotLoadingTask extends Task.Backgroundable {
+    private static final Logger LOG = Logger.getInstance(SnapshotLoadingTask.class);
+
+    private final StatisticsService service;
+    private final SnapshotKind kind;
+    private final List<File> files;
+    private final SnapshotParser parser;
+    private final boolean reload;
+    private final @Nullable Runnable publishCallback;
+
+    private StatisticsDictionary dictionary = null;
+    // The source of a parsed dictionary, it replaces the cache when the dictionary is published
+    private SnapshotCache.Source cacheSource = null;
+
+    SnapshotLoadingTask(
+            @NotNull Project project,
+            @NotNull StatisticsService service,
+            @NotNull SnapshotKind kind,
+            @NotNull List<File> files,
+            @NotNull SnapshotParser parser,
+            boolean reload,
+            @Nullable Runnable publishCallback) {
+        super(project, "Loading " + kind.getDisplayName(), true);
+        this.service = service;
+        this.kind = kind;
+        this.files = files;
+        this.parser = parser;
+        this.reload = reload;
+        this.publishCallback = publishCallback;
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(false);
+        indicator.setText("Loading " + getSnapshotName());
+        try {
+            SnapshotCache.Source source = SnapshotCache.Source.of(files, parser);
+            dictionary = service.restoreFiles(kind, files, parser, source);
+            if (dictionary == null) {
+                dictionary = service.loadFiles(kind, files, parser, indicator);
+                cacheSource = source;
+            }
+            if (reload && dictionary.getRecordCount() == 0) {
+                // The summary of a flat report is at its end, so a partially written report has no records
+                LOG.info("The reloaded " + getSnapshotName() + " is empty, it may be still being written");
+                dictionary = null;
+            }
+        } catch (FileNotFoundException e) {
+            LOG.warn("File not found: " + e.getMessage());
+        } catch (IOException e) {
+            LOG.warn("Input/output error while reading " + getSnapshotName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onSuccess() {
+        if (dictionary != null) {
+            service.setStatistics(kind, dictionary);
+            if (cacheSource != null) {
+                service.writeCacheInBackground(kind, dictionary, cacheSource);
+            }
+            if (publishCallback != null) {
+                publishCallback.run();
+            }
+            LOG.info("Loaded the " + kind.getDisplayName() + " " + getSnapshotName());
+        } else {
+            LOG.warn("Unable to load the " + kind.getDisplayName() + " " + getSnapshotName());
+            if (!reload) {
+                Messages.showMessageDialog(
+                        getProject(),
+                        "Unable to load the " + kind.getDisplayName(),
+                        "Load failed",
+                        Messages.getErrorIcon());
+            }
+        }
+    }
+
+    @Override
+    public void onCancel() {
+        LOG.info("Loading of the " + kind.getDisplayName() + " " + getSnapshotName() + " was cancelled");
+    }
+
+    private @NotNull String getSnapshotName() {
+        return files.size() == 1 ? files.get(0).getName() : files.size() + " merged snapshots";
+    }
+}
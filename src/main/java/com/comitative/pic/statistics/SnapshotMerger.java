@@ -0,0 +1,218 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.FrameType;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.TimeRecord;
+import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Merges several snapshots (e.g., the snapshots of the nodes of a cluster) into one aggregate profile.
+ *
+ * Snapshots are merged as soon as they are parsed, so the merger keeps one accumulated record per distinct
+ * code reference, source line and frame type (plus the merged call tree) instead of all the records of all
+ * the snapshots. The metric values (sample counts, absolute times, allocations and lock waits) of the matching
+ * code references are summed, and the relative times are recomputed from the combined totals when the dictionary
+ * is built.
+ *
+ * The add method is thread-safe, so parallel parsers may feed the same merger.
+ */
+final class SnapshotMerger {
+    private final Map<RecordKey, Integer> recordIndex = new HashMap<>();
+    private final List<RecordKey> recordKeys = new ArrayList<>();
+    // The metric columns, by the metric ordinals
+    private final long[][] values = new long[METRICS.length][INITIAL_CAPACITY];
+
+    private final CallTree.Builder callTreeBuilder = new CallTree.Builder();
+    private long totalTime = 0;
+    private long totalSamples = 0;
+
+    /**
+     * Parse the snapshots in parallel and merge them.
+     *
+     * @param files the snapshot files
+     * @param parser the parser of the snapshots
+     * @param executor an executor for the parsing tasks (it determines the parallelism)
+     * @param indicator a progress indicator of the loading task, or null if the loading can't be cancelled
+     * @return a dictionary of the merged snapshots
+     * @throws IOException if any of the files can't be read
+     * @throws ProcessCanceledException if the indicator is cancelled
+     */
+    static @NotNull StatisticsDictionary mergeFiles(
+            @NotNull List<File> files,
+            @NotNull SnapshotParser parser,
+            @NotNull Executor executor,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        SnapshotMerger merger = new SnapshotMerger();
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>(files.size());
+        for (File file : files) {
+            futures.add(completionService.submit(() -> {
+                // The parsers report their own progress, so they get wrappers that only propagate the cancellation
+                CallTree.Builder fileCallTreeBuilder = new CallTree.Builder();
+                List<TimeRecord> timeRecords = parser.parseFile(
+                        file,
+                        fileCallTreeBuilder,
+                        indicator == null ? null : new SensitiveProgressWrapper(indicator));
+                merger.add(timeRecords, fileCallTreeBuilder.build());
+                return null;
+            }));
+        }
+
+        try {
+            int mergedFiles = 0;
+            while (mergedFiles < files.size()) {
+                if (indicator != null) {
+                    indicator.checkCanceled();
+                }
+                Future<Void> future = completionService.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    future.get();
+                    mergedFiles += 1;
+                    if (indicator != null) {
+                        indicator.setFraction((double) mergedFiles / files.size());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Unable to parse a snapshot", cause);
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return merger.build(parser::getFrameCodeReference);
+    }
+
+    /**
+     * Merge a parsed snapshot.
+     *
+     * The snapshot totals are estimated from the record with the largest relative time (the relative times are
+     * rounded, so it gives the most precise estimate). The call tree totals are used only if the snapshot has
+     * no relative times: a snapshot usually contains only the most frequent stack traces, so the call tree
+     * underestimates the totals.
+     *
+     * @param timeRecords the time records of the snapshot
+     * @param callTree the call tree of the snapshot
+     */
+    synchronized void add(@NotNull List<TimeRecord> timeRecords, @NotNull CallTree callTree) {
+        TimeRecord largestRecord = null;
+        for (TimeRecord timeRecord : timeRecords) {
+            RecordKey key = new RecordKey(
+                    timeRecord.getCodeReference(), timeRecord.getLineNumber(), timeRecord.getFrameType());
+            Integer index = recordIndex.get(key);
+            if (index == null) {
+                index = recordKeys.size();
+                if (index == values[0].length) {
+                    for (int column = 0; column < values.length; column++) {
+                        values[column] = Arrays.copyOf(values[column], index * 2);
+                    }
+                }
+                recordIndex.put(key, index);
+                recordKeys.add(key);
+            }
+            for (ProfileMetric metric : METRICS) {
+                values[metric.ordinal()][index] += timeRecord.getValue(metric);
+            }
+            if (largestRecord == null || timeRecord.getRelativeTime() > largestRecord.getRelativeTime()) {
+                largestRecord = timeRecord;
+            }
+        }
+
+        if (largestRecord != null && largestRecord.getRelativeTime() > 0.0) {
+            totalTime += Math.round(largestRecord.getAbsoluteTime() / largestRecord.getRelativeTime());
+            totalSamples += Math.round(largestRecord.getSampleCount() / largestRecord.getRelativeTime());
+        } else {
+            totalTime += callTree.getTotalTime();
+            totalSamples += callTree.getTotalSamples();
+        }
+        callTreeBuilder.addTree(callTree);
+    }
+
+    /**
+     * Build a dictionary of the merged snapshots. The relative times are shares of the combined total time
+     * (or of the combined sample count if the snapshots have no time information).
+     *
+     * @param frameResolver a resolver of the call tree frame names (see StatisticsDictionary.Builder), or null
+     *                      if the inclusive time is not needed
+     * @return a dictionary with one record per distinct code reference (the line and frame type records are summed
+     * by the dictionary builder)
+     */
+    synchronized @NotNull StatisticsDictionary build(@Nullable Function<String, CodeReference> frameResolver) {
+        StatisticsDictionary.Builder builder = new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(frameResolver);
+        long[] absoluteTimes = values[ProfileMetric.TIME.ordinal()];
+        long[] sampleCounts = values[ProfileMetric.SAMPLES.ordinal()];
+        for (int index = 0; index < recordKeys.size(); index++) {
+            double relativeTime;
+            if (totalTime > 0) {
+                relativeTime = (double) absoluteTimes[index] / totalTime;
+            } else if (totalSamples > 0) {
+                relativeTime = (double) sampleCounts[index] / totalSamples;
+            } else {
+                relativeTime = 0.0;
+            }
+            RecordKey key = recordKeys.get(index);
+            TimeRecord timeRecord = new TimeRecord(key.codeReference, Math.min(relativeTime, 1.0));
+            for (ProfileMetric metric : METRICS) {
+                timeRecord.setValue(metric, values[metric.ordinal()][index]);
+            }
+            timeRecord.setLineNumber(key.lineNumber);
+            timeRecord.setFrameType(key.frameType);
+            builder.add(timeRecord);
+        }
+        return builder.build();
+    }
+
+    // A code reference, a source line (TimeRecord.NO_LINE for the method records) and a frame type (or null)
+    private static final class RecordKey {
+        final @NotNull CodeReference codeReference;
+        final int lineNumber;
+        final @Nullable FrameType frameType;
+
+        RecordKey(@NotNull CodeReference codeReference, int lineNumber, @Nullable FrameType frameType) {
+            this.codeReference = codeReference;
+            this.lineNumber = lineNumber;
+            this.frameType = frameType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RecordKey that = (RecordKey) o;
+            return lineNumber == that.lineNumber && frameType == that.frameType
+                    && codeReference.equals(that.codeReference);
+        }
+
+        @Override
+        public int hashCode() {
+            return (codeReference.hashCode() * 31 + lineNumber) * 31 + Objects.hashCode(frameType);
+        }
+    }
+
+    private static final ProfileMetric[] METRICS = ProfileMetric.values();
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long POLL_INTERVAL_MS = 100;
+}
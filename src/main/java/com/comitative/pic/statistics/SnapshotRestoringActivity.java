@@ -0,0 +1,17 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Restores the last loaded profiler snapshot from the snapshot cache when a project is opened.
+ * The activity runs in a background thread, so a large cache does not delay the project startup.
+ */
+public class SnapshotRestoringActivity implements StartupActivity.Background {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        project.getService(StatisticsService.class).restoreCachedStatistics();
+    }
+}
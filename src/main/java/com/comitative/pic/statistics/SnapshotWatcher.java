@@ -0,0 +1,176 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Watches a snapshot file and reloads it when it changes (e.g., when a profiler running in a loop mode rewrites
+ * its report).
+ *
+ * The file is added to the native file watcher roots, and the watcher listens for the VFS events of the file.
+ * A profiler usually writes a report in several chunks, so the events are debounced: the snapshot is reloaded
+ * only when the file has not changed for DEBOUNCE_DELAY_MS. The reload runs in the loading queue of the service,
+ * so reloads never overlap, and the new statistics replace the old ones with a targeted marker refresh.
+ *
+ * The watcher stops when it is disposed (when another snapshot is loaded or the project is closed).
+ */
+final class SnapshotWatcher implements Disposable {
+    private static final Logger LOG = Logger.getInstance(SnapshotWatcher.class);
+
+    private final StatisticsService service;
+    private final File file;
+    private final SnapshotParser parser;
+    private final String watchedPath;
+    private final ReloadScheduler scheduler;
+    private @Nullable LocalFileSystem.WatchRequest watchRequest = null;
+
+    // The IDE watcher: the reloads are debounced with an alarm on the event dispatch thread
+    private SnapshotWatcher(
+            @NotNull StatisticsService service,
+            @NotNull File file,
+            @NotNull SnapshotParser parser) {
+        this.service = service;
+        this.file = file;
+        this.parser = parser;
+        this.watchedPath = FileUtil.toSystemIndependentName(file.getAbsolutePath());
+        Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+        this.scheduler = (reload, delayMs) -> {
+            if (!alarm.isDisposed()) {
+                alarm.cancelAllRequests();
+                alarm.addRequest(reload, delayMs);
+            }
+        };
+    }
+
+    /**
+     * Create a watcher that does not listen for the file system events: the file changes are reported with
+     * fileChanged(), and the reloads are run by the scheduler (e.g., in the tests).
+     * @param service the service that reloads the snapshot
+     * @param file the watched file
+     * @param parser the parser of the file
+     * @param scheduler the scheduler of the debounced reloads
+     */
+    SnapshotWatcher(
+            @NotNull StatisticsService service,
+            @NotNull File file,
+            @NotNull SnapshotParser parser,
+            @NotNull ReloadScheduler scheduler) {
+        this.service = service;
+        this.file = file;
+        this.parser = parser;
+        this.watchedPath = FileUtil.toSystemIndependentName(file.getAbsolutePath());
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Start watching a snapshot file for changes.
+     * @param project the project of the service
+     * @param service the service that reloads the snapshot (the watcher is its child disposable)
+     * @param file the file to watch
+     * @param parser the parser of the file
+     * @return a started watcher
+     */
+    static @NotNull SnapshotWatcher watch(
+            @NotNull Project project,
+            @NotNull StatisticsService service,
+            @NotNull File file,
+            @NotNull SnapshotParser parser) {
+        SnapshotWatcher watcher = new SnapshotWatcher(service, file, parser);
+        Disposer.register(service, watcher);
+        watcher.start(project);
+        return watcher;
+    }
+
+    private void start(@NotNull Project project) {
+        watchRequest = LocalFileSystem.getInstance().addRootToWatch(watchedPath, false);
+        if (watchRequest == null) {
+            LOG.warn("Unable to watch " + watchedPath + ", it will be reloaded on the VFS refresh only");
+        }
+        // VFS events are only produced for the files that the VFS knows about
+        LocalFileSystem.getInstance().refreshAndFindFileByPath(watchedPath);
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if (!(event instanceof VFileDeleteEvent) && watchedPath.equals(event.getPath())) {
+                        fileChanged();
+                        return;
+                    }
+                }
+            }
+        });
+        LOG.info("Watching the profiler snapshot " + watchedPath);
+    }
+
+    /**
+     * @return the watched file
+     */
+    @NotNull File getFile() {
+        return file;
+    }
+
+    /**
+     * Schedule a reload of the file, replacing the reload that is scheduled by a previous change (if any).
+     */
+    void fileChanged() {
+        scheduler.reschedule(this::reload, DEBOUNCE_DELAY_MS);
+    }
+
+    private void reload() {
+        LOG.info("The profiler snapshot " + file.getName() + " has changed, reloading");
+        service.reloadFileInBackground(file, parser);
+    }
+
+    @Override
+    public void dispose() {
+        if (watchRequest != null) {
+            LocalFileSystem.getInstance().removeWatchedRoot(watchRequest);
+        }
+        LOG.info("Stopped watching the profiler snapshot " + watchedPath);
+    }
+
+    /**
+     * Runs the debounced reloads of a watcher.
+     */
+    interface ReloadScheduler {
+        /**
+         * Cancel the pending reload (if any) and schedule a new one.
+         * @param reload the reload to run
+         * @param delayMs the delay of the reload
+         */
+        void reschedule(@NotNull Runnable reload, int delayMs);
+    }
+
+    /**
+     * Creates the watchers of the loaded snapshots.
+     */
+    interface Factory {
+        /**
+         * @param service the service that reloads the snapshot
+         * @param file the file to watch
+         * @param parser the parser of the file
+         * @return a started watcher
+         */
+        @NotNull SnapshotWatcher watch(
+                @NotNull StatisticsService service,
+                @NotNull File file,
+                @NotNull SnapshotParser parser);
+    }
+
+    private static final int DEBOUNCE_DELAY_MS = 2000;
+}
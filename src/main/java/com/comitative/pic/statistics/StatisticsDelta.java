@@ -0,0 +1,138 @@
+package com.comitative.pic.statistics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The current statistics joined with a baseline snapshot (e.g., the profile of the previous release).
+ *
+ * The join is done once, when either of the snapshots is loaded: every record of the current dictionary gets
+ * the matching baseline record, the change of the relative time and a significance estimate. The line marker
+ * passes only read the precomputed columns.
+ *
+ * The significance is a two-proportion z-score of the sample counts: the share of the method samples among all
+ * the samples of the current snapshot is compared with the same share in the baseline. Methods that are missing
+ * in the baseline have zero baseline samples.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class StatisticsDelta {
+
+    /**
+     * No statistics and no baseline.
+     */
+    public static final StatisticsDelta EMPTY =
+            new StatisticsDelta(StatisticsDictionary.EMPTY, StatisticsDictionary.EMPTY);
+
+    /**
+     * The absolute z-score that corresponds to the two-sided 95% confidence level.
+     */
+    public static final double SIGNIFICANT_Z_SCORE = 1.96;
+
+    private final @NotNull StatisticsDictionary current;
+    private final @NotNull StatisticsDictionary baseline;
+
+    // Columns indexed by the current record, empty if there is no baseline
+    private final int[] baselineRecords;
+    private final double[] relativeTimeDeltas;
+    private final double[] zScores;
+
+    /**
+     * Join two snapshots.
+     * @param current the current statistics
+     * @param baseline the baseline statistics (an empty dictionary if there is no baseline)
+     */
+    public StatisticsDelta(@NotNull StatisticsDictionary current, @NotNull StatisticsDictionary baseline) {
+        this.current = current;
+        this.baseline = baseline;
+
+        int recordCount = hasBaseline() ? current.getRecordCount() : 0;
+        this.baselineRecords = new int[recordCount];
+        this.relativeTimeDeltas = new double[recordCount];
+        this.zScores = new double[recordCount];
+        Arrays.fill(baselineRecords, StatisticsDictionary.NO_RECORD);
+
+        double currentTotal = current.getTotalSampleCount();
+        double baselineTotal = baseline.getTotalSampleCount();
+        for (int record = 0; record < recordCount; record++) {
+            int baselineRecord = baseline.findRecord(current, record);
+            double baselineRelativeTime = 0.0;
+            long baselineSamples = 0;
+            if (baselineRecord != StatisticsDictionary.NO_RECORD) {
+                baselineRelativeTime = baseline.getRelativeTime(baselineRecord);
+                baselineSamples = baseline.getSampleCount(baselineRecord);
+            }
+            baselineRecords[record] = baselineRecord;
+            relativeTimeDeltas[record] = current.getRelativeTime(record) - baselineRelativeTime;
+            zScores[record] = zScore(current.getSampleCount(record), currentTotal, baselineSamples, baselineTotal);
+        }
+    }
+
+    /**
+     * @return the current statistics
+     */
+    public @NotNull StatisticsDictionary getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the baseline statistics (empty if no baseline is loaded)
+     */
+    public @NotNull StatisticsDictionary getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * @return true if a baseline is loaded
+     */
+    public boolean hasBaseline() {
+        return baseline.getRecordCount() > 0;
+    }
+
+    /**
+     * @param record a record of the current dictionary
+     * @return the first matching baseline record or NO_RECORD if the method is missing in the baseline
+     */
+    public int getBaselineRecord(int record) {
+        return hasBaseline() ? baselineRecords[record] : StatisticsDictionary.NO_RECORD;
+    }
+
+    /**
+     * @param record a record of the current dictionary
+     * @return the change of the relative time (current minus baseline, [-1.0 .. 1.0]); positive values are
+     * regressions
+     */
+    public double getRelativeTimeDelta(int record) {
+        return hasBaseline() ? relativeTimeDeltas[record] : 0.0;
+    }
+
+    /**
+     * @param record a record of the current dictionary
+     * @return the z-score of the change of the sample share (0.0 if there is no baseline)
+     */
+    public double getZScore(int record) {
+        return hasBaseline() ? zScores[record] : 0.0;
+    }
+
+    /**
+     * @param record a record of the current dictionary
+     * @return true if the change is significant at the 95% confidence level
+     */
+    public boolean isSignificant(int record) {
+        return Math.abs(getZScore(record)) >= SIGNIFICANT_Z_SCORE;
+    }
+
+    // A two-proportion z-test with the pooled proportion
+    private static double zScore(long currentSamples, double currentTotal, long baselineSamples, double baselineTotal) {
+        if (currentTotal <= 0.0 || baselineTotal <= 0.0) {
+            return 0.0;
+        }
+        double pooled = (currentSamples + baselineSamples) / (currentTotal + baselineTotal);
+        double variance = pooled * (1.0 - pooled) * (1.0 / currentTotal + 1.0 / baselineTotal);
+        if (variance <= 0.0) {
+            return 0.0;
+        }
+        return (currentSamples / currentTotal - baselineSamples / baselineTotal) / Math.sqrt(variance);
+    }
+}
@@ -1,44 +1,1616 @@
 package com.comitative.pic.statistics;
 
 import com.comitative.pic.CodeReference;
+import com.comitative.pic.FrameType;
+import com.comitative.pic.HeapSize;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.SymbolTable;
 import com.comitative.pic.TimeRecord;
+import com.comitative.pic.parsers.NativeSymbols;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.function.Function;
 
-class StatisticsDictionary {
-    private final HashMap<CodeReference, ArrayList<TimeRecord>> records;
+/**
+ * An immutable dictionary of time records indexed by code references.
+ *
+ * The dictionary is built once by a Builder and then frozen, so it is safe to share between the highlighting
+ * threads without synchronization. Class and method names are interned in a symbol table, and each code reference
+ * is represented with a packed primitive key (class identifier, method identifier, java/native flag).
+ *
+ * Records are stored as columns (the relative time and one column per profile metric: samples, time, allocated bytes
+ * and lock wait time) sorted by their keys, so the records of one code reference form a contiguous group. The snapshot
+ * records hold the self time of the methods; the inclusive (total) time of every method is derived from the call tree
+ * when the dictionary is built (see Builder.setFrameResolver), and the methods that are found only in the stack traces
+ * get inclusive-only records with zero self time. The calls between the methods (the edges of all the frames of a
+ * method merged) are aggregated into a table of packed (caller, callee) keys, so the weight of a call site is a
+ * single probe (see findCall). The calls are also listed per method in two adjacency indexes (by the caller and by
+ * the callee) sorted by the sample count, so the heaviest callers and callees of a method are the first entries of
+ * its ranges (see getCallerCall and getCalleeCall). Groups are indexed by an open addressing table of group numbers,
+ * which lets a lookup by names run without creating a code reference or any other object. The short class name
+ * fallback probes a fragment of the fully qualified name, so it does not allocate either.
+ *
+ * Groups of one class are contiguous as well (the class identifier occupies the high bits of the key). The class
+ * index maps symbol identifiers to class ranges, so checking whether a class is profiled is a single symbol lookup,
+ * and the methods of a found class are looked up with a binary search over the class range only. Each class also
+ * has a fingerprint of its records, its line and frame type entries and its outgoing calls, which lets two
+ * dictionaries be compared class by class (see getChangedClasses).
+ * The self values of the records are also rolled up to the classes and the packages in a prefix tree of the class
+ * names (see getClassNameTree).
+ *
+ * If the profiler reports source lines, the records of one method are attributed to its lines. Such records are
+ * summed into one record of the method, and the line samples are kept in a per-class line index: the line entries
+ * of a class are a contiguous range sorted by the line number, so the hot lines of a method body are found with
+ * a binary search (see findLineEntry).
+ *
+ * If the profiler reports frame types (how the JVM executed a method: interpreted, C1, C2 or inlined), the records
+ * of one method are summed into one record as well, and the samples of every frame type are kept in a sparse
+ * frame type index sorted by (record, frame type). Only the methods with frame types have entries, so a snapshot
+ * without them does not pay for the index (see getFrameTypeSampleCount).
+ *
+ * The native frames of the call tree are not methods, but the native code below a JNI function is a part of the Java
+ * native method that the function implements: the self values of such frames are added to the record of the native
+ * method when the dictionary is built (see Builder.attributeNativeFrames).
+ *
+ * Time records are not stored as objects: the TimeRecord-based methods create copies on request. The allocation-free
+ * path is findRecord/findClass and the column getters.
+ */
+public final class StatisticsDictionary {
 
-    StatisticsDictionary() {
-        this.records = new HashMap<>();
+    // The metrics in the column order; it is initialized before EMPTY, which is built with it
+    private static final ProfileMetric[] METRICS = ProfileMetric.values();
+
+    /**
+     * An empty dictionary (it is used before any snapshot is loaded).
+     */
+    public static final StatisticsDictionary EMPTY = new Builder().build();
+
+    /**
+     * A record index that does not correspond to any record.
+     */
+    public static final int NO_RECORD = -1;
+
+    /**
+     * A class index that does not correspond to any profiled class.
+     */
+    public static final int NO_CLASS = -1;
+
+    /**
+     * A call index that does not correspond to any call between profiled methods.
+     */
+    public static final int NO_CALL = -1;
+
+    private final SymbolTable symbols;
+    private final @NotNull CallTree callTree;
+
+    // Records in the key order
+    private final long[] recordKeys;
+    private final double[] relativeTimes;
+    // The metric columns, by the metric ordinals (see ProfileMetric)
+    private final long[][] values;
+    private final long[] inclusiveSampleCounts;
+    private final long[] inclusiveTimes;
+
+    // Records of group g are [groupStart[g] .. groupStart[g + 1])
+    private final int[] groupStart;
+
+    // Open addressing table of group numbers, NO_RECORD marks an empty slot
+    private final int[] groupSlots;
+
+    // Groups of class c are [classGroupStart[c] .. classGroupStart[c + 1]), symbolClasses maps symbols to classes
+    private final int[] classGroupStart;
+    private final int[] symbolClasses;
+    private final long[] classFingerprints;
+
+    // Line entries sorted by (class identifier, line number); the entries of class c are
+    // [classLineStart[c] .. classLineStart[c + 1])
+    private final long[] lineKeys;
+    private final long[] lineSampleCounts;
+    private final long[] lineTimes;
+    private final int[] classLineStart;
+
+    // Frame type entries sorted by (record, frame type ordinal)
+    private final long[] frameTypeKeys;
+    private final long[] frameTypeSampleCounts;
+
+    // frameRecords maps call tree frames to the first records of their groups (or NO_RECORD)
+    private final int[] frameRecords;
+
+    // Calls between code references (by their first records); the calls from record r are
+    // calleeCalls[calleeCallStart[r] .. calleeCallStart[r + 1]) and the calls to it are
+    // callerCalls[callerCallStart[r] .. callerCallStart[r + 1]), both ordered by the sample count, descending
+    private final CallIndex calls;
+    private final int[] calleeCallStart;
+    private final int[] calleeCalls;
+    private final int[] callerCallStart;
+    private final int[] callerCalls;
+
+    private final long totalSampleCount;
+    private final long[] totalValues;
+
+    // The self values rolled up to the classes and the packages
+    private final ClassNameTree classNameTree;
+
+    // The keys must be sorted, the arrays are owned by the dictionary (see Builder and SnapshotCache)
+    StatisticsDictionary(
+            @NotNull SymbolTable symbols,
+            @NotNull CallTree callTree,
+            @NotNull long[] recordKeys,
+            @NotNull double[] relativeTimes,
+            @NotNull long[][] values,
+            @NotNull long[] inclusiveSampleCounts,
+            @NotNull long[] inclusiveTimes,
+            @NotNull int[] frameRecords,
+            @NotNull long[] lineKeys,
+            @NotNull long[] lineSampleCounts,
+            @NotNull long[] lineTimes,
+            @NotNull long[] frameTypeKeys,
+            @NotNull long[] frameTypeSampleCounts) {
+        this.symbols = symbols;
+        this.callTree = callTree;
+        this.recordKeys = recordKeys;
+        this.relativeTimes = relativeTimes;
+        this.values = values;
+        this.inclusiveSampleCounts = inclusiveSampleCounts;
+        this.inclusiveTimes = inclusiveTimes;
+        this.frameRecords = frameRecords;
+        this.lineKeys = lineKeys;
+        this.lineSampleCounts = lineSampleCounts;
+        this.lineTimes = lineTimes;
+        this.frameTypeKeys = frameTypeKeys;
+        this.frameTypeSampleCounts = frameTypeSampleCounts;
+
+        int recordCount = recordKeys.length;
+        int groupCount = 0;
+        int[] starts = new int[recordCount + 1];
+        for (int record = 0; record < recordCount; record++) {
+            if (record == 0 || recordKeys[record] != recordKeys[record - 1]) {
+                starts[groupCount++] = record;
+            }
+        }
+        starts[groupCount] = recordCount;
+        this.groupStart = Arrays.copyOf(starts, groupCount + 1);
+
+        this.groupSlots = new int[Integer.highestOneBit(Math.max(groupCount, 1)) * 4];
+        Arrays.fill(groupSlots, NO_RECORD);
+        int mask = groupSlots.length - 1;
+        for (int group = 0; group < groupCount; group++) {
+            int slot = mix(recordKeys[groupStart[group]]) & mask;
+            while (groupSlots[slot] != NO_RECORD) {
+                slot = (slot + 1) & mask;
+            }
+            groupSlots[slot] = group;
+        }
+
+        int classCount = 0;
+        int[] classStarts = new int[groupCount + 1];
+        this.symbolClasses = new int[symbols.size()];
+        Arrays.fill(symbolClasses, NO_CLASS);
+        for (int group = 0; group < groupCount; group++) {
+            int classId = unpackClassId(recordKeys[groupStart[group]]);
+            if (symbolClasses[classId] == NO_CLASS) {
+                symbolClasses[classId] = classCount;
+                classStarts[classCount++] = group;
+            }
+        }
+        classStarts[classCount] = groupCount;
+        this.classGroupStart = Arrays.copyOf(classStarts, classCount + 1);
+
+        // Class indexes follow the class identifiers, so the line entries are split into class ranges in one pass
+        this.classLineStart = new int[classCount + 1];
+        int lineEntry = 0;
+        for (int classIndex = 0; classIndex < classCount; classIndex++) {
+            int classId = unpackClassId(recordKeys[groupStart[classGroupStart[classIndex]]]);
+            while (lineEntry < lineKeys.length && unpackClassId(lineKeys[lineEntry]) < classId) {
+                lineEntry += 1;
+            }
+            classLineStart[classIndex] = lineEntry;
+            while (lineEntry < lineKeys.length && unpackClassId(lineKeys[lineEntry]) == classId) {
+                lineEntry += 1;
+            }
+        }
+        classLineStart[classCount] = lineEntry;
+
+        // The frame edges are already aggregated over the call paths, so the call index is built from them
+        this.calls = new CallIndex();
+        for (int frame = 0; frame < frameRecords.length; frame++) {
+            int caller = frameRecords[frame];
+            if (caller == NO_RECORD) {
+                continue;
+            }
+            for (CallTree.CallEdge edge : callTree.getCallees(frame)) {
+                int callee = frameRecords[edge.getFrameId()];
+                if (callee != NO_RECORD) {
+                    calls.add(caller, callee, edge.getSampleCount(), edge.getAbsoluteTime());
+                }
+            }
+        }
+
+        // The calls are sorted once, and the stable fill keeps every caller and callee range in the sample order
+        int[] callOrder = new int[calls.size];
+        int callCount = 0;
+        for (int call = 0; call < calls.keys.length; call++) {
+            if (calls.keys[call] != 0) {
+                callOrder[callCount++] = call;
+            }
+        }
+        sortBySamples(callOrder, new int[callCount], calls.sampleCounts, 0, callCount);
+        this.calleeCallStart = new int[recordCount + 1];
+        this.callerCallStart = new int[recordCount + 1];
+        for (int call : callOrder) {
+            calleeCallStart[calls.getCaller(call) + 1] += 1;
+            callerCallStart[calls.getCallee(call) + 1] += 1;
+        }
+        for (int record = 0; record < recordCount; record++) {
+            calleeCallStart[record + 1] += calleeCallStart[record];
+            callerCallStart[record + 1] += callerCallStart[record];
+        }
+        this.calleeCalls = new int[callCount];
+        this.callerCalls = new int[callCount];
+        int[] calleeFill = Arrays.copyOf(calleeCallStart, recordCount);
+        int[] callerFill = Arrays.copyOf(callerCallStart, recordCount);
+        for (int call : callOrder) {
+            calleeCalls[calleeFill[calls.getCaller(call)]++] = call;
+            callerCalls[callerFill[calls.getCallee(call)]++] = call;
+        }
+
+        this.totalSampleCount = estimateTotalSampleCount(
+                relativeTimes, values[ProfileMetric.SAMPLES.ordinal()], callTree);
+        this.totalValues = new long[METRICS.length];
+        for (ProfileMetric metric : METRICS) {
+            totalValues[metric.ordinal()] = estimateTotalValue(metric);
+        }
+
+        // The calls are mixed by the names of their callees, and the table order is arbitrary, so the call hashes
+        // of a class are summed
+        long[] classCallHashes = new long[classCount];
+        for (int call = 0; call < calls.keys.length; call++) {
+            if (calls.keys[call] == 0) {
+                continue;
+            }
+            int caller = calls.getCaller(call);
+            int callee = calls.getCallee(call);
+            int classIndex = getClassIndex(unpackClassId(recordKeys[caller]));
+            long calleeKey = recordKeys[callee];
+            long callHash = caller - getClassRecordStart(classIndex);
+            callHash = callHash * 31 + symbols.getSymbol(unpackClassId(calleeKey)).hashCode();
+            callHash = callHash * 31 + symbols.getSymbol(unpackMethodId(calleeKey)).hashCode();
+            callHash = callHash * 31 + (unpackJavaMethod(calleeKey) ? 1 : 0);
+            callHash = callHash * 31 + calls.sampleCounts[call];
+            callHash = callHash * 31 + calls.times[call];
+            classCallHashes[classIndex] += mix(callHash);
+        }
+
+        this.classFingerprints = new long[classCount];
+        for (int classIndex = 0; classIndex < classCount; classIndex++) {
+            int recordStart = groupStart[classGroupStart[classIndex]];
+            int recordEnd = groupStart[classGroupStart[classIndex + 1]];
+            long classFingerprint = fingerprint(recordStart, recordEnd);
+            for (int entry = classLineStart[classIndex]; entry < getLineEntryEnd(classIndex); entry++) {
+                classFingerprint = classFingerprint * 31 + lineKeys[entry];
+                classFingerprint = classFingerprint * 31 + lineSampleCounts[entry];
+                classFingerprint = classFingerprint * 31 + lineTimes[entry];
+            }
+            // Record indexes differ between the dictionaries, so the records are mixed relative to the class start
+            int frameTypeEnd = findFrameTypeEntry(recordEnd, 0);
+            for (int entry = findFrameTypeEntry(recordStart, 0); entry < frameTypeEnd; entry++) {
+                classFingerprint = classFingerprint * 31 + (frameTypeKeys[entry] - packFrameTypeKey(recordStart, 0));
+                classFingerprint = classFingerprint * 31 + frameTypeSampleCounts[entry];
+            }
+            classFingerprints[classIndex] = classFingerprint * 31 + classCallHashes[classIndex];
+        }
+
+        String[] classNames = new String[classCount];
+        int[] classRecordCounts = new int[classCount];
+        double[] classRelativeTimes = new double[classCount];
+        long[][] classValues = new long[METRICS.length][classCount];
+        for (int classIndex = 0; classIndex < classCount; classIndex++) {
+            classNames[classIndex] = getClassName(classIndex);
+            int end = getClassRecordStart(classIndex + 1);
+            for (int record = getClassRecordStart(classIndex); record < end; record++) {
+                classRecordCounts[classIndex] += 1;
+                classRelativeTimes[classIndex] += relativeTimes[record];
+                for (int column = 0; column < METRICS.length; column++) {
+                    classValues[column][classIndex] += values[column][record];
+                }
+            }
+        }
+        this.classNameTree = new ClassNameTree(
+                classNames, classRecordCounts, classRelativeTimes, classValues, totalValues);
+    }
+
+    /**
+     * @return the call tree built from the stack traces of the snapshot
+     */
+    public @NotNull CallTree getCallTree() {
+        return callTree;
+    }
+
+    /**
+     * @return the estimated heap size of the dictionary (including its symbols and the call tree) in bytes
+     * @see HeapSize
+     */
+    public long estimateRetainedSize() {
+        return symbols.estimateRetainedSize() + callTree.estimateRetainedSize()
+                + HeapSize.of(recordKeys) + HeapSize.of(relativeTimes) + HeapSize.of(values)
+                + HeapSize.of(inclusiveSampleCounts) + HeapSize.of(inclusiveTimes)
+                + HeapSize.of(groupStart) + HeapSize.of(groupSlots)
+                + HeapSize.of(classGroupStart) + HeapSize.of(symbolClasses) + HeapSize.of(classFingerprints)
+                + HeapSize.of(frameRecords)
+                + calls.estimateRetainedSize() + HeapSize.of(calleeCallStart) + HeapSize.of(calleeCalls)
+                + HeapSize.of(callerCallStart) + HeapSize.of(callerCalls)
+                + HeapSize.of(lineKeys) + HeapSize.of(lineSampleCounts) + HeapSize.of(lineTimes)
+                + HeapSize.of(classLineStart) + HeapSize.of(frameTypeKeys) + HeapSize.of(frameTypeSampleCounts)
+                + classNameTree.estimateRetainedSize();
+    }
+
+    // The symbol table and the keys are exposed for the SnapshotCache writer only
+    @NotNull SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    long getRecordKey(int record) {
+        return recordKeys[record];
+    }
+
+    @NotNull int[] getFrameRecords() {
+        return frameRecords;
+    }
+
+    int getLineEntryCount() {
+        return lineKeys.length;
+    }
+
+    long getLineKey(int lineEntry) {
+        return lineKeys[lineEntry];
+    }
+
+    int getFrameTypeEntryCount() {
+        return frameTypeKeys.length;
+    }
+
+    long getFrameTypeKey(int frameTypeEntry) {
+        return frameTypeKeys[frameTypeEntry];
+    }
+
+    long getFrameTypeEntrySampleCount(int frameTypeEntry) {
+        return frameTypeSampleCounts[frameTypeEntry];
+    }
+
+    /**
+     * @return the number of records in the dictionary
+     */
+    public int getRecordCount() {
+        return recordKeys.length;
+    }
+
+    /**
+     * The total number of samples in the snapshot. Snapshots usually list only the most frequent stack traces, so
+     * the total is estimated from the record with the largest relative time (relative times are rounded, so this
+     * record gives the most precise estimate). The call tree total is used if the records have no relative times.
+     *
+     * @return the estimated total sample count of the snapshot
+     */
+    public long getTotalSampleCount() {
+        return totalSampleCount;
+    }
+
+    private static long estimateTotalSampleCount(
+            @NotNull double[] relativeTimes,
+            @NotNull long[] sampleCounts,
+            @NotNull CallTree callTree) {
+        int largestRecord = NO_RECORD;
+        for (int record = 0; record < relativeTimes.length; record++) {
+            if (largestRecord == NO_RECORD || relativeTimes[record] > relativeTimes[largestRecord]) {
+                largestRecord = record;
+            }
+        }
+        if (largestRecord != NO_RECORD && relativeTimes[largestRecord] > 0.0) {
+            return Math.max(
+                    Math.round(sampleCounts[largestRecord] / Math.min(relativeTimes[largestRecord], 1.0)),
+                    callTree.getTotalSamples());
+        }
+        return callTree.getTotalSamples();
+    }
+
+    /**
+     * The total value of a metric in the snapshot. The total time is estimated like the total sample count, and
+     * the totals of the other metrics are the sums of their columns (the relative times of the snapshot records
+     * refer to the samples, so they say nothing about the allocations or the lock waits).
+     *
+     * @param metric a profile metric
+     * @return the total value of the metric (0 if the snapshot has no events of its type)
+     */
+    public long getTotalValue(@NotNull ProfileMetric metric) {
+        return totalValues[metric.ordinal()];
     }
 
-    void add(@NotNull TimeRecord timeRecord) {
-        CodeReference codeReference = timeRecord.getCodeReference();
-        ArrayList<TimeRecord> matchingRecords = records.computeIfAbsent(codeReference, k -> new ArrayList<>());
-        matchingRecords.add(timeRecord);
+    private long estimateTotalValue(@NotNull ProfileMetric metric) {
+        if (metric == ProfileMetric.SAMPLES) {
+            return totalSampleCount;
+        }
+        long[] column = values[metric.ordinal()];
+        long sum = 0;
+        for (long value : column) {
+            sum += value;
+        }
+        if (metric != ProfileMetric.TIME) {
+            return sum;
+        }
+        long total = Math.max(sum, callTree.getTotalTime());
+        long totalSamples = callTree.getTotalSamples();
+        if (totalSampleCount > totalSamples && totalSamples > 0) {
+            // The call tree keeps only the listed stack traces, so its total time is scaled like the samples
+            total = Math.max(total, Math.round((double) callTree.getTotalTime() / totalSamples * totalSampleCount));
+        }
+        return total;
+    }
+
+    /**
+     * Find the first record of the same code reference as a record of another dictionary. Only exact names
+     * are matched (there is no short class name fallback). The lookup does not allocate memory.
+     *
+     * @param other another dictionary (e.g., a baseline snapshot)
+     * @param otherRecord a record of the other dictionary
+     * @return the index of the first matching record or NO_RECORD if there are no records
+     */
+    int findRecord(@NotNull StatisticsDictionary other, int otherRecord) {
+        long otherKey = other.recordKeys[otherRecord];
+        int classId = symbols.find(other.symbols.getSymbol(unpackClassId(otherKey)));
+        int methodId = symbols.find(other.symbols.getSymbol(unpackMethodId(otherKey)));
+        if (methodId == SymbolTable.NO_SYMBOL) {
+            return NO_RECORD;
+        }
+        int group = findGroup(classId, methodId, unpackJavaMethod(otherKey));
+        return group == NO_RECORD ? NO_RECORD : groupStart[group];
+    }
+
+    /**
+     * Find the first record of a Java/Kotlin method. If there are no records for the fully qualified class name,
+     * the short class name is tried. The lookup does not allocate memory.
+     *
+     * @param fqClassName a fully qualified class name
+     * @param methodName a method name
+     * @return the index of the first matching record or NO_RECORD if there are no records
+     * @see #getMatchingRecordCount(int)
+     */
+    public int findRecord(@NotNull String fqClassName, @NotNull String methodName) {
+        int group = findGroup(fqClassName, methodName, true);
+        return group == NO_RECORD ? NO_RECORD : groupStart[group];
     }
 
-    void addAll(@NotNull Collection<TimeRecord> timeRecords) {
-        for (TimeRecord record: timeRecords) {
-            add(record);
+    /**
+     * Find a profiled class. The lookup does not allocate memory.
+     *
+     * @param fqClassName a fully qualified class name
+     * @return the class index or NO_CLASS if the dictionary has no records for the class
+     */
+    public int findClass(@NotNull String fqClassName) {
+        return getClassIndex(symbols.find(fqClassName));
+    }
+
+    /**
+     * Find a profiled class by the short name of a fully qualified class name (the fallback for the snapshots
+     * that do not contain package names). The lookup does not allocate memory.
+     *
+     * @param fqClassName a fully qualified class name
+     * @return the class index or NO_CLASS if the name is not qualified or the dictionary has no records for it
+     */
+    public int findShortClass(@NotNull String fqClassName) {
+        int shortNameStart = CodeReference.getShortClassNameStart(fqClassName);
+        if (shortNameStart == 0) {
+            return NO_CLASS;
         }
+        return getClassIndex(symbols.find(fqClassName, shortNameStart, fqClassName.length()));
     }
 
-    List<TimeRecord> getTimeRecords(@NotNull CodeReference codeReference) {
-        ArrayList<TimeRecord> matchingRecords = records.get(codeReference);
-        if (matchingRecords == null) {
-            CodeReference shortReference = CodeReference.builder()
-                    .setFqClassName(codeReference.getShortClassName())
-                    .setMethodName(codeReference.getMethodName())
-                    .build();
-            matchingRecords = records.get(shortReference);
+    /**
+     * Find the first record of a Java/Kotlin method of a profiled class. Only the records of the class are searched.
+     *
+     * @param classIndex a class index returned by findClass or findShortClass
+     * @param methodName a method name
+     * @return the index of the first matching record or NO_RECORD if there are no records
+     */
+    public int findRecord(int classIndex, @NotNull String methodName) {
+        if (classIndex == NO_CLASS) {
+            return NO_RECORD;
+        }
+        int methodId = symbols.find(methodName);
+        if (methodId == SymbolTable.NO_SYMBOL) {
+            return NO_RECORD;
+        }
+
+        int low = classGroupStart[classIndex];
+        int high = classGroupStart[classIndex + 1] - 1;
+        long key = packKey(unpackClassId(recordKeys[groupStart[low]]), methodId, true);
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = recordKeys[groupStart[middle]];
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return groupStart[middle];
+            }
+        }
+        return NO_RECORD;
+    }
+
+    /**
+     * @return the number of profiled classes (the class indexes are [0 .. getClassCount()))
+     */
+    public int getClassCount() {
+        return classFingerprints.length;
+    }
+
+    /**
+     * @param classIndex a class index
+     * @return the class name as it is written in the snapshot (it may be a short name)
+     */
+    public @NotNull String getClassName(int classIndex) {
+        return symbols.getSymbol(unpackClassId(recordKeys[groupStart[classGroupStart[classIndex]]]));
+    }
+
+    /**
+     * @return the prefix tree of the class names that rolls the record values up to the classes and the packages
+     */
+    public @NotNull ClassNameTree getClassNameTree() {
+        return classNameTree;
+    }
+
+    /**
+     * The records of a class are contiguous: the records of class c are
+     * [getClassRecordStart(c) .. getClassRecordStart(c + 1)).
+     *
+     * @param classIndex a class index ([0 .. getClassCount()], the class count gives the end of the last class)
+     * @return the index of the first record of the class
+     */
+    public int getClassRecordStart(int classIndex) {
+        return groupStart[classGroupStart[classIndex]];
+    }
+
+    /**
+     * @param record a record index
+     * @return the index of the class of the record
+     */
+    public int getRecordClass(int record) {
+        return symbolClasses[unpackClassId(recordKeys[record])];
+    }
+
+    /**
+     * @param record a record index
+     * @return the method name of the record as it is written in the snapshot
+     */
+    public @NotNull String getMethodName(int record) {
+        return symbols.getSymbol(unpackMethodId(recordKeys[record]));
+    }
+
+    /**
+     * @param record a record index
+     * @return true if the record refers to a Java/Kotlin method, false if it refers to a native function
+     */
+    public boolean isJavaMethod(int record) {
+        return unpackJavaMethod(recordKeys[record]);
+    }
+
+    /**
+     * A method name qualified with the class name as it is written in the snapshot ("Matrix.multiply" for Java
+     * methods, "JavaThread::run" for native functions).
+     *
+     * @param record a record index
+     * @return the display name of the record
+     */
+    public @NotNull String getDisplayName(int record) {
+        String className = getClassName(getRecordClass(record));
+        String methodName = getMethodName(record);
+        if (className.isEmpty()) {
+            return methodName;
+        }
+        return className + (isJavaMethod(record) ? "." : "::") + methodName;
+    }
+
+    /**
+     * Compare the dictionary with a previous version class by class. A class is changed if it is present
+     * in only one of the dictionaries or if any of its records differ (in names, values or order).
+     *
+     * @param previous a dictionary to compare with
+     * @return a set of changed class names as they are written in the snapshots
+     */
+    public @NotNull Set<String> getChangedClasses(@NotNull StatisticsDictionary previous) {
+        Set<String> result = new HashSet<>();
+        for (int classIndex = 0; classIndex < getClassCount(); classIndex++) {
+            String className = getClassName(classIndex);
+            int previousIndex = previous.findClass(className);
+            if (previousIndex == NO_CLASS
+                    || previous.classFingerprints[previousIndex] != classFingerprints[classIndex]) {
+                result.add(className);
+            }
+        }
+        for (int previousIndex = 0; previousIndex < previous.getClassCount(); previousIndex++) {
+            String className = previous.getClassName(previousIndex);
+            if (findClass(className) == NO_CLASS) {
+                result.add(className);
+            }
         }
+        return result;
+    }
+
+    // A hash of the records that does not depend on symbol identifiers, so it is comparable between dictionaries
+    private long fingerprint(int start, int end) {
+        long result = end - start;
+        for (int record = start; record < end; record++) {
+            long key = recordKeys[record];
+            result = result * 31 + symbols.getSymbol(unpackMethodId(key)).hashCode();
+            result = result * 31 + (unpackJavaMethod(key) ? 1 : 0);
+            result = result * 31 + Double.doubleToLongBits(relativeTimes[record]);
+            for (long[] column : values) {
+                result = result * 31 + column[record];
+            }
+            result = result * 31 + inclusiveSampleCounts[record];
+            result = result * 31 + inclusiveTimes[record];
+        }
+        return result;
+    }
+
+    private int getClassIndex(int symbolId) {
+        return symbolId == SymbolTable.NO_SYMBOL || symbolId >= symbolClasses.length
+                ? NO_CLASS
+                : symbolClasses[symbolId];
+    }
+
+    /**
+     * Count the records that refer to the same code reference as the given one. They are stored right after it.
+     *
+     * @param record the index of the first record of a code reference (as returned by findRecord)
+     * @return the number of records for the code reference
+     */
+    public int getMatchingRecordCount(int record) {
+        int end = record + 1;
+        while (end < recordKeys.length && recordKeys[end] == recordKeys[record]) {
+            end += 1;
+        }
+        return end - record;
+    }
+
+    /**
+     * @param record a record index
+     * @return the relative time of the record ([0.0 .. 1.0])
+     */
+    public double getRelativeTime(int record) {
+        return relativeTimes[record];
+    }
+
+    /**
+     * @param record a record index
+     * @return the absolute time of the record (ns)
+     */
+    public long getAbsoluteTime(int record) {
+        return values[ProfileMetric.TIME.ordinal()][record];
+    }
+
+    /**
+     * @param record a record index
+     * @return the sample count of the record
+     */
+    public long getSampleCount(int record) {
+        return values[ProfileMetric.SAMPLES.ordinal()][record];
+    }
+
+    /**
+     * @param metric a profile metric
+     * @param record a record index
+     * @return the value of the metric for the record (0 if the snapshot has no events of its type)
+     */
+    public long getValue(@NotNull ProfileMetric metric, int record) {
+        return values[metric.ordinal()][record];
+    }
+
+    /**
+     * The share of a record in the total value of a metric. The relative value of the samples is the relative
+     * time of the record, the other values are relative to the metric totals (see getTotalValue).
+     *
+     * @param metric a profile metric
+     * @param record a record index
+     * @return the relative value of the metric for the record ([0.0 .. 1.0])
+     */
+    public double getRelativeValue(@NotNull ProfileMetric metric, int record) {
+        if (metric == ProfileMetric.SAMPLES) {
+            return relativeTimes[record];
+        }
+        long total = totalValues[metric.ordinal()];
+        return total > 0 ? Math.min((double) values[metric.ordinal()][record] / total, 1.0) : 0.0;
+    }
+
+    /**
+     * The inclusive sample count of a record: the number of the stack traces that contain the method, each counted
+     * once even if the method is called recursively. All the records of a code reference have the same value.
+     *
+     * @param record a record index
+     * @return the inclusive sample count of the record (0 if the snapshot has no matching stack traces)
+     */
+    public long getInclusiveSampleCount(int record) {
+        return inclusiveSampleCounts[record];
+    }
+
+    /**
+     * @param record a record index
+     * @return the inclusive time of the record (ns)
+     * @see #getInclusiveSampleCount(int)
+     */
+    public long getInclusiveTime(int record) {
+        return inclusiveTimes[record];
+    }
+
+    /**
+     * @param record a record index
+     * @return the inclusive sample count relative to the total sample count of the snapshot ([0.0 .. 1.0])
+     * @see #getTotalSampleCount()
+     */
+    public double getInclusiveRelativeTime(int record) {
+        return totalSampleCount > 0 ? Math.min((double) inclusiveSampleCounts[record] / totalSampleCount, 1.0) : 0.0;
+    }
+
+    /**
+     * @param record a record index
+     * @return true if the record was created for a method that is found only in the stack traces (it has no
+     * self time)
+     */
+    public boolean isInclusiveOnly(int record) {
+        if (relativeTimes[record] != 0.0 || inclusiveSampleCounts[record] == 0) {
+            return false;
+        }
+        for (long[] column : values) {
+            if (column[record] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the first line entry of a profiled class at or after a source line. The line entries of a class are
+     * sorted by the line number, so the lookup is a binary search over the class lines only. The lookup does not
+     * allocate memory.
+     *
+     * @param classIndex a class index returned by findClass or findShortClass
+     * @param lineNumber a source line number (1-based)
+     * @return the index of the first line entry of the class with a line number that is not less than lineNumber,
+     * or getLineEntryEnd(classIndex) if there is no such entry
+     */
+    public int findLineEntry(int classIndex, int lineNumber) {
+        if (classIndex == NO_CLASS) {
+            return 0;
+        }
+        int low = classLineStart[classIndex];
+        int high = classLineStart[classIndex + 1];
+        long key = packLineKey(
+                unpackClassId(recordKeys[groupStart[classGroupStart[classIndex]]]),
+                Math.max(lineNumber, 0));
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lineKeys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
 
-        if (matchingRecords != null) {
-            return matchingRecords;
-        } else {
+    /**
+     * @param classIndex a class index returned by findClass or findShortClass
+     * @return the end (exclusive) of the line entries of the class
+     */
+    public int getLineEntryEnd(int classIndex) {
+        return classIndex == NO_CLASS ? 0 : classLineStart[classIndex + 1];
+    }
+
+    /**
+     * @param lineEntry a line entry index
+     * @return the source line number of the entry (1-based)
+     */
+    public int getLineNumber(int lineEntry) {
+        return (int) lineKeys[lineEntry];
+    }
+
+    /**
+     * @param lineEntry a line entry index
+     * @return the number of samples where the line was on top of the stack
+     */
+    public long getLineSampleCount(int lineEntry) {
+        return lineSampleCounts[lineEntry];
+    }
+
+    /**
+     * @param lineEntry a line entry index
+     * @return the time (ns) of the samples where the line was on top of the stack
+     */
+    public long getLineTime(int lineEntry) {
+        return lineTimes[lineEntry];
+    }
+
+    /**
+     * @param lineEntry a line entry index
+     * @return the line sample count relative to the total sample count of the snapshot ([0.0 .. 1.0])
+     * @see #getTotalSampleCount()
+     */
+    public double getLineRelativeTime(int lineEntry) {
+        return totalSampleCount > 0 ? Math.min((double) lineSampleCounts[lineEntry] / totalSampleCount, 1.0) : 0.0;
+    }
+
+    /**
+     * The number of the self samples of a method that were taken while the method was executed in a given way
+     * (e.g., interpreted or compiled by C2). The lookup is a binary search over the frame type index, and it does
+     * not allocate memory.
+     *
+     * @param record a record index
+     * @param frameType a frame type
+     * @return the number of the samples of the frame type, zero if the profiler does not report frame types
+     */
+    public long getFrameTypeSampleCount(int record, @NotNull FrameType frameType) {
+        int entry = findFrameTypeEntry(record, frameType.ordinal());
+        return entry < frameTypeKeys.length && frameTypeKeys[entry] == packFrameTypeKey(record, frameType.ordinal())
+                ? frameTypeSampleCounts[entry]
+                : 0;
+    }
+
+    // The first frame type entry with a key that is not less than (record, frame type ordinal)
+    private int findFrameTypeEntry(int record, int frameTypeOrdinal) {
+        long key = packFrameTypeKey(record, frameTypeOrdinal);
+        int low = 0;
+        int high = frameTypeKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (frameTypeKeys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Check whether a method calls any profiled methods in the stack traces. The check lets a caller skip
+     * the resolution of the call sites of a method that has no calls to look up.
+     *
+     * @param callerRecord the first record of a code reference (as returned by findRecord)
+     * @return true if the call index has calls from the method
+     */
+    public boolean hasCalls(int callerRecord) {
+        return calleeCallStart[callerRecord + 1] > calleeCallStart[callerRecord];
+    }
+
+    /**
+     * Find the calls from one method to another in the stack traces. The lookup does not allocate memory.
+     *
+     * @param callerRecord the first record of the calling code reference (as returned by findRecord)
+     * @param calleeRecord the first record of the called code reference (as returned by findRecord)
+     * @return the call index or NO_CALL if the snapshot has no such calls
+     */
+    public int findCall(int callerRecord, int calleeRecord) {
+        return calls.find(callerRecord, calleeRecord);
+    }
+
+    /**
+     * @param call a call index
+     * @return the number of samples where the caller called the callee (each is counted with the callee subtree)
+     */
+    public long getCallSampleCount(int call) {
+        return calls.sampleCounts[call];
+    }
+
+    /**
+     * @param call a call index
+     * @return the time (ns) of the samples where the caller called the callee
+     */
+    public long getCallTime(int call) {
+        return calls.times[call];
+    }
+
+    /**
+     * @param call a call index
+     * @return the call sample count relative to the total sample count of the snapshot ([0.0 .. 1.0])
+     * @see #getTotalSampleCount()
+     */
+    public double getCallRelativeTime(int call) {
+        return totalSampleCount > 0 ? Math.min((double) calls.sampleCounts[call] / totalSampleCount, 1.0) : 0.0;
+    }
+
+    /**
+     * @param call a call index
+     * @return the first record of the calling code reference
+     */
+    public int getCallCaller(int call) {
+        return calls.getCaller(call);
+    }
+
+    /**
+     * @param call a call index
+     * @return the first record of the called code reference
+     */
+    public int getCallCallee(int call) {
+        return calls.getCallee(call);
+    }
+
+    /**
+     * The callers of a method are the code references that call it in the stack traces, and the calls of all
+     * the frames of both methods (e.g., their interpreted and compiled frames) are merged.
+     *
+     * @param record a record index
+     * @return the number of the distinct callers of the record's code reference
+     * @see #getCallerCall(int, int)
+     */
+    public int getCallerCount(int record) {
+        int first = getFirstRecord(record);
+        return callerCallStart[first + 1] - callerCallStart[first];
+    }
+
+    /**
+     * Get a call to a method. The calls are ordered by the sample count, descending, so the heaviest callers
+     * come first. The lookup does not allocate memory.
+     *
+     * @param record a record index
+     * @param index a caller index ([0 .. getCallerCount(record)))
+     * @return the call index (see getCallCaller)
+     */
+    public int getCallerCall(int record, int index) {
+        return callerCalls[callerCallStart[getFirstRecord(record)] + index];
+    }
+
+    /**
+     * @param record a record index
+     * @return the number of the distinct profiled methods that the record's code reference calls
+     * @see #getCallerCount(int)
+     */
+    public int getCalleeCount(int record) {
+        int first = getFirstRecord(record);
+        return calleeCallStart[first + 1] - calleeCallStart[first];
+    }
+
+    /**
+     * Get a call from a method. The calls are ordered by the sample count, descending, so the heaviest callees
+     * come first. The lookup does not allocate memory.
+     *
+     * @param record a record index
+     * @param index a callee index ([0 .. getCalleeCount(record)))
+     * @return the call index (see getCallCallee)
+     */
+    public int getCalleeCall(int record, int index) {
+        return calleeCalls[calleeCallStart[getFirstRecord(record)] + index];
+    }
+
+    // The calls are indexed by the first records of the code references
+    private int getFirstRecord(int record) {
+        int first = record;
+        while (first > 0 && recordKeys[first - 1] == recordKeys[record]) {
+            first -= 1;
+        }
+        return first;
+    }
+
+    /**
+     * Create a code reference for a record.
+     *
+     * @param record a record index
+     * @return a new code reference instance
+     */
+    public @NotNull CodeReference getCodeReference(int record) {
+        long key = recordKeys[record];
+        return CodeReference.builder()
+                .setFqClassName(symbols.getSymbol(unpackClassId(key)))
+                .setMethodName(symbols.getSymbol(unpackMethodId(key)))
+                .setJavaMethod(unpackJavaMethod(key))
+                .build();
+    }
+
+    /**
+     * Create a time record for a record index.
+     *
+     * @param record a record index
+     * @return a new time record instance (changing it does not affect the dictionary)
+     */
+    public @NotNull TimeRecord getTimeRecord(int record) {
+        TimeRecord timeRecord = new TimeRecord(getCodeReference(record), relativeTimes[record]);
+        for (ProfileMetric metric : METRICS) {
+            timeRecord.setValue(metric, values[metric.ordinal()][record]);
+        }
+        return timeRecord;
+    }
+
+    /**
+     * Find the time records of a code reference. If there are no records for the fully qualified class name,
+     * the short class name is tried.
+     *
+     * @param codeReference a code reference to search
+     * @return an immutable list of time record copies (empty if no records were found)
+     */
+    public @NotNull List<TimeRecord> getTimeRecords(@NotNull CodeReference codeReference) {
+        return getTimeRecords(findGroup(
+                codeReference.getFqClassName(),
+                codeReference.getMethodName(),
+                codeReference.isJavaMethod()));
+    }
+
+    /**
+     * Find the time records of a Java/Kotlin method. If there are no records for the fully qualified class name,
+     * the short class name is tried.
+     *
+     * @param fqClassName a fully qualified class name
+     * @param methodName a method name
+     * @return an immutable list of time record copies (empty if no records were found)
+     */
+    public @NotNull List<TimeRecord> getTimeRecords(@NotNull String fqClassName, @NotNull String methodName) {
+        return getTimeRecords(findGroup(fqClassName, methodName, true));
+    }
+
+    private @NotNull List<TimeRecord> getTimeRecords(int group) {
+        if (group == NO_RECORD) {
             return Collections.emptyList();
         }
+        int start = groupStart[group];
+        int end = groupStart[group + 1];
+        if (end - start == 1) {
+            return Collections.singletonList(getTimeRecord(start));
+        }
+        List<TimeRecord> result = new ArrayList<>(end - start);
+        for (int record = start; record < end; record++) {
+            result.add(getTimeRecord(record));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private int findGroup(@NotNull String fqClassName, @NotNull String methodName, boolean javaMethod) {
+        int methodId = symbols.find(methodName);
+        if (methodId == SymbolTable.NO_SYMBOL) {
+            return NO_RECORD;
+        }
+
+        int group = findGroup(symbols.find(fqClassName), methodId, javaMethod);
+        if (group == NO_RECORD) {
+            int shortNameStart = CodeReference.getShortClassNameStart(fqClassName);
+            if (shortNameStart > 0) {
+                int shortClassId = symbols.find(fqClassName, shortNameStart, fqClassName.length());
+                group = findGroup(shortClassId, methodId, javaMethod);
+            }
+        }
+        return group;
+    }
+
+    private int findGroup(int classId, int methodId, boolean javaMethod) {
+        if (classId == SymbolTable.NO_SYMBOL) {
+            return NO_RECORD;
+        }
+        long key = packKey(classId, methodId, javaMethod);
+        int mask = groupSlots.length - 1;
+        int slot = mix(key) & mask;
+        while (groupSlots[slot] != NO_RECORD) {
+            int group = groupSlots[slot];
+            if (recordKeys[groupStart[group]] == key) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_RECORD;
+    }
+
+    private static long packKey(int classId, int methodId, boolean javaMethod) {
+        return ((long) classId << 32) | ((long) methodId << 1) | (javaMethod ? 0L : 1L);
+    }
+
+    // Line numbers are positive, so the line keys of a class follow the line order
+    private static long packLineKey(int classId, int lineNumber) {
+        return ((long) classId << 32) | lineNumber;
+    }
+
+    private static long packFrameTypeKey(int record, int frameTypeOrdinal) {
+        return ((long) record << 32) | frameTypeOrdinal;
+    }
+
+    private static int unpackClassId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int unpackMethodId(long key) {
+        return (int) (key & 0xFFFFFFFFL) >>> 1;
+    }
+
+    private static boolean unpackJavaMethod(long key) {
+        return (key & 1L) == 0;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // A merge sort of calls by their sample counts, descending (stable, without boxing)
+    private static void sortBySamples(
+            @NotNull int[] order, @NotNull int[] buffer, @NotNull long[] samples, int start, int end) {
+        if (end - start < 2) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        sortBySamples(order, buffer, samples, start, middle);
+        sortBySamples(order, buffer, samples, middle, end);
+        if (samples[order[middle - 1]] >= samples[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, start, buffer, start, end - start);
+        int left = start;
+        int right = middle;
+        for (int i = start; i < end; i++) {
+            if (right >= end || (left < middle && samples[buffer[left]] >= samples[buffer[right]])) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    // An open addressing table of calls: the key is (caller record, callee record + 1), so it is never zero,
+    // and 0 marks an empty slot. The table is filled in the dictionary constructor only.
+    private static final class CallIndex {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private long[] sampleCounts = new long[INITIAL_CAPACITY];
+        private long[] times = new long[INITIAL_CAPACITY];
+        private int size = 0;
+
+        // Returns true if a new call is added, the counters of a known call are summed
+        boolean add(int caller, int callee, long sampleCount, long time) {
+            long key = ((long) caller << 32) | (callee + 1L);
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    sampleCounts[slot] += sampleCount;
+                    times[slot] += time;
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            sampleCounts[slot] = sampleCount;
+            times[slot] = time;
+            size += 1;
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+            return true;
+        }
+
+        int getCaller(int call) {
+            return (int) (keys[call] >>> 32);
+        }
+
+        int getCallee(int call) {
+            return (int) keys[call] - 1;
+        }
+
+        int find(int caller, int callee) {
+            long key = ((long) caller << 32) | (callee + 1L);
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NO_CALL;
+        }
+
+        long estimateRetainedSize() {
+            return HeapSize.of(keys) + HeapSize.of(sampleCounts) + HeapSize.of(times);
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            long[] oldSampleCounts = sampleCounts;
+            long[] oldTimes = times;
+            keys = new long[oldKeys.length * 2];
+            sampleCounts = new long[oldKeys.length * 2];
+            times = new long[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    sampleCounts[slot] = oldSampleCounts[i];
+                    times[slot] = oldTimes[i];
+                }
+            }
+        }
+
+        private static final int INITIAL_CAPACITY = 16;
+    }
+
+    /**
+     * A dictionary builder. It accumulates time records in growing columns and sorts them by code reference
+     * when the dictionary is built. The builder is not thread-safe.
+     */
+    static final class Builder {
+        private final SymbolTable symbols = new SymbolTable();
+        private @NotNull CallTree callTree = CallTree.EMPTY;
+        private @Nullable Function<String, CodeReference> frameResolver = null;
+
+        private int recordCount = 0;
+        private long[] recordKeys = new long[INITIAL_CAPACITY];
+        private double[] relativeTimes = new double[INITIAL_CAPACITY];
+        private long[][] values = new long[METRICS.length][INITIAL_CAPACITY];
+
+        // The method records that sum the line and frame type records, by their keys
+        private final Map<Long, Integer> methodRecords = new HashMap<>();
+
+        private int lineCount = 0;
+        private long[] lineKeys = new long[INITIAL_CAPACITY];
+        private long[] lineSampleCounts = new long[INITIAL_CAPACITY];
+        private long[] lineTimes = new long[INITIAL_CAPACITY];
+
+        // Frame type entries of the builder records (they are renumbered when the records are sorted)
+        private int frameTypeCount = 0;
+        private long[] frameTypeKeys = new long[INITIAL_CAPACITY];
+        private long[] frameTypeSampleCounts = new long[INITIAL_CAPACITY];
+
+        @NotNull Builder setCallTree(@NotNull CallTree callTree) {
+            this.callTree = callTree;
+            return this;
+        }
+
+        /**
+         * Set a resolver of the call tree frame names. If it is set, the inclusive time of the methods is derived
+         * from the call tree when the dictionary is built. Otherwise, the inclusive columns are zero.
+         *
+         * @param frameResolver a function that maps a frame name to a code reference (or null for the frames
+         *                      that are not methods), usually SnapshotParser.getFrameCodeReference
+         * @return the builder
+         */
+        @NotNull Builder setFrameResolver(@Nullable Function<String, CodeReference> frameResolver) {
+            this.frameResolver = frameResolver;
+            return this;
+        }
+
+        /**
+         * Add a time record. The records of one method that are attributed to source lines or to frame types are
+         * summed into one method record, and their samples are added to the line index and to the frame type index.
+         *
+         * @param timeRecord a time record
+         * @return the builder
+         */
+        @NotNull Builder add(@NotNull TimeRecord timeRecord) {
+            CodeReference codeReference = timeRecord.getCodeReference();
+            int classId = symbols.intern(codeReference.getFqClassName());
+            long key = packKey(classId, symbols.intern(codeReference.getMethodName()), codeReference.isJavaMethod());
+            FrameType frameType = timeRecord.getFrameType();
+            if (timeRecord.getLineNumber() == TimeRecord.NO_LINE && frameType == null) {
+                addValues(add(key), timeRecord);
+                return this;
+            }
+
+            Integer methodRecord = methodRecords.get(key);
+            if (methodRecord == null) {
+                methodRecord = add(key);
+                methodRecords.put(key, methodRecord);
+            }
+            addValues(methodRecord, timeRecord);
+            if (timeRecord.getLineNumber() != TimeRecord.NO_LINE) {
+                addLine(packLineKey(classId, timeRecord.getLineNumber()),
+                        timeRecord.getSampleCount(),
+                        timeRecord.getAbsoluteTime());
+            }
+            if (frameType != null) {
+                addFrameType(packFrameTypeKey(methodRecord, frameType.ordinal()), timeRecord.getSampleCount());
+            }
+            return this;
+        }
+
+        private void addFrameType(long key, long sampleCount) {
+            if (frameTypeCount == frameTypeKeys.length) {
+                int capacity = frameTypeCount * 2;
+                frameTypeKeys = Arrays.copyOf(frameTypeKeys, capacity);
+                frameTypeSampleCounts = Arrays.copyOf(frameTypeSampleCounts, capacity);
+            }
+            frameTypeKeys[frameTypeCount] = key;
+            frameTypeSampleCounts[frameTypeCount] = sampleCount;
+            frameTypeCount += 1;
+        }
+
+        private void addLine(long key, long sampleCount, long time) {
+            if (lineCount == lineKeys.length) {
+                int capacity = lineCount * 2;
+                lineKeys = Arrays.copyOf(lineKeys, capacity);
+                lineSampleCounts = Arrays.copyOf(lineSampleCounts, capacity);
+                lineTimes = Arrays.copyOf(lineTimes, capacity);
+            }
+            lineKeys[lineCount] = key;
+            lineSampleCounts[lineCount] = sampleCount;
+            lineTimes[lineCount] = time;
+            lineCount += 1;
+        }
+
+        // Add a record with zero values and return its index
+        private int add(long key) {
+            if (recordCount == recordKeys.length) {
+                int capacity = recordCount * 2;
+                recordKeys = Arrays.copyOf(recordKeys, capacity);
+                relativeTimes = Arrays.copyOf(relativeTimes, capacity);
+                for (int column = 0; column < values.length; column++) {
+                    values[column] = Arrays.copyOf(values[column], capacity);
+                }
+            }
+            recordKeys[recordCount] = key;
+            return recordCount++;
+        }
+
+        private void addValues(int record, @NotNull TimeRecord timeRecord) {
+            relativeTimes[record] += timeRecord.getRelativeTime();
+            for (ProfileMetric metric : METRICS) {
+                values[metric.ordinal()][record] += timeRecord.getValue(metric);
+            }
+        }
+
+        @NotNull Builder addAll(@NotNull Collection<TimeRecord> timeRecords) {
+            for (TimeRecord record: timeRecords) {
+                add(record);
+            }
+            return this;
+        }
+
+        /**
+         * Sort the records and freeze them. The builder should not be used after this call.
+         *
+         * @return an immutable dictionary
+         */
+        @NotNull StatisticsDictionary build() {
+            long[] frameKeys = resolveFrames();
+
+            // Stable sort keeps the records of one code reference in the order they were added
+            int[] order = new int[recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                order[i] = i;
+            }
+            sortByKey(recordKeys, order, new int[recordCount], 0, recordCount);
+
+            long[] sortedKeys = new long[recordCount];
+            double[] sortedRelativeTimes = new double[recordCount];
+            long[][] sortedValues = new long[METRICS.length][recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                sortedKeys[i] = recordKeys[order[i]];
+                sortedRelativeTimes[i] = relativeTimes[order[i]];
+                for (int column = 0; column < values.length; column++) {
+                    sortedValues[column][i] = values[column][order[i]];
+                }
+            }
+            long[] sortedSampleCounts = sortedValues[ProfileMetric.SAMPLES.ordinal()];
+            long[] sortedAbsoluteTimes = sortedValues[ProfileMetric.TIME.ordinal()];
+            long[] inclusiveSampleCounts = new long[recordCount];
+            long[] inclusiveTimes = new long[recordCount];
+            int[] frameRecords = new int[callTree.getFrameCount()];
+            Arrays.fill(frameRecords, NO_RECORD);
+            if (frameKeys != null) {
+                for (int frame = 0; frame < frameKeys.length; frame++) {
+                    if (frameKeys[frame] != NO_KEY) {
+                        frameRecords[frame] = findFirstRecord(sortedKeys, frameKeys[frame]);
+                    }
+                }
+                aggregateInclusiveTime(frameRecords, sortedKeys, inclusiveSampleCounts, inclusiveTimes);
+                attributeNativeFrames(frameRecords, sortedRelativeTimes, sortedSampleCounts, sortedAbsoluteTimes);
+                // A snapshot may keep only the heaviest stack traces (the Async Profiler lists the top ones),
+                // so the inclusive time of a method found in the stack traces is at least its self time
+                for (int record = 0; record < recordCount; record++) {
+                    if (inclusiveSampleCounts[record] > 0) {
+                        inclusiveSampleCounts[record] =
+                                Math.max(inclusiveSampleCounts[record], sortedSampleCounts[record]);
+                        inclusiveTimes[record] = Math.max(inclusiveTimes[record], sortedAbsoluteTimes[record]);
+                    }
+                }
+            }
+
+            // Line entries are sorted by their keys, and the entries of one line (e.g., of several snapshots or
+            // of several lambdas on one line) are summed
+            int[] lineOrder = new int[lineCount];
+            for (int i = 0; i < lineCount; i++) {
+                lineOrder[i] = i;
+            }
+            sortByKey(lineKeys, lineOrder, new int[lineCount], 0, lineCount);
+            long[] sortedLineKeys = new long[lineCount];
+            long[] sortedLineSampleCounts = new long[lineCount];
+            long[] sortedLineTimes = new long[lineCount];
+            int uniqueLineCount = 0;
+            for (int i = 0; i < lineCount; i++) {
+                int line = lineOrder[i];
+                if (uniqueLineCount == 0 || sortedLineKeys[uniqueLineCount - 1] != lineKeys[line]) {
+                    sortedLineKeys[uniqueLineCount] = lineKeys[line];
+                    uniqueLineCount += 1;
+                }
+                sortedLineSampleCounts[uniqueLineCount - 1] += lineSampleCounts[line];
+                sortedLineTimes[uniqueLineCount - 1] += lineTimes[line];
+            }
+
+            // Frame type entries are renumbered to the sorted records, and the entries of one record and frame type
+            // (e.g., of several source lines) are summed
+            int[] sortedRecords = new int[recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                sortedRecords[order[i]] = i;
+            }
+            for (int i = 0; i < frameTypeCount; i++) {
+                long key = frameTypeKeys[i];
+                frameTypeKeys[i] = packFrameTypeKey(sortedRecords[(int) (key >>> 32)], (int) key);
+            }
+            int[] frameTypeOrder = new int[frameTypeCount];
+            for (int i = 0; i < frameTypeCount; i++) {
+                frameTypeOrder[i] = i;
+            }
+            sortByKey(frameTypeKeys, frameTypeOrder, new int[frameTypeCount], 0, frameTypeCount);
+            long[] sortedFrameTypeKeys = new long[frameTypeCount];
+            long[] sortedFrameTypeSampleCounts = new long[frameTypeCount];
+            int uniqueFrameTypeCount = 0;
+            for (int i = 0; i < frameTypeCount; i++) {
+                int entry = frameTypeOrder[i];
+                if (uniqueFrameTypeCount == 0
+                        || sortedFrameTypeKeys[uniqueFrameTypeCount - 1] != frameTypeKeys[entry]) {
+                    sortedFrameTypeKeys[uniqueFrameTypeCount] = frameTypeKeys[entry];
+                    uniqueFrameTypeCount += 1;
+                }
+                sortedFrameTypeSampleCounts[uniqueFrameTypeCount - 1] += frameTypeSampleCounts[entry];
+            }
+
+            return new StatisticsDictionary(
+                    symbols,
+                    callTree,
+                    sortedKeys,
+                    sortedRelativeTimes,
+                    sortedValues,
+                    inclusiveSampleCounts,
+                    inclusiveTimes,
+                    frameRecords,
+                    Arrays.copyOf(sortedLineKeys, uniqueLineCount),
+                    Arrays.copyOf(sortedLineSampleCounts, uniqueLineCount),
+                    Arrays.copyOf(sortedLineTimes, uniqueLineCount),
+                    Arrays.copyOf(sortedFrameTypeKeys, uniqueFrameTypeCount),
+                    Arrays.copyOf(sortedFrameTypeSampleCounts, uniqueFrameTypeCount));
+        }
+
+        // Resolve the frames to record keys; the methods without records get inclusive-only records
+        private @Nullable long[] resolveFrames() {
+            if (frameResolver == null || callTree.getFrameCount() == 0) {
+                return null;
+            }
+            Set<Long> knownKeys = new HashSet<>();
+            for (int record = 0; record < recordCount; record++) {
+                knownKeys.add(recordKeys[record]);
+            }
+            long[] frameKeys = new long[callTree.getFrameCount()];
+            for (int frame = 0; frame < frameKeys.length; frame++) {
+                CodeReference codeReference = frameResolver.apply(callTree.getFrameName(frame));
+                if (codeReference == null) {
+                    frameKeys[frame] = NO_KEY;
+                    continue;
+                }
+                long key = packKey(
+                        symbols.intern(codeReference.getFqClassName()),
+                        symbols.intern(codeReference.getMethodName()),
+                        codeReference.isJavaMethod());
+                if (knownKeys.add(key)) {
+                    add(key);
+                }
+                frameKeys[frame] = key;
+            }
+            return frameKeys;
+        }
+
+        /**
+         * Attribute the self values of the native frames (the frames that are not methods) below a JNI function
+         * to the Java native method that the function implements (see NativeSymbols): the time spent in the native
+         * code of a library is the self time of its native method. A native node belongs to the closest JNI frame
+         * above it, unless there is a Java frame in between (e.g., a callback of the library), and the nodes
+         * outside of the JNI calls (e.g., the JVM threads) are not attributed to any method.
+         *
+         * The inclusive values already include the native frames, since they are the subtree totals.
+         */
+        private void attributeNativeFrames(
+                @NotNull int[] frameRecords,
+                @NotNull double[] sortedRelativeTimes,
+                @NotNull long[] sortedSampleCounts,
+                @NotNull long[] sortedAbsoluteTimes) {
+            boolean[] jniFrames = new boolean[frameRecords.length];
+            boolean hasJniFrames = false;
+            for (int frame = 0; frame < frameRecords.length; frame++) {
+                if (frameRecords[frame] != NO_RECORD && NativeSymbols.isJniSymbol(callTree.getFrameName(frame))) {
+                    jniFrames[frame] = true;
+                    hasJniFrames = true;
+                }
+            }
+            if (!hasJniFrames) {
+                return;
+            }
+
+            // The relative time of a native sample is estimated like the total sample count of the dictionary
+            long totalSampleCount = estimateTotalSampleCount(sortedRelativeTimes, sortedSampleCounts, callTree);
+            double sampleRelativeTime = totalSampleCount > 0 ? 1.0 / totalSampleCount : 0.0;
+            // Parents precede their children, so the owner of a parent is known before its children are visited
+            int[] nodeOwners = new int[callTree.getNodeCount()];
+            Arrays.fill(nodeOwners, NO_RECORD);
+            for (int node = CallTree.ROOT + 1; node < nodeOwners.length; node++) {
+                int frame = callTree.getFrame(node);
+                if (frameRecords[frame] != NO_RECORD) {
+                    nodeOwners[node] = jniFrames[frame] ? frameRecords[frame] : NO_RECORD;
+                    continue;
+                }
+                int owner = nodeOwners[callTree.getParent(node)];
+                nodeOwners[node] = owner;
+                if (owner != NO_RECORD) {
+                    long selfSamples = callTree.getSelfSamples(node);
+                    sortedSampleCounts[owner] += selfSamples;
+                    sortedAbsoluteTimes[owner] += callTree.getSelfTime(node);
+                    sortedRelativeTimes[owner] += selfSamples * sampleRelativeTime;
+                }
+            }
+        }
+
+        // The groups are identified by their first records (NO_RECORD is CallTree.NO_GROUP);
+        // all the records of a group get the group totals
+        private void aggregateInclusiveTime(
+                @NotNull int[] frameRecords,
+                @NotNull long[] sortedKeys,
+                @NotNull long[] inclusiveSampleCounts,
+                @NotNull long[] inclusiveTimes) {
+            callTree.aggregateTotals(frameRecords, inclusiveSampleCounts, inclusiveTimes);
+            for (int record = 1; record < sortedKeys.length; record++) {
+                if (sortedKeys[record] == sortedKeys[record - 1]) {
+                    inclusiveSampleCounts[record] = inclusiveSampleCounts[record - 1];
+                    inclusiveTimes[record] = inclusiveTimes[record - 1];
+                }
+            }
+        }
+
+        private static int findFirstRecord(@NotNull long[] sortedKeys, long key) {
+            int low = 0;
+            int high = sortedKeys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sortedKeys[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // A merge sort of record (line or frame type) indexes by their keys (stable, without boxing)
+        private static void sortByKey(
+                @NotNull long[] keys, @NotNull int[] order, @NotNull int[] buffer, int start, int end) {
+            if (end - start < 2) {
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            sortByKey(keys, order, buffer, start, middle);
+            sortByKey(keys, order, buffer, middle, end);
+            if (keys[order[middle - 1]] <= keys[order[middle]]) {
+                return;
+            }
+            System.arraycopy(order, start, buffer, start, end - start);
+            int left = start;
+            int right = middle;
+            for (int i = start; i < end; i++) {
+                if (right >= end || (left < middle && keys[buffer[left]] <= keys[buffer[right]])) {
+                    order[i] = buffer[left++];
+                } else {
+                    order[i] = buffer[right++];
+                }
+            }
+        }
+
+        // Packed keys are never negative: class identifiers are non-negative ints
+        private static final long NO_KEY = -1;
+
+        private static final int INITIAL_CAPACITY = 1024;
     }
 }
@@ -0,0 +1,18 @@
+package com.comitative.pic.statistics;
+
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A listener of the statistics updates: a snapshot or a baseline is loaded, restored from the cache or cleared.
+ * The listeners are notified on the event dispatch thread through the project message bus, after the new statistics
+ * have replaced the old ones.
+ */
+public interface StatisticsListener {
+    Topic<StatisticsListener> TOPIC = Topic.create("Profiler statistics updates", StatisticsListener.class);
+
+    /**
+     * @param statistics the new statistics delta (the current snapshot joined with the baseline)
+     */
+    void statisticsChanged(@NotNull StatisticsDelta statistics);
+}
@@ -1,30 +1,93 @@
 package com.comitative.pic.statistics;
 
 import com.comitative.pic.CodeReference;
+import com.comitative.pic.ProfileMetric;
 import com.comitative.pic.TimeRecord;
 import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.BackgroundTaskQueue;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Profiler statistics service.
  *
  * Provides a project-level storage for the profiling data and a snapshot parser repository.
+ * Snapshots are loaded one at a time in a background queue; a loaded snapshot may be watched for changes.
+ *
+ * Besides the current snapshot, the service may hold a baseline snapshot (e.g., the profile of the previous
+ * release). Both are stored as one immutable StatisticsDelta, which is recomputed when either of them is loaded,
+ * so readers always see a consistent pair.
  */
 @Service
-public class StatisticsService {
+public class StatisticsService implements Disposable {
     private static final Logger LOG = Logger.getInstance(StatisticsService.class);
     private static final ExtensionPointName<SnapshotParser> EP_NAME =
             ExtensionPointName.create("com.comitative.pic.snapshotParser");
 
-    private final AtomicReference<StatisticsDictionary> statistics = new AtomicReference<>(new StatisticsDictionary());
+    private final Project project;
+    private final HighlightingRefresher refresher;
+    private final Map<SnapshotKind, SnapshotCache> caches = new EnumMap<>(SnapshotKind.class);
+    private final Consumer<Task.Backgroundable> loadingQueue;
+    private final SnapshotWatcher.Factory watcherFactory;
+    private final PluginMetrics metrics = new PluginMetrics();
+
+    // The watcher and the load counter are accessed on the event dispatch thread only. The counter identifies
+    // the last explicit load of the current snapshot, only that load may start watching its file.
+    private @Nullable SnapshotWatcher watcher = null;
+    private int currentLoadCount = 0;
+    private final AtomicReference<StatisticsDelta> statistics = new AtomicReference<>(StatisticsDelta.EMPTY);
+
+    public StatisticsService(@NotNull Project project) {
+        this(
+                project,
+                new HighlightingRefresher(project),
+                kind -> SnapshotCache.forProject(project, kind),
+                new BackgroundTaskQueue(project, "Loading profiler snapshot")::run,
+                (service, file, parser) -> SnapshotWatcher.watch(project, service, file, parser));
+    }
+
+    /**
+     * Create a service with its own platform parts (e.g., in the tests, where the loading tasks run synchronously
+     * and the file system is not watched).
+     * @param project the project of the service
+     * @param refresher the highlighting refresher of the project
+     * @param cacheFactory the snapshot caches of the project
+     * @param loadingQueue a serial queue that runs the loading tasks
+     * @param watcherFactory the factory of the watchers of the loaded snapshots
+     */
+    StatisticsService(
+            @NotNull Project project,
+            @NotNull HighlightingRefresher refresher,
+            @NotNull Function<SnapshotKind, SnapshotCache> cacheFactory,
+            @NotNull Consumer<Task.Backgroundable> loadingQueue,
+            @NotNull SnapshotWatcher.Factory watcherFactory) {
+        this.project = project;
+        this.refresher = refresher;
+        for (SnapshotKind kind : SnapshotKind.values()) {
+            caches.put(kind, cacheFactory.apply(kind));
+        }
+        this.loadingQueue = loadingQueue;
+        this.watcherFactory = watcherFactory;
+    }
 
     /**
      * Retrieve a name-ordered list of registered parsers (snapshot file formats).
@@ -39,27 +102,374 @@ public class StatisticsService {
     }
 
     /**
-     * Load a snapshot from an input file and replace the old statistics with the new data.
+     * Start a cancellable background task that loads a snapshot from an input file and replaces the old statistics
+     * with the new data. The old statistics are kept if the task fails or is cancelled.
+     * @param file the file to load
+     * @param parser the parser that will be used for processing the input file
+     * @see SnapshotLoadingTask
+     */
+    public void loadFileInBackground(@NotNull File file, @NotNull SnapshotParser parser) {
+        loadFileInBackground(file, parser, false);
+    }
+
+    /**
+     * Start a cancellable background task that loads a snapshot from an input file and replaces the old statistics
+     * with the new data. If the file was watched before, the watching stops. The method should be called
+     * on the event dispatch thread.
+     * @param file the file to load
+     * @param parser the parser that will be used for processing the input file
+     * @param watch whether the file should be reloaded every time it changes (the watching starts when the file
+     * is successfully loaded, unless another snapshot has been loaded in the meantime)
+     * @see SnapshotWatcher
+     */
+    public void loadFileInBackground(@NotNull File file, @NotNull SnapshotParser parser, boolean watch) {
+        stopWatching();
+        int load = ++currentLoadCount;
+        loadingQueue.accept(new SnapshotLoadingTask(
+                project, this, SnapshotKind.CURRENT, Collections.singletonList(file), parser, false,
+                watch ? () -> startWatching(file, parser, load) : null));
+    }
+
+    /**
+     * Start a cancellable background task that loads several snapshots (e.g., the snapshots of the nodes
+     * of a cluster), merges them into one aggregate profile and replaces the old statistics with it.
+     * If a file was watched before, the watching stops. The method should be called on the event dispatch thread.
+     * @param files the files to load
+     * @param parser the parser that will be used for processing the input files
+     * @see SnapshotMerger
+     */
+    public void loadFilesInBackground(@NotNull List<File> files, @NotNull SnapshotParser parser) {
+        stopWatching();
+        currentLoadCount += 1;
+        loadingQueue.accept(new SnapshotLoadingTask(
+                project, this, SnapshotKind.CURRENT, new ArrayList<>(files), parser, false, null));
+    }
+
+    /**
+     * Start a cancellable background task that loads a baseline snapshot (several snapshots are merged into one).
+     * The gutter icons then show the changes of the current statistics relative to the baseline.
+     * @param files the files to load
+     * @param parser the parser that will be used for processing the input files
+     * @see StatisticsDelta
+     */
+    public void loadBaselineInBackground(@NotNull List<File> files, @NotNull SnapshotParser parser) {
+        loadingQueue.accept(new SnapshotLoadingTask(
+                project, this, SnapshotKind.BASELINE, new ArrayList<>(files), parser, false, null));
+    }
+
+    /**
+     * Remove the baseline snapshot (and its cache), so the gutter icons show the current statistics only.
+     * The method should be called on the event dispatch thread.
+     */
+    public void clearBaseline() {
+        setStatistics(SnapshotKind.BASELINE, StatisticsDictionary.EMPTY);
+        updateCacheInBackground(SnapshotKind.BASELINE, SnapshotCache::delete);
+    }
+
+    /**
+     * Reload a watched snapshot. Unlike the explicit loading, failures are only logged, and an empty snapshot
+     * does not replace the statistics: a profiler may be in the middle of writing the file, and the next change
+     * will trigger another reload anyway.
      * @param file the file to load
      * @param parser the parser that will be used for processing the input file
-     * @return true if the file is successfully loaded, false if there was an unrecoverable error during the processing
-     */
-    public boolean loadFile(@NotNull File file, @NotNull SnapshotParser parser) {
-        try (InputStream inputStream = new FileInputStream(file)) {
-            StatisticsDictionary dictionary = new StatisticsDictionary();
-            dictionary.addAll(parser.parseStream(inputStream));
-            // There is no need to check for versions or synchronize with possible other updater threads,
-            // we just need to atomically replace the collection.
-            statistics.set(dictionary);
-        } catch (FileNotFoundException e) {
-            LOG.error("File not found: " + file);
-            return false;
+     */
+    void reloadFileInBackground(@NotNull File file, @NotNull SnapshotParser parser) {
+        loadingQueue.accept(new SnapshotLoadingTask(
+                project, this, SnapshotKind.CURRENT, Collections.singletonList(file), parser, true, null));
+    }
+
+    private void startWatching(@NotNull File file, @NotNull SnapshotParser parser, int load) {
+        if (load == currentLoadCount) {
+            stopWatching();
+            watcher = watcherFactory.watch(this, file, parser);
+        }
+    }
+
+    /**
+     * @return the watched snapshot file or null if no file is watched
+     */
+    public @Nullable File getWatchedFile() {
+        return watcher == null ? null : watcher.getFile();
+    }
+
+    /**
+     * Stop watching the snapshot file (if any). The current statistics are kept.
+     */
+    public void stopWatching() {
+        if (watcher != null) {
+            Disposer.dispose(watcher);
+            watcher = null;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        // The watcher is a child disposable of the service, it is disposed by the platform
+        watcher = null;
+    }
+
+    /**
+     * Restore snapshots from the snapshot cache. The cache is used only if it holds the same files (with the same
+     * sizes, modification times and hashes) parsed by the same parser. The current statistics are not affected.
+     * @param kind the role of the snapshot (it determines the cache)
+     * @param files the files to load (at least one)
+     * @param parser the parser of the input files
+     * @param source the description of the files in their current state
+     * @return the cached dictionary or null if the cache holds another snapshot (or it can't be read)
+     */
+    @Nullable StatisticsDictionary restoreFiles(
+            @NotNull SnapshotKind kind,
+            @NotNull List<File> files,
+            @NotNull SnapshotParser parser,
+            @NotNull SnapshotCache.Source source) {
+        long startTime = System.nanoTime();
+        StatisticsDictionary dictionary = readCache(caches.get(kind), source);
+        if (dictionary != null) {
+            LOG.info("Restored " + source + " from the snapshot cache");
+            recordLoad(kind, files, parser, true, System.nanoTime() - startTime, dictionary);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Load snapshots from input files into a new dictionary. The current statistics and the snapshot cache are
+     * not affected: the cache is replaced only when the dictionary is published (see writeCacheInBackground).
+     *
+     * A single snapshot is parsed directly. Several snapshots are parsed in parallel on a bounded pool
+     * and merged into one aggregate profile as they are parsed (see SnapshotMerger).
+     * @param kind the role of the snapshot
+     * @param files the files to load (at least one)
+     * @param parser the parser that will be used for processing the input files
+     * @param indicator a progress indicator of the loading task, or null if the loading can't be cancelled
+     * @return a dictionary with the snapshot data
+     * @throws IOException if a file can't be read
+     * @throws com.intellij.openapi.progress.ProcessCanceledException if the indicator is cancelled
+     */
+    @NotNull StatisticsDictionary loadFiles(
+            @NotNull SnapshotKind kind,
+            @NotNull List<File> files,
+            @NotNull SnapshotParser parser,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        long startTime = System.nanoTime();
+        StatisticsDictionary dictionary = files.size() == 1
+                ? parseFile(files.get(0), parser, indicator)
+                : mergeFiles(files, parser, indicator);
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+        recordLoad(kind, files, parser, false, System.nanoTime() - startTime, dictionary);
+        return dictionary;
+    }
+
+    /**
+     * Replace the snapshot cache with a published dictionary, so the next project startup restores it.
+     * The cache is written in the loading queue, after the loads that are already queued: the cache updates
+     * happen in the order of the publications, and the last published snapshot is the cached one.
+     * @param kind the role of the snapshot
+     * @param dictionary a published dictionary
+     * @param source the description of the files the dictionary was loaded from
+     */
+    void writeCacheInBackground(
+            @NotNull SnapshotKind kind,
+            @NotNull StatisticsDictionary dictionary,
+            @NotNull SnapshotCache.Source source) {
+        updateCacheInBackground(kind, cache -> cache.write(dictionary, source));
+    }
+
+    private void updateCacheInBackground(@NotNull SnapshotKind kind, @NotNull CacheUpdate update) {
+        loadingQueue.accept(new Task.Backgroundable(project, "Saving " + kind.getDisplayName() + " cache", false) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    update.apply(caches.get(kind));
+                } catch (IOException e) {
+                    LOG.warn("Unable to update the " + kind.getDisplayName() + " cache: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private interface CacheUpdate {
+        void apply(@NotNull SnapshotCache cache) throws IOException;
+    }
+
+    private void recordLoad(
+            @NotNull SnapshotKind kind,
+            @NotNull List<File> files,
+            @NotNull SnapshotParser parser,
+            boolean restoredFromCache,
+            long loadTimeNs,
+            @NotNull StatisticsDictionary dictionary) {
+        long byteCount = 0;
+        for (File file : files) {
+            byteCount += file.length();
+        }
+        String snapshotName = files.size() == 1 ? files.get(0).getName() : files.size() + " merged snapshots";
+        LoadMetrics loadMetrics = new LoadMetrics(
+                kind, snapshotName, parser.getName(), restoredFromCache, byteCount, loadTimeNs, dictionary);
+        metrics.recordLoad(loadMetrics);
+        LOG.info("Loaded " + loadMetrics);
+    }
+
+    private static @NotNull StatisticsDictionary parseFile(
+            @NotNull File file,
+            @NotNull SnapshotParser parser,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        List<TimeRecord> timeRecords = parser.parseFile(file, callTreeBuilder, indicator);
+        return new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(parser::getFrameCodeReference)
+                .addAll(timeRecords)
+                .build();
+    }
+
+    private static @NotNull StatisticsDictionary mergeFiles(
+            @NotNull List<File> files,
+            @NotNull SnapshotParser parser,
+            @Nullable ProgressIndicator indicator) throws IOException {
+        int parallelism = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                "Profiler Snapshot Loader", parallelism);
+        try {
+            return SnapshotMerger.mergeFiles(files, parser, executor, indicator);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Restore the last loaded snapshots (the current one and the baseline) from the snapshot caches;
+     * the original snapshot files are not read. The method may be called from any thread; the statistics
+     * are replaced on the event dispatch thread unless a snapshot has been loaded in the meantime.
+     */
+    void restoreCachedStatistics() {
+        for (SnapshotKind kind : SnapshotKind.values()) {
+            StatisticsDictionary dictionary = readCache(caches.get(kind), null);
+            if (dictionary == null) {
+                continue;
+            }
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (getStatistics(kind) == StatisticsDictionary.EMPTY) {
+                    setStatistics(kind, dictionary);
+                    LOG.info("Restored the " + kind.getDisplayName() + " from the snapshot cache");
+                }
+            }, project.getDisposed());
+        }
+    }
+
+    // Read the cache if it holds the given source (or any source if it is null)
+    private @Nullable StatisticsDictionary readCache(
+            @NotNull SnapshotCache cache,
+            @Nullable SnapshotCache.Source source) {
+        try {
+            return cache.read(source);
         } catch (IOException e) {
-            LOG.error("Input/output error while reading " + file + ": " + e.getMessage());
-            return false;
+            LOG.warn("Unable to read the snapshot cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replace the current or the baseline statistics with a new dictionary, join the snapshots, refresh
+     * the line markers of the open files that declare changed classes and notify the statistics listeners.
+     * The method should be called on the event dispatch thread.
+     * @param kind the role of the snapshot
+     * @param dictionary a completely loaded dictionary
+     */
+    void setStatistics(@NotNull SnapshotKind kind, @NotNull StatisticsDictionary dictionary) {
+        // All the writers run on the event dispatch thread, so there is no need to check for versions or synchronize
+        // with other updater threads, we just need to atomically replace the statistics.
+        StatisticsDelta previous = statistics.get();
+        Set<String> changedClasses;
+        if (kind == SnapshotKind.CURRENT) {
+            statistics.set(new StatisticsDelta(dictionary, previous.getBaseline()));
+            changedClasses = dictionary.getChangedClasses(previous.getCurrent());
+        } else {
+            statistics.set(new StatisticsDelta(previous.getCurrent(), dictionary));
+            changedClasses = dictionary.getChangedClasses(previous.getBaseline());
+            // The delta of every current record depends on the baseline (its significance depends on the baseline
+            // total), so the classes that are present in the current snapshot only change as well
+            changedClasses.addAll(previous.getCurrent().getChangedClasses(StatisticsDictionary.EMPTY));
+        }
+        refresher.refresh(changedClasses);
+        project.getMessageBus().syncPublisher(StatisticsListener.TOPIC).statisticsChanged(statistics.get());
+    }
+
+    private @NotNull StatisticsDictionary getStatistics(@NotNull SnapshotKind kind) {
+        StatisticsDelta delta = statistics.get();
+        return kind == SnapshotKind.CURRENT ? delta.getCurrent() : delta.getBaseline();
+    }
+
+    /**
+     * @return true if the gutter icons show the inclusive (total) time of the methods instead of their self time
+     */
+    public boolean isInclusiveTimeShown() {
+        return PropertiesComponent.getInstance(project).getBoolean(INCLUSIVE_TIME_SHOWN_KEY, false);
+    }
+
+    /**
+     * Choose the time that the gutter icons show and refresh the markers of the profiled classes.
+     * The choice is stored in the project settings. The method should be called on the event dispatch thread.
+     * @param inclusiveTimeShown true to show the inclusive (total) time, false to show the self time
+     */
+    public void setInclusiveTimeShown(boolean inclusiveTimeShown) {
+        if (inclusiveTimeShown != isInclusiveTimeShown()) {
+            PropertiesComponent.getInstance(project).setValue(INCLUSIVE_TIME_SHOWN_KEY, inclusiveTimeShown, false);
+            refresher.refresh(getStatistics().getChangedClasses(StatisticsDictionary.EMPTY));
         }
+    }
+
+    /**
+     * @return the profile metric that the gutter icons show
+     */
+    public @NotNull ProfileMetric getActiveMetric() {
+        String name = PropertiesComponent.getInstance(project).getValue(ACTIVE_METRIC_KEY);
+        for (ProfileMetric metric : ProfileMetric.values()) {
+            if (metric.name().equals(name)) {
+                return metric;
+            }
+        }
+        return ProfileMetric.SAMPLES;
+    }
+
+    /**
+     * Choose the profile metric that the gutter icons show and refresh the markers of the profiled classes.
+     * The loaded dictionaries keep all the metrics, so no snapshot is reloaded. The choice is stored in the project
+     * settings. The method should be called on the event dispatch thread.
+     * @param metric a profile metric
+     */
+    public void setActiveMetric(@NotNull ProfileMetric metric) {
+        if (metric != getActiveMetric()) {
+            PropertiesComponent.getInstance(project).setValue(ACTIVE_METRIC_KEY, metric.name());
+            refresher.refresh(getStatistics().getChangedClasses(StatisticsDictionary.EMPTY));
+        }
+    }
+
+    /**
+     * Retrieves the self-instrumentation metrics of the project: the snapshot loads and the line marker passes.
+     * @return the metrics of the project
+     */
+    public @NotNull PluginMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Retrieves the current statistics joined with the baseline. The line marker passes should take it once
+     * and use it for all the lookups.
+     * @return the current statistics delta (empty if no snapshots are loaded)
+     */
+    public @NotNull StatisticsDelta getStatisticsDelta() {
+        return statistics.get();
+    }
 
-        return true;
+    /**
+     * Retrieves the current statistics. The dictionary is immutable, so callers that need several values
+     * (e.g., a record index and then its columns) should take the dictionary once and use it for all the lookups.
+     * @return the current statistics dictionary (empty if no snapshot is loaded)
+     */
+    public @NotNull StatisticsDictionary getStatistics() {
+        return statistics.get().getCurrent();
     }
 
     /**
@@ -70,7 +480,33 @@ public class StatisticsService {
      * @see CodeReference
      */
     public @NotNull List<TimeRecord> getTimeRecords(@NotNull CodeReference codeReference) {
-        LOG.trace("Requested time records for " + codeReference);
-        return statistics.get().getTimeRecords(codeReference);
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Requested time records for " + codeReference);
+        }
+        return getStatistics().getTimeRecords(codeReference);
+    }
+
+    /**
+     * Retrieves the list of time records that correspond to the given Java/Kotlin method.
+     * Unlike getTimeRecords(CodeReference), it does not need a code reference instance. The line marker passes
+     * should use getStatistics().findRecord(...) instead, which does not allocate memory at all.
+     * @param fqClassName a fully qualified class name
+     * @param methodName a method name
+     * @return a list of found time records (empty if no records were found)
+     */
+    public @NotNull List<TimeRecord> getTimeRecords(@NotNull String fqClassName, @NotNull String methodName) {
+        return getStatistics().getTimeRecords(fqClassName, methodName);
+    }
+
+    /**
+     * Retrieves the call tree built from the stack traces of the loaded snapshot.
+     * @return the call tree (empty if the snapshot has no stack traces or no snapshot is loaded)
+     * @see CallTree
+     */
+    public @NotNull CallTree getCallTree() {
+        return getStatistics().getCallTree();
     }
+
+    private static final String INCLUSIVE_TIME_SHOWN_KEY = "com.comitative.pic.inclusiveTimeShown";
+    private static final String ACTIVE_METRIC_KEY = "com.comitative.pic.activeMetric";
 }
@@ -63,6 +63,21 @@ class CodeReferenceTest {
         assertNotEquals(r1, r2);
     }
 
+    @Test
+    void shortClassName_shouldBeLastNameComponent() {
+        CodeReference ref = CodeReference.builder()
+                .setFqClassName("com.comitative.Matrix")
+                .setMethodName("multiply")
+                .build();
+        assertEquals("Matrix", ref.getShortClassName());
+
+        CodeReference shortRef = CodeReference.builder()
+                .setFqClassName("Matrix")
+                .setMethodName("multiply")
+                .build();
+        assertEquals("Matrix", shortRef.getShortClassName());
+    }
+
     @Test
     void whenJavaMethod_toStringShouldEndWithJava() {
         CodeReference ref = CodeReference.builder()
@@ -0,0 +1,45 @@
+package com.comitative.pic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+    @Test
+    void internedName_shouldHaveCanonicalId() {
+        SymbolTable table = new SymbolTable();
+        int id = table.intern("multiply");
+        assertEquals(id, table.intern(new String("multiply".toCharArray())));
+        assertEquals(id, table.find("multiply"));
+        assertEquals("multiply", table.getSymbol(id));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void missingName_shouldNotBeFound() {
+        SymbolTable table = new SymbolTable();
+        table.intern("Matrix");
+        assertEquals(SymbolTable.NO_SYMBOL, table.find("Vector"));
+        assertEquals(SymbolTable.NO_SYMBOL, table.find("com.comitative.Matri", 15, 20));
+    }
+
+    @Test
+    void nameFragment_shouldMatchWholeName() {
+        SymbolTable table = new SymbolTable();
+        int id = table.intern("Matrix");
+        String fqName = "com.comitative.Matrix";
+        assertEquals(id, table.find(fqName, CodeReference.getShortClassNameStart(fqName), fqName.length()));
+    }
+
+    @Test
+    void manyNames_shouldSurviveRehashing() {
+        SymbolTable table = new SymbolTable();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, table.intern("name" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, table.find("name" + i));
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package com.comitative.pic.parsers;
 
 import com.comitative.pic.CodeReference;
+import com.comitative.pic.FrameType;
+import com.comitative.pic.ProfileMetric;
 import com.comitative.pic.TimeRecord;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -50,6 +55,70 @@ class AsyncProfilerFlatParserTest {
         }
     }
 
+    @Test
+    void withSampleFile_mappedFileShouldMatchStream() {
+        try {
+            SnapshotParser parser = new AsyncFlatParser();
+            List<TimeRecord> fileStats = parser.parseFile(getResourceFile("async_flat_sample_01.txt"));
+            List<TimeRecord> streamStats;
+            try (InputStream report = openResourceFile("async_flat_sample_01.txt")) {
+                streamStats = parser.parseStream(report);
+            }
+            checkSameRecords(streamStats, fileStats);
+        } catch (IOException e) {
+            fail("Input/output error while reading the report");
+        }
+    }
+
+    @Test
+    void withTinyStreamReads_shouldParseAllSummaryLines() {
+        try {
+            SnapshotParser parser = new AsyncFlatParser();
+            List<TimeRecord> expected = parser.parseFile(getResourceFile("async_flat_sample_01.txt"));
+            try (InputStream report = new OneByteInputStream(openResourceFile("async_flat_sample_01.txt"))) {
+                checkSameRecords(expected, parser.parseStream(report));
+            }
+        } catch (IOException e) {
+            fail("Input/output error while reading the report");
+        }
+    }
+
+    @Test
+    void parseSummaryLine_shouldAcceptCarriageReturns() {
+        AsyncFlatParser parser = new AsyncFlatParser();
+        Optional<TimeRecord> result = parser.parseSummaryLine(SAMPLE_SUMMARY_LINE + "\r");
+        assertTrue(result.isPresent(), "Parse result should be present");
+        result.ifPresent(timeRecord -> {
+            assertEquals("main", timeRecord.getCodeReference().getMethodName());
+            checkTimeRecordValues(timeRecord, 0.0965, 8420496037L, 842L);
+        });
+    }
+
+    @Test
+    void parseSummaryLine_shouldRejectStackTraceLines() {
+        AsyncFlatParser parser = new AsyncFlatParser();
+        assertFalse(parser.parseSummaryLine("--- 49462082985 ns (56.70%), 4946 samples").isPresent());
+        assertFalse(parser.parseSummaryLine("  [ 0] com.comitative.pt.Matrix.multiply_[j]").isPresent());
+        assertFalse(parser.parseSummaryLine("          ns  percent  samples  top").isPresent());
+        assertFalse(parser.parseSummaryLine("  8420496037    9.65      842  MainKt.main").isPresent());
+    }
+
+    @Test
+    void byteNameParser_shouldMatchStringNameParser() {
+        AsyncFlatParser parser = new AsyncFlatParser();
+        AsyncFlatScanner scanner = new AsyncFlatScanner();
+        List<String> names = new ArrayList<>(Arrays.asList(SAMPLE_JAVA_NAMES));
+        names.addAll(Arrays.asList(SAMPLE_NATIVE_NAMES));
+        names.add("com.example.Outer$$Lambda$14/0x0000000800c02a00.run");
+        names.add("com.example.Кириллица.метод");
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            CodeReference expected = parser.parseMethodName(name).orElse(null);
+            CodeReference actual = scanner.scanMethodName(ByteBuffer.wrap(bytes), 0, bytes.length);
+            assertEquals(expected, actual, name);
+        }
+    }
+
     @Test
     void nameParser_shouldParseJavaNames() {
         AsyncFlatParser parser = new AsyncFlatParser();
@@ -75,17 +144,114 @@ class AsyncProfilerFlatParserTest {
         }
     }
 
+    @Test
+    void lineNumbers_shouldBeSeparatedFromMethodNames() throws IOException {
+        String snapshot = "          ns  percent  samples  top\n"
+                + "  ----------  -------  -------  ---\n"
+                + "  3000000000   30.00%      300  com.comitative.pt.Matrix.multiply:27_[j]\n"
+                + "  1000000000   10.00%      100  com.comitative.pt.Matrix.multiply:31_[j]\n"
+                + "   500000000    5.00%       50  com.comitative.pt.Matrix.getElement_[j]\n"
+                + "   500000000    5.00%       50  JavaThread::run:12\n";
+        List<TimeRecord> records = new AsyncFlatParser().parseStream(
+                new ByteArrayInputStream(snapshot.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, records.size());
+        assertEquals(records.get(0).getCodeReference(), records.get(1).getCodeReference());
+        assertEquals("multiply", records.get(0).getCodeReference().getMethodName());
+        assertEquals(27, records.get(0).getLineNumber());
+        assertEquals(31, records.get(1).getLineNumber());
+        assertEquals(TimeRecord.NO_LINE, records.get(2).getLineNumber());
+    }
+
+    @Test
+    void frameTypes_shouldBeSeparatedFromMethodNames() throws IOException {
+        String snapshot = "          ns  percent  samples  top\n"
+                + "  ----------  -------  -------  ---\n"
+                + "  3000000000   30.00%      300  com.comitative.pt.Matrix.multiply_[j]\n"
+                + "  1000000000   10.00%      100  com.comitative.pt.Matrix.multiply_[0]\n"
+                + "   500000000    5.00%       50  com.comitative.pt.Matrix.getElement:45_[i]\n"
+                + "   200000000    2.00%       20  com.comitative.pt.Vector.add_[1]\n"
+                + "   100000000    1.00%       10  com.comitative.pt.Vector.sum\n"
+                + "   100000000    1.00%       10  clear_page_erms_[k]\n";
+        List<TimeRecord> records = new AsyncFlatParser().parseStream(
+                new ByteArrayInputStream(snapshot.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(5, records.size());
+        assertEquals(records.get(0).getCodeReference(), records.get(1).getCodeReference());
+        assertEquals(FrameType.C2_COMPILED, records.get(0).getFrameType());
+        assertEquals(FrameType.INTERPRETED, records.get(1).getFrameType());
+        assertEquals("getElement", records.get(2).getCodeReference().getMethodName());
+        assertEquals(FrameType.INLINED, records.get(2).getFrameType());
+        assertEquals(45, records.get(2).getLineNumber());
+        assertEquals(FrameType.C1_COMPILED, records.get(3).getFrameType());
+        assertNull(records.get(4).getFrameType());
+    }
+
+    @Test
+    void allocationSnapshot_shouldKeepAllocatedBytes() throws IOException {
+        String snapshot = "       bytes  percent  samples  top\n"
+                + "  ----------  -------  -------  ---\n"
+                + "     3145728   75.00%       12  com.comitative.pt.Matrix.multiply_[j]\n"
+                + "     1048576   25.00%        4  com.comitative.pt.Vector.add_[j]\n";
+        List<TimeRecord> records = new AsyncFlatParser().parseStream(
+                new ByteArrayInputStream(snapshot.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, records.size());
+        assertEquals(3145728, records.get(0).getValue(ProfileMetric.ALLOCATED_BYTES));
+        assertEquals(0, records.get(0).getValue(ProfileMetric.TIME));
+        assertEquals(12, records.get(0).getSampleCount());
+        assertEquals(0.25, records.get(1).getRelativeTime(), 1e-9);
+    }
+
     private @NotNull InputStream openResourceFile(String resourceName) throws IOException {
+        return new FileInputStream(getResourceFile(resourceName));
+    }
+
+    private @NotNull File getResourceFile(String resourceName) throws IOException {
         ClassLoader classLoader = getClass().getClassLoader();
         URL resource = classLoader.getResource(resourceName);
         if (resource != null) {
-            File file = new File(resource.getFile());
-            return new FileInputStream(file);
+            return new File(resource.getFile());
         } else {
             throw new IOException("Test resource " + resourceName + " not found");
         }
     }
 
+    private void checkSameRecords(List<TimeRecord> expected, List<TimeRecord> actual) {
+        assertEquals(expected.size(), actual.size(), "Record count mismatch");
+        for (int i = 0; i < expected.size(); i++) {
+            TimeRecord record = expected.get(i);
+            assertEquals(record.getCodeReference(), actual.get(i).getCodeReference());
+            checkTimeRecordValues(
+                    actual.get(i),
+                    record.getRelativeTime(), record.getAbsoluteTime(), record.getSampleCount());
+        }
+    }
+
+    // A stream that returns at most one byte per read call, to exercise the chunk boundary handling
+    private static final class OneByteInputStream extends InputStream {
+        private final InputStream delegate;
+
+        OneByteInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+            return len == 0 ? 0 : delegate.read(b, off, 1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
     private void checkTimeRecordValues(TimeRecord record, double relativeTime, long absoluteTime, long sampleCount) {
         assertNotNull(record, "Time record should not be null");
         assertEquals(relativeTime, record.getRelativeTime(), "Relative time mismatch");
@@ -105,7 +271,15 @@ class AsyncProfilerFlatParserTest {
             "com.baeldung.jni.HelloWorldJNI.sayHello()Ljava/lang/String;_[j]",
             "com.baeldung.jni.HelloWorldJNI.main([Ljava/lang/String;)V_[j]",
             "Matrix.<init>",
-            "edu.coursera.parallel.OneDimAveragingPhaserTest.lambda$runParallelBarrier$0([D[DIIIILjava/util/concurrent/Phaser;)V_[j]"
+            "com.comitative.pt.Matrix.multiply:27_[j]",
+            "MyClass.myMethod:1024",
+            "com.comitative.pt.Matrix.getElement_[i]",
+            "Matrix.multiply_[0]",
+            "Matrix.multiply:27_[1]",
+            "edu.coursera.parallel.OneDimAveragingPhaserTest.lambda$runParallelBarrier$0"
+                    + "([D[DIIIILjava/util/concurrent/Phaser;)V_[j]",
+            "Java_java_util_zip_Inflater_inflateBytesBytes",
+            "Java_com_example_Codec_00024Encoder_encode_1all__Ljava_lang_String_2"
     };
 
     // Note: this array should contain the same number of elements as SAMPLE_JAVA_NAMES
@@ -117,7 +291,14 @@ class AsyncProfilerFlatParserTest {
             "com.baeldung.jni.HelloWorldJNI",
             "com.baeldung.jni.HelloWorldJNI",
             "Matrix",
-            "edu.coursera.parallel.OneDimAveragingPhaserTest.lambda.runParallelBarrier"
+            "com.comitative.pt.Matrix",
+            "MyClass",
+            "com.comitative.pt.Matrix",
+            "Matrix",
+            "Matrix",
+            "edu.coursera.parallel.OneDimAveragingPhaserTest.lambda.runParallelBarrier",
+            "java.util.zip.Inflater",
+            "com.example.Codec.Encoder"
     };
 
     // Note: this array should contain the same number of elements as SAMPLE_JAVA_NAMES
@@ -129,7 +310,14 @@ class AsyncProfilerFlatParserTest {
             "sayHello",
             "main",
             "<init>",
-            "0"
+            "multiply",
+            "myMethod",
+            "getElement",
+            "multiply",
+            "multiply",
+            "0",
+            "inflateBytesBytes",
+            "encode_all"
     };
 
     private static final String[] SAMPLE_NATIVE_NAMES = {
@@ -0,0 +1,176 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.TimeRecord;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollapsedStacksParserTest {
+
+    @Test
+    void leafFrames_shouldGetSelfSamples() throws IOException {
+        String snapshot = "java/lang/Thread.run;com/comitative/pt/MainKt.main;com/comitative/pt/Matrix.multiply 30\n"
+                + "java/lang/Thread.run;com/comitative/pt/MainKt.main 10\r\n"
+                + "java/lang/Thread.run;com/comitative/pt/MainKt.main;__libc_write;[unknown] 5\n"
+                + "malformed line without a count\n"
+                + "com/comitative/pt/Matrix.multiply 5";
+        List<TimeRecord> records = new CollapsedStacksParser().parseStream(
+                new ByteArrayInputStream(snapshot.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, records.size());
+        assertEquals("com.comitative.pt.Matrix", records.get(0).getCodeReference().getFqClassName());
+        assertEquals("multiply", records.get(0).getCodeReference().getMethodName());
+        assertEquals(35, records.get(0).getSampleCount());
+        assertEquals(35.0 / 50.0, records.get(0).getRelativeTime(), 1e-9);
+        assertEquals("com.comitative.pt.MainKt", records.get(1).getCodeReference().getFqClassName());
+        assertEquals(10, records.get(1).getSampleCount());
+    }
+
+    @Test
+    void lineNumbers_shouldSplitSelfSamples() throws IOException {
+        String snapshot = "java/lang/Thread.run:833;com/comitative/pt/Matrix.multiply:27 30\n"
+                + "java/lang/Thread.run:833;com/comitative/pt/Matrix.multiply:31 10\n"
+                + "java/lang/Thread.run:833;JavaThread::run 5\n";
+        List<TimeRecord> records = new CollapsedStacksParser().parseStream(
+                new ByteArrayInputStream(snapshot.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, records.size());
+        assertEquals("com.comitative.pt.Matrix", records.get(0).getCodeReference().getFqClassName());
+        assertEquals(records.get(0).getCodeReference(), records.get(1).getCodeReference());
+        assertEquals(27, records.get(0).getLineNumber());
+        assertEquals(30, records.get(0).getSampleCount());
+        assertEquals(31, records.get(1).getLineNumber());
+    }
+
+    @Test
+    void nativeFrames_shouldBeDemangledAndJniFunctionsDecoded() throws IOException {
+        String snapshot = "java/util/zip/Inflater.inflate;Java_java_util_zip_Inflater_inflateBytesBytes 20\n"
+                + "java/util/zip/Inflater.inflate;Java_java_util_zip_Inflater_inflateBytesBytes;_ZL7inflatePv 30\n";
+        Path file = Files.createTempFile("collapsed", ".txt");
+        try {
+            Files.write(file, snapshot.getBytes(StandardCharsets.UTF_8));
+            RecordingCollector collector = new RecordingCollector();
+            List<TimeRecord> records = new CollapsedStacksParser().parseFile(file.toFile(), collector);
+
+            assertEquals(1, records.size());
+            assertEquals("java.util.zip.Inflater", records.get(0).getCodeReference().getFqClassName());
+            assertEquals("inflateBytesBytes", records.get(0).getCodeReference().getMethodName());
+            assertEquals(20, records.get(0).getSampleCount());
+            assertEquals(Arrays.asList(
+                    "java/util/zip/Inflater.inflate",
+                    "Java_java_util_zip_Inflater_inflateBytesBytes",
+                    "inflate(void*)"), collector.frames);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void parallelChunks_shouldMatchSequentialScan() throws IOException {
+        Path file = Files.createTempFile("collapsed", ".txt");
+        try {
+            Files.write(file, generateSnapshot(2000, 42).getBytes(StandardCharsets.UTF_8));
+
+            RecordingCollector sequentialCollector = new RecordingCollector();
+            List<TimeRecord> sequential = new CollapsedStacksParser(new ForkJoinPool(1), Integer.MAX_VALUE)
+                    .parseFile(file.toFile(), sequentialCollector);
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                for (int chunkSize : new int[] {1, 100, 4096}) {
+                    RecordingCollector parallelCollector = new RecordingCollector();
+                    List<TimeRecord> parallel = new CollapsedStacksParser(pool, chunkSize)
+                            .parseFile(file.toFile(), parallelCollector);
+                    checkSameRecords(sequential, parallel);
+                    assertEquals(sequentialCollector.frames, parallelCollector.frames);
+                    assertEquals(sequentialCollector.stackTraces, parallelCollector.stackTraces);
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            checkSameRecords(sequential, new CollapsedStacksParser().parseStream(Files.newInputStream(file)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void emptyFile_shouldHaveNoRecords() throws IOException {
+        Path file = Files.createTempFile("collapsed", ".txt");
+        try {
+            RecordingCollector collector = new RecordingCollector();
+            assertTrue(new CollapsedStacksParser().parseFile(file.toFile(), collector).isEmpty());
+            assertTrue(collector.stackTraces.isEmpty());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static @NotNull String generateSnapshot(int lineCount, long seed) {
+        String[] frames = {
+                "java/lang/Thread.run",
+                "com/comitative/pt/MainKt.main",
+                "com/comitative/pt/Matrix.multiply",
+                "com/comitative/pt/Matrix.getElement_[j]",
+                "com/comitative/pt/Matrix$Row.get",
+                "kotlin.random.XorWowRandom.nextBits",
+                "JavaThread::run()",
+                "/usr/lib/libc.so.6",
+                "Interpreter",
+        };
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < lineCount; line++) {
+            int depth = 1 + random.nextInt(12);
+            for (int i = 0; i < depth; i++) {
+                if (i > 0) {
+                    sb.append(';');
+                }
+                sb.append(frames[random.nextInt(frames.length)]);
+            }
+            sb.append(' ').append(1 + random.nextInt(1000)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void checkSameRecords(@NotNull List<TimeRecord> expected, @NotNull List<TimeRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCodeReference(), actual.get(i).getCodeReference());
+            assertEquals(expected.get(i).getSampleCount(), actual.get(i).getSampleCount());
+            assertEquals(expected.get(i).getRelativeTime(), actual.get(i).getRelativeTime());
+        }
+    }
+
+    private static final class RecordingCollector implements StackTraceCollector {
+        final List<String> frames = new ArrayList<>();
+        final List<String> stackTraces = new ArrayList<>();
+
+        @Override
+        public void addFrame(int frameId, @NotNull String name) {
+            assertEquals(frames.size(), frameId);
+            frames.add(name);
+        }
+
+        @Override
+        public void addStackTrace(long absoluteTime, long sampleCount, @NotNull int[] frameIds, int depth) {
+            for (int i = 0; i < depth; i++) {
+                assertTrue(frameIds[i] < frames.size(), "Frames should be reported before their stack traces");
+            }
+            stackTraces.add(sampleCount + " " + Arrays.toString(Arrays.copyOf(frameIds, depth)));
+        }
+    }
+}
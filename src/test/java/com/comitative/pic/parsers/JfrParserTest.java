@@ -0,0 +1,253 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.TimeRecord;
+import jdk.jfr.Recording;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JfrParserTest {
+
+    private static Path recordingFile;
+
+    @BeforeAll
+    static void recordSamples() throws IOException {
+        recordingFile = Files.createTempFile("jfr-parser-test", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(SAMPLING_PERIOD_MS));
+            // The standard configurations (default.jfc and profile.jfc) record the settings too
+            recording.enable("jdk.ActiveSetting");
+            recording.start();
+            long deadline = System.nanoTime() + Duration.ofMillis(RECORDING_DURATION_MS).toNanos();
+            double sink = 0.0;
+            while (System.nanoTime() < deadline) {
+                sink += spin();
+            }
+            recording.stop();
+            recording.dump(recordingFile);
+            assertTrue(sink != 0.0);
+        }
+    }
+
+    @AfterAll
+    static void deleteRecording() throws IOException {
+        Files.deleteIfExists(recordingFile);
+    }
+
+    @Test
+    void withRecording_shouldAggregateSamplesByMethod() throws IOException {
+        List<TimeRecord> records = new JfrParser().parseFile(recordingFile.toFile());
+        assertFalse(records.isEmpty(), "The recording should contain samples");
+
+        double totalRelativeTime = 0.0;
+        long previousSamples = Long.MAX_VALUE;
+        boolean spinFound = false;
+        for (TimeRecord record : records) {
+            assertTrue(record.getSampleCount() > 0);
+            assertTrue(record.getSampleCount() <= previousSamples, "Records should be ordered by samples");
+            assertEquals(record.getSampleCount() * SAMPLING_PERIOD_MS * 1_000_000L, record.getAbsoluteTime());
+            previousSamples = record.getSampleCount();
+            totalRelativeTime += record.getRelativeTime();
+            if ("com.comitative.pic.parsers.JfrParserTest".equals(record.getCodeReference().getFqClassName())
+                    && "spin".equals(record.getCodeReference().getMethodName())) {
+                spinFound = true;
+            }
+        }
+        assertTrue(spinFound, "The busy method should be sampled");
+        assertTrue(totalRelativeTime <= 1.0 + 1e-9);
+    }
+
+    @Test
+    void withCollector_shouldReportEverySample() throws IOException {
+        List<String> frames = new ArrayList<>();
+        long[] samples = {0};
+        StackTraceCollector collector = new StackTraceCollector() {
+            @Override
+            public void addFrame(int frameId, @NotNull String name) {
+                assertEquals(frames.size(), frameId);
+                frames.add(name);
+            }
+
+            @Override
+            public void addStackTrace(long absoluteTime, long sampleCount, @NotNull int[] frameIds, int depth) {
+                assertTrue(depth > 0);
+                for (int i = 0; i < depth; i++) {
+                    assertTrue(frameIds[i] < frames.size(), "Frames should be reported before their stack traces");
+                }
+                // The period setting may be read after the first samples, but it applies to them as well
+                assertEquals(sampleCount * SAMPLING_PERIOD_MS * 1_000_000L, absoluteTime);
+                samples[0] += sampleCount;
+            }
+        };
+        List<TimeRecord> records = new JfrParser().parseFile(recordingFile.toFile(), collector);
+
+        long recordSamples = 0;
+        for (TimeRecord record : records) {
+            recordSamples += record.getSampleCount();
+        }
+        assertTrue(recordSamples <= samples[0]);
+        assertTrue(frames.contains("com.comitative.pic.parsers.JfrParserTest.recordSamples"));
+    }
+
+    @Test
+    void frameNames_shouldResolveToTimeRecords() throws IOException {
+        JfrParser parser = new JfrParser();
+        Set<CodeReference> frameReferences = new HashSet<>();
+        StackTraceCollector collector = new StackTraceCollector() {
+            @Override
+            public void addFrame(int frameId, @NotNull String name) {
+                CodeReference codeReference = parser.getFrameCodeReference(name);
+                if (codeReference != null) {
+                    frameReferences.add(codeReference);
+                }
+            }
+
+            @Override
+            public void addStackTrace(long absoluteTime, long sampleCount, @NotNull int[] frameIds, int depth) {
+            }
+        };
+        for (TimeRecord record : parser.parseFile(recordingFile.toFile(), collector)) {
+            assertTrue(frameReferences.contains(record.getCodeReference()),
+                    "The self time and the inclusive time should be attributed to the same code reference");
+        }
+    }
+
+    @Test
+    void getFrameCodeReference_shouldKeepMethodNames() {
+        JfrParser parser = new JfrParser();
+        CodeReference lambda = parser.getFrameCodeReference("com.example.Outer$Inner.lambda$main$0");
+        assertNotNull(lambda);
+        assertEquals("com.example.Outer.Inner", lambda.getFqClassName());
+        assertEquals("lambda$main$0", lambda.getMethodName());
+        CodeReference constructor = parser.getFrameCodeReference("com.example.Outer.<init>");
+        assertNotNull(constructor);
+        assertEquals("com.example.Outer", constructor.getFqClassName());
+        assertEquals("<init>", constructor.getMethodName());
+
+        assertNull(parser.getFrameCodeReference("com.example.Outer$$Lambda$14/0x0000000800c02a00.run"));
+        assertNull(parser.getFrameCodeReference("run"));
+    }
+
+    @Test
+    void allocationsAndLocks_shouldBeAttributedToTopFrames() throws Exception {
+        Path file = Files.createTempFile("jfr-parser-test", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationInNewTLAB");
+            recording.enable("jdk.ObjectAllocationOutsideTLAB");
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO);
+            recording.start();
+            long sink = allocate();
+            contendForLock();
+            recording.stop();
+            recording.dump(file);
+            assertTrue(sink > 0);
+
+            long allocatedBytes = 0;
+            long lockWaitTime = 0;
+            for (TimeRecord record : new JfrParser().parseFile(file.toFile())) {
+                String methodName = record.getCodeReference().getMethodName();
+                if ("allocate".equals(methodName)) {
+                    allocatedBytes += record.getValue(ProfileMetric.ALLOCATED_BYTES);
+                } else if ("contendForLock".equals(methodName)) {
+                    lockWaitTime += record.getValue(ProfileMetric.LOCK_WAIT_TIME);
+                }
+            }
+            assertTrue(allocatedBytes > 0, "The allocating method should get the allocated memory");
+            assertTrue(lockWaitTime > 0, "The contending method should get the lock wait time");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void stream_shouldMatchFile() throws IOException {
+        JfrParser parser = new JfrParser();
+        List<TimeRecord> fileRecords = parser.parseFile(recordingFile.toFile());
+        List<TimeRecord> streamRecords;
+        try (InputStream inputStream = Files.newInputStream(recordingFile)) {
+            streamRecords = parser.parseStream(inputStream);
+        }
+        assertEquals(fileRecords.size(), streamRecords.size());
+        for (int i = 0; i < fileRecords.size(); i++) {
+            assertEquals(fileRecords.get(i).getCodeReference(), streamRecords.get(i).getCodeReference());
+            assertEquals(fileRecords.get(i).getSampleCount(), streamRecords.get(i).getSampleCount());
+        }
+    }
+
+    @Test
+    void malformedRecording_shouldBeRejected() throws IOException {
+        Path file = Files.createTempFile("jfr-parser-test", ".jfr");
+        try {
+            Files.write(file, new byte[] {1, 2, 3, 4});
+            assertThrows(IOException.class, () -> new JfrParser().parseFile(file.toFile()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void parsePeriod_shouldAcceptJfrUnits() {
+        assertEquals(20_000_000L, JfrParser.parsePeriod("20 ms"));
+        assertEquals(1_000_000_000L, JfrParser.parsePeriod("1 s"));
+        assertEquals(500_000L, JfrParser.parsePeriod("500 us"));
+        assertEquals(0, JfrParser.parsePeriod("everyChunk"));
+        assertEquals(0, JfrParser.parsePeriod("10 parsecs"));
+    }
+
+    private static long allocate() {
+        long sink = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sink += new byte[16 * 1024].length;
+        }
+        return sink;
+    }
+
+    private static void contendForLock() throws InterruptedException {
+        Object lock = new Object();
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread owner = new Thread(() -> {
+            synchronized (lock) {
+                locked.countDown();
+                try {
+                    Thread.sleep(LOCK_HOLD_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        owner.start();
+        locked.await();
+        synchronized (lock) {
+            // The monitor is entered only after the owner releases it, so the enter is contended
+        }
+        owner.join();
+    }
+
+    private static double spin() {
+        double value = 0.0;
+        for (int i = 1; i < 100_000; i++) {
+            value += Math.sqrt(i) / i;
+        }
+        return value;
+    }
+
+    private static final long SAMPLING_PERIOD_MS = 10;
+    private static final long RECORDING_DURATION_MS = 1000;
+    private static final long LOCK_HOLD_MS = 100;
+}
@@ -0,0 +1,121 @@
+package com.comitative.pic.parsers;
+
+import com.comitative.pic.CodeReference;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeSymbolsTest {
+
+    @Test
+    void jniSymbols_shouldBeDecodedToNativeMethods() {
+        CodeReference inflate = decode("Java_java_util_zip_Inflater_inflateBytesBytes");
+        assertNotNull(inflate);
+        assertEquals("java.util.zip.Inflater", inflate.getFqClassName());
+        assertEquals("inflateBytesBytes", inflate.getMethodName());
+        assertTrue(inflate.isJavaMethod());
+
+        CodeReference escaped = decode("Java_com_example_native_1io_File_1Reader_read_1bytes");
+        assertNotNull(escaped);
+        assertEquals("com.example.native_io.File_Reader", escaped.getFqClassName());
+        assertEquals("read_bytes", escaped.getMethodName());
+
+        CodeReference nested = decode("Java_com_example_Codec_00024Encoder_encode");
+        assertNotNull(nested);
+        assertEquals("com.example.Codec.Encoder", nested.getFqClassName());
+        assertEquals("encode", nested.getMethodName());
+
+        CodeReference overloaded = decode("Java_com_example_Codec_encode___3BLjava_lang_String_2");
+        assertNotNull(overloaded);
+        assertEquals("com.example.Codec", overloaded.getFqClassName());
+        assertEquals("encode", overloaded.getMethodName());
+
+        CodeReference unicode = decode("Java_Caf_000e9_run");
+        assertNotNull(unicode);
+        assertEquals("Caf\u00e9", unicode.getFqClassName());
+        assertTrue(NativeSymbols.isJniSymbol("Java_Matrix_multiply"));
+    }
+
+    @Test
+    void invalidJniSymbols_shouldBeRejected() {
+        String[] names = {
+                "Java_",
+                "Java_multiply",
+                "Java_Matrix_",
+                "Java__Matrix_multiply",
+                "Java_Matrix_multiply_",
+                "Java_Matrix_0041_multiply",
+                "Java_Matrix_mul_2tiply",
+                "Java_com.comitative.pt.Matrix.multiply",
+                "JavaThread::run()",
+                "com.comitative.pt.Matrix.multiply",
+        };
+        for (String name : names) {
+            assertNull(decode(name), name);
+            assertFalse(NativeSymbols.isJniSymbol(name), name);
+        }
+    }
+
+    @Test
+    void mangledNames_shouldBeDemangled() {
+        String[][] names = {
+                {"_ZN7Monitor4waitEl", "Monitor::wait(long)"},
+                {"_ZN10JavaThread3runEv", "JavaThread::run()"},
+                {"_ZNK6Symbol11as_C_stringEPci", "Symbol::as_C_string(char*, int) const"},
+                {"_ZN9JavaCalls11call_helperEP9JavaValueRK12methodHandleP17JavaCallArgumentsP6Thread",
+                        "JavaCalls::call_helper(JavaValue*, methodHandle const&, JavaCallArguments*, Thread*)"},
+                {"_ZN3Foo3barERKS_PKc", "Foo::bar(Foo const&, char const*)"},
+                {"_ZN6ThreadC2Ev", "Thread::Thread()"},
+                {"_ZN6ThreadD0Ev", "Thread::~Thread()"},
+                {"_ZN3FooplERKS_", "Foo::operator+(Foo const&)"},
+                {"_ZNSt6vectorIiSaIiEE9push_backERKi",
+                        "std::vector<int, std::allocator<int> >::push_back(int const&)"},
+                {"_Z3maxIiET_S0_S0_", "int max<int>(int, int)"},
+                {"_ZN5ArrayILi16EE3getEm", "Array<16>::get(unsigned long)"},
+                {"_ZN12_GLOBAL__N_17compute4stepEv", "(anonymous namespace)::compute::step()"},
+                {"_ZL12deflate_fastP14internal_statei", "deflate_fast(internal_state*, int)"},
+                {"_ZN14PhaseIdealLoop12is_dominatorEP4NodeS1_.part.0",
+                        "PhaseIdealLoop::is_dominator(Node*, Node*) [clone .part.0]"},
+                {"_ZN7Threads12_thread_listE", "Threads::_thread_list"},
+                {"_ZTV10JavaThread", "vtable for JavaThread"},
+                {"_ZThn8_N6Stream5writeEPKvm", "non-virtual thunk to Stream::write(void const*, unsigned long)"},
+        };
+        for (String[] name : names) {
+            assertEquals(name[1], NativeSymbols.demangle(name[0]), name[0]);
+        }
+    }
+
+    @Test
+    void unsupportedTypes_shouldKeepFunctionName() {
+        // A function pointer parameter and a type that is nested too deeply
+        assertEquals("Foo::bar", NativeSymbols.demangle("_ZN3Foo3barEPFviE"));
+        assertEquals("foo", NativeSymbols.demangle("_Z3foo" + repeat("P", 10_000) + "i"));
+    }
+
+    @Test
+    void otherNames_shouldBeKeptAsTheyAre() {
+        String[] names = {
+                "memcpy",
+                "JavaThread::run()",
+                "Java_java_util_zip_Inflater_inflateBytesBytes",
+                "_Z",
+                "_ZN3FooUlvE_clEv",
+                "_ZNS0_3barEv",
+        };
+        for (String name : names) {
+            assertEquals(name, NativeSymbols.demangle(name));
+        }
+    }
+
+    private static CodeReference decode(String name) {
+        return NativeSymbols.decodeJniSymbol(name, name.length());
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+}
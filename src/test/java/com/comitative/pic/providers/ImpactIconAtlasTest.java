@@ -0,0 +1,67 @@
+package com.comitative.pic.providers;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImpactIconAtlasTest {
+
+    @Test
+    void impactIcons_shouldBeShared() {
+        assertSame(ImpactIconAtlas.getImpactIcon(0.42), ImpactIconAtlas.getImpactIcon(0.4201));
+        assertEquals("42", ImpactIconAtlas.getImpactIcon(0.42).getText());
+        assertEquals("05", ImpactIconAtlas.getImpactIcon(0.05).getText());
+    }
+
+    @Test
+    void impactValues_shouldBeClamped() {
+        assertEquals("01", ImpactIconAtlas.getImpactIcon(0.0).getText());
+        assertEquals("01", ImpactIconAtlas.getImpactIcon(-1.0).getText());
+        assertEquals("99", ImpactIconAtlas.getImpactIcon(1.0).getText());
+        assertEquals("99", ImpactIconAtlas.getImpactIcon(5.0).getText());
+    }
+
+    @Test
+    void hotMethods_shouldHaveWarmerColors() {
+        assertSame(ImpactIconAtlas.getHeatColor(1), ImpactIconAtlas.getHeatColor(4));
+        assertNotSame(ImpactIconAtlas.getHeatColor(4), ImpactIconAtlas.getHeatColor(50));
+        assertSame(ImpactIconAtlas.getHeatColor(50), ImpactIconAtlas.getImpactIcon(0.5).getFontColor());
+    }
+
+    @Test
+    void deltaIcons_shouldShowSignedChange() {
+        ImpactIconAtlas.Significance regression = ImpactIconAtlas.Significance.REGRESSION;
+        assertEquals("+3", ImpactIconAtlas.getDeltaIcon(0.03, regression).getText());
+        assertEquals("-9", ImpactIconAtlas.getDeltaIcon(-0.5, regression).getText());
+        assertEquals("+9", ImpactIconAtlas.getDeltaIcon(0.5, regression).getText());
+        assertEquals("\u00b10", ImpactIconAtlas.getDeltaIcon(0.001, regression).getText());
+        assertNotSame(
+                ImpactIconAtlas.getDeltaIcon(0.03, regression),
+                ImpactIconAtlas.getDeltaIcon(0.03, ImpactIconAtlas.Significance.NOT_SIGNIFICANT));
+    }
+
+    @Test
+    void icon_shouldPaintRasterizedText() {
+        ImpactIcon icon = ImpactIconAtlas.getImpactIcon(0.88);
+        BufferedImage canvas = new BufferedImage(
+                icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (int i = 0; i < 2; i++) {
+            Graphics2D graphics = canvas.createGraphics();
+            icon.paintIcon(null, graphics, 0, 0);
+            graphics.dispose();
+        }
+
+        int paintedPixels = 0;
+        for (int x = 0; x < canvas.getWidth(); x++) {
+            for (int y = 0; y < canvas.getHeight(); y++) {
+                if ((canvas.getRGB(x, y) >>> 24) != 0) {
+                    paintedPixels += 1;
+                }
+            }
+        }
+        assertTrue(paintedPixels > 0);
+    }
+}
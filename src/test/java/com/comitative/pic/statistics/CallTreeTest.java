@@ -0,0 +1,159 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.parsers.AsyncFlatParser;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallTreeTest {
+
+    @Test
+    void withSampleFile_shouldCollectAllStackTraces() throws IOException {
+        CallTree tree = loadSampleTree();
+
+        // The sample file contains 100 stack traces with 8694 samples in total
+        assertEquals(8694, tree.getTotalSamples());
+        assertEquals(200, tree.getFrameCount());
+
+        long selfSamples = 0;
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            selfSamples += tree.getSelfSamples(node);
+            if (node != CallTree.ROOT) {
+                assertTrue(tree.getParent(node) < node, "Parents should precede their children");
+            }
+        }
+        assertEquals(tree.getTotalSamples(), selfSamples);
+    }
+
+    @Test
+    void withSampleFile_shouldShareCommonPrefixes() throws IOException {
+        CallTree tree = loadSampleTree();
+
+        // All the stack traces of the main thread start with two MainKt.main frames
+        int main = tree.findFrame(MAIN_FRAME);
+        assertNotEquals(CallTree.NO_FRAME, main);
+        int mainNodes = 0;
+        for (int node = 1; node < tree.getNodeCount(); node++) {
+            if (tree.getFrame(node) == main && tree.getParent(node) == CallTree.ROOT) {
+                mainNodes += 1;
+            }
+        }
+        assertEquals(1, mainNodes);
+    }
+
+    @Test
+    void withSampleFile_shouldFindCallersAndCallees() throws IOException {
+        CallTree tree = loadSampleTree();
+        int multiply = tree.findFrame(MULTIPLY_FRAME);
+        assertNotEquals(CallTree.NO_FRAME, multiply);
+
+        List<CallTree.CallEdge> callers = tree.getCallers(multiply);
+        assertEquals(MAIN_FRAME, callers.get(0).getFrameName());
+        assertTrue(callers.stream().anyMatch(edge -> edge.getFrameName().equals(TRANSFORM_FRAME)));
+
+        List<CallTree.CallEdge> callees = tree.getCallees(multiply);
+        assertEquals(GET_ELEMENT_FRAME, callees.get(0).getFrameName());
+        for (int i = 1; i < callees.size(); i++) {
+            assertTrue(callees.get(i - 1).getSampleCount() >= callees.get(i).getSampleCount());
+        }
+    }
+
+    @Test
+    void precomputedEdges_shouldAggregateAllCallPaths() {
+        CallTree.Builder builder = new CallTree.Builder();
+        builder.addFrame(0, "a");
+        builder.addFrame(1, "b");
+        builder.addFrame(2, "c");
+        builder.addFrame(3, "d");
+        // The top frame first: a -> b -> c, a -> b -> d, a -> c and d -> b -> c
+        builder.addStackTrace(10, 1, new int[]{2, 1, 0}, 3);
+        builder.addStackTrace(20, 2, new int[]{3, 1, 0}, 3);
+        builder.addStackTrace(40, 4, new int[]{2, 0}, 2);
+        builder.addStackTrace(80, 8, new int[]{2, 1, 3}, 3);
+        CallTree tree = builder.build();
+
+        List<CallTree.CallEdge> callers = tree.getCallers(tree.findFrame("c"));
+        assertEquals(2, callers.size());
+        assertEquals("b", callers.get(0).getFrameName());
+        assertEquals(9, callers.get(0).getSampleCount());
+        assertEquals(90, callers.get(0).getAbsoluteTime());
+        assertEquals("a", callers.get(1).getFrameName());
+        assertEquals(4, callers.get(1).getSampleCount());
+
+        List<CallTree.CallEdge> callees = tree.getCallees(tree.findFrame("b"));
+        assertEquals(2, callees.size());
+        assertEquals("c", callees.get(0).getFrameName());
+        assertEquals(9, callees.get(0).getSampleCount());
+        assertEquals("d", callees.get(1).getFrameName());
+        assertEquals(2, callees.get(1).getSampleCount());
+
+        List<CallTree.CallEdge> topCallee = tree.getCallees(tree.findFrame("a"), 1);
+        assertEquals(1, topCallee.size());
+        assertEquals("c", topCallee.get(0).getFrameName());
+        assertTrue(tree.getCallers(tree.findFrame("a")).isEmpty());
+        assertTrue(tree.getCallees(tree.findFrame("c"), 5).isEmpty());
+    }
+
+    @Test
+    void mergedTrees_shouldSumMatchingPaths() throws IOException {
+        CallTree tree = loadSampleTree();
+        CallTree.Builder builder = new CallTree.Builder();
+        builder.addTree(tree);
+        builder.addTree(tree);
+        CallTree merged = builder.build();
+
+        assertEquals(2 * tree.getTotalSamples(), merged.getTotalSamples());
+        assertEquals(2 * tree.getTotalTime(), merged.getTotalTime());
+        assertEquals(tree.getNodeCount(), merged.getNodeCount());
+        assertEquals(tree.getFrameCount(), merged.getFrameCount());
+        int multiply = merged.findFrame(MULTIPLY_FRAME);
+        assertEquals(
+                2 * tree.getCallers(tree.findFrame(MULTIPLY_FRAME)).get(0).getSampleCount(),
+                merged.getCallers(multiply).get(0).getSampleCount());
+    }
+
+    @Test
+    void unknownFrame_shouldNotBeFound() throws IOException {
+        assertEquals(CallTree.NO_FRAME, loadSampleTree().findFrame("com.comitative.pt.Missing.method_[j]"));
+        assertEquals(CallTree.NO_FRAME, CallTree.EMPTY.findFrame(MAIN_FRAME));
+        assertEquals(0, CallTree.EMPTY.getTotalSamples());
+    }
+
+    @Test
+    void recursiveFrames_shouldBeCountedOncePerStack() {
+        CallTree.Builder builder = new CallTree.Builder();
+        builder.addFrame(0, "a");
+        builder.addFrame(1, "b");
+        builder.addFrame(2, "c");
+        // The top frame first: a -> b -> a and a -> b -> c
+        builder.addStackTrace(30, 3, new int[]{0, 1, 0}, 3);
+        builder.addStackTrace(20, 2, new int[]{2, 1, 0}, 3);
+        CallTree tree = builder.build();
+
+        long[] samples = new long[2];
+        long[] times = new long[2];
+        tree.aggregateTotals(new int[]{0, 1, CallTree.NO_GROUP}, samples, times);
+
+        assertArrayEquals(new long[]{5, 5}, samples);
+        assertArrayEquals(new long[]{50, 50}, times);
+    }
+
+    private @NotNull CallTree loadSampleTree() throws IOException {
+        URL resource = getClass().getClassLoader().getResource("async_flat_sample_01.txt");
+        assertNotNull(resource, "Test resource not found");
+        CallTree.Builder builder = new CallTree.Builder();
+        new AsyncFlatParser().parseFile(new File(resource.getFile()), builder);
+        return builder.build();
+    }
+
+    private static final String MAIN_FRAME = "com.comitative.pt.MainKt.main_[j]";
+    private static final String MULTIPLY_FRAME = "com.comitative.pt.Matrix.multiply_[j]";
+    private static final String TRANSFORM_FRAME = "com.comitative.pt.Transform.transform_[j]";
+    private static final String GET_ELEMENT_FRAME = "com.comitative.pt.Matrix.getElement_[j]";
+}
@@ -0,0 +1,86 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.TimeRecord;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static com.comitative.pic.statistics.TestRecords.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassNameTreeTest {
+
+    @Test
+    void packagesAndClasses_shouldHoldTotalsOfRecordsBelow() {
+        ClassNameTree tree = createDictionary().getClassNameTree();
+
+        assertEquals(4, tree.getRecordCount(ClassNameTree.ROOT));
+        assertEquals(1.0, tree.getRelativeTime(ClassNameTree.ROOT), 1e-9);
+
+        int packageNode = tree.findNode("com.comitative.pt");
+        assertNotEquals(ClassNameTree.NO_NODE, packageNode);
+        assertEquals(3, tree.getRecordCount(packageNode));
+        assertEquals(0.875, tree.getRelativeTime(packageNode), 1e-9);
+        assertEquals(tree.getRecordCount(packageNode), tree.getRecordCount(tree.findNode("com")));
+
+        int vectorNode = tree.findNode("com.comitative.pt.Vector");
+        assertEquals(1, tree.getRecordCount(vectorNode));
+        assertEquals(50, tree.getValue(ProfileMetric.SAMPLES, vectorNode));
+        assertEquals(0.125, tree.getRelativeValue(ProfileMetric.SAMPLES, tree.findNode("JavaThread")), 1e-9);
+    }
+
+    @Test
+    void nestedClasses_shouldBeIncludedInOuterClassTotals() {
+        ClassNameTree tree = createDictionary().getClassNameTree();
+
+        int outerNode = tree.findClass("com.comitative.pt.Matrix");
+        int innerNode = tree.findClass("com.comitative.pt.Matrix.Row");
+        assertEquals(2, tree.getRecordCount(outerNode));
+        assertEquals(0.625, tree.getRelativeTime(outerNode), 1e-9);
+        assertEquals(1, tree.getRecordCount(innerNode));
+        assertEquals(0.125, tree.getRelativeTime(innerNode), 1e-9);
+        assertEquals(0.5, tree.getRelativeValue(ProfileMetric.ALLOCATED_BYTES, outerNode), 1e-9);
+        assertEquals(0.25, tree.getRelativeValue(ProfileMetric.ALLOCATED_BYTES, innerNode), 1e-9);
+        assertEquals(0.0, tree.getRelativeValue(ProfileMetric.LOCK_WAIT_TIME, outerNode), 1e-9);
+    }
+
+    @Test
+    void classLookup_shouldFallBackToShortClassName() {
+        ClassNameTree tree = createDictionary().getClassNameTree();
+
+        // The native frames have no package name, so they are matched by the short class name
+        int node = tree.findClass("org.example.JavaThread");
+        assertEquals(tree.findNode("JavaThread"), node);
+        assertEquals(1, tree.getRecordCount(node));
+
+        assertEquals(ClassNameTree.NO_NODE, tree.findNode("com.comitative.Matrix"));
+        assertEquals(ClassNameTree.NO_NODE, tree.findNode("com.comitative.pt.Mat"));
+        assertEquals(ClassNameTree.NO_NODE, tree.findNode(""));
+        assertEquals(ClassNameTree.NO_NODE, tree.findClass("org.example.Vector"));
+    }
+
+    @Test
+    void emptyDictionary_shouldHaveRootOnly() {
+        ClassNameTree tree = StatisticsDictionary.EMPTY.getClassNameTree();
+
+        assertEquals(1, tree.getNodeCount());
+        assertEquals(0, tree.getRecordCount(ClassNameTree.ROOT));
+        assertEquals(0.0, tree.getRelativeValue(ProfileMetric.ALLOCATED_BYTES, ClassNameTree.ROOT), 1e-9);
+        assertEquals(ClassNameTree.NO_NODE, tree.findClass("com.comitative.pt.Matrix"));
+    }
+
+    private static @NotNull StatisticsDictionary createDictionary() {
+        TimeRecord multiply = createRecord("com.comitative.pt.Matrix", "multiply", true, 0.5, 400);
+        multiply.setValue(ProfileMetric.ALLOCATED_BYTES, 1024);
+        TimeRecord getElement = createRecord("com.comitative.pt.Matrix.Row", "getElement", true, 0.125, 100);
+        getElement.setValue(ProfileMetric.ALLOCATED_BYTES, 1024);
+        TimeRecord add = createRecord("com.comitative.pt.Vector", "add", true, 0.25, 50);
+        add.setValue(ProfileMetric.ALLOCATED_BYTES, 2048);
+        return new StatisticsDictionary.Builder()
+                .add(multiply)
+                .add(getElement)
+                .add(add)
+                .add(createRecord("JavaThread", "run", false, 0.125, 50))
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.comitative.pic.statistics;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static com.comitative.pic.statistics.TestRecords.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotspotTableModelTest {
+
+    @Test
+    void rows_shouldBeSortedByColumnDescending() {
+        StatisticsDictionary dictionary = createDictionary();
+
+        int[] rows = HotspotTableModel.selectRows(dictionary, "", HotspotTableModel.SortColumn.SELF);
+        assertEquals(4, rows.length);
+        assertEquals("com.comitative.pt.Matrix.multiply", dictionary.getDisplayName(rows[0]));
+        assertEquals("com.comitative.pt.Vector.add", dictionary.getDisplayName(rows[1]));
+        assertEquals("JavaThread::run", dictionary.getDisplayName(rows[3]));
+
+        rows = HotspotTableModel.selectRows(dictionary, "", HotspotTableModel.SortColumn.SAMPLES);
+        assertEquals("com.comitative.pt.Matrix.getElement", dictionary.getDisplayName(rows[0]));
+    }
+
+    @Test
+    void rows_shouldBeFilteredByClassNamePrefix() {
+        StatisticsDictionary dictionary = createDictionary();
+
+        int[] rows = HotspotTableModel.selectRows(dictionary, "com.comitative.pt.M", HotspotTableModel.SortColumn.SELF);
+        assertEquals(2, rows.length);
+        assertEquals("multiply", dictionary.getMethodName(rows[0]));
+        assertEquals("getElement", dictionary.getMethodName(rows[1]));
+        assertEquals(0, HotspotTableModel.selectRows(dictionary, "org.", HotspotTableModel.SortColumn.SELF).length);
+
+        HotspotTableModel model = new HotspotTableModel();
+        model.setRows(dictionary, rows);
+        assertEquals(2, model.getRowCount());
+        assertEquals(0.5, model.getValueAt(0, HotspotTableModel.SELF_COLUMN));
+        assertEquals(400L, model.getValueAt(1, HotspotTableModel.SAMPLES_COLUMN));
+    }
+
+    private static @NotNull StatisticsDictionary createDictionary() {
+        return new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", true, 0.5, 100))
+                .add(createRecord("com.comitative.pt.Matrix", "getElement", true, 0.125, 400))
+                .add(createRecord("com.comitative.pt.Vector", "add", true, 0.25, 50))
+                .add(createRecord("JavaThread", "run", false, 0.0625, 10))
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.comitative.pic.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogram_shouldReportZeros() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99.0));
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    @Test
+    void smallValues_shouldBeExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 15; value++) {
+            histogram.record(value);
+        }
+        assertEquals(15, histogram.getCount());
+        assertEquals(8, histogram.getPercentile(50.0));
+        assertEquals(15, histogram.getPercentile(100.0));
+        assertEquals(8.0, histogram.getMean());
+    }
+
+    @Test
+    void percentiles_shouldBeWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertWithinError(50_000_000, histogram.getPercentile(50.0));
+        assertWithinError(99_000_000, histogram.getPercentile(99.0));
+        assertEquals(histogram.getMax(), histogram.getPercentile(100.0));
+    }
+
+    @Test
+    void extremeValues_shouldBeRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50.0));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100.0));
+    }
+
+    @Test
+    void reset_shouldForgetValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    // The upper bound of a bucket is at most 1/8 above the lower bound
+    private static void assertWithinError(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8,
+                "Expected " + expected + " within the bucket error, got " + actual);
+    }
+}
@@ -0,0 +1,60 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.TimeRecord;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginMetricsTest {
+
+    @Test
+    void markerLookups_shouldBeCounted() {
+        PluginMetrics metrics = new PluginMetrics();
+        metrics.recordMarkerLookup(true, 2_000);
+        metrics.recordMarkerLookup(false, 1_000);
+        metrics.recordMarkerLookup(false, 1_000);
+        metrics.recordMarkerLookup(true, 4_000);
+
+        assertEquals(4, metrics.getMarkerLookups());
+        assertEquals(2, metrics.getMarkerHits());
+        assertEquals(0.5, metrics.getMarkerHitRate());
+        assertEquals(4, metrics.getMarkerLatency().getCount());
+        assertEquals(4_000, metrics.getMarkerLatency().getMax());
+
+        metrics.resetMarkerMetrics();
+        assertEquals(0, metrics.getMarkerLookups());
+        assertEquals(0.0, metrics.getMarkerHitRate());
+    }
+
+    @Test
+    void lastLoad_shouldBeReplacedPerKind() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(new TimeRecord(
+                        CodeReference.builder().setFqClassName("Matrix").setMethodName("multiply").build(),
+                        1.0))
+                .build();
+        PluginMetrics metrics = new PluginMetrics();
+        assertNull(metrics.getLastLoad());
+
+        metrics.recordLoad(new LoadMetrics(
+                SnapshotKind.CURRENT, "first.txt", "parser", false, 2_000_000, 1_000_000_000, dictionary));
+        metrics.recordLoad(new LoadMetrics(
+                SnapshotKind.CURRENT, "second.txt", "parser", false, 4_000_000, 2_000_000_000, dictionary));
+        metrics.recordLoad(new LoadMetrics(
+                SnapshotKind.BASELINE, "baseline.txt", "parser", true, 1_000, 1_000_000, dictionary));
+
+        LoadMetrics load = metrics.getLastLoad();
+        assertNotNull(load);
+        assertEquals("second.txt", load.getSnapshotName());
+        assertEquals(2_000_000.0, load.getBytesPerSecond());
+        assertEquals(1, load.getRecordCount());
+        assertTrue(load.getRetainedSize() > 0);
+        assertEquals(3, metrics.getLoadCount());
+
+        String report = metrics.dump();
+        assertTrue(report.contains("second.txt"));
+        assertTrue(report.contains("baseline.txt"));
+        assertTrue(report.contains("p99"));
+    }
+}
@@ -0,0 +1,215 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.FrameType;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.TimeRecord;
+import com.comitative.pic.parsers.AsyncFlatParser;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.comitative.pic.statistics.TestRecords.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCacheTest {
+
+    @Test
+    void withSampleFile_shouldRestoreSameDictionary() throws IOException {
+        File file = getSampleFile();
+        StatisticsDictionary dictionary = loadSampleDictionary(file);
+        Path cacheFile = createCacheFile();
+        try {
+            SnapshotCache cache = new SnapshotCache(cacheFile);
+            SnapshotCache.Source source =
+                    SnapshotCache.Source.of(Collections.singletonList(file), new AsyncFlatParser());
+            cache.write(dictionary, source);
+
+            assertEquals(source, cache.readSource());
+            assertNull(cache.read(new SnapshotCache.Source("snapshot.txt", "parser", 0, 0, 0)));
+            StatisticsDictionary restored = cache.read(source);
+            assertNotNull(restored);
+            assertEquals(dictionary.getRecordCount(), restored.getRecordCount());
+            for (int record = 0; record < dictionary.getRecordCount(); record++) {
+                assertEquals(dictionary.getCodeReference(record), restored.getCodeReference(record));
+                assertEquals(dictionary.getRelativeTime(record), restored.getRelativeTime(record));
+                for (ProfileMetric metric : ProfileMetric.values()) {
+                    assertEquals(dictionary.getValue(metric, record), restored.getValue(metric, record));
+                }
+                assertEquals(dictionary.getInclusiveSampleCount(record), restored.getInclusiveSampleCount(record));
+                assertEquals(dictionary.getInclusiveTime(record), restored.getInclusiveTime(record));
+            }
+            assertTrue(restored.getChangedClasses(dictionary).isEmpty());
+
+            assertEquals(
+                    dictionary.findRecord("com.comitative.pt.Matrix", "multiply"),
+                    restored.findRecord("com.comitative.pt.Matrix", "multiply"));
+
+            CallTree tree = dictionary.getCallTree();
+            CallTree restoredTree = restored.getCallTree();
+            assertEquals(tree.getFrameCount(), restoredTree.getFrameCount());
+            assertEquals(tree.getNodeCount(), restoredTree.getNodeCount());
+            assertEquals(tree.getTotalSamples(), restoredTree.getTotalSamples());
+            assertEquals(tree.getTotalTime(), restoredTree.getTotalTime());
+            for (int node = CallTree.ROOT + 1; node < tree.getNodeCount(); node++) {
+                assertEquals(tree.getParent(node), restoredTree.getParent(node));
+                assertEquals(tree.getFrameName(tree.getFrame(node)),
+                        restoredTree.getFrameName(restoredTree.getFrame(node)));
+                assertEquals(tree.getTotalSamples(node), restoredTree.getTotalSamples(node));
+            }
+
+            int multiply = dictionary.findRecord("com.comitative.pt.Matrix", "multiply");
+            assertEquals(dictionary.getCallerCount(multiply), restored.getCallerCount(multiply));
+            for (int i = 0; i < dictionary.getCallerCount(multiply); i++) {
+                int call = dictionary.getCallerCall(multiply, i);
+                int restoredCall = restored.getCallerCall(multiply, i);
+                assertEquals(dictionary.getDisplayName(dictionary.getCallCaller(call)),
+                        restored.getDisplayName(restored.getCallCaller(restoredCall)));
+                assertEquals(dictionary.getCallSampleCount(call), restored.getCallSampleCount(restoredCall));
+            }
+            int main = dictionary.findRecord("com.comitative.pt.MainKt", "main");
+            assertEquals(
+                    dictionary.getCallSampleCount(dictionary.findCall(main, multiply)),
+                    restored.getCallSampleCount(restored.findCall(main, multiply)));
+        } finally {
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    @Test
+    void emptyDictionary_shouldBeRestored() throws IOException {
+        Path cacheFile = createCacheFile();
+        try {
+            SnapshotCache cache = new SnapshotCache(cacheFile);
+            cache.write(StatisticsDictionary.EMPTY, new SnapshotCache.Source("snapshot.txt", "parser", 0, 0, 0));
+            StatisticsDictionary restored = cache.read();
+            assertNotNull(restored);
+            assertEquals(0, restored.getRecordCount());
+            assertEquals(0, restored.getCallTree().getTotalSamples());
+        } finally {
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    @Test
+    void lineIndex_shouldBeRestored() throws IOException {
+        Path cacheFile = createCacheFile();
+        try {
+            StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                    .add(createLineRecord("com.comitative.pt.Matrix", "multiply", 27, 30))
+                    .add(createLineRecord("com.comitative.pt.Matrix", "multiply", 31, 10))
+                    .add(createLineRecord("com.comitative.pt.Vector", "add", 1200, 5))
+                    .build();
+            SnapshotCache cache = new SnapshotCache(cacheFile);
+            cache.write(dictionary, new SnapshotCache.Source("snapshot.txt", "parser", 0, 0, 0));
+            StatisticsDictionary restored = cache.read();
+            assertNotNull(restored);
+            assertTrue(restored.getChangedClasses(dictionary).isEmpty());
+            for (String className : new String[] {"com.comitative.pt.Matrix", "com.comitative.pt.Vector"}) {
+                int classIndex = dictionary.findClass(className);
+                int restoredClassIndex = restored.findClass(className);
+                int entry = dictionary.findLineEntry(classIndex, 0);
+                int restoredEntry = restored.findLineEntry(restoredClassIndex, 0);
+                assertEquals(dictionary.getLineEntryEnd(classIndex) - entry,
+                        restored.getLineEntryEnd(restoredClassIndex) - restoredEntry);
+                for (; entry < dictionary.getLineEntryEnd(classIndex); entry++, restoredEntry++) {
+                    assertEquals(dictionary.getLineNumber(entry), restored.getLineNumber(restoredEntry));
+                    assertEquals(dictionary.getLineSampleCount(entry), restored.getLineSampleCount(restoredEntry));
+                    assertEquals(dictionary.getLineTime(entry), restored.getLineTime(restoredEntry));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    @Test
+    void frameTypeIndex_shouldBeRestored() throws IOException {
+        Path cacheFile = createCacheFile();
+        try {
+            TimeRecord compiled = createLineRecord("com.comitative.pt.Matrix", "multiply", 27, 30);
+            compiled.setFrameType(FrameType.C2_COMPILED);
+            TimeRecord interpreted = createLineRecord("com.comitative.pt.Matrix", "multiply", 31, 10);
+            interpreted.setFrameType(FrameType.INTERPRETED);
+            TimeRecord inlined = createLineRecord("com.comitative.pt.Vector", "add", 1200, 5);
+            inlined.setFrameType(FrameType.INLINED);
+            StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                    .add(compiled)
+                    .add(interpreted)
+                    .add(inlined)
+                    .build();
+            SnapshotCache cache = new SnapshotCache(cacheFile);
+            cache.write(dictionary, new SnapshotCache.Source("snapshot.txt", "parser", 0, 0, 0));
+            StatisticsDictionary restored = cache.read();
+            assertNotNull(restored);
+            assertTrue(restored.getChangedClasses(dictionary).isEmpty());
+            for (int record = 0; record < dictionary.getRecordCount(); record++) {
+                for (FrameType frameType : FrameType.values()) {
+                    assertEquals(dictionary.getFrameTypeSampleCount(record, frameType),
+                            restored.getFrameTypeSampleCount(record, frameType));
+                }
+            }
+            int multiply = restored.findRecord("com.comitative.pt.Matrix", "multiply");
+            assertEquals(10, restored.getFrameTypeSampleCount(multiply, FrameType.INTERPRETED));
+        } finally {
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    @Test
+    void missingCache_shouldNotBeRead() throws IOException {
+        Path cacheFile = createCacheFile();
+        Files.delete(cacheFile);
+        SnapshotCache cache = new SnapshotCache(cacheFile);
+        assertNull(cache.readSource());
+        assertNull(cache.read());
+    }
+
+    @Test
+    void malformedCache_shouldBeRejected() throws IOException {
+        Path cacheFile = createCacheFile();
+        try {
+            SnapshotCache cache = new SnapshotCache(cacheFile);
+            Files.write(cacheFile, new byte[] {1, 2, 3});
+            assertThrows(IOException.class, cache::read);
+
+            // A truncated cache
+            cache.write(
+                    loadSampleDictionary(getSampleFile()),
+                    new SnapshotCache.Source("snapshot.txt", "parser", 0, 0, 0));
+            byte[] bytes = Files.readAllBytes(cacheFile);
+            Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length / 2));
+            assertThrows(IOException.class, cache::read);
+        } finally {
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    private @NotNull File getSampleFile() {
+        URL resource = getClass().getClassLoader().getResource("async_flat_sample_01.txt");
+        assertNotNull(resource, "Test resource not found");
+        return new File(resource.getFile());
+    }
+
+    private static @NotNull StatisticsDictionary loadSampleDictionary(@NotNull File file) throws IOException {
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        AsyncFlatParser parser = new AsyncFlatParser();
+        List<TimeRecord> timeRecords = parser.parseFile(file, callTreeBuilder);
+        return new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(parser::getFrameCodeReference)
+                .addAll(timeRecords)
+                .build();
+    }
+
+    private static @NotNull Path createCacheFile() throws IOException {
+        return Files.createTempFile("snapshot-cache", ".bin");
+    }
+}
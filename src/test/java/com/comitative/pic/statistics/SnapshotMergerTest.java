@@ -0,0 +1,92 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.TimeRecord;
+import com.comitative.pic.parsers.AsyncFlatParser;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.comitative.pic.statistics.TestRecords.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotMergerTest {
+
+    @Test
+    void sameSnapshots_shouldKeepRelativeTimes() throws IOException {
+        File file = getSampleFile();
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        List<TimeRecord> timeRecords = new AsyncFlatParser().parseFile(file, callTreeBuilder);
+        CallTree callTree = callTreeBuilder.build();
+
+        StatisticsDictionary merged;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            merged = SnapshotMerger.mergeFiles(
+                    Arrays.asList(file, file, file), new AsyncFlatParser(), executor, null);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (TimeRecord timeRecord : timeRecords) {
+            CodeReference codeReference = timeRecord.getCodeReference();
+            List<TimeRecord> mergedRecords = merged.getTimeRecords(codeReference);
+            assertEquals(1, mergedRecords.size());
+            TimeRecord mergedRecord = mergedRecords.get(0);
+            assertEquals(3 * timeRecord.getSampleCount(), mergedRecord.getSampleCount());
+            assertEquals(3 * timeRecord.getAbsoluteTime(), mergedRecord.getAbsoluteTime());
+            // The relative times of the snapshot are rounded percents
+            assertEquals(timeRecord.getRelativeTime(), mergedRecord.getRelativeTime(), 0.0001);
+        }
+
+        assertEquals(3 * callTree.getTotalSamples(), merged.getCallTree().getTotalSamples());
+        assertEquals(callTree.getNodeCount(), merged.getCallTree().getNodeCount());
+        assertEquals(callTree.getFrameCount(), merged.getCallTree().getFrameCount());
+    }
+
+    @Test
+    void differentSnapshots_shouldUseCombinedTotals() {
+        SnapshotMerger merger = new SnapshotMerger();
+        merger.add(Arrays.asList(
+                createRecord("Matrix", "multiply", 0.5, 50, 500),
+                createRecord("Vector", "add", 0.25, 25, 250)), CallTree.EMPTY);
+        merger.add(Collections.singletonList(
+                createRecord("Matrix", "multiply", 1.0, 300, 3000)), CallTree.EMPTY);
+
+        // The totals are 1000 and 3000 ns
+        StatisticsDictionary dictionary = merger.build(null);
+        assertEquals(2, dictionary.getRecordCount());
+        int multiply = dictionary.findRecord("Matrix", "multiply");
+        assertEquals(3500, dictionary.getAbsoluteTime(multiply));
+        assertEquals(0.875, dictionary.getRelativeTime(multiply), 1e-9);
+        assertEquals(0.0625, dictionary.getRelativeTime(dictionary.findRecord("Vector", "add")), 1e-9);
+    }
+
+    @Test
+    void missingFile_shouldFail() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertThrows(IOException.class, () -> SnapshotMerger.mergeFiles(
+                    Arrays.asList(getSampleFile(), new File("missing_snapshot.txt")),
+                    new AsyncFlatParser(),
+                    executor,
+                    null));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private @NotNull File getSampleFile() {
+        URL resource = getClass().getClassLoader().getResource("async_flat_sample_01.txt");
+        assertNotNull(resource, "Test resource not found");
+        return new File(resource.getFile());
+    }
+}
@@ -0,0 +1,94 @@
+package com.comitative.pic.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import static com.comitative.pic.statistics.TestRecords.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsDeltaTest {
+
+    @Test
+    void matchingRecords_shouldHaveRelativeTimeDelta() {
+        StatisticsDictionary baseline = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5, 5000))
+                .add(createRecord("com.comitative.pt.Matrix", "getElement", 0.2, 2000))
+                .build();
+        StatisticsDictionary current = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.6, 6000))
+                .add(createRecord("com.comitative.pt.Matrix", "getElement", 0.2, 2000))
+                .build();
+        StatisticsDelta delta = new StatisticsDelta(current, baseline);
+        assertTrue(delta.hasBaseline());
+
+        int multiply = current.findRecord("com.comitative.pt.Matrix", "multiply");
+        assertEquals(baseline.findRecord("com.comitative.pt.Matrix", "multiply"), delta.getBaselineRecord(multiply));
+        assertEquals(0.1, delta.getRelativeTimeDelta(multiply), 1e-9);
+        assertTrue(delta.getZScore(multiply) > StatisticsDelta.SIGNIFICANT_Z_SCORE);
+        assertTrue(delta.isSignificant(multiply));
+
+        int getElement = current.findRecord("com.comitative.pt.Matrix", "getElement");
+        assertEquals(0.0, delta.getRelativeTimeDelta(getElement), 1e-9);
+        assertEquals(0.0, delta.getZScore(getElement), 1e-9);
+        assertFalse(delta.isSignificant(getElement));
+    }
+
+    @Test
+    void smallSampleCounts_shouldNotBeSignificant() {
+        StatisticsDictionary baseline = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5, 5))
+                .build();
+        StatisticsDictionary current = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.6, 6))
+                .build();
+        StatisticsDelta delta = new StatisticsDelta(current, baseline);
+
+        assertEquals(0.1, delta.getRelativeTimeDelta(0), 1e-9);
+        assertFalse(delta.isSignificant(0));
+    }
+
+    @Test
+    void newMethod_shouldBeComparedWithZero() {
+        StatisticsDictionary baseline = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5, 5000))
+                .build();
+        StatisticsDictionary current = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5, 5000))
+                .add(createRecord("com.comitative.pt.Matrix", "transpose", 0.3, 3000))
+                .build();
+        StatisticsDelta delta = new StatisticsDelta(current, baseline);
+
+        int transpose = current.findRecord("com.comitative.pt.Matrix", "transpose");
+        assertEquals(StatisticsDictionary.NO_RECORD, delta.getBaselineRecord(transpose));
+        assertEquals(0.3, delta.getRelativeTimeDelta(transpose), 1e-9);
+        assertTrue(delta.isSignificant(transpose));
+    }
+
+    @Test
+    void improvement_shouldHaveNegativeScore() {
+        StatisticsDictionary baseline = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5, 5000))
+                .build();
+        StatisticsDictionary current = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.25, 2500))
+                .build();
+        StatisticsDelta delta = new StatisticsDelta(current, baseline);
+
+        assertEquals(-0.25, delta.getRelativeTimeDelta(0), 1e-9);
+        assertTrue(delta.getZScore(0) < -StatisticsDelta.SIGNIFICANT_Z_SCORE);
+    }
+
+    @Test
+    void missingBaseline_shouldHaveNoDelta() {
+        StatisticsDictionary current = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5, 5000))
+                .build();
+        StatisticsDelta delta = new StatisticsDelta(current, StatisticsDictionary.EMPTY);
+
+        assertFalse(delta.hasBaseline());
+        assertEquals(StatisticsDictionary.NO_RECORD, delta.getBaselineRecord(0));
+        assertEquals(0.0, delta.getRelativeTimeDelta(0));
+        assertFalse(delta.isSignificant(0));
+        assertFalse(StatisticsDelta.EMPTY.hasBaseline());
+        assertEquals(0, StatisticsDelta.EMPTY.getCurrent().getRecordCount());
+    }
+}
@@ -0,0 +1,520 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.FrameType;
+import com.comitative.pic.ProfileMetric;
+import com.comitative.pic.TimeRecord;
+import com.comitative.pic.parsers.AsyncFlatParser;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.comitative.pic.statistics.TestRecords.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsDictionaryTest {
+
+    @Test
+    void exactName_shouldBeFound() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5))
+                .add(createRecord("com.comitative.pt.Matrix", "getElement", 0.25))
+                .build();
+
+        List<TimeRecord> records = dictionary.getTimeRecords("com.comitative.pt.Matrix", "multiply");
+        assertEquals(1, records.size());
+        assertEquals(0.5, records.get(0).getRelativeTime());
+    }
+
+    @Test
+    void shortClassName_shouldBeUsedAsFallback() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("Matrix", "multiply", 0.5))
+                .build();
+
+        List<TimeRecord> records = dictionary.getTimeRecords("com.comitative.pt.Matrix", "multiply");
+        assertEquals(1, records.size());
+        assertEquals("Matrix", records.get(0).getCodeReference().getFqClassName());
+    }
+
+    @Test
+    void missingName_shouldReturnEmptyList() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5))
+                .build();
+
+        assertTrue(dictionary.getTimeRecords("com.comitative.pt.Matrix", "transpose").isEmpty());
+        assertTrue(dictionary.getTimeRecords("com.comitative.pt.Vector", "multiply").isEmpty());
+    }
+
+    @Test
+    void nativeReference_shouldNotMatchJavaMethod() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(new TimeRecord(
+                        CodeReference.builder().setJavaMethod(false).setFqClassName("os").setMethodName("park").build(),
+                        0.1))
+                .build();
+
+        assertTrue(dictionary.getTimeRecords("os", "park").isEmpty());
+        assertEquals(StatisticsDictionary.NO_RECORD, dictionary.findRecord("os", "park"));
+    }
+
+    @Test
+    void recordsOfOneMethod_shouldKeepInsertionOrder() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("Matrix", "multiply", 0.3))
+                .add(createRecord("Point", "length", 0.2))
+                .add(createRecord("Matrix", "multiply", 0.1))
+                .build();
+
+        int record = dictionary.findRecord("Matrix", "multiply");
+        assertEquals(2, dictionary.getMatchingRecordCount(record));
+        assertEquals(0.3, dictionary.getRelativeTime(record));
+        assertEquals(0.1, dictionary.getRelativeTime(record + 1));
+        assertEquals(3, dictionary.getRecordCount());
+    }
+
+    @Test
+    void returnedRecords_shouldNotAffectDictionary() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("Matrix", "multiply", 0.5))
+                .build();
+
+        dictionary.getTimeRecords("Matrix", "multiply").get(0).setSampleCount(42);
+        assertEquals(0, dictionary.getTimeRecords("Matrix", "multiply").get(0).getSampleCount());
+        assertThrows(UnsupportedOperationException.class,
+                () -> dictionary.getTimeRecords("Matrix", "multiply").add(createRecord("Matrix", "multiply", 0.1)));
+    }
+
+    @Test
+    void classLookup_shouldFindMethodsWithinClass() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5))
+                .add(createRecord("com.comitative.pt.Vector", "add", 0.125))
+                .add(createRecord("com.comitative.pt.Matrix", "getElement", 0.25))
+                .add(createRecord("com.comitative.pt.Matrix", "transpose", 0.0625))
+                .build();
+
+        int matrix = dictionary.findClass("com.comitative.pt.Matrix");
+        assertNotEquals(StatisticsDictionary.NO_CLASS, matrix);
+        assertEquals(0.5, dictionary.getRelativeTime(dictionary.findRecord(matrix, "multiply")));
+        assertEquals(0.25, dictionary.getRelativeTime(dictionary.findRecord(matrix, "getElement")));
+        assertEquals(0.0625, dictionary.getRelativeTime(dictionary.findRecord(matrix, "transpose")));
+        assertEquals(StatisticsDictionary.NO_RECORD, dictionary.findRecord(matrix, "add"));
+        assertEquals(StatisticsDictionary.NO_RECORD, dictionary.findRecord(matrix, "invert"));
+
+        // Method names are symbols too, but they are not classes
+        assertEquals(StatisticsDictionary.NO_CLASS, dictionary.findClass("multiply"));
+        assertEquals(StatisticsDictionary.NO_CLASS, dictionary.findClass("com.comitative.pt.Scalar"));
+        assertEquals(StatisticsDictionary.NO_RECORD,
+                dictionary.findRecord(StatisticsDictionary.NO_CLASS, "multiply"));
+    }
+
+    @Test
+    void shortClassLookup_shouldFindUnqualifiedClass() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("Matrix", "multiply", 0.5))
+                .build();
+
+        assertEquals(StatisticsDictionary.NO_CLASS, dictionary.findClass("com.comitative.pt.Matrix"));
+        assertEquals(StatisticsDictionary.NO_CLASS, dictionary.findShortClass("Matrix"));
+        int matrix = dictionary.findShortClass("com.comitative.pt.Matrix");
+        assertEquals(0.5, dictionary.getRelativeTime(dictionary.findRecord(matrix, "multiply")));
+    }
+
+    @Test
+    void classLookup_shouldIgnoreNativeReferences() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(new TimeRecord(
+                        CodeReference.builder().setJavaMethod(false).setFqClassName("os").setMethodName("park").build(),
+                        0.1))
+                .build();
+
+        int os = dictionary.findClass("os");
+        assertNotEquals(StatisticsDictionary.NO_CLASS, os);
+        assertEquals(StatisticsDictionary.NO_RECORD, dictionary.findRecord(os, "park"));
+    }
+
+    @Test
+    void changedClasses_shouldBeDetectedByRecords() {
+        StatisticsDictionary previous = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5))
+                .add(createRecord("com.comitative.pt.Vector", "add", 0.25))
+                .add(createRecord("com.comitative.pt.Scalar", "negate", 0.125))
+                .build();
+        StatisticsDictionary current = new StatisticsDictionary.Builder()
+                .add(createRecord("com.comitative.pt.Point", "length", 0.0625))
+                .add(createRecord("com.comitative.pt.Vector", "add", 0.375))
+                .add(createRecord("com.comitative.pt.Matrix", "multiply", 0.5))
+                .build();
+
+        Set<String> changedClasses = current.getChangedClasses(previous);
+        assertEquals(
+                new HashSet<>(Arrays.asList(
+                        "com.comitative.pt.Point", "com.comitative.pt.Vector", "com.comitative.pt.Scalar")),
+                changedClasses);
+        assertTrue(current.getChangedClasses(current).isEmpty());
+        assertEquals(3, current.getChangedClasses(StatisticsDictionary.EMPTY).size());
+    }
+
+    @Test
+    void retainedSize_shouldGrowWithRecords() {
+        StatisticsDictionary.Builder builder = new StatisticsDictionary.Builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add(createRecord("com.comitative.pt.Class" + i, "method", 0.001));
+        }
+        StatisticsDictionary dictionary = builder.build();
+
+        long emptySize = StatisticsDictionary.EMPTY.estimateRetainedSize();
+        assertTrue(emptySize > 0);
+        // At least the class names and the six record columns
+        assertTrue(dictionary.estimateRetainedSize() > emptySize + 1000 * (25 + 6 * 8));
+    }
+
+    @Test
+    void emptyDictionary_shouldHaveNoRecords() {
+        assertEquals(0, StatisticsDictionary.EMPTY.getRecordCount());
+        assertEquals(StatisticsDictionary.NO_RECORD, StatisticsDictionary.EMPTY.findRecord("Matrix", "multiply"));
+    }
+
+    @Test
+    void withSampleFile_shouldAggregateInclusiveTime() throws IOException {
+        URL resource = getClass().getClassLoader().getResource("async_flat_sample_01.txt");
+        assertNotNull(resource, "Test resource not found");
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        AsyncFlatParser parser = new AsyncFlatParser();
+        List<TimeRecord> timeRecords = parser.parseFile(new File(resource.getFile()), callTreeBuilder);
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(parser::getFrameCodeReference)
+                .addAll(timeRecords)
+                .build();
+
+        int main = dictionary.findRecord("com.comitative.pt.MainKt", "main");
+        assertNotEquals(StatisticsDictionary.NO_RECORD, main);
+        assertTrue(dictionary.getInclusiveSampleCount(main) > dictionary.getSampleCount(main));
+        assertTrue(dictionary.getInclusiveSampleCount(main) <= dictionary.getCallTree().getTotalSamples());
+        assertTrue(dictionary.getInclusiveRelativeTime(main) <= 1.0);
+
+        // The sample file lists the top stack traces only, so some methods are not found in the call tree
+        for (int record = 0; record < dictionary.getRecordCount(); record++) {
+            long inclusiveSamples = dictionary.getInclusiveSampleCount(record);
+            assertTrue(inclusiveSamples == 0 || inclusiveSamples >= dictionary.getSampleCount(record));
+        }
+    }
+
+    @Test
+    void withSampleFile_shouldFindCallersAndCallees() throws IOException {
+        URL resource = getClass().getClassLoader().getResource("async_flat_sample_01.txt");
+        assertNotNull(resource, "Test resource not found");
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        AsyncFlatParser parser = new AsyncFlatParser();
+        List<TimeRecord> timeRecords = parser.parseFile(new File(resource.getFile()), callTreeBuilder);
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(parser::getFrameCodeReference)
+                .addAll(timeRecords)
+                .build();
+
+        int multiply = dictionary.findRecord("com.comitative.pt.Matrix", "multiply");
+        assertNotEquals(StatisticsDictionary.NO_RECORD, multiply);
+        assertTrue(dictionary.getCallerCount(multiply) > 0);
+        int topCaller = dictionary.getCallCaller(dictionary.getCallerCall(multiply, 0));
+        assertEquals("com.comitative.pt.MainKt.main", dictionary.getDisplayName(topCaller));
+        assertTrue(dictionary.getCalleeCount(multiply) > 0);
+        int topCallee = dictionary.getCallCallee(dictionary.getCalleeCall(multiply, 0));
+        assertEquals("com.comitative.pt.Matrix.getElement", dictionary.getDisplayName(topCallee));
+        for (int i = 1; i < dictionary.getCallerCount(multiply); i++) {
+            assertTrue(dictionary.getCallSampleCount(dictionary.getCallerCall(multiply, i - 1))
+                    >= dictionary.getCallSampleCount(dictionary.getCallerCall(multiply, i)));
+        }
+
+        // Every record of a code reference has the same calls
+        for (int i = 1; i < dictionary.getMatchingRecordCount(multiply); i++) {
+            assertEquals(dictionary.getCallerCount(multiply), dictionary.getCallerCount(multiply + i));
+            assertEquals(dictionary.getCallerCall(multiply, 0), dictionary.getCallerCall(multiply + i, 0));
+        }
+    }
+
+    @Test
+    void callIndex_shouldAggregateCallsBetweenMethods() {
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        callTreeBuilder.addFrame(0, "Matrix.getElement/compiled");
+        callTreeBuilder.addFrame(1, "Matrix.multiply/compiled");
+        callTreeBuilder.addFrame(2, "MainKt.main/compiled");
+        callTreeBuilder.addFrame(3, "Matrix.multiply/interpreted");
+        // The top frame first: main -> multiply -> getElement (with two frames of multiply) and main -> multiply
+        callTreeBuilder.addStackTrace(30, 3, new int[]{0, 1, 2}, 3);
+        callTreeBuilder.addStackTrace(20, 2, new int[]{0, 3, 2}, 3);
+        callTreeBuilder.addStackTrace(10, 1, new int[]{1, 2}, 2);
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(frameName -> CodeReference.builder()
+                        .setFqClassName(frameName.substring(0, frameName.indexOf('.')))
+                        .setMethodName(frameName.substring(frameName.indexOf('.') + 1, frameName.indexOf('/')))
+                        .build())
+                .add(createRecord("Matrix", "getElement", 0.5))
+                .add(createRecord("Matrix", "multiply", 0.1))
+                .build();
+
+        int main = dictionary.findRecord("MainKt", "main");
+        int multiply = dictionary.findRecord("Matrix", "multiply");
+        int getElement = dictionary.findRecord("Matrix", "getElement");
+        assertTrue(dictionary.hasCalls(main));
+        assertTrue(dictionary.hasCalls(multiply));
+        assertFalse(dictionary.hasCalls(getElement));
+
+        int mainToMultiply = dictionary.findCall(main, multiply);
+        assertNotEquals(StatisticsDictionary.NO_CALL, mainToMultiply);
+        assertEquals(6, dictionary.getCallSampleCount(mainToMultiply));
+        assertEquals(60, dictionary.getCallTime(mainToMultiply));
+        int multiplyToGetElement = dictionary.findCall(multiply, getElement);
+        assertEquals(5, dictionary.getCallSampleCount(multiplyToGetElement));
+        assertEquals(5.0 / 6.0, dictionary.getCallRelativeTime(multiplyToGetElement), 1e-9);
+
+        assertEquals(StatisticsDictionary.NO_CALL, dictionary.findCall(main, getElement));
+        assertEquals(StatisticsDictionary.NO_CALL, dictionary.findCall(getElement, multiply));
+    }
+
+    @Test
+    void callersAndCallees_shouldBeMergedByMethod() {
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        callTreeBuilder.addFrame(0, "Matrix.getElement/compiled");
+        callTreeBuilder.addFrame(1, "Matrix.multiply/compiled");
+        callTreeBuilder.addFrame(2, "MainKt.main/compiled");
+        callTreeBuilder.addFrame(3, "Matrix.multiply/interpreted");
+        callTreeBuilder.addFrame(4, "Matrix.transpose/compiled");
+        // The top frame first: the calls of both frames of multiply are the calls of one method
+        callTreeBuilder.addStackTrace(30, 3, new int[]{0, 1, 2}, 3);
+        callTreeBuilder.addStackTrace(20, 2, new int[]{0, 3, 2}, 3);
+        callTreeBuilder.addStackTrace(70, 7, new int[]{4, 2}, 2);
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(frameName -> CodeReference.builder()
+                        .setFqClassName(frameName.substring(0, frameName.indexOf('.')))
+                        .setMethodName(frameName.substring(frameName.indexOf('.') + 1, frameName.indexOf('/')))
+                        .build())
+                .build();
+
+        int main = dictionary.findRecord("MainKt", "main");
+        int multiply = dictionary.findRecord("Matrix", "multiply");
+        int getElement = dictionary.findRecord("Matrix", "getElement");
+        assertEquals(1, dictionary.getCallerCount(getElement));
+        int call = dictionary.getCallerCall(getElement, 0);
+        assertEquals(multiply, dictionary.getCallCaller(call));
+        assertEquals(getElement, dictionary.getCallCallee(call));
+        assertEquals(5, dictionary.getCallSampleCount(call));
+        assertEquals("Matrix.multiply", dictionary.getDisplayName(dictionary.getCallCaller(call)));
+
+        // The callees are ordered by the sample count, descending
+        assertEquals(2, dictionary.getCalleeCount(main));
+        assertEquals("Matrix.transpose",
+                dictionary.getDisplayName(dictionary.getCallCallee(dictionary.getCalleeCall(main, 0))));
+        assertEquals(multiply, dictionary.getCallCallee(dictionary.getCalleeCall(main, 1)));
+        assertEquals(5, dictionary.getCallSampleCount(dictionary.getCalleeCall(main, 1)));
+        assertEquals(0, dictionary.getCallerCount(main));
+    }
+
+    @Test
+    void changedCalls_shouldChangeCallerClass() {
+        StatisticsDictionary previous = createCallDictionary(3, 1);
+        StatisticsDictionary current = createCallDictionary(1, 3);
+
+        // The records of MainKt are the same, but its call sites have other weights
+        int main = current.findRecord("MainKt", "main");
+        assertEquals(previous.getInclusiveSampleCount(previous.findRecord("MainKt", "main")),
+                current.getInclusiveSampleCount(main));
+        assertTrue(current.getChangedClasses(previous).contains("MainKt"));
+        assertTrue(current.getChangedClasses(createCallDictionary(1, 3)).isEmpty());
+    }
+
+    @Test
+    void recordsWithoutStackTraces_shouldHaveNoCallers() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createRecord("Matrix", "multiply", 0.5))
+                .build();
+
+        int multiply = dictionary.findRecord("Matrix", "multiply");
+        assertEquals(0, dictionary.getCallerCount(multiply));
+        assertEquals(0, dictionary.getCalleeCount(multiply));
+    }
+
+    @Test
+    void methodsOnlyInStackTraces_shouldGetInclusiveOnlyRecords() {
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        callTreeBuilder.addFrame(0, "Matrix.multiply_[j]");
+        callTreeBuilder.addFrame(1, "MainKt.main_[j]");
+        callTreeBuilder.addStackTrace(0, 4, new int[]{0, 1}, 2);
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(new AsyncFlatParser()::getFrameCodeReference)
+                .add(createRecord("Matrix", "multiply", 1.0))
+                .build();
+
+        int main = dictionary.findRecord("MainKt", "main");
+        assertNotEquals(StatisticsDictionary.NO_RECORD, main);
+        assertTrue(dictionary.isInclusiveOnly(main));
+        assertEquals(4, dictionary.getInclusiveSampleCount(main));
+        assertFalse(dictionary.isInclusiveOnly(dictionary.findRecord("Matrix", "multiply")));
+    }
+
+    @Test
+    void nativeFramesBelowJniFunction_shouldBeAttributedToNativeMethod() {
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        callTreeBuilder.addFrame(0, "java.util.zip.Inflater.inflate_[j]");
+        callTreeBuilder.addFrame(1, "Java_java_util_zip_Inflater_inflateBytesBytes");
+        callTreeBuilder.addFrame(2, "inflate");
+        callTreeBuilder.addFrame(3, "inflate_fast");
+        callTreeBuilder.addFrame(4, "JavaThread::run()");
+        // The top frame first: Inflater.inflate -> JNI function -> inflate -> inflate_fast, and a JVM thread
+        callTreeBuilder.addStackTrace(30, 3, new int[]{3, 2, 1, 0}, 4);
+        callTreeBuilder.addStackTrace(10, 1, new int[]{2, 1, 0}, 3);
+        callTreeBuilder.addStackTrace(20, 2, new int[]{1, 0}, 2);
+        callTreeBuilder.addStackTrace(40, 4, new int[]{4}, 1);
+        TimeRecord jniRecord = createRecord("java.util.zip.Inflater", "inflateBytesBytes", 0.2);
+        jniRecord.setSampleCount(2);
+        jniRecord.setAbsoluteTime(20);
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(new AsyncFlatParser()::getFrameCodeReference)
+                .add(jniRecord)
+                .build();
+
+        int inflateBytes = dictionary.findRecord("java.util.zip.Inflater", "inflateBytesBytes");
+        assertEquals(6, dictionary.getSampleCount(inflateBytes));
+        assertEquals(60, dictionary.getAbsoluteTime(inflateBytes));
+        assertEquals(0.6, dictionary.getRelativeTime(inflateBytes), 1e-9);
+        assertEquals(6, dictionary.getInclusiveSampleCount(inflateBytes));
+        assertEquals(10, dictionary.getTotalSampleCount());
+
+        // The caller of the native method and the frames outside of the JNI calls keep their values
+        int inflate = dictionary.findRecord("java.util.zip.Inflater", "inflate");
+        assertEquals(0, dictionary.getSampleCount(inflate));
+        assertEquals(6, dictionary.getInclusiveSampleCount(inflate));
+        assertEquals(2, dictionary.getRecordCount());
+    }
+
+    @Test
+    void lineRecords_shouldBeSummedAndIndexed() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createLineRecord("com.comitative.pt.Matrix", "multiply", 31, 10))
+                .add(createLineRecord("com.comitative.pt.Matrix", "multiply", 27, 30))
+                .add(createLineRecord("com.comitative.pt.Vector", "add", 12, 5))
+                .add(createLineRecord("com.comitative.pt.Matrix", "getElement", 45, 20))
+                .add(createLineRecord("com.comitative.pt.Matrix", "multiply", 27, 2))
+                .build();
+
+        int multiply = dictionary.findRecord("com.comitative.pt.Matrix", "multiply");
+        assertEquals(3, dictionary.getRecordCount());
+        assertEquals(42, dictionary.getSampleCount(multiply));
+        assertEquals(1, dictionary.getTimeRecords("com.comitative.pt.Matrix", "multiply").size());
+
+        int matrix = dictionary.findClass("com.comitative.pt.Matrix");
+        int end = dictionary.getLineEntryEnd(matrix);
+        int entry = dictionary.findLineEntry(matrix, 0);
+        assertEquals(3, end - entry);
+        assertEquals(27, dictionary.getLineNumber(entry));
+        assertEquals(32, dictionary.getLineSampleCount(entry));
+        assertEquals(32_000, dictionary.getLineTime(entry));
+        assertEquals(31, dictionary.getLineNumber(entry + 1));
+        assertEquals(45, dictionary.getLineNumber(entry + 2));
+
+        assertEquals(entry + 1, dictionary.findLineEntry(matrix, 28));
+        assertEquals(entry + 1, dictionary.findLineEntry(matrix, 31));
+        assertEquals(end, dictionary.findLineEntry(matrix, 46));
+        assertEquals(dictionary.getLineEntryEnd(StatisticsDictionary.NO_CLASS),
+                dictionary.findLineEntry(StatisticsDictionary.NO_CLASS, 1));
+
+        int vector = dictionary.findClass("com.comitative.pt.Vector");
+        assertEquals(1, dictionary.getLineEntryEnd(vector) - dictionary.findLineEntry(vector, 1));
+    }
+
+    @Test
+    void frameTypeRecords_shouldBeSummedAndIndexed() {
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(createFrameTypeRecord("com.comitative.pt.Matrix", "multiply", FrameType.C2_COMPILED, 300))
+                .add(createRecord("com.comitative.pt.Vector", "add", 0.05))
+                .add(createFrameTypeRecord("com.comitative.pt.Matrix", "multiply", FrameType.INTERPRETED, 100))
+                .add(createFrameTypeRecord("com.comitative.pt.Matrix", "getElement", FrameType.INLINED, 50))
+                .add(createFrameTypeRecord("com.comitative.pt.Matrix", "multiply", FrameType.C2_COMPILED, 20))
+                .build();
+
+        int multiply = dictionary.findRecord("com.comitative.pt.Matrix", "multiply");
+        assertEquals(3, dictionary.getRecordCount());
+        assertEquals(420, dictionary.getSampleCount(multiply));
+        assertEquals(4.2, dictionary.getRelativeTime(multiply), 1e-9);
+        assertEquals(320, dictionary.getFrameTypeSampleCount(multiply, FrameType.C2_COMPILED));
+        assertEquals(100, dictionary.getFrameTypeSampleCount(multiply, FrameType.INTERPRETED));
+        assertEquals(0, dictionary.getFrameTypeSampleCount(multiply, FrameType.C1_COMPILED));
+
+        int getElement = dictionary.findRecord("com.comitative.pt.Matrix", "getElement");
+        assertEquals(50, dictionary.getFrameTypeSampleCount(getElement, FrameType.INLINED));
+        assertEquals(0, dictionary.getFrameTypeSampleCount(getElement, FrameType.C2_COMPILED));
+        int add = dictionary.findRecord("com.comitative.pt.Vector", "add");
+        for (FrameType frameType : FrameType.values()) {
+            assertEquals(0, dictionary.getFrameTypeSampleCount(add, frameType));
+        }
+    }
+
+    @Test
+    void metricValues_shouldBeRelativeToMetricTotals() {
+        TimeRecord multiply = createRecord("Matrix", "multiply", 0.5);
+        multiply.setSampleCount(50);
+        multiply.setValue(ProfileMetric.ALLOCATED_BYTES, 3072);
+        TimeRecord add = createRecord("Vector", "add", 0.0);
+        add.setValue(ProfileMetric.ALLOCATED_BYTES, 1024);
+        add.setValue(ProfileMetric.LOCK_WAIT_TIME, 2_000_000);
+        StatisticsDictionary dictionary = new StatisticsDictionary.Builder()
+                .add(multiply)
+                .add(add)
+                .build();
+
+        int multiplyRecord = dictionary.findRecord("Matrix", "multiply");
+        int addRecord = dictionary.findRecord("Vector", "add");
+        assertEquals(4096, dictionary.getTotalValue(ProfileMetric.ALLOCATED_BYTES));
+        assertEquals(3072, dictionary.getValue(ProfileMetric.ALLOCATED_BYTES, multiplyRecord));
+        assertEquals(0.75, dictionary.getRelativeValue(ProfileMetric.ALLOCATED_BYTES, multiplyRecord), 1e-9);
+        assertEquals(1.0, dictionary.getRelativeValue(ProfileMetric.LOCK_WAIT_TIME, addRecord), 1e-9);
+        assertEquals(0.0, dictionary.getRelativeValue(ProfileMetric.LOCK_WAIT_TIME, multiplyRecord), 1e-9);
+        assertEquals(0.5, dictionary.getRelativeValue(ProfileMetric.SAMPLES, multiplyRecord), 1e-9);
+        assertFalse(dictionary.isInclusiveOnly(addRecord));
+        assertEquals(1024, dictionary.getTimeRecords("Vector", "add").get(0)
+                .getValue(ProfileMetric.ALLOCATED_BYTES));
+    }
+
+    // main calls Matrix.multiply and Vector.add, the methods have the same self samples in every dictionary
+    private static @NotNull StatisticsDictionary createCallDictionary(long multiplySamples, long addSamples) {
+        CallTree.Builder callTreeBuilder = new CallTree.Builder();
+        callTreeBuilder.addFrame(0, "Matrix.multiply/compiled");
+        callTreeBuilder.addFrame(1, "Vector.add/compiled");
+        callTreeBuilder.addFrame(2, "MainKt.main/compiled");
+        callTreeBuilder.addStackTrace(0, multiplySamples, new int[]{0, 2}, 2);
+        callTreeBuilder.addStackTrace(0, addSamples, new int[]{1, 2}, 2);
+        return new StatisticsDictionary.Builder()
+                .setCallTree(callTreeBuilder.build())
+                .setFrameResolver(frameName -> CodeReference.builder()
+                        .setFqClassName(frameName.substring(0, frameName.indexOf('.')))
+                        .setMethodName(frameName.substring(frameName.indexOf('.') + 1, frameName.indexOf('/')))
+                        .build())
+                .add(createRecord("Matrix", "multiply", 0.5))
+                .add(createRecord("Vector", "add", 0.5))
+                .build();
+    }
+
+    private static @NotNull TimeRecord createFrameTypeRecord(
+            @NotNull String className,
+            @NotNull String methodName,
+            @NotNull FrameType frameType,
+            long sampleCount) {
+        TimeRecord timeRecord = createRecord(className, methodName, sampleCount / 100.0, sampleCount);
+        timeRecord.setFrameType(frameType);
+        return timeRecord;
+    }
+}
@@ -0,0 +1,222 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.parsers.CollapsedStacksParser;
+import com.comitative.pic.parsers.SnapshotParser;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.messages.MessageBus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsServiceTest {
+
+    @Test
+    void watchedSnapshot_shouldBeReloadedAfterDebouncedChanges() throws IOException {
+        try (TestEnvironment environment = new TestEnvironment()) {
+            File file = environment.writeSnapshot("snapshot.txt", MATRIX_SNAPSHOT);
+            StatisticsService service = environment.service;
+            service.loadFileInBackground(file, environment.parser, true);
+            assertNull(service.getWatchedFile(), "The file should be watched only after it is loaded");
+
+            environment.runTasks();
+            assertEquals(file, service.getWatchedFile());
+            assertTrue(service.getStatistics().findRecord("com.example.Matrix", "multiply") >= 0);
+            assertTrue(Files.isRegularFile(environment.cacheFile(SnapshotKind.CURRENT)));
+
+            environment.writeSnapshot("snapshot.txt", VECTOR_SNAPSHOT);
+            environment.watcher.fileChanged();
+            environment.watcher.fileChanged();
+            assertTrue(environment.tasks.isEmpty(), "The reload should wait until the file stops changing");
+            assertEquals(1, environment.pendingReloads.size());
+
+            environment.runPendingReloads();
+            StatisticsDictionary statistics = service.getStatistics();
+            assertTrue(statistics.findRecord("com.example.Vector", "add") >= 0);
+            assertTrue(statistics.findRecord("com.example.Matrix", "multiply") < 0);
+            assertTrue(environment.refreshedClasses.contains("com.example.Vector"));
+            assertEquals(file, service.getWatchedFile());
+        }
+    }
+
+    @Test
+    void failedReload_shouldKeepStatisticsAndWatching() throws IOException {
+        try (TestEnvironment environment = new TestEnvironment()) {
+            File file = environment.writeSnapshot("snapshot.txt", MATRIX_SNAPSHOT);
+            StatisticsService service = environment.service;
+            service.loadFileInBackground(file, environment.parser, true);
+            environment.runTasks();
+            StatisticsDictionary statistics = service.getStatistics();
+            byte[] cache = Files.readAllBytes(environment.cacheFile(SnapshotKind.CURRENT));
+
+            // The profiler has truncated the file and has not written the stack traces yet
+            environment.writeSnapshot("snapshot.txt", MATRIX_SNAPSHOT.substring(0, 30));
+            environment.watcher.fileChanged();
+            environment.runPendingReloads();
+            assertSame(statistics, service.getStatistics());
+            assertEquals(file, service.getWatchedFile());
+            assertArrayEquals(cache, Files.readAllBytes(environment.cacheFile(SnapshotKind.CURRENT)));
+
+            // The file has been removed before the reload
+            environment.watcher.fileChanged();
+            Files.delete(file.toPath());
+            environment.runPendingReloads();
+            assertSame(statistics, service.getStatistics());
+            assertEquals(file, service.getWatchedFile());
+        }
+    }
+
+    @Test
+    void supersededLoad_shouldNotStartWatching() throws IOException {
+        try (TestEnvironment environment = new TestEnvironment()) {
+            File watchedFile = environment.writeSnapshot("snapshot.txt", MATRIX_SNAPSHOT);
+            File otherFile = environment.writeSnapshot("other.txt", VECTOR_SNAPSHOT);
+            StatisticsService service = environment.service;
+            service.loadFileInBackground(watchedFile, environment.parser, true);
+            service.loadFileInBackground(otherFile, environment.parser, false);
+
+            environment.runTasks();
+            assertNull(service.getWatchedFile());
+            assertNull(environment.watcher);
+            assertTrue(service.getStatistics().findRecord("com.example.Vector", "add") >= 0);
+        }
+    }
+
+    @Test
+    void baselineChange_shouldRefreshAllCurrentClasses() throws IOException {
+        try (TestEnvironment environment = new TestEnvironment()) {
+            File currentFile = environment.writeSnapshot("current.txt", MATRIX_SNAPSHOT);
+            File baselineFile = environment.writeSnapshot("baseline.txt", VECTOR_SNAPSHOT);
+            StatisticsService service = environment.service;
+            service.loadFileInBackground(currentFile, environment.parser);
+            environment.runTasks();
+
+            environment.refreshedClasses.clear();
+            service.loadBaselineInBackground(Collections.singletonList(baselineFile), environment.parser);
+            environment.runTasks();
+            assertEquals(new HashSet<>(Arrays.asList("com.example.Main", "com.example.Matrix", "com.example.Vector")),
+                    environment.refreshedClasses);
+
+            environment.refreshedClasses.clear();
+            service.clearBaseline();
+            environment.runTasks();
+            assertTrue(environment.refreshedClasses.contains("com.example.Matrix"));
+            assertFalse(Files.exists(environment.cacheFile(SnapshotKind.BASELINE)));
+        }
+    }
+
+    // A service with a synchronous loading queue, a manual reload scheduler and the caches in a temporary directory
+    private static final class TestEnvironment implements AutoCloseable {
+        final SnapshotParser parser = new CollapsedStacksParser();
+        final Deque<Task.Backgroundable> tasks = new ArrayDeque<>();
+        final List<Runnable> pendingReloads = new ArrayList<>();
+        final Set<String> refreshedClasses = new HashSet<>();
+        final Path directory;
+        final StatisticsService service;
+        SnapshotWatcher watcher = null;
+
+        TestEnvironment() throws IOException {
+            directory = Files.createTempDirectory("statistics-service-test");
+            Project project = fake(Project.class, (method, args) ->
+                    "getMessageBus".equals(method) ? fake(MessageBus.class, (busMethod, busArgs) ->
+                            "syncPublisher".equals(busMethod) ? fake(StatisticsListener.class, null) : null) : null);
+            HighlightingRefresher refresher = new HighlightingRefresher(project) {
+                @Override
+                void refresh(@NotNull Set<String> changedClasses) {
+                    refreshedClasses.addAll(changedClasses);
+                }
+            };
+            service = new StatisticsService(
+                    project,
+                    refresher,
+                    kind -> new SnapshotCache(cacheFile(kind)),
+                    tasks::add,
+                    (service, file, parser) -> {
+                        watcher = new SnapshotWatcher(service, file, parser, (reload, delayMs) -> {
+                            pendingReloads.clear();
+                            pendingReloads.add(reload);
+                        });
+                        return watcher;
+                    });
+        }
+
+        @NotNull Path cacheFile(@NotNull SnapshotKind kind) {
+            return directory.resolve(kind.getCacheFileName());
+        }
+
+        @NotNull File writeSnapshot(@NotNull String name, @NotNull String snapshot) throws IOException {
+            Path file = directory.resolve(name);
+            Files.write(file, snapshot.getBytes(StandardCharsets.UTF_8));
+            return file.toFile();
+        }
+
+        void runTasks() {
+            ProgressIndicator indicator = fake(ProgressIndicator.class, null);
+            while (!tasks.isEmpty()) {
+                Task.Backgroundable task = tasks.poll();
+                task.run(indicator);
+                task.onSuccess();
+            }
+        }
+
+        void runPendingReloads() {
+            List<Runnable> reloads = new ArrayList<>(pendingReloads);
+            pendingReloads.clear();
+            reloads.forEach(Runnable::run);
+            runTasks();
+        }
+
+        @Override
+        public void close() throws IOException {
+            service.stopWatching();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private interface FakeMethod {
+        Object invoke(@NotNull String method, Object[] args);
+    }
+
+    // An implementation of a platform interface that returns the default values unless the method is faked
+    @SuppressWarnings("unchecked")
+    private static @NotNull <T> T fake(@NotNull Class<T> type, @Nullable FakeMethod fakeMethod) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Fake " + type.getSimpleName();
+            }
+            Object result = fakeMethod == null ? null : fakeMethod.invoke(method.getName(), args);
+            Class<?> returnType = method.getReturnType();
+            if (result != null || !returnType.isPrimitive() || returnType == void.class) {
+                return result;
+            }
+            // The default value of a primitive type
+            return Array.get(Array.newInstance(returnType, 1), 0);
+        });
+    }
+
+    private static final String MATRIX_SNAPSHOT = "com/example/Main.main;com/example/Matrix.multiply 30\n";
+    private static final String VECTOR_SNAPSHOT = "com/example/Main.main;com/example/Vector.add 20\n";
+}
@@ -0,0 +1,73 @@
+package com.comitative.pic.statistics;
+
+import com.comitative.pic.CodeReference;
+import com.comitative.pic.TimeRecord;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Time record fixtures of the statistics tests.
+ */
+final class TestRecords {
+
+    private TestRecords() {}
+
+    static @NotNull TimeRecord createRecord(
+            @NotNull String className,
+            @NotNull String methodName,
+            double relativeTime) {
+        return new TimeRecord(
+                CodeReference.builder().setFqClassName(className).setMethodName(methodName).build(),
+                relativeTime);
+    }
+
+    static @NotNull TimeRecord createRecord(
+            @NotNull String className,
+            @NotNull String methodName,
+            double relativeTime,
+            long sampleCount) {
+        TimeRecord timeRecord = createRecord(className, methodName, relativeTime);
+        timeRecord.setSampleCount(sampleCount);
+        return timeRecord;
+    }
+
+    static @NotNull TimeRecord createRecord(
+            @NotNull String className,
+            @NotNull String methodName,
+            double relativeTime,
+            long sampleCount,
+            long absoluteTime) {
+        TimeRecord timeRecord = createRecord(className, methodName, relativeTime);
+        timeRecord.setSampleCount(sampleCount);
+        timeRecord.setAbsoluteTime(absoluteTime);
+        return timeRecord;
+    }
+
+    static @NotNull TimeRecord createRecord(
+            @NotNull String className,
+            @NotNull String methodName,
+            boolean javaMethod,
+            double relativeTime,
+            long sampleCount) {
+        TimeRecord timeRecord = new TimeRecord(
+                CodeReference.builder()
+                        .setFqClassName(className)
+                        .setMethodName(methodName)
+                        .setJavaMethod(javaMethod)
+                        .build(),
+                relativeTime);
+        timeRecord.setSampleCount(sampleCount);
+        return timeRecord;
+    }
+
+    // A record of a source line; the times are proportional to the sample count
+    static @NotNull TimeRecord createLineRecord(
+            @NotNull String className,
+            @NotNull String methodName,
+            int lineNumber,
+            long sampleCount) {
+        TimeRecord timeRecord =
+                createRecord(className, methodName, sampleCount / 100.0, sampleCount, sampleCount * 1000);
+        timeRecord.setLineNumber(lineNumber);
+        return timeRecord;
+    }
+}